@@ -11,9 +11,18 @@ import com.dsi.parallax.ml.model.AbstractModel;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
 import com.dsi.parallax.ml.util.pair.PrimitivePair;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 /**
  * The base class for for any classifier. Handles the training and application
@@ -48,6 +57,18 @@ public abstract class AbstractClassifier<C extends AbstractClassifier<C>>
 	 */
 	protected int crossValidateSmootherTraining = 1;
 
+	/**
+	 * below this many instances per thread, batches are scored on the calling
+	 * thread
+	 */
+	private static final int MIN_BATCH_CHUNK = 1024;
+
+	/**
+	 * threads used when scoring batches of instances, 0 for one per available
+	 * processor.
+	 */
+	protected int predictionThreads = 0;
+
 	/**
 	 * Instantiates a new abstract classifier.
 	 * 
@@ -103,6 +124,30 @@ public abstract class AbstractClassifier<C extends AbstractClassifier<C>>
 		return model;
 	}
 
+	/**
+	 * Gets the number of threads used when scoring batches of instances.
+	 * 
+	 * @return the number of threads, 0 for one per available processor
+	 */
+	public int getPredictionThreads() {
+		return predictionThreads;
+	}
+
+	/**
+	 * Sets the number of threads used when scoring batches of instances.
+	 * 
+	 * @param predictionThreads
+	 *            the number of threads, 0 for one per available processor
+	 * @return the classification model
+	 */
+	public C setPredictionThreads(int predictionThreads) {
+		checkArgument(predictionThreads >= 0,
+				"predictionThreads must be non-negative, given: %s",
+				predictionThreads);
+		this.predictionThreads = predictionThreads;
+		return model;
+	}
+
 	/**
 	 * Trains the probability smoother.
 	 * 
@@ -200,6 +245,133 @@ public abstract class AbstractClassifier<C extends AbstractClassifier<C>>
 		return new BinaryClassificationTarget(smooth(ip));
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.dsi.parallax.ml.classifier.Classifier#predictBatch(com.dsi.parallax
+	 * .ml.instance.Instances)
+	 */
+	@Override
+	public double[] predictBatch(Instances<? extends Instance<?>> instances) {
+		List<? extends Instance<?>> list = instances.getInstances();
+		if (!(list instanceof RandomAccess))
+			list = Lists.newArrayList(list);
+		double[] out = new double[list.size()];
+		int threads = predictionThreads > 0 ? predictionThreads : Runtime
+				.getRuntime().availableProcessors();
+		threads = Math.min(threads, out.length / MIN_BATCH_CHUNK);
+		if (threads <= 1 || !supportsConcurrentPrediction()) {
+			predictChunk(list, 0, out.length, out);
+			return out;
+		}
+
+		ExecutorService pool = PredictionPool.EXECUTOR;
+		try {
+			List<Future<?>> futures = Lists.newArrayList();
+			for (int t = 0; t < threads; t++) {
+				int from = (int) ((long) out.length * t / threads);
+				int to = (int) ((long) out.length * (t + 1) / threads);
+				futures.add(pool.submit(new ChunkScorer(list, from, to, out)));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+		return out;
+	}
+
+	/**
+	 * can instances be scored from several threads at once? models whose
+	 * scoring mutates internal state, eg a cache, should return false, and
+	 * batches given to them are scored on the calling thread.
+	 * 
+	 * @return true if concurrent calls to {@link #predict(Instance)} are safe
+	 */
+	public boolean supportsConcurrentPrediction() {
+		return true;
+	}
+
+	/**
+	 * probability estimates for a contiguous range of a batch, written into
+	 * the matching positions of out.
+	 * 
+	 * @param instances
+	 *            the batch
+	 * @param from
+	 *            first position scored
+	 * @param to
+	 *            one past the last position scored
+	 * @param out
+	 *            the scores for the whole batch
+	 */
+	private void predictChunk(List<? extends Instance<?>> instances,
+			int from, int to, double[] out) {
+		regressBatch(instances, from, to, out);
+		for (int i = from; i < to; i++)
+			out[i] = smooth(out[i]);
+	}
+
+	/**
+	 * raw classifier scores for a contiguous range of a batch, written into
+	 * the matching positions of out.
+	 * 
+	 * @param instances
+	 *            the batch
+	 * @param from
+	 *            first position scored
+	 * @param to
+	 *            one past the last position scored
+	 * @param out
+	 *            the scores for the whole batch
+	 */
+	protected void regressBatch(List<? extends Instance<?>> instances,
+			int from, int to, double[] out) {
+		for (int i = from; i < to; i++)
+			out[i] = regress(instances.get(i));
+	}
+
+	/**
+	 * holds the daemon threads batches are scored on, shared by every
+	 * classifier and created the first time a batch is split. the pool grows
+	 * with demand, so a batch scored from inside another batch, eg by an
+	 * ensemble's members, never waits on threads held by its caller.
+	 */
+	private static class PredictionPool {
+		static final ExecutorService EXECUTOR = Executors
+				.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
+						.setNameFormat("parallax-predict-%d").build());
+	}
+
+	/**
+	 * scores one range of a batch.
+	 */
+	private class ChunkScorer implements Runnable {
+		private final List<? extends Instance<?>> instances;
+		private final int from;
+		private final int to;
+		private final double[] out;
+
+		ChunkScorer(List<? extends Instance<?>> instances, int from, int to,
+				double[] out) {
+			this.instances = instances;
+			this.from = from;
+			this.to = to;
+			this.out = out;
+		}
+
+		@Override
+		public void run() {
+			predictChunk(instances, from, to, out);
+		}
+	}
+
 	/**
 	 * Regress. Get the raw classifier score for a particular example
 	 * 
@@ -3,6 +3,8 @@
  ******************************************************************************/
 package com.dsi.parallax.ml.classifier;
 
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.instance.Instances;
 import com.dsi.parallax.ml.model.Model;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
 
@@ -16,5 +18,15 @@ import com.dsi.parallax.ml.target.BinaryClassificationTarget;
  */
 public interface Classifier<C extends Classifier<C>> extends
 		Model<BinaryClassificationTarget, C> {
-	//Nothing to do here. 
+
+	/**
+	 * predict a batch of instances, in the order they appear. scores match
+	 * those from {@link #predict(Instance)}, but implementations may spread
+	 * the work over several threads.
+	 * 
+	 * @param instances
+	 *            the instances being labeled
+	 * @return the probability estimate of class membership for each instance
+	 */
+	public double[] predictBatch(Instances<? extends Instance<?>> instances);
 }
@@ -232,12 +232,15 @@ public final class ClassifierEvaluation {
 						+ training.size());
 			totTrain += sw.getTime();
 
+			sw.reset();
+			sw.start();
+			double[] predictions = model.predictBatch(testing);
+			totTest += sw.getTime();
+
+			int i = 0;
 			for (BinaryClassificationInstance instance : testing) {
 				double label = instance.getLabel().getValue();
-				sw.reset();
-				sw.start();
-				double prediction = model.predict(instance).getValue();
-				totTest += sw.getTime();
+				double prediction = predictions[i++];
 
 				if (verbose) {
 					System.out.println("label: " + label + ", prediction: "
@@ -106,6 +106,21 @@ public class PriorCorrectingClassifier implements
 		return target;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.dsi.parallax.ml.classifier.Classifier#predictBatch(com.dsi.parallax
+	 * .ml.instance.Instances)
+	 */
+	@Override
+	public double[] predictBatch(Instances<? extends Instance<?>> instances) {
+		double[] out = model.predictBatch(instances);
+		for (int i = 0; i < out.length; i++)
+			out[i] = out[i] * evaluationProb / trainingProb;
+		return out;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -46,6 +46,33 @@ public abstract class AbstractEnsembleClassifier<C extends AbstractEnsembleClass
 		return combine(subPredictions(inst));
 	}
 
+	/**
+	 * safe only when every member model is.
+	 */
+	@Override
+	public boolean supportsConcurrentPrediction() {
+		for (Classifier<?> member : models)
+			if (member instanceof AbstractClassifier
+					&& !((AbstractClassifier<?>) member)
+							.supportsConcurrentPrediction())
+				return false;
+		return true;
+	}
+
+	/**
+	 * each model's prediction for inst, written into predictions rather than
+	 * a new list.
+	 */
+	public double[] subPredictions(Instance<?> inst, double[] predictions) {
+		checkArgument(predictions.length >= numModels,
+				"room for %s predictions needed, given %s", numModels,
+				predictions.length);
+		for (int i = 0; i < numModels; i++) {
+			predictions[i] = models.get(i).predict(inst).getValue();
+		}
+		return predictions;
+	}
+
 	public C setClassifierBuilder(ClassifierBuilder<?, ?> builder) {
 		checkArgument(
 				builder.getDimension() == dimension - (bias ? 1 : 0),
@@ -1,21 +1,40 @@
 package com.dsi.parallax.ml.classifier.ensemble;
 
+import com.dsi.parallax.ml.classifier.Classifier;
 import com.dsi.parallax.ml.classifier.ClassifierEvaluation;
 import com.dsi.parallax.ml.instance.Instance;
 import com.dsi.parallax.ml.instance.Instances;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.util.MLUtils;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.cli.ParseException;
+import org.apache.log4j.Logger;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 public class BaggingEnsenbleClassifier extends
 		AbstractEnsembleClassifier<BaggingEnsenbleClassifier> {
 
 	private static final long serialVersionUID = -225551522026894871L;
 
-	protected BaggingEnsenbleClassifier(int dimension, boolean bias) {
+	private static final Logger LOGGER = Logger
+			.getLogger(BaggingEnsenbleClassifier.class);
+
+	protected int threads = 1;
+
+	protected long seed = MLUtils.GENERATOR.nextLong();
+
+	public BaggingEnsenbleClassifier(int dimension, boolean bias) {
 		super(dimension, bias);
 	}
 
@@ -42,11 +61,97 @@ public class BaggingEnsenbleClassifier extends
 		return sum / predictions.size();
 	}
 
+	/**
+	 * the mean of the models' predictions, accumulated directly rather than
+	 * through a list.
+	 */
+	@Override
+	protected double regress(Instance<?> inst) {
+		double sum = 0.;
+		for (int fold = 0; fold < numModels; fold++) {
+			sum += models.get(fold).predict(inst).getValue();
+		}
+		return sum / numModels;
+	}
+
+	/**
+	 * each model trains on its own bootstrap sample, a view indexed into
+	 * instances. samples are drawn from a random seeded by the ensemble's seed
+	 * and the model's position, so they don't depend on the number of
+	 * threads.
+	 */
 	@Override
 	protected <I extends Instances<? extends Instance<BinaryClassificationTarget>>> void modelTrain(
 			I instances) {
+		List<MemberTrainer> todo = Lists.newArrayList();
 		for (int fold = 0; fold < numModels; fold++) {
-			models.get(fold).train(instances.getBag().getBagInstances());
+			Instances<? extends Instance<BinaryClassificationTarget>> sample = instances
+					.getBootstrapView(new Random(seed + fold));
+			todo.add(new MemberTrainer(models.get(fold), sample));
+		}
+		if (threads == 1 || numModels == 1) {
+			for (MemberTrainer trainer : todo) {
+				trainer.call();
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(threads, numModels), new ThreadFactoryBuilder()
+						.setDaemon(true).setNameFormat("parallax-bagging-%d")
+						.build());
+		try {
+			for (Future<Void> future : executor.invokeAll(todo))
+				future.get();
+		} catch (InterruptedException e) {
+			LOGGER.error("error executing threads: " + e.getLocalizedMessage());
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			LOGGER.error("error training a bagged model: "
+					+ e.getCause().getLocalizedMessage());
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * the number of models trained at once.
+	 */
+	public BaggingEnsenbleClassifier setThreads(int threads) {
+		checkArgument(threads > 0, "threads must be positive, given: %s",
+				threads);
+		this.threads = threads;
+		return model;
+	}
+
+	/**
+	 * seeds the bootstrap samples drawn for each model.
+	 */
+	public BaggingEnsenbleClassifier setSeed(long seed) {
+		this.seed = seed;
+		return model;
+	}
+
+	private static class MemberTrainer implements Callable<Void> {
+
+		final Classifier<?> member;
+
+		final Instances<? extends Instance<BinaryClassificationTarget>> sample;
+
+		MemberTrainer(Classifier<?> member,
+				Instances<? extends Instance<BinaryClassificationTarget>> sample) {
+			this.member = member;
+			this.sample = sample;
+		}
+
+		@Override
+		public Void call() {
+			member.train(sample);
+			return null;
 		}
 	}
 
@@ -553,6 +553,12 @@ public abstract class KernelMethodBuilder<K extends AbstractUpdateableKernelClas
 		/** The loss function used */
 		private LossGradientType lossType = LossGradientType.HINGELOSS;
 
+		/** maximum support vectors kept, 0 for no limit */
+		private int budget = 0;
+
+		/** number of kernel values cached */
+		private int cacheSize = 1 << 16;
+
 		/**
 		 * Instantiates a new kernel sgd builder.
 		 * 
@@ -598,6 +604,8 @@ public abstract class KernelMethodBuilder<K extends AbstractUpdateableKernelClas
 					.setLambda(lambda)
 					.setMargin(margin)
 					.setLossGradientType(lossType)
+					.setBudget(budget)
+					.setCacheSize(cacheSize)
 					.setKernel(kernelBuilder.buildKernel())
 					.setPasses(passes)
 					.setCrossvalidateSmootherTraining(
@@ -667,6 +675,36 @@ public abstract class KernelMethodBuilder<K extends AbstractUpdateableKernelClas
 			return thisBuider;
 		}
 
+		/**
+		 * Sets the budget, the maximum number of support vectors kept. 0 for
+		 * no limit
+		 * 
+		 * @param budget
+		 *            the budget for support vectors
+		 * @return the kernel sgd builder (for method chaining)
+		 */
+		public KernelSGDBuilder setBudget(int budget) {
+			checkArgument(budget >= 0, "budget must be >= 0, given: %s",
+					budget);
+			this.budget = budget;
+			return thisBuider;
+		}
+
+		/**
+		 * Sets the number of kernel values cached between support vectors. 0
+		 * for no caching
+		 * 
+		 * @param cacheSize
+		 *            the kernel cache size
+		 * @return the kernel sgd builder (for method chaining)
+		 */
+		public KernelSGDBuilder setCacheSize(int cacheSize) {
+			checkArgument(cacheSize >= 0, "cacheSize must be >= 0, given: %s",
+					cacheSize);
+			this.cacheSize = cacheSize;
+			return thisBuider;
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
@@ -681,6 +719,8 @@ public abstract class KernelMethodBuilder<K extends AbstractUpdateableKernelClas
 			setMargin(conf.floatOptionFromShortName("m"));
 			setEta(conf.floatOptionFromShortName("E"));
 			setLambda(conf.floatOptionFromShortName("M"));
+			setBudget(conf.integerOptionFromShortName("B"));
+			setCacheSize(conf.integerOptionFromShortName("C"));
 		}
 
 		/*
@@ -711,6 +751,8 @@ public abstract class KernelMethodBuilder<K extends AbstractUpdateableKernelClas
 			conf.addFloatValueOnShortName("m", margin);
 			conf.addFloatValueOnShortName("E", eta);
 			conf.addFloatValueOnShortName("M", lambda);
+			conf.addIntegerValueOnShortName("B", budget);
+			conf.addIntegerValueOnShortName("C", cacheSize);
 			return conf;
 		}
 
@@ -729,6 +771,8 @@ public abstract class KernelMethodBuilder<K extends AbstractUpdateableKernelClas
 		 * H/hingethresh: float, >0, threshold for hinge loss<br>
 		 * E/eta: float > 0, aggressiveness of updates<br>
 		 * M/lambda: float > 0, weight on regularization<br>
+		 * B/budget: int >= 0, maximum support vectors kept, 0 for no limit<br>
+		 * C/cachesize: int >= 0, number of kernel values cached<br>
 		 */
 		protected static class KernelSGDOptions extends
 				UpdateableKernelOptions<KernelSGD, KernelSGDBuilder> {
@@ -749,6 +793,14 @@ public abstract class KernelMethodBuilder<K extends AbstractUpdateableKernelClas
 						"weight on regularization", 0.01, true,
 						new GreaterThanValueBound(0),
 						new LessThanOrEqualsValueBound(1)));
+				addOption(new IntegerOption("B", "budget",
+						"maximum support vectors kept, 0 for no limit", 0,
+						false, new GreaterThanOrEqualsValueBound(0),
+						new LessThanOrEqualsValueBound(BIGVAL)));
+				addOption(new IntegerOption("C", "cachesize",
+						"number of kernel values cached", 1 << 16, false,
+						new GreaterThanOrEqualsValueBound(0),
+						new LessThanOrEqualsValueBound(BIGVAL)));
 			}
 
 			/*
@@ -10,11 +10,6 @@ import com.dsi.parallax.ml.instance.Instance;
 import com.dsi.parallax.ml.instance.Instances;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
 import com.dsi.parallax.ml.util.MLUtils;
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Table;
-
-import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -42,11 +37,14 @@ public class KernelSGD extends AbstractUpdateableKernelClassifier<KernelSGD> {
 	 */
 	private double lambda = 0.01;
 
-	/** The kernel matrix. */
-	private transient Table<Instance<?>, Instance<?>, Double> kernelMatrix;
+	/** The maximum number of support vectors kept, 0 for no limit. */
+	private int budget = 0;
+
+	/** The number of kernel values cached, 0 for no caching. */
+	private int cacheSize = 1 << 16;
 
-	/** The lagrange multipliers for the instance keys. */
-	private Map<Instance<?>, Double> alphas;
+	/** The support vectors and their lagrange multipliers. */
+	private SupportVectorStore supports;
 
 	/**
 	 * Instantiates a new kernel sgd.
@@ -71,18 +69,12 @@ public class KernelSGD extends AbstractUpdateableKernelClassifier<KernelSGD> {
 	@Override
 	public <I extends Instance<BinaryClassificationTarget>> void updateModel(
 			I instst) {
-		double pred = kernelInnerProduct(instst);
+		double pred = supports.innerProduct(instst, kernel);
 		double update = lossType.computeLossUpdate(pred,
 				MLUtils.probToSVMInterval(instst.getLabel().getValue()));
-		if (!MLUtils.floatingPointEquals(0, update)) {
-			double updateVal = (alphas.containsKey(instst) ? alphas.get(instst)
-					: 0) + (update * eta);
-			alphas.put(instst, updateVal);
-		}
-		for (Instance<?> inst : alphas.keySet()) {
-			alphas.put(inst, alphas.get(inst) * (1. - eta * lambda));
-		}
-
+		if (!MLUtils.floatingPointEquals(0, update))
+			supports.add(instst, update * eta);
+		supports.scale(1. - eta * lambda);
 	}
 
 	/*
@@ -108,53 +100,17 @@ public class KernelSGD extends AbstractUpdateableKernelClassifier<KernelSGD> {
 	 */
 	@Override
 	protected double regress(Instance<?> inst) {
-		double kip = kernelInnerProduct(inst);
+		double kip = supports.innerProduct(inst, kernel);
 		return MLUtils.svmIntervalToProb(kip);
 	}
 
 	/**
-	 * sum_i alpha_i k(x_i, x), the model's "score" for the input example
-	 * 
-	 * @param inst
-	 *            the instance to be scored
-	 * @return the model's raw score for the given example
-	 */
-	private double kernelInnerProduct(Instance<?> inst) {
-		double val = 0;
-		for (Instance<?> x : alphas.keySet()) {
-			val += kernelInnerProduct(x, inst) * alphas.get(x);
-		}
-		return val;
-	}
-
-	/**
-	 * Kernel inner product; the inner product between two instances in the
-	 * kernel space.
-	 * 
-	 * @param x
-	 *            the x first example in the inner product
-	 * @param y
-	 *            the y second example in the inner product
-	 * @return the the kernel inner product between the two given examples
+	 * kernel values between support vectors are cached as they are computed,
+	 * so scoring isn't thread safe.
 	 */
-	private double kernelInnerProduct(Instance<?> x, Instance<?> y) {
-		int xHashCode = x.hashCode(), yHashCode = y.hashCode();
-		Instance<?> first = null, second = null;
-		if (xHashCode < yHashCode) {
-			first = x;
-			second = y;
-		} else {
-			first = y;
-			second = x;
-		}
-
-		if (kernelMatrix.contains(first, second))
-			return kernelMatrix.get(first, second);
-		else {
-			double ip = kernel.InnerProduct(first, second);
-			kernelMatrix.put(first, second, ip);
-			return ip;
-		}
+	@Override
+	public boolean supportsConcurrentPrediction() {
+		return false;
 	}
 
 	// model setup and configuration stuff below.
@@ -166,8 +122,7 @@ public class KernelSGD extends AbstractUpdateableKernelClassifier<KernelSGD> {
 	 */
 	@Override
 	public KernelSGD initialize() {
-		kernelMatrix = HashBasedTable.create();
-		alphas = Maps.newHashMap();
+		supports = new SupportVectorStore(budget, cacheSize);
 		return model;
 	}
 
@@ -219,6 +174,64 @@ public class KernelSGD extends AbstractUpdateableKernelClassifier<KernelSGD> {
 		return lambda;
 	}
 
+	/**
+	 * Gets the maximum number of support vectors kept, 0 if there's no limit.
+	 * 
+	 * @return the budget for support vectors
+	 */
+	public int getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Gets the number of kernel values cached between pairs of support
+	 * vectors.
+	 * 
+	 * @return the kernel cache size
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * Gets the number of support vectors currently in the model.
+	 * 
+	 * @return the number of support vectors
+	 */
+	public int getSupportVectorCount() {
+		return supports.size();
+	}
+
+	/**
+	 * Sets the maximum number of support vectors kept. once there are more,
+	 * the one with the smallest lagrange multiplier is dropped. 0 for no
+	 * limit. takes effect when the model is initialized.
+	 * 
+	 * @param budget
+	 *            the budget for support vectors
+	 * @return the kernel sgd used for method chaining
+	 */
+	public KernelSGD setBudget(int budget) {
+		checkArgument(budget >= 0, "budget must be >= 0, given: %s", budget);
+		this.budget = budget;
+		return model;
+	}
+
+	/**
+	 * Sets the number of kernel values cached between pairs of support
+	 * vectors, 0 for no caching. takes effect when the model is initialized.
+	 * 
+	 * @param cacheSize
+	 *            the kernel cache size
+	 * @return the kernel sgd used for method chaining
+	 */
+	public KernelSGD setCacheSize(int cacheSize) {
+		checkArgument(cacheSize >= 0, "cacheSize must be >= 0, given: %s",
+				cacheSize);
+		this.cacheSize = cacheSize;
+		return model;
+	}
+
 	/**
 	 * Sets the loss function to be optimized
 	 * 
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.classifier.kernelmethods;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.mercerkernels.Kernel;
+import com.google.common.collect.Maps;
+
+/**
+ * the support vectors of a kernel model and their lagrange multipliers.
+ * <p>
+ * multipliers are stored divided by a single global scale, so shrinking every
+ * multiplier by the same factor- as regularization does after each update- is
+ * one multiplication rather than a pass over the support vectors. kernel
+ * values between pairs of support vectors are kept in a fixed size cache
+ * keyed by the ids the store gives each support vector, so memory doesn't
+ * grow with the number of examples scored. an optional budget caps the number
+ * of support vectors, dropping the one with the smallest multiplier when it
+ * is exceeded.
+ *
+ * @author jattenberg
+ */
+public class SupportVectorStore implements Serializable {
+
+	private static final long serialVersionUID = -3154617284420993117L;
+
+	/** rescale the stored multipliers once the global scale is this small */
+	private static final double MIN_SCALE = 1e-9;
+
+	/** maximum support vectors kept, 0 for no limit */
+	private final int budget;
+
+	/** kernel values cached, 0 for no caching */
+	private final int cacheSize;
+
+	private Instance<?>[] supports = new Instance<?>[16];
+	private double[] weights = new double[16];
+	private int[] ids = new int[16];
+	private int count = 0;
+	private int nextId = 0;
+	private double scale = 1;
+
+	/** position of each support vector in the arrays above */
+	private final Map<Instance<?>, Integer> positions = Maps.newHashMap();
+
+	private transient KernelCache cache;
+
+	/**
+	 * Instantiates a new support vector store.
+	 *
+	 * @param budget
+	 *            maximum number of support vectors kept, 0 for no limit
+	 * @param cacheSize
+	 *            number of kernel values cached, 0 for no caching
+	 */
+	public SupportVectorStore(int budget, int cacheSize) {
+		checkArgument(budget >= 0, "budget must be non-negative, given: %s",
+				budget);
+		checkArgument(cacheSize >= 0,
+				"cacheSize must be non-negative, given: %s", cacheSize);
+		this.budget = budget;
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * the number of support vectors.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * the multiplier on an instance, 0 if it isn't a support vector.
+	 *
+	 * @param inst
+	 *            the instance
+	 * @return the multiplier
+	 */
+	public double getAlpha(Instance<?> inst) {
+		Integer position = positions.get(inst);
+		return position == null ? 0 : weights[position] * scale;
+	}
+
+	/**
+	 * add to the multiplier on an instance, making it a support vector if it
+	 * isn't already one. if this puts the store over budget, the support
+	 * vector with the smallest multiplier is dropped.
+	 *
+	 * @param inst
+	 *            the instance
+	 * @param delta
+	 *            the amount added to its multiplier
+	 */
+	public void add(Instance<?> inst, double delta) {
+		Integer position = positions.get(inst);
+		if (position != null) {
+			weights[position] += delta / scale;
+			return;
+		}
+		if (count == supports.length) {
+			supports = Arrays.copyOf(supports, 2 * count);
+			weights = Arrays.copyOf(weights, 2 * count);
+			ids = Arrays.copyOf(ids, 2 * count);
+		}
+		supports[count] = inst;
+		weights[count] = delta / scale;
+		ids[count] = nextId++;
+		positions.put(inst, count);
+		count++;
+
+		if (budget > 0 && count > budget)
+			remove(smallest());
+	}
+
+	/**
+	 * multiply every multiplier by a factor.
+	 *
+	 * @param factor
+	 *            the factor
+	 */
+	public void scale(double factor) {
+		scale *= factor;
+		if (Math.abs(scale) < MIN_SCALE) {
+			for (int i = 0; i < count; i++)
+				weights[i] *= scale;
+			scale = 1;
+		}
+	}
+
+	/**
+	 * sum_i alpha_i k(x_i, x) over the support vectors x_i.
+	 *
+	 * @param inst
+	 *            the instance x
+	 * @param kernel
+	 *            the kernel
+	 * @return the kernel inner product
+	 */
+	public double innerProduct(Instance<?> inst, Kernel kernel) {
+		Integer position = positions.get(inst);
+		double val = 0;
+		if (position == null || cacheSize == 0) {
+			for (int i = 0; i < count; i++)
+				val += weights[i] * kernel.InnerProduct(supports[i], inst);
+		} else {
+			KernelCache cache = getCache();
+			int id = ids[position];
+			for (int i = 0; i < count; i++) {
+				long key = ids[i] < id ? ((long) ids[i] << 32) | id
+						: ((long) id << 32) | ids[i];
+				int slot = cache.find(key);
+				double k;
+				if (slot >= 0) {
+					k = cache.values[slot];
+				} else {
+					k = kernel.InnerProduct(supports[i], inst);
+					cache.put(key, k);
+				}
+				val += weights[i] * k;
+			}
+		}
+		return val * scale;
+	}
+
+	/**
+	 * drop every support vector.
+	 */
+	public void clear() {
+		Arrays.fill(supports, 0, count, null);
+		count = 0;
+		scale = 1;
+		positions.clear();
+		cache = null;
+	}
+
+	private KernelCache getCache() {
+		if (cache == null)
+			cache = new KernelCache(cacheSize);
+		return cache;
+	}
+
+	private int smallest() {
+		int smallest = 0;
+		for (int i = 1; i < count; i++)
+			if (Math.abs(weights[i]) < Math.abs(weights[smallest]))
+				smallest = i;
+		return smallest;
+	}
+
+	// ids aren't reused, so cached values for a removed support vector are
+	// never looked up again and age out of the cache
+	private void remove(int position) {
+		positions.remove(supports[position]);
+		int last = --count;
+		if (position != last) {
+			supports[position] = supports[last];
+			weights[position] = weights[last];
+			ids[position] = ids[last];
+			positions.put(supports[position], position);
+		}
+		supports[last] = null;
+	}
+
+	/**
+	 * a fixed size, 4-way set associative cache from pairs of ids to kernel
+	 * values. each set is replaced by the clock algorithm: a hit marks an
+	 * entry as referenced, and a miss replaces the first unreferenced entry,
+	 * clearing the marks it passes over.
+	 */
+	static final class KernelCache {
+		private static final int WAYS = 4;
+		private static final long EMPTY = -1;
+
+		final long[] keys;
+		final double[] values;
+		private final boolean[] referenced;
+		private final int[] hands;
+		private final int mask;
+
+		KernelCache(int capacity) {
+			int sets = Integer.highestOneBit(Math.max(1, capacity / WAYS));
+			keys = new long[sets * WAYS];
+			values = new double[sets * WAYS];
+			referenced = new boolean[sets * WAYS];
+			hands = new int[sets];
+			mask = sets - 1;
+			Arrays.fill(keys, EMPTY);
+		}
+
+		private int set(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h >>> 32) & mask;
+		}
+
+		/**
+		 * the slot holding key, or -1 if it isn't cached.
+		 */
+		int find(long key) {
+			int base = set(key) * WAYS;
+			for (int i = base; i < base + WAYS; i++) {
+				if (keys[i] == key) {
+					referenced[i] = true;
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		void put(long key, double value) {
+			int set = set(key);
+			int base = set * WAYS;
+			int hand = hands[set];
+			while (referenced[base + hand]) {
+				referenced[base + hand] = false;
+				hand = (hand + 1) % WAYS;
+			}
+			keys[base + hand] = key;
+			values[base + hand] = value;
+			referenced[base + hand] = true;
+			hands[set] = (hand + 1) % WAYS;
+		}
+	}
+}
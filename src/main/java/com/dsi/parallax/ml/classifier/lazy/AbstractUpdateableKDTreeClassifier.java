@@ -4,6 +4,8 @@ import com.dsi.parallax.ml.classifier.AbstractUpdateableClassifier;
 import com.dsi.parallax.ml.instance.Instance;
 import com.dsi.parallax.ml.instance.Instances;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.util.FlatKDTree;
+import com.dsi.parallax.ml.util.FlatKDTree.Metric;
 import com.dsi.parallax.ml.util.KDTree;
 import com.dsi.parallax.ml.util.KDTree.*;
 
@@ -38,6 +40,9 @@ public abstract class AbstractUpdateableKDTreeClassifier<C extends AbstractUpdat
 	/** The size limit. */
 	private int sizeLimit = Integer.MAX_VALUE;
 
+	/** the rebuild fraction of flat kd trees */
+	private double rebuildFraction = 0.25;
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -83,6 +88,7 @@ public abstract class AbstractUpdateableKDTreeClassifier<C extends AbstractUpdat
 	 * @return the kD tree
 	 */
 	private KDTree<BinaryClassificationTarget> buildKDTree() {
+		FlatKDTree<BinaryClassificationTarget> flat;
 		switch (kdType) {
 		case EUCLIDIAN:
 			return new SqrEuclid<BinaryClassificationTarget>(dimension,
@@ -96,6 +102,16 @@ public abstract class AbstractUpdateableKDTreeClassifier<C extends AbstractUpdat
 		case WEIGHTEDMANHATTAN:
 			return new WeightedManhattan<BinaryClassificationTarget>(dimension,
 					sizeLimit);
+		case FLATEUCLIDIAN:
+			flat = new FlatKDTree<BinaryClassificationTarget>(dimension,
+					sizeLimit, Metric.SQREUCLID);
+			flat.setRebuildFraction(rebuildFraction);
+			return flat;
+		case FLATMANHATTAN:
+			flat = new FlatKDTree<BinaryClassificationTarget>(dimension,
+					sizeLimit, Metric.MANHATTAN);
+			flat.setRebuildFraction(rebuildFraction);
+			return flat;
 		default:
 			throw new IllegalArgumentException(
 					"entered an unrecognized kdType: " + kdType);
@@ -134,6 +150,15 @@ public abstract class AbstractUpdateableKDTreeClassifier<C extends AbstractUpdat
 		return sizeLimit;
 	}
 
+	/**
+	 * Gets the rebuild fraction.
+	 * 
+	 * @return the rebuild fraction
+	 */
+	public double getRebuildFraction() {
+		return rebuildFraction;
+	}
+
 	/**
 	 * Gets the mixing type.
 	 * 
@@ -202,4 +227,20 @@ public abstract class AbstractUpdateableKDTreeClassifier<C extends AbstractUpdat
 		this.sizeLimit = sizeLimit;
 		return model;
 	}
+
+	/**
+	 * Sets the share of live points that points pushed out by the size limit
+	 * may reach before a flat kd tree is rebuilt. see
+	 * {@link FlatKDTree#setRebuildFraction(double)}; other kd trees ignore it.
+	 * 
+	 * @param rebuildFraction
+	 *            the rebuild fraction
+	 * @return the sequential knn
+	 */
+	public C setRebuildFraction(double rebuildFraction) {
+		checkArgument(rebuildFraction > 0,
+				"rebuildFraction must be positive: %s", rebuildFraction);
+		this.rebuildFraction = rebuildFraction;
+		return model;
+	}
 }
@@ -2,9 +2,11 @@ package com.dsi.parallax.ml.classifier.lazy;
 
 import com.dsi.parallax.ml.classifier.UpdateableClassifierBuilder;
 import com.dsi.parallax.ml.util.bounds.GreaterThanOrEqualsValueBound;
+import com.dsi.parallax.ml.util.bounds.GreaterThanValueBound;
 import com.dsi.parallax.ml.util.bounds.LessThanOrEqualsValueBound;
 import com.dsi.parallax.ml.util.option.Configuration;
 import com.dsi.parallax.ml.util.option.EnumOption;
+import com.dsi.parallax.ml.util.option.FloatOption;
 import com.dsi.parallax.ml.util.option.IntegerOption;
 
 import java.util.Arrays;
@@ -28,6 +30,9 @@ public abstract class AbstractUpdateableKDTreeClassifierBuilder<U extends Abstra
 	/** The size limit. */
 	protected int sizeLimit = Integer.MAX_VALUE;
 
+	/** the rebuild fraction of flat kd trees */
+	protected double rebuildFraction = 0.25;
+
 	/**
 	 * Instantiates a new sequential knn builder.
 	 * 
@@ -110,6 +115,21 @@ public abstract class AbstractUpdateableKDTreeClassifierBuilder<U extends Abstra
 		return thisBuilder;
 	}
 
+	/**
+	 * Sets the share of live points that points pushed out by the size limit
+	 * may reach before a flat kd tree is rebuilt.
+	 * 
+	 * @param rebuildFraction
+	 *            the rebuild fraction
+	 * @return the sequential knn builder
+	 */
+	public B setRebuildFraction(double rebuildFraction) {
+		checkArgument(rebuildFraction > 0,
+				"rebuildFraction must be positive: %s", rebuildFraction);
+		this.rebuildFraction = rebuildFraction;
+		return thisBuilder;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -124,6 +144,7 @@ public abstract class AbstractUpdateableKDTreeClassifierBuilder<U extends Abstra
 		setLabelMizingType((KNNMixingType) conf.enumFromShortName("M"));
 		setK(conf.integerOptionFromShortName("k"));
 		setSizeLimit(conf.integerOptionFromShortName("S"));
+		setRebuildFraction(conf.floatOptionFromShortName("RF"));
 
 	}
 
@@ -141,6 +162,7 @@ public abstract class AbstractUpdateableKDTreeClassifierBuilder<U extends Abstra
 		conf.addEnumValueOnShortName("M", mixing);
 		conf.addIntegerValueOnShortName("k", k);
 		conf.addIntegerValueOnShortName("S", sizeLimit);
+		conf.addFloatValueOnShortName("RF", rebuildFraction);
 		return conf;
 	}
 
@@ -164,6 +186,10 @@ public abstract class AbstractUpdateableKDTreeClassifierBuilder<U extends Abstra
 			addOption(new IntegerOption("S", "size", "size limit for kdTree",
 					10000, false, new GreaterThanOrEqualsValueBound(100),
 					new LessThanOrEqualsValueBound(BIGVAL)));
+			addOption(new FloatOption("RF", "rebuildFraction",
+					"share of live points expired points may reach before a flat kdTree is rebuilt",
+					0.25, false, new GreaterThanValueBound(0),
+					new LessThanOrEqualsValueBound(BIGVAL)));
 		}
 
 	}
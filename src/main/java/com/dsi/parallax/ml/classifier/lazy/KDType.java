@@ -15,5 +15,9 @@ public enum KDType {
 	/** The euclidian. */
 	EUCLIDIAN,
 	/** The weightedeuclidian. */
-	WEIGHTEDEUCLIDIAN
+	WEIGHTEDEUCLIDIAN,
+	/** euclidian, using a bulk built tree over flat primitive arrays */
+	FLATEUCLIDIAN,
+	/** manhattan, using a bulk built tree over flat primitive arrays */
+	FLATMANHATTAN
 }
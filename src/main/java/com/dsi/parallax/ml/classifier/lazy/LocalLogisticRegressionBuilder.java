@@ -64,6 +64,7 @@ public class LocalLogisticRegressionBuilder
 				.setLabelMizingType(mixing)
 				.setSmoothertype(regType)
 				.setSizeLimit(sizeLimit)
+				.setRebuildFraction(rebuildFraction)
 				.setCrossvalidateSmootherTraining(
 						crossValidateSmootherTraining).initialize();
 		return model;
@@ -93,6 +94,7 @@ public class LocalLogisticRegressionBuilder
 		setLabelMizingType((KNNMixingType) conf.enumFromShortName("M"));
 		setK(conf.integerOptionFromShortName("k"));
 		setSizeLimit(conf.integerOptionFromShortName("S"));
+		setRebuildFraction(conf.floatOptionFromShortName("RF"));
 
 	}
 
@@ -62,6 +62,7 @@ public class SequentialKNNBuilder
 				.setLabelMizingType(mixing)
 				.setSmoothertype(regType)
 				.setSizeLimit(sizeLimit)
+				.setRebuildFraction(rebuildFraction)
 				.setCrossvalidateSmootherTraining(
 						crossValidateSmootherTraining).initialize();
 		return model;
@@ -91,6 +92,7 @@ public class SequentialKNNBuilder
 		setLabelMizingType((KNNMixingType) conf.enumFromShortName("M"));
 		setK(conf.integerOptionFromShortName("k"));
 		setSizeLimit(conf.integerOptionFromShortName("S"));
+		setRebuildFraction(conf.floatOptionFromShortName("RF"));
 
 	}
 
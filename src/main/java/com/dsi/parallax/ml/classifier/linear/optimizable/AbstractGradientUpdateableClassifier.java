@@ -4,7 +4,9 @@
 package com.dsi.parallax.ml.classifier.linear.optimizable;
 
 import com.dsi.parallax.ml.classifier.AbstractUpdateableClassifier;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
 import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
+import com.dsi.parallax.ml.instance.FeatureView;
 import com.dsi.parallax.ml.instance.Instance;
 import com.dsi.parallax.ml.instance.Instances;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
@@ -16,9 +18,16 @@ import com.dsi.parallax.optimization.stochastic.GradientStochasticOptimizer;
 import com.dsi.parallax.optimization.stochastic.SGDBuilder;
 import com.dsi.parallax.optimization.stochastic.StochasticGradientOptimizationBuilder;
 import com.dsi.parallax.optimization.stochastic.anneal.AnnealingScheduleConfigurableBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -78,6 +87,28 @@ public abstract class AbstractGradientUpdateableClassifier<C extends AbstractGra
 	 */
 	protected transient BinaryClassificationInstances instances;
 
+	/**
+	 * number of threads the loss and gradient over a mini-batch are split
+	 * across, see {@link #setThreads(int)}
+	 */
+	protected int threads = 1;
+
+	/**
+	 * below this many instances per thread, losses and gradients are computed
+	 * on fewer threads
+	 */
+	private static final int MIN_CHUNK = 256;
+
+	/** one buffer per thread, reused for every mini-batch */
+	private transient GradientBuffer[] buffers;
+
+	/**
+	 * workers for all but the calling thread. the optimizer asks for a
+	 * gradient every mini-batch, far too often to start threads each time, so
+	 * the pool is kept and its threads exit after sitting idle.
+	 */
+	private transient ThreadPoolExecutor pool;
+
 	/**
 	 * Instantiates a new abstract gradient updateable classifier.
 	 * 
@@ -159,25 +190,31 @@ public abstract class AbstractGradientUpdateableClassifier<C extends AbstractGra
 	public <I extends Instances<? extends Instance<BinaryClassificationTarget>>> void modelTrain(
 			I instances) {
 		for (int i = 0; i < passes; i++) {
-
-			List<? extends Instance<BinaryClassificationTarget>> instList = instances
-					.getInstances();
-			miniBatchify(instList);
+			miniBatchify(instances);
 		}
 	}
 
 	/**
 	 * sub-sample from a list of instances to the internal mini-batch size.
+	 * binary classification instances are split into views rather than
+	 * copied.
 	 * 
-	 * @param instList
-	 *            list of training data to be sampled.
+	 * @param instances
+	 *            training data to be sampled.
 	 */
 	private void miniBatchify(
-			List<? extends Instance<BinaryClassificationTarget>> instList) {
+			Instances<? extends Instance<BinaryClassificationTarget>> instances) {
 		int start = 0;
-		while (start < instList.size()) {
-			int end = Math.min(start + miniBatchSize, instList.size());
-			updateModel(collect(instList.subList(start, end), dimension));
+		while (start < instances.size()) {
+			int end = Math.min(start + miniBatchSize, instances.size());
+			if (instances instanceof BinaryClassificationInstances) {
+				BinaryClassificationInstances batch = ((BinaryClassificationInstances) instances)
+						.getRangeView(start, end);
+				updateModel(batch);
+			} else {
+				updateModel(collect(instances.getInstances()
+						.subList(start, end), dimension));
+			}
 			start += miniBatchSize;
 		}
 	}
@@ -222,6 +259,41 @@ public abstract class AbstractGradientUpdateableClassifier<C extends AbstractGra
 		return miniBatchSize;
 	}
 
+	/**
+	 * Sets the mini batch size; The number of examples to build a gradient
+	 * from when doing batch training.
+	 * 
+	 * @param miniBatchSize
+	 *            the preferred size of minibatches
+	 * @return the model itself, used for method chaining
+	 */
+	public C setMiniBatchSize(int miniBatchSize) {
+		checkArgument(miniBatchSize > 0,
+				"miniBatchSize must be positive, given: %s", miniBatchSize);
+		this.miniBatchSize = miniBatchSize;
+		return model;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * compute the loss and gradient over each mini-batch on this many threads.
+	 * only mini-batches with at least a few hundred instances per thread are
+	 * split, so this pays off along with a large mini-batch size.
+	 * 
+	 * @param threads
+	 *            the number of threads
+	 * @return the model itself, used for method chaining
+	 */
+	public C setThreads(int threads) {
+		checkArgument(threads > 0, "threads must be positive, given: %s",
+				threads);
+		this.threads = threads;
+		return model;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -290,6 +362,209 @@ public abstract class AbstractGradientUpdateableClassifier<C extends AbstractGra
 		return computeLoss(parameters);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.dsi.parallax.optimization.Optimizable#computeGradient(com.dsi.parallax
+	 * .ml.vector.LinearVector)
+	 */
+	@Override
+	public Gradient computeGradient(LinearVector params) {
+		int size = instances.size();
+		if (size == 0)
+			return new Gradient(LinearVectorFactory.getVector(dimension), 0);
+		GradientBuffer total = accumulate(params, true);
+		return new Gradient(total.toVector(dimension,
+				averagesGradient() ? 1. / size : 1), total.loss / size);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.dsi.parallax.optimization.Optimizable#computeLoss(com.dsi.parallax
+	 * .ml.vector.LinearVector)
+	 */
+	@Override
+	public double computeLoss(LinearVector params) {
+		int size = instances.size();
+		return size > 0 ? accumulate(params, false).loss / size : 0;
+	}
+
+	/**
+	 * the loss on a single instance.
+	 * 
+	 * @param innerProduct
+	 *            w'x for the instance x
+	 * @param label
+	 *            the instance's label
+	 * @return the loss
+	 */
+	protected abstract double instanceLoss(double innerProduct, double label);
+
+	/**
+	 * the multiple of an instance x added to the gradient.
+	 * 
+	 * @param innerProduct
+	 *            w'x for the instance x
+	 * @param label
+	 *            the instance's label
+	 * @return the multiple of x
+	 */
+	protected abstract double gradientScale(double innerProduct, double label);
+
+	/**
+	 * is the gradient averaged over the mini-batch, or summed? the loss is
+	 * always averaged.
+	 * 
+	 * @return true if averaged
+	 */
+	protected boolean averagesGradient() {
+		return true;
+	}
+
+	/**
+	 * loss, and optionally gradient, summed over the current instances. the
+	 * instances are split into one contiguous range per thread, each summed
+	 * into its own buffer, and the buffers are then merged pairwise, each
+	 * level of the tree on as many threads as there are pairs.
+	 */
+	private GradientBuffer accumulate(LinearVector params, boolean gradient) {
+		List<BinaryClassificationInstance> list = instances.getInstances();
+		int workers = Math.max(1, Math.min(threads, list.size() / MIN_CHUNK));
+		GradientBuffer[] buffers = buffers(workers);
+		if (workers == 1) {
+			accumulate(list, 0, list.size(), params, gradient, buffers[0]);
+			return buffers[0];
+		}
+
+		List<Runnable> tasks = Lists.newArrayList();
+		for (int t = 0; t < workers; t++) {
+			int from = (int) ((long) list.size() * t / workers);
+			int to = (int) ((long) list.size() * (t + 1) / workers);
+			tasks.add(new Accumulator(list, from, to, params, gradient,
+					buffers[t]));
+		}
+		runAll(tasks);
+		for (int stride = 1; stride < workers; stride *= 2) {
+			tasks.clear();
+			for (int t = 0; t + stride < workers; t += 2 * stride)
+				tasks.add(new Merger(buffers[t], buffers[t + stride]));
+			runAll(tasks);
+		}
+		return buffers[0];
+	}
+
+	private void accumulate(List<BinaryClassificationInstance> list,
+			int from, int to, LinearVector params, boolean gradient,
+			GradientBuffer buffer) {
+		for (int i = from; i < to; i++) {
+			BinaryClassificationInstance inst = list.get(i);
+			FeatureView x = inst.getFeatureView();
+			double innerProduct = x.dot(params);
+			double label = inst.getLabel().getValue();
+			buffer.loss += instanceLoss(innerProduct, label);
+			if (gradient) {
+				double scale = gradientScale(innerProduct, label);
+				if (scale != 0)
+					buffer.add(x, scale);
+			}
+		}
+	}
+
+	/**
+	 * the first workers buffers, cleared.
+	 */
+	private GradientBuffer[] buffers(int workers) {
+		if (buffers == null || buffers.length < threads) {
+			GradientBuffer[] old = buffers;
+			buffers = new GradientBuffer[threads];
+			for (int t = 0; t < threads; t++)
+				buffers[t] = old != null && t < old.length ? old[t]
+						: new GradientBuffer(dimension);
+		}
+		for (int t = 0; t < workers; t++)
+			buffers[t].clear();
+		return buffers;
+	}
+
+	/**
+	 * run every task, the first on the calling thread and the rest on the
+	 * pool, returning when all are done.
+	 */
+	private void runAll(List<Runnable> tasks) {
+		if (pool == null || pool.getCorePoolSize() != threads - 1) {
+			if (pool != null)
+				pool.shutdown();
+			pool = new ThreadPoolExecutor(threads - 1, threads - 1, 1,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactoryBuilder().setDaemon(true)
+							.setNameFormat("parallax-gradient-%d").build());
+			pool.allowCoreThreadTimeOut(true);
+		}
+		List<Future<?>> futures = Lists.newArrayList();
+		for (int t = 1; t < tasks.size(); t++)
+			futures.add(pool.submit(tasks.get(t)));
+		tasks.get(0).run();
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * sums the loss and gradient over one range of the instances.
+	 */
+	private class Accumulator implements Runnable {
+		private final List<BinaryClassificationInstance> list;
+		private final int from;
+		private final int to;
+		private final LinearVector params;
+		private final boolean gradient;
+		private final GradientBuffer buffer;
+
+		Accumulator(List<BinaryClassificationInstance> list, int from, int to,
+				LinearVector params, boolean gradient, GradientBuffer buffer) {
+			this.list = list;
+			this.from = from;
+			this.to = to;
+			this.params = params;
+			this.gradient = gradient;
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void run() {
+			accumulate(list, from, to, params, gradient, buffer);
+		}
+	}
+
+	/**
+	 * merges one buffer into another.
+	 */
+	private static class Merger implements Runnable {
+		private final GradientBuffer into;
+		private final GradientBuffer from;
+
+		Merger(GradientBuffer into, GradientBuffer from) {
+			this.into = into;
+			this.from = from;
+		}
+
+		@Override
+		public void run() {
+			into.merge(from);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.classifier.linear.optimizable;
+
+import java.util.Arrays;
+
+import com.dsi.parallax.ml.instance.FeatureView;
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.ml.vector.LinearVectorFactory;
+
+/**
+ * a dense array accumulating part of a mini-batch gradient, along with the
+ * loss over the same instances. the entries written are remembered, so
+ * merging, reading and clearing a buffer take time proportional to the
+ * number of features the mini-batch touched rather than the dimension of the
+ * model, and a buffer can be reused for every mini-batch. not thread safe;
+ * each worker fills its own.
+ *
+ * @author jattenberg
+ */
+class GradientBuffer {
+
+	private double[] values;
+	private boolean[] touched;
+	private int[] indices = new int[64];
+	private int size = 0;
+
+	/** the loss accumulated alongside the gradient */
+	double loss = 0;
+
+	/**
+	 * Class constructor.
+	 *
+	 * @param dimension
+	 *            the number of parameters
+	 */
+	GradientBuffer(int dimension) {
+		values = new double[Math.max(1, dimension)];
+		touched = new boolean[values.length];
+	}
+
+	/**
+	 * add scale * x.
+	 *
+	 * @param x
+	 *            the instance's features
+	 * @param scale
+	 *            the multiple of x added
+	 */
+	void add(FeatureView x, double scale) {
+		for (int k = 0; k < x.size(); k++)
+			add(x.index(k), scale * x.value(k));
+	}
+
+	private void add(int index, double value) {
+		if (index >= values.length) {
+			int capacity = Math.max(index + 1, 2 * values.length);
+			values = Arrays.copyOf(values, capacity);
+			touched = Arrays.copyOf(touched, capacity);
+		}
+		if (!touched[index]) {
+			touched[index] = true;
+			if (size == indices.length)
+				indices = Arrays.copyOf(indices, 2 * size);
+			indices[size++] = index;
+		}
+		values[index] += value;
+	}
+
+	/**
+	 * add another buffer's gradient and loss to this one's.
+	 *
+	 * @param other
+	 *            the other buffer, unchanged
+	 */
+	void merge(GradientBuffer other) {
+		for (int k = 0; k < other.size; k++) {
+			int index = other.indices[k];
+			add(index, other.values[index]);
+		}
+		loss += other.loss;
+	}
+
+	/**
+	 * the non-zero entries of the gradient, times a factor.
+	 *
+	 * @param dimension
+	 *            dimension of the vector
+	 * @param factor
+	 *            multiplies every entry
+	 * @return the gradient as a sparse vector
+	 */
+	LinearVector toVector(int dimension, double factor) {
+		LinearVector out = LinearVectorFactory.getVector(dimension);
+		for (int k = 0; k < size; k++) {
+			int index = indices[k];
+			if (values[index] != 0)
+				out.resetValue(index, values[index] * factor);
+		}
+		return out;
+	}
+
+	/**
+	 * zero the gradient and loss, keeping the storage.
+	 */
+	void clear() {
+		for (int k = 0; k < size; k++) {
+			int index = indices[k];
+			values[index] = 0;
+			touched[index] = false;
+		}
+		size = 0;
+		loss = 0;
+	}
+}
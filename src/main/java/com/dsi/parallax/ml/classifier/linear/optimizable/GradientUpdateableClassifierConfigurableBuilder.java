@@ -33,6 +33,9 @@ public abstract class GradientUpdateableClassifierConfigurableBuilder<C extends
 	/** The mini batch size. */
 	protected int miniBatchSize = 5;
 
+	/** threads used to compute the gradient over a mini-batch. */
+	protected int threads = 1;
+
 	/** The builder. */
 	protected StochasticGradientOptimizationBuilder<?> builder = null;
 
@@ -99,6 +102,21 @@ public abstract class GradientUpdateableClassifierConfigurableBuilder<C extends
 		return thisBuilder;
 	}
 
+	/**
+	 * Sets the number of threads the gradient over a mini-batch is computed
+	 * on.
+	 * 
+	 * @param threads
+	 *            the number of threads
+	 * @return the b
+	 */
+	public B setThreads(int threads) {
+		checkArgument(threads >= 1, "threads must be positive, given: %s",
+				threads);
+		this.threads = threads;
+		return thisBuilder;
+	}
+
 	/**
 	 * Sets the truncation builder.
 	 * 
@@ -168,6 +186,7 @@ public abstract class GradientUpdateableClassifierConfigurableBuilder<C extends
 				truncationBuilder.getConfiguration());
 		conf.addIntegerValueOnShortName("p", passes);
 		conf.addIntegerValueOnShortName("m", miniBatchSize);
+		conf.addIntegerValueOnShortName("th", threads);
 		return conf;
 	}
 
@@ -187,6 +206,7 @@ public abstract class GradientUpdateableClassifierConfigurableBuilder<C extends
 		setTruncationBuilder(truncConfig);
 		setPasses(conf.integerOptionFromShortName("p"));
 		setMiniBatchSize(conf.integerOptionFromShortName("m"));
+		setThreads(conf.integerOptionFromShortName("th"));
 	}
 
 	protected StochasticGradientOptimizationBuilder<?> initializeGradientBuilder() {
@@ -215,6 +235,10 @@ public abstract class GradientUpdateableClassifierConfigurableBuilder<C extends
 					"minibatch size when estimating gradients", 5, false,
 					new GreaterThanOrEqualsValueBound(1),
 					new LessThanOrEqualsValueBound(BIGVAL)));
+			addOption(new IntegerOption("th", "threads",
+					"threads used to compute gradients over a minibatch", 1,
+					false, new GreaterThanOrEqualsValueBound(1),
+					new LessThanOrEqualsValueBound(BIGVAL)));
 			addOption(new ConfigurableOption<TruncationConfigurableBuilder>(
 					"T", "truncationConfig", false,
 					"the configuration for builders of gradient truncations. Options: "
@@ -281,6 +305,7 @@ public abstract class GradientUpdateableClassifierConfigurableBuilder<C extends
 					initializeGradientBuilder().setGradientTruncationBuilder(
 							truncationBuilder), getDimension(), bias);
 			model.setPasses(passes)
+					.setMiniBatchSize(miniBatchSize).setThreads(threads)
 					.setSmoothertype(regType)
 					.setCrossvalidateSmootherTraining(
 							crossValidateSmootherTraining).initialize();
@@ -428,6 +453,7 @@ public abstract class GradientUpdateableClassifierConfigurableBuilder<C extends
 							truncationBuilder), getDimension(), bias);
 			model.setGamma(gamma)
 					.setPasses(passes)
+					.setMiniBatchSize(miniBatchSize).setThreads(threads)
 					.setSmoothertype(regType)
 					.setCrossvalidateSmootherTraining(
 							crossValidateSmootherTraining).initialize();
@@ -594,6 +620,7 @@ public abstract class GradientUpdateableClassifierConfigurableBuilder<C extends
 					initializeGradientBuilder().setGradientTruncationBuilder(
 							truncationBuilder), getDimension(), bias);
 			model.setPasses(passes)
+					.setMiniBatchSize(miniBatchSize).setThreads(threads)
 					.setSmoothertype(regType)
 					.setCrossvalidateSmootherTraining(
 							crossValidateSmootherTraining).initialize();
@@ -741,6 +768,7 @@ public abstract class GradientUpdateableClassifierConfigurableBuilder<C extends
 					initializeGradientBuilder().setGradientTruncationBuilder(
 							truncationBuilder), getDimension(), bias);
 			model.setPasses(passes)
+					.setMiniBatchSize(miniBatchSize).setThreads(threads)
 					.setSmoothertype(regType)
 					.setCrossvalidateSmootherTraining(
 							crossValidateSmootherTraining).initialize();
@@ -3,13 +3,7 @@
  ******************************************************************************/
 package com.dsi.parallax.ml.classifier.linear.optimizable;
 
-import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
 import com.dsi.parallax.ml.instance.Instance;
-import com.dsi.parallax.ml.util.MLUtils;
-import com.dsi.parallax.ml.vector.LinearVector;
-import com.dsi.parallax.ml.vector.LinearVectorFactory;
-import com.dsi.parallax.ml.vector.util.VectorUtils;
-import com.dsi.parallax.optimization.Gradient;
 import com.dsi.parallax.optimization.stochastic.StochasticGradientOptimizationBuilder;
 
 /**
@@ -62,7 +56,7 @@ public class GradientUpdateableL2 extends
 	 */
 	@Override
 	protected double regress(Instance<?> inst) {
-		return VectorUtils.dotProduct(parameters, inst);
+		return inst.dot(parameters);
 	}
 
 	/*
@@ -88,42 +82,17 @@ public class GradientUpdateableL2 extends
 		return this;
 	}
 
+	/**
+	 * (f(x) - y)^2
+	 */
 	@Override
-	public Gradient computeGradient(LinearVector params) {
-		double denominator = instances.size();
-		double loss = 0d;
-		LinearVector gradVector = LinearVectorFactory.getVector(dimension);
-		if (!MLUtils.floatingPointEquals(denominator, 0)) {
-
-			for (BinaryClassificationInstance inst : instances) {
-				double prediction = VectorUtils.dotProduct(params, inst);
-				double lossPart = Math.pow(prediction
-						- inst.getLabel().getValue(), 2);
-				loss += lossPart / denominator;
-
-				for (int x_i : inst) {
-					double update = -2
-							* (prediction - inst.getLabel().getValue())
-							* inst.getValue(x_i) / denominator;
-					gradVector.updateValue(x_i, -update);
-				}
-			}
-		}
-		Gradient grad = new Gradient(gradVector, loss);
-		return grad;
+	protected double instanceLoss(double innerProduct, double label) {
+		return Math.pow(innerProduct - label, 2);
 	}
 
 	@Override
-	public double computeLoss(LinearVector params) {
-		double denominator = instances.size();
-		double loss = 0d;
-		for (BinaryClassificationInstance inst : instances) {
-			double prediction = VectorUtils.dotProduct(params, inst);
-			double lossPart = Math.pow(prediction - inst.getLabel().getValue(),
-					2);
-			loss += lossPart;
-		}
-		return loss / denominator;
+	protected double gradientScale(double innerProduct, double label) {
+		return 2 * (innerProduct - label);
 	}
 
 	@Override
@@ -1,13 +1,8 @@
 package com.dsi.parallax.ml.classifier.linear.optimizable;
 
-import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
 import com.dsi.parallax.ml.instance.Instance;
 import com.dsi.parallax.ml.util.MLUtils;
 import com.dsi.parallax.ml.util.SigmoidType;
-import com.dsi.parallax.ml.vector.LinearVector;
-import com.dsi.parallax.ml.vector.LinearVectorFactory;
-import com.dsi.parallax.ml.vector.util.VectorUtils;
-import com.dsi.parallax.optimization.Gradient;
 import com.dsi.parallax.optimization.stochastic.StochasticGradientOptimizationBuilder;
 
 /**
@@ -34,47 +29,25 @@ public class GradientUpdateableLogisticRegression
 		initialize();
 	}
 
+	/**
+	 * log(1 + exp(y*p)), with the label y and the prediction p mapped to
+	 * [-1, 1].
+	 */
 	@Override
-	public Gradient computeGradient(LinearVector params) {
-		double denominator = instances.size();
-		double loss = 0d;
-
-		LinearVector gradVector = LinearVectorFactory.getVector(dimension);
-
-		for (BinaryClassificationInstance inst : instances) {
-			double prediction = regress(inst);
-			double label = inst.getLabel().getValue();
-			double py = MLUtils.probToSVMInterval(prediction)
-					* MLUtils.probToSVMInterval(label);
-			loss += Math.log(1 + Math.exp(py)) / denominator;
-
-			for (int x_i : inst) {
-				double update = (label - prediction)
-						* inst.getFeatureValue(x_i);
-				// / (1 + Math.exp(py));
-				gradVector.updateValue(x_i, update / denominator);
-			}
-		}
-		Gradient grad = new Gradient(gradVector, loss);
-		return grad;
+	protected double instanceLoss(double innerProduct, double label) {
+		double py = MLUtils.probToSVMInterval(SigmoidType.LOGIT
+				.sigmoid(-innerProduct)) * MLUtils.probToSVMInterval(label);
+		return Math.log(1 + Math.exp(py));
 	}
 
 	@Override
-	public double computeLoss(LinearVector params) {
-		double loss = 0d;
-		for (BinaryClassificationInstance inst : instances) {
-			double prediction = regress(inst);
-			double label = MLUtils
-					.probToSVMInterval(inst.getLabel().getValue());
-			double py = MLUtils.probToSVMInterval(prediction) * label;
-			loss += Math.log(1 + Math.exp(py));
-		}
-		return instances.size() > 0 ? loss / instances.size() : 0;
+	protected double gradientScale(double innerProduct, double label) {
+		return label - SigmoidType.LOGIT.sigmoid(-innerProduct);
 	}
 
 	@Override
 	protected double regress(Instance<?> inst) {
-		double dot = VectorUtils.dotProduct(parameters, inst);
+		double dot = inst.dot(parameters);
 		return SigmoidType.LOGIT.sigmoid(-dot);
 	}
 
@@ -1,12 +1,7 @@
 package com.dsi.parallax.ml.classifier.linear.optimizable;
 
-import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
 import com.dsi.parallax.ml.instance.Instance;
 import com.dsi.parallax.ml.util.MLUtils;
-import com.dsi.parallax.ml.vector.LinearVector;
-import com.dsi.parallax.ml.vector.LinearVectorFactory;
-import com.dsi.parallax.ml.vector.util.VectorUtils;
-import com.dsi.parallax.optimization.Gradient;
 import com.dsi.parallax.optimization.stochastic.StochasticGradientOptimizationBuilder;
 
 public class GradientUpdateableModifiedHuber extends
@@ -55,7 +50,7 @@ public class GradientUpdateableModifiedHuber extends
 	 */
 	@Override
 	protected double regress(Instance<?> inst) {
-		return VectorUtils.dotProduct(parameters, inst);
+		return inst.dot(parameters);
 	}
 
 	/*
@@ -81,60 +76,37 @@ public class GradientUpdateableModifiedHuber extends
 		return this;
 	}
 
+	/**
+	 * max(0, 1-y*f(x))^2 when y*f(x) >= -1, <br>
+	 * 
+	 * -4*y*f(x) otherwise
+	 */
 	@Override
-	public Gradient computeGradient(LinearVector params) {
-		double denominator = instances.size();
-		double loss = 0d;
-
-		LinearVector gradVector = LinearVectorFactory.getVector(dimension);
-
-		for (BinaryClassificationInstance inst : instances) {
-			double iLabel = MLUtils.probToSVMInterval(inst.getLabel()
-					.getValue());
-			double yp = VectorUtils.dotProduct(params, inst)
-					* MLUtils.probToSVMInterval(inst.getLabel().getValue());
-			double lossPart;
-			if (yp >= -1d) {
-				lossPart = Math.pow(Math.max(0, 1 - yp), 2d);
-				if (1 - yp > 0) {
-					for (int x_i : inst) {
-						double update = (1 - yp) * inst.getFeatureValue(x_i)
-								* iLabel;
-						gradVector.updateValue(x_i, -update);
-					}
-				}
-			} else {
-				lossPart = -4 * yp;
-				for (int x_i : inst) {
-					double update = -4. * inst.getFeatureValue(x_i) * iLabel;
-					gradVector.updateValue(x_i, -update);
-				}
-			}
-			loss += lossPart / denominator;
-
+	protected double instanceLoss(double innerProduct, double label) {
+		double yp = innerProduct * MLUtils.probToSVMInterval(label);
+		if (yp >= -1d) {
+			return Math.pow(Math.max(0, 1 - yp), 2d);
+		} else {
+			return -4 * yp;
 		}
-		return new Gradient(gradVector, loss);
 	}
 
 	@Override
-	public double computeLoss(LinearVector params) {
-		double denominator = instances.size();
-		double loss = 0d;
-		for (BinaryClassificationInstance inst : instances) {
-			double iLoss = modifiedHuberLoss(inst, params);
-			loss += iLoss;
-		}
-		return loss / denominator;
-	}
-
-	private double modifiedHuberLoss(BinaryClassificationInstance inst,
-			LinearVector params) {
-		double yp = VectorUtils.dotProduct(params, inst)
-				* MLUtils.probToSVMInterval(inst.getLabel().getValue());
+	protected double gradientScale(double innerProduct, double label) {
+		double iLabel = MLUtils.probToSVMInterval(label);
+		double yp = innerProduct * iLabel;
 		if (yp >= -1d) {
-			return Math.pow(Math.max(0, 1 - yp), 2d);
+			return 1 - yp > 0 ? -(1 - yp) * iLabel : 0;
 		} else {
-			return -4 * yp;
+			return 4. * iLabel;
 		}
 	}
+
+	/**
+	 * the gradient is summed over the mini-batch.
+	 */
+	@Override
+	protected boolean averagesGradient() {
+		return false;
+	}
 }
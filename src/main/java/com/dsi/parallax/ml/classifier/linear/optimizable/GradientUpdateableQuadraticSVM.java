@@ -3,14 +3,8 @@
  ******************************************************************************/
 package com.dsi.parallax.ml.classifier.linear.optimizable;
 
-import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
 import com.dsi.parallax.ml.instance.Instance;
-import com.dsi.parallax.ml.target.BinaryClassificationTarget;
 import com.dsi.parallax.ml.util.MLUtils;
-import com.dsi.parallax.ml.vector.LinearVector;
-import com.dsi.parallax.ml.vector.LinearVectorFactory;
-import com.dsi.parallax.ml.vector.util.VectorUtils;
-import com.dsi.parallax.optimization.Gradient;
 import com.dsi.parallax.optimization.stochastic.StochasticGradientOptimizationBuilder;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -63,27 +57,6 @@ public class GradientUpdateableQuadraticSVM extends
 		initialize();
 	}
 
-	/**
-	 * Q svm loss.
-	 * 
-	 * @param <I>
-	 *            the generic type
-	 * @param inst
-	 *            the inst
-	 * @return the double
-	 */
-	private <I extends Instance<BinaryClassificationTarget>> double qSVMLoss(
-			I inst, LinearVector params) {
-		double yp = VectorUtils.dotProduct(params, inst)
-				* MLUtils.probToSVMInterval(inst.getLabel().getValue());
-
-		if (yp > 1. - gamma) {
-			return (1 / (2. * gamma)) * Math.pow(Math.max(0, 1 - yp), 2);
-		} else {
-			return 1. - gamma / 2. - yp;
-		}
-	}
-
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -93,8 +66,7 @@ public class GradientUpdateableQuadraticSVM extends
 	 */
 	@Override
 	protected double regress(Instance<?> inst) {
-		return MLUtils.svmIntervalToProb(VectorUtils.dotProduct(parameters,
-				inst));
+		return MLUtils.svmIntervalToProb(inst.dot(parameters));
 	}
 
 	/**
@@ -142,56 +114,37 @@ public class GradientUpdateableQuadraticSVM extends
 		return this;
 	}
 
+	/**
+	 * max(0, 1-y*f(x))^2/(2*gamma) when y*f(x) >= 1-gamma, <br>
+	 * 
+	 * 1-gamma/2 -y*f(x) otherwise
+	 */
 	@Override
-	public Gradient computeGradient(LinearVector params) {
-		double denominator = instances.size();
-		double loss = 0d;
-		LinearVector gradVector = LinearVectorFactory.getVector(dimension);
-
-		for (BinaryClassificationInstance inst : instances) {
-
-			double iLabel = MLUtils.probToSVMInterval(inst.getLabel()
-					.getValue());
-
-			double yp = VectorUtils.dotProduct(params, inst)
-					* MLUtils.probToSVMInterval(inst.getLabel().getValue());
-			double iLoss;
-
-			if (yp > 1. - gamma) {
-				iLoss = (1 / (2. * gamma)) * Math.pow(Math.max(0, 1 - yp), 2);
-				if (1 - yp > 0) {
-					for (int x_i : inst) {
-						double update = -gamma * (1 - yp)
-								* inst.getFeatureValue(x_i) * iLabel;
-						gradVector.updateValue(x_i, update);
-					}
-				}
-			} else {
-				iLoss = 1. - gamma / 2. - yp;
-				for (int x_i : inst) {
-					double update = -inst.getFeatureValue(x_i) * iLabel;
-					gradVector.updateValue(x_i, update);
-				}
-			}
-			loss += iLoss / denominator;
+	protected double instanceLoss(double innerProduct, double label) {
+		double yp = innerProduct * MLUtils.probToSVMInterval(label);
+		if (yp > 1. - gamma) {
+			return (1 / (2. * gamma)) * Math.pow(Math.max(0, 1 - yp), 2);
+		} else {
+			return 1. - gamma / 2. - yp;
 		}
+	}
 
-		return new Gradient(gradVector, loss);
+	@Override
+	protected double gradientScale(double innerProduct, double label) {
+		double iLabel = MLUtils.probToSVMInterval(label);
+		double yp = innerProduct * iLabel;
+		if (yp > 1. - gamma) {
+			return 1 - yp > 0 ? -gamma * (1 - yp) * iLabel : 0;
+		} else {
+			return -iLabel;
+		}
 	}
 
 	/**
-	 * max(0, 1-y*f(x))^2/(2*gamma) when y*f(x) >= 1-gamma, <br>
-	 * 
-	 * 1-gamma/2 -y*f(x) otherwise
+	 * the gradient is summed over the mini-batch.
 	 */
 	@Override
-	public double computeLoss(LinearVector params) {
-		double denominator = instances.size();
-		double loss = 0d;
-		for (BinaryClassificationInstance inst : instances) {
-			double iLoss = qSVMLoss(inst, params);
-			loss += iLoss;
-		}
-		return loss / denominator;
+	protected boolean averagesGradient() {
+		return false;
 	}
 }
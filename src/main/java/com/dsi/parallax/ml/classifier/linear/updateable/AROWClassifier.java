@@ -80,10 +80,7 @@ public class AROWClassifier extends
 	 * @return the margin
 	 */
 	private double getMargin(Instance<?> x) {
-		double res = 0.0;
-		for (int x_i : x)
-			res += getParam(x_i) * x.getFeatureValue(x_i);
-		return res;
+		return x.dot(vec);
 	}
 
 	/**
@@ -11,6 +11,7 @@ import com.dsi.parallax.ml.instance.Instances;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
 import com.dsi.parallax.ml.util.MLUtils;
 import com.dsi.parallax.ml.util.option.Configuration;
+import com.dsi.parallax.ml.vector.DenseVector;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.ml.vector.LinearVectorFactory;
 import com.dsi.parallax.ml.vector.VectorType;
@@ -18,11 +19,19 @@ import com.dsi.parallax.optimization.Gradient;
 import com.dsi.parallax.optimization.regularization.*;
 import com.dsi.parallax.optimization.stochastic.anneal.AnnealingSchedule;
 import com.dsi.parallax.optimization.stochastic.anneal.ConstantAnnealingSchedule;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -82,6 +91,9 @@ public abstract class AbstractLinearUpdateableClassifier<C extends AbstractLinea
 	private AnnealingSchedule annealingSchedule = new ConstantAnnealingSchedule(
 			0.1d);
 
+	/** number of threads used to train the model, see {@link #setThreads(int)} */
+	protected int threads = 1;
+
 	/**
 	 * Instantiates a new abstract linear updatable classifier.
 	 * 
@@ -325,10 +337,7 @@ public abstract class AbstractLinearUpdateableClassifier<C extends AbstractLinea
 	 * @return w'x for the input x
 	 */
 	protected double innerProduct(Instance<?> x) {
-		double tot = 0.;
-		for (int x_i : x) {
-			tot += x.getFeatureValue(x_i) * getParam(x_i);
-		}
+		double tot = x.dot(vec);
 		if (bias) {
 			tot += getParam(dimension - 1);
 		}
@@ -384,9 +393,11 @@ public abstract class AbstractLinearUpdateableClassifier<C extends AbstractLinea
 	 * 
 	 * @param dim
 	 *            dimension of the model being regularized
+	 * @param epoch
+	 *            the epoch of the update
 	 * @return the amount of regularization to be performed.
 	 */
-	private double regularizationLoss(int dim) {
+	private double regularizationLoss(int dim, int epoch) {
 
 		double loss = 0;
 
@@ -561,6 +572,27 @@ public abstract class AbstractLinearUpdateableClassifier<C extends AbstractLinea
 		return model;
 	}
 
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * train on this many threads at once. only models that support lock-free
+	 * updates use more than one. a model whose weights are sparse trains on a
+	 * dense copy of them, written back to the sparse weights when training
+	 * finishes; truncation, if any, is applied once per pass.
+	 * 
+	 * @param threads
+	 *            the number of threads
+	 * @return the model itself, used for method chaining
+	 */
+	public C setThreads(int threads) {
+		checkArgument(threads > 0, "threads must be positive, given: %s",
+				threads);
+		this.threads = threads;
+		return model;
+	}
+
 	@Override
 	public String toString() {
 		return prettyPrint();
@@ -602,9 +634,27 @@ public abstract class AbstractLinearUpdateableClassifier<C extends AbstractLinea
 	@Override
 	public <I extends Instances<? extends Instance<BinaryClassificationTarget>>> void updateModel(
 			I insts) {
-		for (Instance<BinaryClassificationTarget> inst : insts) {
-			updateModel(inst);
+		if (!trainsInParallel(insts)) {
+			for (Instance<BinaryClassificationTarget> inst : insts) {
+				updateModel(inst);
+			}
+			return;
 		}
+		lockFreeTrain(insts, 1);
+	}
+
+	/**
+	 * trains for the configured number of passes, each pass split across
+	 * threads when {@link #setThreads(int)} asks for more than one.
+	 */
+	@Override
+	public <I extends Instances<? extends Instance<BinaryClassificationTarget>>> void modelTrain(
+			I instances) {
+		if (!trainsInParallel(instances)) {
+			super.modelTrain(instances);
+			return;
+		}
+		lockFreeTrain(instances, passes);
 	}
 
 	/*
@@ -618,28 +668,165 @@ public abstract class AbstractLinearUpdateableClassifier<C extends AbstractLinea
 	public <I extends Instance<BinaryClassificationTarget>> void updateModel(
 			I instance) {
 		Gradient grad = computeUpdateGradient(instance);
-		scaledGradientUpdate(grad);
-		scaledRegularizationUpdate(grad);
+		scaledGradientUpdate(grad, epoch);
+		scaledRegularizationUpdate(grad, epoch);
 
 		applyTruncation();
 		epoch++;
 	}
 
+	/**
+	 * can updates from different examples be applied at the same time, without
+	 * locking? true for models whose update for an example only reads and
+	 * writes the weights of that example's features, with no other per-update
+	 * state; anything read from every weight, eg their norm, would make each
+	 * update cost the full dimension. defaults to false, in which case the
+	 * model always trains on a single thread.
+	 * 
+	 * @return true if the model can be trained lock-free
+	 */
+	protected boolean supportsLockFreeUpdates() {
+		return false;
+	}
+
+	private boolean trainsInParallel(Instances<?> instances) {
+		return threads > 1 && instances.size() > 1
+				&& supportsLockFreeUpdates();
+	}
+
+	/**
+	 * trains lock-free for a number of passes. workers write to a shared
+	 * array, not a map that could be corrupted, so sparse weights are copied
+	 * into a dense vector for the duration and copied back afterwards.
+	 */
+	private <I extends Instances<? extends Instance<BinaryClassificationTarget>>> void lockFreeTrain(
+			I instances, int passes) {
+		LinearVector weights = vec;
+		if (!(weights instanceof DenseVector)) {
+			vec = LinearVectorFactory.getDenseVector(dimension);
+			for (int x_i : weights) {
+				vec.resetValue(x_i, weights.getValue(x_i));
+			}
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setDaemon(true)
+						.setNameFormat("parallax-sgd-%d").build());
+		try {
+			for (int i = 0; i < passes; i++) {
+				lockFreePass(instances, executor);
+			}
+		} finally {
+			executor.shutdown();
+			if (vec != weights) {
+				for (int x_i = 0; x_i < dimension; x_i++) {
+					double value = vec.getValue(x_i);
+					if (value != weights.getValue(x_i))
+						weights.resetValue(x_i, value);
+				}
+				vec = weights;
+			}
+		}
+	}
+
+	/**
+	 * one pass over the instances, hogwild style: each thread takes every
+	 * nth instance and applies its update straight to the weights, without
+	 * locks. since an update only touches the weights of the example's
+	 * features, sparse examples rarely collide and the occasional lost
+	 * update doesn't hurt convergence. each update is made at the epoch given
+	 * by a shared count of the pass's updates so far; the epoch field itself
+	 * is only advanced, and the weights truncated, once the threads are done.
+	 */
+	private <I extends Instances<? extends Instance<BinaryClassificationTarget>>> void lockFreePass(
+			I instances, ExecutorService executor) {
+		AtomicInteger updates = new AtomicInteger();
+		int start = epoch;
+		List<LockFreeWorker> workers = Lists.newArrayList();
+		for (int offset = 0; offset < threads; offset++) {
+			workers.add(new LockFreeWorker(instances, offset, start, updates));
+		}
+		try {
+			for (Future<Void> future : executor.invokeAll(workers))
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+		epoch = start + instances.size();
+		if (truncation.getType() != TruncationType.NONE) {
+			truncation.truncateParameters(vec, instances.size());
+		}
+	}
+
+	private class LockFreeWorker implements Callable<Void> {
+
+		final Instances<? extends Instance<BinaryClassificationTarget>> instances;
+
+		final int offset;
+
+		final int start;
+
+		final AtomicInteger updates;
+
+		LockFreeWorker(
+				Instances<? extends Instance<BinaryClassificationTarget>> instances,
+				int offset, int start, AtomicInteger updates) {
+			this.instances = instances;
+			this.offset = offset;
+			this.start = start;
+			this.updates = updates;
+		}
+
+		@Override
+		public Void call() {
+			for (int i = offset; i < instances.size(); i += threads) {
+				int update = start + updates.getAndIncrement();
+				Gradient grad = computeUpdateGradient(instances.getInstance(i));
+				scaledGradientUpdate(grad, update);
+				scaledRegularizationUpdate(grad, update);
+			}
+			return null;
+		}
+	}
+
 	/**
 	 * applies regularization to the linear model based on the most recent
 	 * input.
 	 * 
 	 * @param gradient
 	 *            corresponding to most recent model update
+	 * @param epoch
+	 *            the epoch of the update
 	 */
-	private void scaledRegularizationUpdate(Gradient grad) {
-		if (regularizationWeight <= 0
-				|| regularizationCoefficientWeights.isEmpty()) {
+	private void scaledRegularizationUpdate(Gradient grad, int epoch) {
+		if (!isRegularized()) {
 			return;
 		}
 		for (int x_i : grad) {
-			scaledRegularizationUpdate(x_i);
+			scaledRegularizationUpdate(x_i, epoch);
+		}
+	}
+
+	/**
+	 * is any regularization applied? when none is, updates skip the
+	 * regularization step, which would otherwise write back every weight
+	 * unchanged.
+	 */
+	private boolean isRegularized() {
+		if (regularizationWeight <= 0) {
+			return false;
 		}
+		for (double coefficientWeight : regularizationCoefficientWeights
+				.values()) {
+			if (coefficientWeight > 0) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -649,8 +836,12 @@ public abstract class AbstractLinearUpdateableClassifier<C extends AbstractLinea
 	 * @param x_i
 	 */
 	protected void scaledRegularizationUpdate(int x_i) {
-		double regularizationChange = regularizationLoss(x_i)
-				* updateScale(x_i);
+		scaledRegularizationUpdate(x_i, epoch);
+	}
+
+	private void scaledRegularizationUpdate(int x_i, int epoch) {
+		double regularizationChange = regularizationLoss(x_i, epoch)
+				* updateScale(x_i, epoch);
 		// TODO: this may not be sufficient
 		// for more dynamic annealing schedules.
 		// think more about it.
@@ -671,10 +862,12 @@ public abstract class AbstractLinearUpdateableClassifier<C extends AbstractLinea
 	 * updates the parameters of the linear model based on this.
 	 * 
 	 * @param grad
+	 * @param epoch
+	 *            the epoch of the update
 	 */
-	private void scaledGradientUpdate(Gradient grad) {
+	private void scaledGradientUpdate(Gradient grad, int epoch) {
 		for (int x_i : grad) {
-			double scale = updateScale(x_i);
+			double scale = updateScale(x_i, epoch);
 			updateParam(x_i, grad.getValue(x_i) * scale);
 		}
 	}
@@ -685,9 +878,11 @@ public abstract class AbstractLinearUpdateableClassifier<C extends AbstractLinea
 	 * 
 	 * @param x_i
 	 *            dimension of the update
+	 * @param epoch
+	 *            the epoch of the update
 	 * @return
 	 */
-	private double updateScale(int x_i) {
+	private double updateScale(int x_i, int epoch) {
 		return getAnnealingSchedule().learningRate(epoch, x_i);
 	}
 
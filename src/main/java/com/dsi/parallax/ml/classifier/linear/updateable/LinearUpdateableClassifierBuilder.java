@@ -16,6 +16,8 @@ import com.dsi.parallax.optimization.stochastic.anneal.ConstantAnnealingSchedule
 
 import java.util.Arrays;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 // TODO: Auto-generated Javadoc
 /**
  * builders for linear updateable models provides easy configuration of model
@@ -45,6 +47,9 @@ public abstract class LinearUpdateableClassifierBuilder<U extends LinearClassifi
 	/** The regularize intercept. */
 	protected boolean regularizeIntercept = false;
 
+	/** number of threads used for training */
+	protected int threads = 1;
+
 	/** The truncation builder. */
 	protected TruncationConfigurableBuilder truncationBuilder = new TruncationConfigurableBuilder();
 	
@@ -165,6 +170,21 @@ public abstract class LinearUpdateableClassifierBuilder<U extends LinearClassifi
 		return thisBuilder;
 	}
 
+	/**
+	 * Sets the number of threads used for training. only models that support
+	 * lock-free updates train on more than one.
+	 *
+	 * @param threads
+	 *            the threads
+	 * @return the b
+	 */
+	public B setThreads(int threads) {
+		checkArgument(threads > 0, "threads must be positive, given %s",
+				threads);
+		this.threads = threads;
+		return thisBuilder;
+	}
+
 	/**
 	 * Sets the truncation builder.
 	 * 
@@ -228,6 +248,7 @@ public abstract class LinearUpdateableClassifierBuilder<U extends LinearClassifi
 		setLaplaceWeight(conf.floatOptionFromShortName("LR"));
 		setCauchyWeight(conf.floatOptionFromShortName("CR"));
 		setSquaredWeight(conf.floatOptionFromShortName("SR"));
+		setThreads(conf.integerOptionFromShortName("th"));
 
 	}
 
@@ -250,6 +271,7 @@ public abstract class LinearUpdateableClassifierBuilder<U extends LinearClassifi
 		conf.addFloatValueOnShortName("LR", laplaceWeight);
 		conf.addFloatValueOnShortName("CR", cauchyWeight);
 		conf.addFloatValueOnShortName("SR", squaredWeight);
+		conf.addIntegerValueOnShortName("th", threads);
 
 		return conf;
 	}
@@ -295,6 +317,10 @@ public abstract class LinearUpdateableClassifierBuilder<U extends LinearClassifi
 					"weight on regularization", 1, false,
 					new GreaterThanOrEqualsValueBound(0),
 					new LessThanOrEqualsValueBound(1000)));
+			addOption(new IntegerOption("th", "threads",
+					"number of threads used for training", 1, false,
+					new GreaterThanOrEqualsValueBound(1),
+					new LessThanOrEqualsValueBound(BIGVAL)));
 		}
 	}
 
@@ -376,6 +402,7 @@ public abstract class LinearUpdateableClassifierBuilder<U extends LinearClassifi
 					.setSmoothertype(regType)
 					.setRegularizeIntercept(regularizeIntercept)
 					.setPasses(passes)
+					.setThreads(threads)
 					.setCrossvalidateSmootherTraining(
 							crossValidateSmootherTraining).initialize();
 			return model;
@@ -547,6 +574,7 @@ public abstract class LinearUpdateableClassifierBuilder<U extends LinearClassifi
 					.setSmoothertype(regType)
 					.setRegularizeIntercept(regularizeIntercept)
 					.setPasses(passes)
+					.setThreads(threads)
 					.setCrossvalidateSmootherTraining(
 							crossValidateSmootherTraining).initialize();
 			return model;
@@ -726,6 +754,7 @@ public abstract class LinearUpdateableClassifierBuilder<U extends LinearClassifi
 					.setRegularizationWeight(regularizationWeight)
 					.setTruncationBuilder(truncationBuilder)
 					.setPasses(passes)
+					.setThreads(threads)
 					.setRegularizeIntercept(regularizeIntercept)
 					.setSmoothertype(regType)
 					.setCrossvalidateSmootherTraining(
@@ -898,6 +927,7 @@ public abstract class LinearUpdateableClassifierBuilder<U extends LinearClassifi
 					.setRegularizationWeight(regularizationWeight)
 					.setTruncationBuilder(truncationBuilder)
 					.setPasses(passes)
+					.setThreads(threads)
 					.setRegularizeIntercept(regularizeIntercept)
 					.setSmoothertype(regType)
 					.setCrossvalidateSmootherTraining(
@@ -1100,6 +1130,7 @@ public abstract class LinearUpdateableClassifierBuilder<U extends LinearClassifi
 					.setSquaredRegularizationWeight(squaredWeight)
 					.setSmoothertype(regType)
 					.setPasses(passes)
+					.setThreads(threads)
 					.setRegularizationWeight(regularizationWeight)
 					.setTruncationBuilder(truncationBuilder)
 					.setRegularizeIntercept(regularizeIntercept)
@@ -1282,6 +1313,7 @@ public abstract class LinearUpdateableClassifierBuilder<U extends LinearClassifi
 					.setRegularizationWeight(regularizationWeight)
 					.setTruncationBuilder(truncationBuilder)
 					.setPasses(passes)
+					.setThreads(threads)
 					.setRegularizeIntercept(regularizeIntercept)
 					.setSmoothertype(regType)
 					.setCrossvalidateSmootherTraining(
@@ -114,6 +114,17 @@ public class LogisticRegression extends
 		return new Gradient(gradientVector);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.dsi.parallax.ml.classifier.linear.updateable.
+	 * AbstractLinearUpdateableClassifier#supportsLockFreeUpdates()
+	 */
+	@Override
+	protected boolean supportsLockFreeUpdates() {
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -124,6 +124,17 @@ public class PassiveAggressive extends
 		return model;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.dsi.parallax.ml.classifier.linear.updateable.
+	 * AbstractLinearUpdateableClassifier#supportsLockFreeUpdates()
+	 */
+	@Override
+	protected boolean supportsLockFreeUpdates() {
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
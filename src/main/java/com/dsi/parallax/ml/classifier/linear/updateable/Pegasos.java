@@ -6,6 +6,7 @@ package com.dsi.parallax.ml.classifier.linear.updateable;
 import com.dsi.parallax.ml.classifier.ClassifierEvaluation;
 import com.dsi.parallax.ml.classifier.linear.updateable.LinearUpdateableClassifierBuilder.PegasosBuilder;
 import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.instance.Instances;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
 import com.dsi.parallax.ml.util.MLUtils;
 import com.dsi.parallax.ml.vector.LinearVector;
@@ -138,6 +139,15 @@ public class Pegasos extends AbstractLinearUpdateableClassifier<Pegasos> {
 		return this;
 	}
 
+	/**
+	 * updates come from a shared window of examples and rescale every weight,
+	 * so pegasos always trains on one thread.
+	 */
+	@Override
+	protected boolean supportsLockFreeUpdates() {
+		return false;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -177,6 +187,18 @@ public class Pegasos extends AbstractLinearUpdateableClassifier<Pegasos> {
 		return innerProduct(x);
 	}
 
+	/**
+	 * flushes any pending window before the batch is scored, so scoring the
+	 * batch itself doesn't change the model.
+	 */
+	@Override
+	public double[] predictBatch(Instances<? extends Instance<?>> instances) {
+		if (!trained) {
+			pegasosTrain();
+		}
+		return super.predictBatch(instances);
+	}
+
 	/**
 	 * Gets the window size.
 	 * 
@@ -89,9 +89,7 @@ public class PerceptronWithMargin extends
 	private double innerProduct(Instance<?> x, double xnorm) {
 		if (MLUtils.floatingPointEquals(xnorm, 0))
 			return 0;
-		double out = 0.;
-		for (int x_i : x)
-			out += x.getFeatureValue(x_i) * getParam(x_i);
+		double out = x.dot(vec);
 		if (bias)
 			out += getParam(dimension - 1);
 		return out / xnorm;
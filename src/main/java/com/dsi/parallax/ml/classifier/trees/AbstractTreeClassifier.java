@@ -57,6 +57,14 @@ public abstract class AbstractTreeClassifier<C extends AbstractTreeClassifier<C>
 	 * if a nested projector is used, the ratio of projection used at each node.
 	 */
 	protected double projectionRatio = 1.;
+	/**
+	 * if positive, features are binned into at most this many histogram
+	 * buckets and splits are searched over the bins. 0 searches every
+	 * distinct value.
+	 */
+	protected int histogramBins = 0;
+	/** the number of threads used to build the tree. */
+	protected int threads = 1;
 
 	/**
 	 * Terminator used for all trees, by default, uses the highest integer value
@@ -70,6 +78,9 @@ public abstract class AbstractTreeClassifier<C extends AbstractTreeClassifier<C>
 	 */
 	protected Root<BinaryClassificationTarget> root;
 
+	/** root copied into arrays for batch scoring, built on first use */
+	private transient volatile FlattenedTree flattened;
+
 	/**
 	 * Instantiates a new abstract tree classifier.
 	 * 
@@ -112,6 +123,34 @@ public abstract class AbstractTreeClassifier<C extends AbstractTreeClassifier<C>
 		return child.predict(instance).getValue();
 	}
 
+	/**
+	 * descends a flattened copy of the tree built once per trained tree.
+	 */
+	@Override
+	protected void regressBatch(List<? extends Instance<?>> instances,
+			int from, int to, double[] out) {
+		FlattenedTree flat = flattened();
+		for (int i = from; i < to; i++)
+			out[i] = flat.regress(instances.get(i));
+	}
+
+	/**
+	 * safe unless a model at one of the leaves isn't.
+	 */
+	@Override
+	public boolean supportsConcurrentPrediction() {
+		return root == null || flattened().concurrent;
+	}
+
+	private FlattenedTree flattened() {
+		FlattenedTree flat = flattened;
+		if (flat == null || flat.root != root) {
+			flat = new FlattenedTree(root);
+			flattened = flat;
+		}
+		return flat;
+	}
+
 	/**
 	 * build list of terminators that will be used for halting. EmptyTerminator
 	 * is always used. configured by the numerical settings used.
@@ -169,7 +208,7 @@ public abstract class AbstractTreeClassifier<C extends AbstractTreeClassifier<C>
 				.setAttributeValueCache(buildAttributeValueCache())
 				.setLeafCreator(buildLeafCreator()).setPruner(buildPruner())
 				.setProjectionFactory(buildProjectionFactory())
-				.setProjectionRatio(projectionRatio);
+				.setProjectionRatio(projectionRatio).setThreads(threads);
 		return treeBuilder;
 	}
 
@@ -315,4 +354,37 @@ public abstract class AbstractTreeClassifier<C extends AbstractTreeClassifier<C>
 		return model;
 	}
 
+	/**
+	 * Sets the number of histogram bins used when searching for splits. if
+	 * positive, each feature is binned into at most this many buckets before
+	 * the tree is built, trading exact thresholds for training time that's
+	 * linear in the size of the data. 0 searches every distinct value.
+	 * 
+	 * @param histogramBins
+	 *            the maximum number of bins per feature, 0 or at least 2
+	 * @return the model itself used for method chaining
+	 */
+	public C setHistogramBins(int histogramBins) {
+		checkArgument(histogramBins == 0 || histogramBins >= 2,
+				"histogramBins must be 0 or at least 2, given %s",
+				histogramBins);
+		this.histogramBins = histogramBins;
+		return model;
+	}
+
+	/**
+	 * Sets the number of threads used to build the tree. the tree built
+	 * doesn't depend on the number of threads.
+	 * 
+	 * @param threads
+	 *            the number of threads, at least 1
+	 * @return the model itself used for method chaining
+	 */
+	public C setThreads(int threads) {
+		checkArgument(threads > 0, "threads must be positive, given %s",
+				threads);
+		this.threads = threads;
+		return model;
+	}
+
 }
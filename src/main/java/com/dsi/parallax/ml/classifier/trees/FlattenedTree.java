@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.classifier.trees;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import com.dsi.parallax.ml.classifier.AbstractClassifier;
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.trees.Edge;
+import com.dsi.parallax.ml.trees.GreaterThanSplitCondition;
+import com.dsi.parallax.ml.trees.LessThanOrEqualsToSplitCondition;
+import com.dsi.parallax.ml.trees.Root;
+import com.dsi.parallax.ml.trees.SplitCondition;
+import com.dsi.parallax.ml.trees.Tree;
+import com.google.common.collect.Lists;
+
+/**
+ * a decision tree copied into parallel arrays for scoring. every unprojected
+ * node split into x[i] <= v and x[i] > v becomes a feature index, a threshold
+ * and the positions of its two children, so an instance descends the tree
+ * without walking edge sets or checking split conditions. leaves, and any
+ * node split some other way, are kept as tree nodes and finished off through
+ * the tree itself. read only once built, so any number of threads may share
+ * one.
+ *
+ * @author jattenberg
+ */
+class FlattenedTree {
+
+	/** the tree this was built from */
+	final Root<BinaryClassificationTarget> root;
+
+	/** can every leaf model be used from several threads at once? */
+	final boolean concurrent;
+
+	private int[] features = new int[16];
+	private double[] thresholds = new double[16];
+	/** child for x[i] <= v, -1 for a node kept in nodes */
+	private int[] lessOrEqual = new int[16];
+	/** child for x[i] > v */
+	private int[] greater = new int[16];
+	private final List<Tree<BinaryClassificationTarget>> nodes = Lists
+			.newArrayList();
+	private int size = 0;
+
+	/**
+	 * flatten a tree.
+	 *
+	 * @param root
+	 *            the root of the tree
+	 */
+	FlattenedTree(Root<BinaryClassificationTarget> root) {
+		this.root = root;
+		boolean concurrent = true;
+		Deque<Tree<BinaryClassificationTarget>> stack = new ArrayDeque<Tree<BinaryClassificationTarget>>();
+		Deque<Integer> positions = new ArrayDeque<Integer>();
+		stack.push(root);
+		positions.push(allocate());
+		while (!stack.isEmpty()) {
+			Tree<BinaryClassificationTarget> node = stack.pop();
+			int position = positions.pop();
+
+			SplitCondition split = binarySplit(node);
+			if (split == null) {
+				nodes.set(position, node);
+				lessOrEqual[position] = -1;
+				concurrent &= concurrent(node);
+				continue;
+			}
+			features[position] = split.getSplitIndex();
+			thresholds[position] = split.getSplitValue();
+			for (Edge<BinaryClassificationTarget> edge : node.getEdges()) {
+				int child = allocate();
+				if (edge.getSplitCondition() instanceof LessThanOrEqualsToSplitCondition)
+					lessOrEqual[position] = child;
+				else
+					greater[position] = child;
+				stack.push(edge.getChild());
+				positions.push(child);
+			}
+		}
+		this.concurrent = concurrent;
+	}
+
+	/**
+	 * the raw score of an instance, the same as descending the tree itself.
+	 *
+	 * @param inst
+	 *            the instance
+	 * @return the score at the leaf inst reaches
+	 */
+	double regress(Instance<?> inst) {
+		int position = 0;
+		int child;
+		while ((child = lessOrEqual[position]) >= 0) {
+			position = inst.getFeatureValue(features[position]) <= thresholds[position] ? child
+					: greater[position];
+		}
+		Tree<BinaryClassificationTarget> node = nodes.get(position);
+		while (!node.isLeaf())
+			node = node.decendTree(inst);
+		return node.predict(inst).getValue();
+	}
+
+	private int allocate() {
+		if (size == features.length) {
+			int capacity = 2 * size;
+			features = Arrays.copyOf(features, capacity);
+			thresholds = Arrays.copyOf(thresholds, capacity);
+			lessOrEqual = Arrays.copyOf(lessOrEqual, capacity);
+			greater = Arrays.copyOf(greater, capacity);
+		}
+		nodes.add(null);
+		return size++;
+	}
+
+	/**
+	 * the <= condition of a node split in two on a single threshold, null if
+	 * the node is split any other way, projects its input or is a leaf.
+	 */
+	private static SplitCondition binarySplit(
+			Tree<BinaryClassificationTarget> node) {
+		if (node.isLeaf() || node.getProjection() != null
+				|| node.getEdges().size() != 2)
+			return null;
+		Iterator<Edge<BinaryClassificationTarget>> edges = node.getEdges()
+				.iterator();
+		SplitCondition first = edges.next().getSplitCondition();
+		SplitCondition second = edges.next().getSplitCondition();
+		if (first instanceof GreaterThanSplitCondition) {
+			SplitCondition swap = first;
+			first = second;
+			second = swap;
+		}
+		if (!(first instanceof LessThanOrEqualsToSplitCondition)
+				|| !(second instanceof GreaterThanSplitCondition)
+				|| first.getSplitIndex() != second.getSplitIndex()
+				|| Double.compare(first.getSplitValue(),
+						second.getSplitValue()) != 0)
+			return null;
+		return first;
+	}
+
+	/**
+	 * can the leaves at or below node be used from several threads at once?
+	 */
+	private static boolean concurrent(Tree<BinaryClassificationTarget> node) {
+		if (!node.isLeaf()) {
+			for (Tree<BinaryClassificationTarget> child : node.getChildren())
+				if (!concurrent(child))
+					return false;
+			return true;
+		}
+		Object model = node.getModel();
+		return !(model instanceof AbstractClassifier)
+				|| ((AbstractClassifier<?>) model)
+						.supportsConcurrentPrediction();
+	}
+}
@@ -56,6 +56,8 @@ public class ID3Builder extends
 				.setMinExamples(minExamples)
 				.setPrepruningAttempts(prepruningAttempts)
 				.setProjectionRatio(projectionRatio)
+				.setHistogramBins(histogramBins)
+				.setThreads(threads)
 				.setSmoothertype(regType)
 				.setCrossvalidateSmootherTraining(crossValidateSmootherTraining)
 				.initialize();
@@ -59,7 +59,7 @@ public class ID3TreeClassifier extends AbstractTreeClassifier<ID3TreeClassifier>
 	 */
 	@Override
 	protected Splitter<BinaryClassificationTarget> buildSplitter() {
-		return new OrderedSplitter<BinaryClassificationTarget>();
+		return new CumulativeCountSplitter();
 	}
 
 	/* (non-Javadoc)
@@ -67,7 +67,9 @@ public class ID3TreeClassifier extends AbstractTreeClassifier<ID3TreeClassifier>
 	 */
 	@Override
 	protected AttributeValueCache buildAttributeValueCache() {
-		return new RecomputingAttributeValueCache();
+		if (histogramBins > 0)
+			return new HistogramAttributeValueCache(histogramBins);
+		return new PresortedAttributeValueCache();
 	}
 
 	/* (non-Javadoc)
@@ -25,7 +25,7 @@ public abstract class TreeClassifierBuilder<C extends AbstractTreeClassifier<C>,
 
 	/** The prepruning attempts. */
 	protected int maxDepth = Integer.MAX_VALUE, minExamples = 0,
-			prepruningAttempts = 20;
+			prepruningAttempts = 20, histogramBins = 0, threads = 1;
 	
 	/** The projection ratio. */
 	protected double minEntropy = 0, projectionRatio = 1.;
@@ -125,6 +125,34 @@ public abstract class TreeClassifierBuilder<C extends AbstractTreeClassifier<C>,
 		return thisBuilder;
 	}
 
+	/**
+	 * Sets the number of histogram bins used when searching for splits; 0
+	 * searches every distinct value.
+	 *
+	 * @param histogramBins the histogram bins
+	 * @return the b
+	 */
+	public B setHistogramBins(int histogramBins) {
+		checkArgument(histogramBins == 0 || histogramBins >= 2,
+				"histogramBins must be 0 or at least 2, given %s",
+				histogramBins);
+		this.histogramBins = histogramBins;
+		return thisBuilder;
+	}
+
+	/**
+	 * Sets the number of threads used to build each tree.
+	 *
+	 * @param threads the threads
+	 * @return the b
+	 */
+	public B setThreads(int threads) {
+		checkArgument(threads > 0, "threads must be positive, given %s",
+				threads);
+		this.threads = threads;
+		return thisBuilder;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.parallax.ml.classifier.ClassifierBuilder#configure(com.parallax.ml.util.option.Configuration)
 	 */
@@ -136,6 +164,8 @@ public abstract class TreeClassifierBuilder<C extends AbstractTreeClassifier<C>,
 		setMinEntropy(configuration.floatOptionFromShortName("e"));
 		setPrepruningAttempts(configuration.integerOptionFromShortName("p"));
 		setProjectionRatio(configuration.floatOptionFromShortName("r"));
+		setHistogramBins(configuration.integerOptionFromShortName("H"));
+		setThreads(configuration.integerOptionFromShortName("T"));
 
 	}
 
@@ -160,6 +190,8 @@ public abstract class TreeClassifierBuilder<C extends AbstractTreeClassifier<C>,
 		conf.addFloatValueOnShortName("e", minEntropy);
 		conf.addIntegerValueOnShortName("p", prepruningAttempts);
 		conf.addFloatValueOnShortName("r", projectionRatio);
+		conf.addIntegerValueOnShortName("H", histogramBins);
+		conf.addIntegerValueOnShortName("T", threads);
 		return conf;
 	}
 
@@ -195,6 +227,16 @@ public abstract class TreeClassifierBuilder<C extends AbstractTreeClassifier<C>,
 					"dimension reduction ratio when doing internal projections",
 					1., false, new GreaterThanValueBound(0),
 					new LessThanOrEqualsValueBound(5)));
+			addOption(new IntegerOption(
+					"H",
+					"histogrambins",
+					"if positive, bin features into at most this many buckets when searching for splits",
+					0, false, new GreaterThanOrEqualsValueBound(0),
+					new LessThanOrEqualsValueBound(BIGVAL)));
+			addOption(new IntegerOption("T", "threads",
+					"number of threads used to build each tree", 1, false,
+					new GreaterThanOrEqualsValueBound(1),
+					new LessThanOrEqualsValueBound(BIGVAL)));
 		}
 	}
 
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.dictionary;
+
+import java.util.Arrays;
+
+/**
+ * a growable list of (index, value) pairs, used by {@link HashDictionary} to
+ * collect hashed features before they are written to a vector. a buffer is
+ * cleared and refilled for each document, so one buffer per thread does away
+ * with per-document scratch allocation. not thread safe.
+ *
+ * @author jattenberg
+ */
+public class FeatureBuffer {
+
+	private int[] indices;
+	private double[] values;
+	private int size = 0;
+
+	/**
+	 * Class constructor.
+	 */
+	public FeatureBuffer() {
+		this(64);
+	}
+
+	/**
+	 * Class constructor specifying initial capacity.
+	 *
+	 * @param capacity
+	 *            initial capacity
+	 */
+	public FeatureBuffer(int capacity) {
+		indices = new int[Math.max(1, capacity)];
+		values = new double[indices.length];
+	}
+
+	/**
+	 * empty the buffer, keeping its storage.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * append an index and value.
+	 *
+	 * @param index
+	 *            the index
+	 * @param value
+	 *            the value
+	 */
+	public void add(int index, double value) {
+		if (size == indices.length) {
+			indices = Arrays.copyOf(indices, 2 * size);
+			values = Arrays.copyOf(values, 2 * size);
+		}
+		indices[size] = index;
+		values[size++] = value;
+	}
+
+	/**
+	 * the number of pairs held.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * the index of the kth pair.
+	 *
+	 * @param k
+	 *            position in the buffer
+	 * @return the index
+	 */
+	public int getIndex(int k) {
+		return indices[k];
+	}
+
+	/**
+	 * the value of the kth pair.
+	 *
+	 * @param k
+	 *            position in the buffer
+	 * @return the value
+	 */
+	public double getValue(int k) {
+		return values[k];
+	}
+}
@@ -4,9 +4,9 @@
 package com.dsi.parallax.ml.dictionary;
 
 import com.dsi.parallax.ml.util.HashFunctionType;
+import com.dsi.parallax.ml.util.SeededHashFunctionType;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.ml.vector.LinearVectorFactory;
-import com.google.common.collect.Maps;
 
 import java.util.Collection;
 import java.util.Map;
@@ -19,8 +19,6 @@ import static com.google.common.base.Preconditions.checkArgument;
  * @author Josh Attenberg
  */
 public class HashDictionary extends AbstractDictionary {
-	private final static Map<String, Collection<String>> DUMMYMAP = Maps
-			.newHashMap();
 	private final static String DUMMYKEY = "key";
 	private static final long serialVersionUID = -8231160920621247248L;
 	private HashFunctionType hashtype = HashFunctionType.JAVA;
@@ -243,8 +241,25 @@ public class HashDictionary extends AbstractDictionary {
 	 */
 	@Override
 	public LinearVector vectorFromText(Collection<String> text) {
-		DUMMYMAP.put(DUMMYKEY, text);
-		return vectorFromNamespacedText(DUMMYMAP, false);
+		return vectorFromText(text, new FeatureBuffer());
+	}
+
+	/**
+	 * The method creates linear vector by multiple text, hashing into a
+	 * caller-supplied buffer. a thread that keeps its own buffer can hash any
+	 * number of documents without allocating scratch space for each.
+	 * 
+	 * @param text
+	 *            text
+	 * @param buffer
+	 *            buffer, cleared before use
+	 * @return LinearVector linear vector
+	 */
+	public LinearVector vectorFromText(Collection<String> text,
+			FeatureBuffer buffer) {
+		buffer.clear();
+		hashTokens(DUMMYKEY, text, false, buffer);
+		return toVector(buffer);
 	}
 
 	/**
@@ -260,22 +275,165 @@ public class HashDictionary extends AbstractDictionary {
 	@Override
 	public LinearVector vectorFromNamespacedText(
 			Map<String, Collection<String>> namespacedText, boolean namespace) {
-		LinearVector vector = LinearVectorFactory.getVector(dimension);
-		for (String ns : namespacedText.keySet()) {
-			Collection<String> tokens = namespacedText.get(ns);
+		return vectorFromNamespacedText(namespacedText, namespace,
+				new FeatureBuffer());
+	}
+
+	/**
+	 * The method creates linear vector by namespace text and name space,
+	 * hashing into a caller-supplied buffer
+	 * 
+	 * @param namespacedText
+	 *            namespace text
+	 * @param namespace
+	 *            namespace
+	 * @param buffer
+	 *            buffer, cleared before use
+	 * @return linear vector
+	 */
+	public LinearVector vectorFromNamespacedText(
+			Map<String, Collection<String>> namespacedText, boolean namespace,
+			FeatureBuffer buffer) {
+		buffer.clear();
+		for (Map.Entry<String, Collection<String>> entry : namespacedText
+				.entrySet())
+			hashTokens(entry.getKey(), entry.getValue(), namespace, buffer);
+		return toVector(buffer);
+	}
+
+	/**
+	 * append the hashed index and signed count of each token to the buffer.
+	 * hashes with a seeded form fold the namespace and hash number into the
+	 * seed and hash the token's characters directly; the rest hash a token
+	 * string built from all three, as they always have.
+	 */
+	private void hashTokens(String ns, Collection<String> tokens,
+			boolean namespace, FeatureBuffer buffer) {
+		SeededHashFunctionType seeded = hashtype.getSeededHash();
+		if (seeded == null) {
 			for (String token : tokens) {
 				for (int hash = 0; hash < multipleHashes; hash++) {
 					String mapToken = makeToken(ns, token, hash, namespace);
 					int index = hashtype.hash(mapToken, dimension);
-					if (binaryFeatures)
-						vector.resetValue(index, 1);
-					else {
-						int bias = biasHash && hashtype.hash(mapToken, 2) != 1 ? -1
-								: 1;
-						vector.updateValue(index, bias);
-					}
+					int bias = !binaryFeatures && biasHash
+							&& hashtype.hash(mapToken, 2) != 1 ? -1
+							: 1;
+					buffer.add(index, bias);
 				}
 			}
+			return;
+		}
+
+		int nsSeed = namespace ? seeded.hash(ns, 0) : 0;
+		for (String token : tokens) {
+			for (int hash = 0; hash < multipleHashes; hash++) {
+				int h = seeded.hash(token,
+						SeededHashFunctionType.combineSeeds(nsSeed, hash));
+				// the bin uses the low bits, the sign the top one
+				buffer.add(SeededHashFunctionType.bin(h, dimension),
+						biasHash && h < 0 ? -1 : 1);
+			}
+		}
+	}
+
+	/**
+	 * append the hashed index and signed count of a token given as a range of
+	 * characters, exactly as {@link #vectorFromText(Collection, FeatureBuffer)}
+	 * would for the token as a string. the seeded and java hashes read the
+	 * characters in place; the others build the token string.
+	 * 
+	 * @param chars
+	 *            characters holding the token
+	 * @param start
+	 *            first character of the token
+	 * @param end
+	 *            one past the last character of the token
+	 * @param buffer
+	 *            buffer the features are appended to
+	 */
+	public void hashToken(CharSequence chars, int start, int end,
+			FeatureBuffer buffer) {
+		SeededHashFunctionType seeded = hashtype.getSeededHash();
+		if (seeded != null) {
+			for (int hash = 0; hash < multipleHashes; hash++) {
+				int h = seeded.hash(chars, start, end,
+						SeededHashFunctionType.combineSeeds(0, hash));
+				buffer.add(SeededHashFunctionType.bin(h, dimension),
+						biasHash && h < 0 ? -1 : 1);
+			}
+		} else if (hashtype == HashFunctionType.JAVA) {
+			int code = 0;
+			for (int i = start; i < end; i++)
+				code = 31 * code + chars.charAt(i);
+			hashTokenCode(code, buffer);
+		} else {
+			String token = chars.subSequence(start, end).toString();
+			for (int hash = 0; hash < multipleHashes; hash++) {
+				String mapToken = makeToken(DUMMYKEY, token, hash, false);
+				int bias = !binaryFeatures && biasHash
+						&& hashtype.hash(mapToken, 2) != 1 ? -1 : 1;
+				buffer.add(hashtype.hash(mapToken, dimension), bias);
+			}
+		}
+	}
+
+	/**
+	 * append the hashed index and signed count of a token known only by its
+	 * {@link String#hashCode()}, which is all the {@link HashFunctionType#JAVA}
+	 * hash depends on. since that hash is polynomial in the characters, the
+	 * code of a token built by joining others can be found from theirs.
+	 * 
+	 * @param hashCode
+	 *            the token's string hash code
+	 * @param buffer
+	 *            buffer the features are appended to
+	 */
+	public void hashTokenCode(int hashCode, FeatureBuffer buffer) {
+		checkArgument(hashtype == HashFunctionType.JAVA,
+				"only java hashes can be taken from hash codes, not %s",
+				hashtype);
+		for (int hash = 0; hash < multipleHashes; hash++) {
+			int code = hashCode;
+			if (multipleHashes > 1) {
+				// makeToken's "___" + hash suffix
+				String suffix = "___" + hash;
+				for (int i = 0; i < suffix.length(); i++)
+					code = 31 * code + suffix.charAt(i);
+			}
+			int bias = !binaryFeatures && biasHash && Math.abs(code) % 2 != 1 ? -1
+					: 1;
+			buffer.add(Math.abs(code) % dimension, bias);
+		}
+	}
+
+	/**
+	 * the hash used for tokens.
+	 * 
+	 * @return the hash function type
+	 */
+	public HashFunctionType getHashType() {
+		return hashtype;
+	}
+
+	/**
+	 * write the features collected in a buffer to a new vector, as the
+	 * vectorFrom methods do.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @return the vector
+	 */
+	public LinearVector vectorFromBuffer(FeatureBuffer buffer) {
+		return toVector(buffer);
+	}
+
+	private LinearVector toVector(FeatureBuffer buffer) {
+		LinearVector vector = LinearVectorFactory.getVector(dimension);
+		for (int k = 0; k < buffer.size(); k++) {
+			if (binaryFeatures)
+				vector.resetValue(buffer.getIndex(k), 1);
+			else
+				vector.updateValue(buffer.getIndex(k), buffer.getValue(k));
 		}
 		return vector;
 	}
@@ -4,6 +4,7 @@
 package com.dsi.parallax.ml.evaluation;
 
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.util.Mergeable;
 import com.dsi.parallax.ml.util.pair.PrimitivePair;
 
 import java.util.Collection;
@@ -15,9 +16,12 @@ import static com.google.common.base.Preconditions.checkArgument;
  * errors.
  * {@link <a href="http://en.wikipedia.org/wiki/Confusion_matrix">Confusion Matrix</a>}
  * 
+ * not thread safe; when scoring in parallel, give each thread its own matrix
+ * and {@link #merge(ConfusionMatrix)} them once the threads are done.
+ * 
  * @author jattenberg
  */
-public class ConfusionMatrix {
+public class ConfusionMatrix implements Mergeable<ConfusionMatrix> {
 
 	/**
 	 * The data structure representing the confusion matrix. rows correspond to
@@ -43,6 +47,17 @@ public class ConfusionMatrix {
 		this.confMatrix = new double[numClasses][numClasses];
 	}
 
+	/**
+	 * Instantiates a copy of a confusion matrix.
+	 * 
+	 * @param other
+	 *            the confusion matrix to copy
+	 */
+	public ConfusionMatrix(ConfusionMatrix other) {
+		this(other.numClasses);
+		merge(other);
+	}
+
 	/**
 	 * Instantiates a new confusion matrix and adds some initial data
 	 * 
@@ -58,6 +73,24 @@ public class ConfusionMatrix {
 			addInfo(p.first, p.second);
 	}
 
+	/**
+	 * Adds the observations of another confusion matrix to this one.
+	 * 
+	 * @param other
+	 *            a confusion matrix over the same number of classes
+	 * @return this
+	 */
+	@Override
+	public ConfusionMatrix merge(ConfusionMatrix other) {
+		checkArgument(other.numClasses == numClasses,
+				"can't merge %s classes into %s", other.numClasses, numClasses);
+		obs += other.obs;
+		for (int i = 0; i < numClasses; i++)
+			for (int j = 0; j < numClasses; j++)
+				confMatrix[i][j] += other.confMatrix[i][j];
+		return this;
+	}
+
 	/**
 	 * Adds a label / prediction pair to the confusion matrix
 	 * 
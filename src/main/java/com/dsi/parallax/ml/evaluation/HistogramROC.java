@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.evaluation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.util.Mergeable;
+
+/**
+ * approximate ROC analysis in fixed memory, for streams too large to keep.
+ * [0, 1] is split into equal width bins, each counting the positives,
+ * negatives and summed labels of the predictions falling in it, with one
+ * extra bin below 0 and one above 1 (or NaN). the only information lost is
+ * the order of predictions sharing a bin, so pairs split across bins are
+ * counted exactly and a positive / negative pair within a bin counts half,
+ * as a tie would. the auc is therefore within {@link #aucErrorBound()} of
+ * the exact value, which shrinks as the resolution grows.
+ *
+ * histograms of the same resolution over different shards can be
+ * {@link #merge(HistogramROC)}d.
+ *
+ * @author jattenberg
+ */
+public class HistogramROC implements ROCEvaluator, Mergeable<HistogramROC>,
+		Serializable {
+
+	private static final long serialVersionUID = -4425153290411702751L;
+
+	/** default number of bins over [0, 1], a multiple of most brier bins */
+	public static final int DEFAULT_RESOLUTION = 10000;
+
+	private final int resolution;
+	private final double[] positives, negatives, labelSums;
+	private double squaredError = 0;
+	private long size = 0;
+
+	/**
+	 * Instantiates a new histogram roc with {@link #DEFAULT_RESOLUTION} bins.
+	 */
+	public HistogramROC() {
+		this(DEFAULT_RESOLUTION);
+	}
+
+	/**
+	 * Instantiates a new histogram roc.
+	 *
+	 * @param resolution
+	 *            the number of bins over [0, 1]
+	 */
+	public HistogramROC(int resolution) {
+		checkArgument(resolution > 0, "resolution must be positive, given: %s",
+				resolution);
+		this.resolution = resolution;
+		positives = new double[resolution + 2];
+		negatives = new double[resolution + 2];
+		labelSums = new double[resolution + 2];
+	}
+
+	public int getResolution() {
+		return resolution;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#add(com.dsi.parallax.ml.target.BinaryClassificationTarget, com.dsi.parallax.ml.target.BinaryClassificationTarget)
+	 */
+	@Override
+	public void add(BinaryClassificationTarget label,
+			BinaryClassificationTarget prediction) {
+		add(label.getValue(), prediction.getValue());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#add(double, double)
+	 */
+	@Override
+	public void add(double label, double prediction) {
+		int bin = bin(prediction);
+		if (label > 0.5)
+			positives[bin]++;
+		else
+			negatives[bin]++;
+		labelSums[bin] += label;
+		squaredError += (prediction - label) * (prediction - label);
+		size++;
+	}
+
+	/**
+	 * bin 0 is below 0, bins 1 through resolution cover [0, 1] as
+	 * {@link ReceiverOperatingCharacteristic#brierBin(double, int)} does, the
+	 * last bin everything else.
+	 */
+	private int bin(double prediction) {
+		if (prediction < 0)
+			return 0;
+		int bin = ReceiverOperatingCharacteristic.brierBin(prediction,
+				resolution);
+		return bin < 0 ? resolution + 1 : bin + 1;
+	}
+
+	/**
+	 * add the counts of another histogram of the same resolution.
+	 *
+	 * @param other
+	 *            the other histogram
+	 * @return this
+	 */
+	@Override
+	public HistogramROC merge(HistogramROC other) {
+		checkArgument(other.resolution == resolution,
+				"resolutions differ: %s, %s", resolution, other.resolution);
+		for (int i = 0; i < positives.length; i++) {
+			positives[i] += other.positives[i];
+			negatives[i] += other.negatives[i];
+			labelSums[i] += other.labelSums[i];
+		}
+		squaredError += other.squaredError;
+		size += other.size;
+		return this;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#size()
+	 */
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * the curve through the corners between bins; a bin's positives and
+	 * negatives are joined by a straight line, as tied predictions are.
+	 *
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#ROC()
+	 */
+	@Override
+	public double[][] ROC() {
+		double pos = 0, neg = 0;
+		int points = 1;
+		for (int i = 0; i < positives.length; i++) {
+			pos += positives[i];
+			neg += negatives[i];
+			if (positives[i] + negatives[i] > 0)
+				points++;
+		}
+		double[][] curve = new double[points][];
+		double tp = 0, fp = 0;
+		int point = 0;
+		for (int i = 0; i < positives.length; i++) {
+			if (positives[i] + negatives[i] > 0) {
+				curve[point++] = new double[] { tp / pos, fp / neg };
+				tp += positives[i];
+				fp += negatives[i];
+			}
+		}
+		curve[point] = new double[] { tp / pos, fp / neg };
+		return curve;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#binaryAUC()
+	 */
+	@Override
+	public double binaryAUC() {
+		double pos = 0, below = 0, area = 0;
+		for (int i = 0; i < positives.length; i++) {
+			area += positives[i] * (below + negatives[i] / 2);
+			pos += positives[i];
+			below += negatives[i];
+		}
+		if (pos == 0 || below == 0)
+			return Double.NaN;
+		return area / (pos * below);
+	}
+
+	/**
+	 * the most {@link #binaryAUC()} can differ from the auc of the exact
+	 * predictions: half the fraction of positive / negative pairs sharing a
+	 * bin, whose order is unknown.
+	 *
+	 * @return the error bound, NaN without both positives and negatives
+	 */
+	public double aucErrorBound() {
+		double pos = 0, neg = 0, shared = 0;
+		for (int i = 0; i < positives.length; i++) {
+			shared += positives[i] * negatives[i];
+			pos += positives[i];
+			neg += negatives[i];
+		}
+		if (pos == 0 || neg == 0)
+			return Double.NaN;
+		return shared / (2 * pos * neg);
+	}
+
+	/**
+	 * exact, the squared error is summed as examples arrive.
+	 *
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#brierScore()
+	 */
+	@Override
+	public double brierScore() {
+		return squaredError / size;
+	}
+
+	/**
+	 * exact when the resolution is a multiple of the number of bins, since
+	 * then each histogram bin lies inside one brier bin. otherwise each
+	 * histogram bin is assigned to the brier bin holding its midpoint.
+	 *
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#averagedBrierScore(int)
+	 */
+	@Override
+	public double averagedBrierScore(int bins) {
+		int predBins = (int) Math.min(bins, size);
+		double[] counts = new double[predBins];
+		double[] labels = new double[predBins];
+		boolean nested = resolution % Math.max(predBins, 1) == 0;
+		for (int i = 1; i <= resolution; i++) {
+			double count = positives[i] + negatives[i];
+			if (count == 0)
+				continue;
+			int bin = nested ? (i - 1) / (resolution / predBins)
+					: ReceiverOperatingCharacteristic.brierBin(
+							(i - 0.5) / resolution, predBins);
+			counts[bin] += count;
+			labels[bin] += labelSums[i];
+		}
+		return ReceiverOperatingCharacteristic.binnedBrierScore(counts, labels);
+	}
+}
@@ -7,12 +7,11 @@ import com.dsi.parallax.ml.classifier.Classifier;
 import com.dsi.parallax.ml.instance.Instance;
 import com.dsi.parallax.ml.instance.Instances;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
-import com.dsi.parallax.ml.util.pair.PrimitivePair;
 
 import java.io.Serializable;
-import java.util.Collection;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 // TODO: Auto-generated Javadoc
 /**
@@ -22,10 +21,16 @@ import java.util.Queue;
  * 1. get example x 2. make prediction f(x) 3. add example and label add(y,
  * f(x)) and 4. occassionally evaluate model's performance
  * 
- * implementation isn't optimized for re-evaluation of performance metrics at
- * each instance. some stratifying is done internally to avoid all-positive or
- * all-negative sets. two queues are simply used, one for positive and one for
- * negative.
+ * some stratifying is done internally to avoid all-positive or all-negative
+ * sets. two queues are simply used, one for positive and one for negative,
+ * each a ring of primitive arrays.
+ * 
+ * metrics are kept up to date as examples enter and leave the queues, so
+ * evaluating after every example is cheap: auc is maintained as the number of
+ * correctly ordered positive / negative pairs, counting each new or evicted
+ * example's pairs with an order statistic tree over each class's scores in
+ * O(log n), while accuracy and the binned brier score are running sums
+ * updated in O(1).
  * 
  * stratification is avoided for accuracy and briar scoring by observing the
  * stream's class ratio and correcting for this ratio.
@@ -38,11 +43,33 @@ public class OnlineEvaluation implements Serializable {
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = -8610292246440862829L;
 
+	/** number of bins used for the brier score */
+	private static final int BRIER_BINS = 25;
+
 	/** The negative cache. */
-	private Queue<PrimitivePair> positiveCache, negativeCache;
+	private final Window positiveCache, negativeCache;
+
+	/** the predictions in each cache, ordered */
+	private final ScoreRankTree positiveScores, negativeScores;
+
+	/**
+	 * the number of positive / negative pairs in the caches where the
+	 * positive's prediction is higher, counting ties as half
+	 */
+	private double orderedPairs = 0;
+
+	/** the summed agreement between label and prediction in each cache */
+	private double positiveAgreement = 0, negativeAgreement = 0;
 
-	/** The maxsize. */
-	private int maxsize = 50000;
+	/** examples and summed labels in each brier bin */
+	private final double[] binCounts = new double[BRIER_BINS],
+			binLabels = new double[BRIER_BINS];
+
+	/**
+	 * evictions since the running sums were last recomputed; subtracting
+	 * evicted examples slowly accumulates rounding error
+	 */
+	private int evictions = 0;
 
 	/** The numneg. */
 	private double numpos, numneg;
@@ -61,29 +88,14 @@ public class OnlineEvaluation implements Serializable {
 	 *            the cache size
 	 */
 	public OnlineEvaluation(int cacheSize) {
-		maxsize = cacheSize;
+		checkArgument(cacheSize > 0, "cacheSize must be positive, given: %s",
+				cacheSize);
 		numpos = 0;
 		numneg = 0;
-		positiveCache = new LinkedList<PrimitivePair>() {
-			private static final long serialVersionUID = 8554777579995774523L;
-
-			@Override
-			public boolean add(PrimitivePair p) {
-				if (size() >= maxsize)
-					remove();
-				return super.add(p);
-			}
-		};
-		negativeCache = new LinkedList<PrimitivePair>() {
-			private static final long serialVersionUID = 8554777579995774523L;
-
-			@Override
-			public boolean add(PrimitivePair p) {
-				if (size() >= maxsize)
-					remove();
-				return super.add(p);
-			}
-		};
+		positiveCache = new Window(cacheSize);
+		negativeCache = new Window(cacheSize);
+		positiveScores = new ScoreRankTree();
+		negativeScores = new ScoreRankTree();
 	}
 
 	/**
@@ -112,20 +124,33 @@ public class OnlineEvaluation implements Serializable {
 	public boolean add(double label, double prediction) {
 		if (label > 0.5) {
 			numpos++;
-			return positiveCache.add(new PrimitivePair(label, prediction));
+			if (positiveCache.isFull())
+				evictPositive();
+			orderedPairs += negativeScores.countBelow(prediction, 0.5);
+			positiveScores.insert(prediction);
+			positiveCache.add(label, prediction);
+			positiveAgreement += agreement(label, prediction);
 		} else {
 			numneg++;
-			return negativeCache.add(new PrimitivePair(label, prediction));
+			if (negativeCache.isFull())
+				evictNegative();
+			orderedPairs += positiveScores.size()
+					- positiveScores.countBelow(prediction, 0.5);
+			negativeScores.insert(prediction);
+			negativeCache.add(label, prediction);
+			negativeAgreement += agreement(label, prediction);
 		}
+		bin(label, prediction, 1);
+		return true;
 	}
 
 	public <I extends Instances<? extends Instance<BinaryClassificationTarget>>> boolean add(
 			I insts, Classifier<?> classifier) {
+		double[] predictions = classifier.predictBatch(insts);
 		boolean success = true;
+		int i = 0;
 		for (Instance<BinaryClassificationTarget> inst : insts) {
-			BinaryClassificationTarget label = inst.getLabel();
-			BinaryClassificationTarget prediction = classifier.predict(inst);
-			success &= add(label, prediction);
+			success &= add(inst.getLabel().getValue(), predictions[i++]);
 		}
 		return success;
 	}
@@ -136,7 +161,11 @@ public class OnlineEvaluation implements Serializable {
 	 * @return the double
 	 */
 	public double computeAUC() {
-		return ReceiverOperatingCharacteristic.computeAUC(mergeSets());
+		double positives = positiveScores.size();
+		double negatives = negativeScores.size();
+		if (positives == 0 || negatives == 0)
+			return Double.NaN;
+		return orderedPairs / (positives * negatives);
 	}
 
 	/**
@@ -145,7 +174,24 @@ public class OnlineEvaluation implements Serializable {
 	 * @return the double
 	 */
 	public double computeBrierScore() {
-		return ReceiverOperatingCharacteristic.computeBrierScore(mergeSets());
+		int size = positiveCache.size() + negativeCache.size();
+		if (size >= BRIER_BINS)
+			return ReceiverOperatingCharacteristic.binnedBrierScore(binCounts,
+					binLabels);
+		// fewer examples than bins; as many bins as examples
+		double[] counts = new double[size];
+		double[] labels = new double[size];
+		for (Window cache : new Window[] { positiveCache, negativeCache }) {
+			for (int i = 0; i < cache.size(); i++) {
+				int bin = ReceiverOperatingCharacteristic.brierBin(
+						cache.prediction(i), size);
+				if (bin >= 0) {
+					counts[bin]++;
+					labels[bin] += cache.label(i);
+				}
+			}
+		}
+		return ReceiverOperatingCharacteristic.binnedBrierScore(counts, labels);
 	}
 
 	/**
@@ -155,21 +201,76 @@ public class OnlineEvaluation implements Serializable {
 	 */
 	public double computeAccuracy() {
 		double tot = numpos + numneg;
-		return (numpos / tot) * ConfusionMatrix.computeAccuracy(positiveCache)
-				+ (numneg / tot)
-				* ConfusionMatrix.computeAccuracy(negativeCache);
+		return (numpos / tot) * accuracy(positiveAgreement, positiveCache)
+				+ (numneg / tot) * accuracy(negativeAgreement, negativeCache);
+	}
+
+	private static double accuracy(double agreement, Window cache) {
+		return cache.size() > 0 ? agreement / cache.size() : 0;
 	}
 
 	/**
-	 * Merge sets.
-	 * 
-	 * @return the collection
+	 * the soft agreement between a label and prediction, as counted on the
+	 * diagonal of a {@link ConfusionMatrix}
+	 */
+	private static double agreement(double label, double prediction) {
+		return (1. - label) * (1. - prediction) + label * prediction;
+	}
+
+	private void evictPositive() {
+		double label = positiveCache.oldestLabel();
+		double prediction = positiveCache.oldestPrediction();
+		positiveCache.removeOldest();
+		positiveScores.remove(prediction);
+		orderedPairs -= negativeScores.countBelow(prediction, 0.5);
+		positiveAgreement -= agreement(label, prediction);
+		bin(label, prediction, -1);
+		evicted();
+	}
+
+	private void evictNegative() {
+		double label = negativeCache.oldestLabel();
+		double prediction = negativeCache.oldestPrediction();
+		negativeCache.removeOldest();
+		negativeScores.remove(prediction);
+		orderedPairs -= positiveScores.size()
+				- positiveScores.countBelow(prediction, 0.5);
+		negativeAgreement -= agreement(label, prediction);
+		bin(label, prediction, -1);
+		evicted();
+	}
+
+	private void bin(double label, double prediction, double weight) {
+		int bin = ReceiverOperatingCharacteristic.brierBin(prediction,
+				BRIER_BINS);
+		if (bin >= 0) {
+			binCounts[bin] += weight;
+			binLabels[bin] += weight * label;
+		}
+	}
+
+	/**
+	 * recompute the running sums once there have been as many evictions as
+	 * there are examples, keeping the cost amortized O(1)
 	 */
-	private Collection<PrimitivePair> mergeSets() {
-		Collection<PrimitivePair> tmp = new LinkedList<PrimitivePair>();
-		tmp.addAll(positiveCache);
-		tmp.addAll(negativeCache);
-		return tmp;
+	private void evicted() {
+		if (++evictions < positiveCache.size() + negativeCache.size())
+			return;
+		evictions = 0;
+		positiveAgreement = 0;
+		negativeAgreement = 0;
+		Arrays.fill(binCounts, 0);
+		Arrays.fill(binLabels, 0);
+		for (int i = 0; i < positiveCache.size(); i++) {
+			positiveAgreement += agreement(positiveCache.label(i),
+					positiveCache.prediction(i));
+			bin(positiveCache.label(i), positiveCache.prediction(i), 1);
+		}
+		for (int i = 0; i < negativeCache.size(); i++) {
+			negativeAgreement += agreement(negativeCache.label(i),
+					negativeCache.prediction(i));
+			bin(negativeCache.label(i), negativeCache.prediction(i), 1);
+		}
 	}
 
 	/*
@@ -189,8 +290,80 @@ public class OnlineEvaluation implements Serializable {
 
 	public static <I extends Instances<? extends Instance<BinaryClassificationTarget>>> OnlineEvaluation evaluate(
 			I insts, Classifier<?> classifier) {
-		OnlineEvaluation eval = new OnlineEvaluation(insts.size() * 2);
+		OnlineEvaluation eval = new OnlineEvaluation(Math.max(1,
+				insts.size() * 2));
 		eval.add(insts, classifier);
 		return eval;
 	}
+
+	/**
+	 * labels and predictions in arrival order, dropping the oldest beyond a
+	 * maximum size. the arrays grow as needed up to that size.
+	 */
+	private static class Window implements Serializable {
+
+		private static final long serialVersionUID = 2719315386357290815L;
+
+		private final int maxsize;
+		private double[] labels;
+		private double[] predictions;
+		private int start = 0;
+		private int size = 0;
+
+		Window(int maxsize) {
+			this.maxsize = maxsize;
+			labels = new double[Math.min(maxsize, 16)];
+			predictions = new double[labels.length];
+		}
+
+		boolean isFull() {
+			return size >= maxsize;
+		}
+
+		int size() {
+			return size;
+		}
+
+		void add(double label, double prediction) {
+			if (size == labels.length) {
+				int capacity = (int) Math.min(maxsize, 2L * size);
+				labels = unwrap(labels, capacity);
+				predictions = unwrap(predictions, capacity);
+				start = 0;
+			}
+			int index = (start + size) % labels.length;
+			labels[index] = label;
+			predictions[index] = prediction;
+			size++;
+		}
+
+		private double[] unwrap(double[] values, int capacity) {
+			double[] out = new double[capacity];
+			int tail = values.length - start;
+			System.arraycopy(values, start, out, 0, tail);
+			System.arraycopy(values, 0, out, tail, start);
+			return out;
+		}
+
+		double label(int i) {
+			return labels[(start + i) % labels.length];
+		}
+
+		double prediction(int i) {
+			return predictions[(start + i) % predictions.length];
+		}
+
+		double oldestLabel() {
+			return labels[start];
+		}
+
+		double oldestPrediction() {
+			return predictions[start];
+		}
+
+		void removeOldest() {
+			start = (start + 1) % labels.length;
+			size--;
+		}
+	}
 }
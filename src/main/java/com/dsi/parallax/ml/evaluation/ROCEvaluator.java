@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.evaluation;
+
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+
+/**
+ * accumulates labels and predictions of a binary classifier and scores how
+ * well the predictions rank and calibrate. labels above .5 are positive.
+ * {@link ReceiverOperatingCharacteristic} is exact, {@link HistogramROC} an
+ * approximation in bounded memory.
+ *
+ * @author jattenberg
+ */
+public interface ROCEvaluator {
+
+	/**
+	 * Adds the.
+	 *
+	 * @param label
+	 *            the label
+	 * @param prediction
+	 *            the prediction
+	 */
+	public void add(BinaryClassificationTarget label,
+			BinaryClassificationTarget prediction);
+
+	/**
+	 * Adds the.
+	 *
+	 * @param label
+	 *            the label
+	 * @param prediction
+	 *            the prediction
+	 */
+	public void add(double label, double prediction);
+
+	/**
+	 * @return the number of examples added
+	 */
+	public long size();
+
+	/**
+	 * points on the ROC curve, from (0, 0) to (1, 1), as {tpr, fpr} with
+	 * examples taken in ascending order of prediction
+	 *
+	 * @return the curve
+	 */
+	public double[][] ROC();
+
+	/**
+	 * the area under the ROC curve, with tied predictions counting half.
+	 *
+	 * @return the auc, NaN without both positives and negatives
+	 */
+	public double binaryAUC();
+
+	/**
+	 * mean squared difference between labels and predictions.
+	 *
+	 * @return the brier score
+	 */
+	public double brierScore();
+
+	/**
+	 * bins the predictions. looks at the average label compared to the median
+	 * prediction for each bin. computes the brier score based on this
+	 *
+	 * @param bins
+	 *            the number of bins, fewer if there are fewer examples
+	 * @return the binned brier score
+	 */
+	public double averagedBrierScore(int bins);
+}
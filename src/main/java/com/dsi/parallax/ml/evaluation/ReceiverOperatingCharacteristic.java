@@ -3,191 +3,233 @@
  ******************************************************************************/
 package com.dsi.parallax.ml.evaluation;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.Collection;
+
 import com.dsi.parallax.ml.classifier.Classifier;
 import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
 import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.util.Mergeable;
+import com.dsi.parallax.ml.util.PrimitiveSort;
 import com.dsi.parallax.ml.util.pair.PrimitivePair;
-import com.dsi.parallax.ml.util.pair.SecondDescendingComparator;
 
-import java.util.*;
-
-// TODO: Auto-generated Javadoc
 /**
- * The Class ReceiverOperatingCharacteristic.
+ * exact ROC analysis. predictions are kept in one primitive array per class,
+ * 8 bytes an example when labels are 0 or 1, and sorted when the curve or auc
+ * is needed, on several threads for large sets. for a bounded memory
+ * approximation see {@link HistogramROC}.
  */
-public class ReceiverOperatingCharacteristic {
-	
-	/** The examples. */
-	private List<PrimitivePair> examples;
-	
-	/** The pos. */
-	private double pos = 0;
-	
-	/** The neg. */
-	private double neg = 0;
-	
+public class ReceiverOperatingCharacteristic implements ROCEvaluator,
+		Mergeable<ReceiverOperatingCharacteristic> {
+
+	/** predictions of the positive and negative examples */
+	private final Scores positives = new Scores(1), negatives = new Scores(0);
+
 	/** The is sorted. */
-	private boolean isSorted = false;
+	private boolean isSorted = true;
+
+	/** threads used to sort predictions */
+	private int threads = Runtime.getRuntime().availableProcessors();
 
 	/**
 	 * Instantiates a new receiver operating characteristic.
 	 */
 	public ReceiverOperatingCharacteristic() {
-		examples = new ArrayList<PrimitivePair>();
 	}
 
 	/**
-	 * Adds the.
+	 * set the number of threads used to sort predictions. sets smaller than
+	 * {@link PrimitiveSort#PARALLEL_THRESHOLD} are always sorted on the
+	 * calling thread.
 	 *
-	 * @param label the label
-	 * @param prediction the prediction
+	 * @param threads
+	 *            the number of threads
+	 * @return this
 	 */
+	public ReceiverOperatingCharacteristic setThreads(int threads) {
+		checkArgument(threads > 0, "threads must be positive, given: %s",
+				threads);
+		this.threads = threads;
+		return this;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#add(com.dsi.parallax.ml.target.BinaryClassificationTarget, com.dsi.parallax.ml.target.BinaryClassificationTarget)
+	 */
+	@Override
 	public void add(BinaryClassificationTarget label, BinaryClassificationTarget prediction) {
 		add(label.getValue(), prediction.getValue());
 	}
-	
-	/**
-	 * Adds the.
-	 *
-	 * @param label the label
-	 * @param prediction the prediction
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#add(double, double)
 	 */
+	@Override
 	public void add(double label, double prediction) {
-		examples.add(new PrimitivePair(label, prediction));
+		// -0 and 0 are the same prediction
+		if (prediction == 0)
+			prediction = 0;
 		if (label > 0.5)
-			pos++;
+			positives.add(label, prediction);
 		else
-			neg++;
+			negatives.add(label, prediction);
 		isSorted = false;
 	}
 
 	/**
-	 * Roc.
+	 * adds every example of another roc to this one.
 	 *
-	 * @return the double[][]
+	 * @param other the other roc, unchanged
+	 * @return this
 	 */
-	public double[][] ROC() {
+	@Override
+	public ReceiverOperatingCharacteristic merge(
+			ReceiverOperatingCharacteristic other) {
+		for (int i = 0; i < other.positives.size; i++)
+			positives.add(other.positives.label(i), other.positives.scores[i]);
+		for (int i = 0; i < other.negatives.size; i++)
+			negatives.add(other.negatives.label(i), other.negatives.scores[i]);
+		isSorted = false;
+		return this;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#size()
+	 */
+	@Override
+	public long size() {
+		return (long) positives.size + negatives.size;
+	}
+
+	private void sort() {
 		if (!isSorted) {
-			Collections.sort(examples, new ExCompare());
+			positives.sort(threads);
+			negatives.sort(threads);
 			isSorted = true;
 		}
-		// checked: examples are in sorted order.
-		// pos and neg are correct
+	}
 
-		List<PrimitivePair> curve = new ArrayList<PrimitivePair>();
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#ROC()
+	 */
+	@Override
+	public double[][] ROC() {
+		sort();
+		double pos = positives.size;
+		double neg = negatives.size;
+		double[][] curve = new double[positives.size + negatives.size + 1][];
+		int points = 0;
 		double plast = Double.NEGATIVE_INFINITY;
-		double tp = 0;
-		double fp = 0;
-
-		for (int i = 0; i < examples.size(); i++) {
-			PrimitivePair current = examples.get(i);
-			if (current.second != plast) {
-				curve.add(new PrimitivePair(fp / neg, tp / pos));
-				plast = current.second;
-			}
-			if (current.first > 0.5) {
-				// positive example
-				tp++;
-			} else {
-				// negative example
-				fp++;
+		int tp = 0, fp = 0;
+		while (tp < positives.size || fp < negatives.size) {
+			double score = nextScore(tp, fp);
+			if (score != plast) {
+				curve[points++] = new double[] { tp / pos, fp / neg };
+				plast = score;
 			}
+			tp = positives.skip(tp, score);
+			fp = negatives.skip(fp, score);
 		}
-		curve.add(new PrimitivePair(fp / neg, tp / pos));
+		curve[points++] = new double[] { tp / pos, fp / neg };
+		return Arrays.copyOf(curve, points);
+	}
 
-		double[][] out = new double[curve.size()][2];
-		for (int i = 0; i < curve.size(); i++) {
-			out[i][0] = curve.get(i).second; //tpr
-			out[i][1] = curve.get(i).first; //fpr
-		}
-		return out;
+	/**
+	 * the lowest prediction not yet passed in the merge of the two classes.
+	 */
+	private double nextScore(int tp, int fp) {
+		if (tp == positives.size)
+			return negatives.scores[fp];
+		if (fp == negatives.size)
+			return positives.scores[tp];
+		// sorted as Double.compare does, so NaN comes last
+		double positive = positives.scores[tp], negative = negatives.scores[fp];
+		return Double.compare(positive, negative) <= 0 ? positive : negative;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#brierScore()
+	 */
+	@Override
+	public double brierScore() {
+		return (positives.squaredError() + negatives.squaredError()) / size();
+	}
 
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.evaluation.ROCEvaluator#averagedBrierScore(int)
+	 */
+	@Override
+	public double averagedBrierScore(int bins) {
+		int predBins = (int) Math.min(bins, size());
+		double[] counts = new double[predBins];
+		double[] labels = new double[predBins];
+		positives.bin(counts, labels);
+		negatives.bin(counts, labels);
+		return binnedBrierScore(counts, labels);
 	}
 
 	/**
-	 * Brier score.
+	 * the bin holding a prediction when [0, 1] is split into equal bins, each
+	 * including its upper edge; 0 goes in the first bin.
 	 *
-	 * @return the double
+	 * @param prediction the prediction
+	 * @param bins the number of bins
+	 * @return the bin, or -1 if the prediction is outside [0, 1]
 	 */
-	public double brierScore() {
-		double score = 0;
-		for (PrimitivePair ex : examples)
-			score += (ex.second - ex.first) * (ex.second - ex.first);
-		return score / examples.size();
+	static int brierBin(double prediction, int bins) {
+		if (!(prediction >= 0 && prediction <= 1))
+			return -1;
+		return Math.max(0, Math.min(bins - 1,
+				(int) Math.ceil(prediction * bins) - 1));
 	}
 
 	/**
-	 * bins the predictions. looks at the average label compared to the median
-	 * prediction for each bin. computes the brier score based on this
+	 * squared difference between each bin's midpoint and its average label,
+	 * averaged over the bins; empty bins count as 0.
 	 *
-	 * @param bins the bins
+	 * @param counts the number of examples in each bin
+	 * @param labelSums the summed labels in each bin
 	 * @return the double
 	 */
-	public double averagedBrierScore(int bins) {
+	static double binnedBrierScore(double[] counts, double[] labelSums) {
+		int bins = counts.length;
 		double score = 0;
-		double predBins = Math.min(bins, examples.size());
-		if (!isSorted) {
-			Collections.sort(examples, new SecondDescendingComparator());
-			isSorted = true;
-		}
-
-		double binWidth = 1. / predBins;
-		double bottom = 0.;
-		double top = bottom + binWidth;
-		int ct = 0;
-		for (int i = 0; i < predBins; i++) {
-			double num = 0;
-			double avgLabel = 0;
-			while (ct < examples.size() && examples.get(ct).second <= top
-					&& examples.get(ct).second >= bottom) {
-				avgLabel += examples.get(ct).first;
-				ct++;
-				num++;
-			}
-			double medianscore = (bottom + top) / 2.;
-
-			if (num > 0) {
-				avgLabel /= num;
-
+		for (int i = 0; i < bins; i++) {
+			if (counts[i] > 0) {
+				double medianscore = (i + 0.5) / bins;
+				double avgLabel = labelSums[i] / counts[i];
 				score += (medianscore - avgLabel) * (medianscore - avgLabel);
 			}
-			top += binWidth;
-			bottom += binWidth;
 		}
-		return score / predBins;
+		return score / bins;
 	}
 
 	/**
-	 * Binary auc.
+	 * Binary auc. the area under the curve from {@link #ROC()}, found while
+	 * merging the sorted classes without building the curve: each positive
+	 * counts the negatives below it, plus half those tied with it.
 	 *
 	 * @return the double
 	 */
+	@Override
 	public double binaryAUC() {
-		double[][] ROC = ROC();
+		if (positives.size == 0 || negatives.size == 0)
+			return Double.NaN;
+		sort();
 		double area = 0.0;
-		for (int i = 1; i < ROC.length; i++) {
-			area += trapezoidArea(ROC[i - 1][0], ROC[i][0], ROC[i - 1][1],
-					ROC[i][1]);
+		int tp = 0, fp = 0;
+		while (tp < positives.size || fp < negatives.size) {
+			double score = nextScore(tp, fp);
+			int nextTp = positives.skip(tp, score);
+			int nextFp = negatives.skip(fp, score);
+			area += (nextTp - tp) * (fp + (nextFp - fp) / 2.);
+			tp = nextTp;
+			fp = nextFp;
 		}
-		area += trapezoidArea(1, ROC[ROC.length - 1][0], 1,
-				ROC[ROC.length - 1][1]);
-		return area;
-	}
-
-	/**
-	 * Trapezoid area.
-	 *
-	 * @param x1 the x1
-	 * @param x2 the x2
-	 * @param y1 the y1
-	 * @param y2 the y2
-	 * @return the double
-	 */
-	private double trapezoidArea(double x1, double x2, double y1, double y2) {
-		double base = Math.abs(x1 - x2);
-		double avgHeight = (y1 + y2) / 2.0;
-		return base * avgHeight;
+		return area / ((double) positives.size * negatives.size);
 	}
 
 	/* (non-Javadoc)
@@ -213,7 +255,7 @@ public class ReceiverOperatingCharacteristic {
 	 */
 	public static <C extends Classifier<C>> void ROCvalue(C model,
 			BinaryClassificationInstances insts,
-			ReceiverOperatingCharacteristic roc) {
+			ROCEvaluator roc) {
 		for (BinaryClassificationInstance x : insts) {
 			double pred = model.predict(x).getValue();
 			double label = x.getLabel().getValue();
@@ -229,7 +271,20 @@ public class ReceiverOperatingCharacteristic {
 	 */
 	public static double computeAUC(
 			Collection<PrimitivePair> labelsAndPredictions) {
-		ReceiverOperatingCharacteristic roc = new ReceiverOperatingCharacteristic();
+		return computeAUC(labelsAndPredictions,
+				new ReceiverOperatingCharacteristic());
+	}
+
+	/**
+	 * Compute auc with the given engine, eg a {@link HistogramROC} for an
+	 * approximation in bounded memory.
+	 *
+	 * @param labelsAndPredictions the labels and predictions
+	 * @param roc an empty evaluator
+	 * @return the double
+	 */
+	public static double computeAUC(
+			Collection<PrimitivePair> labelsAndPredictions, ROCEvaluator roc) {
 		for (PrimitivePair p : labelsAndPredictions)
 			roc.add(p.first, p.second);
 		return roc.binaryAUC();
@@ -243,29 +298,88 @@ public class ReceiverOperatingCharacteristic {
 	 */
 	public static double computeBrierScore(
 			Collection<PrimitivePair> labelsAndPredictions) {
-		ReceiverOperatingCharacteristic roc = new ReceiverOperatingCharacteristic();
+		return computeBrierScore(labelsAndPredictions,
+				new ReceiverOperatingCharacteristic());
+	}
+
+	/**
+	 * Compute brier score with the given engine.
+	 *
+	 * @param labelsAndPredictions the labels and predictions
+	 * @param roc an empty evaluator
+	 * @return the double
+	 */
+	public static double computeBrierScore(
+			Collection<PrimitivePair> labelsAndPredictions, ROCEvaluator roc) {
 		for (PrimitivePair p : labelsAndPredictions)
 			roc.add(p.first, p.second);
 		return roc.averagedBrierScore(25);
 	}
 
 	/**
-	 * The Class ExCompare.
+	 * the predictions of one class, growing as needed. labels are only stored
+	 * once one differs from the class's usual label.
 	 */
-	private class ExCompare implements Comparator<PrimitivePair> {
-		
-		/* (non-Javadoc)
-		 * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+	private static class Scores {
+		private final double usualLabel;
+		private double[] scores = new double[16];
+		private double[] labels;
+		private int size = 0;
+
+		Scores(double usualLabel) {
+			this.usualLabel = usualLabel;
+		}
+
+		void add(double label, double prediction) {
+			if (size == scores.length) {
+				int capacity = (int) Math.min(Integer.MAX_VALUE - 8, 2L * size);
+				checkArgument(capacity > size, "too many examples");
+				scores = Arrays.copyOf(scores, capacity);
+				if (labels != null)
+					labels = Arrays.copyOf(labels, capacity);
+			}
+			if (labels == null && label != usualLabel) {
+				labels = new double[scores.length];
+				Arrays.fill(labels, 0, size, usualLabel);
+			}
+			scores[size] = prediction;
+			if (labels != null)
+				labels[size] = label;
+			size++;
+		}
+
+		double label(int i) {
+			return labels == null ? usualLabel : labels[i];
+		}
+
+		void sort(int threads) {
+			PrimitiveSort.sort(scores, labels, 0, size, threads);
+		}
+
+		/**
+		 * the first index at or after i whose score isn't score.
 		 */
-		@Override
-		public int compare(PrimitivePair l1, PrimitivePair l2) {
-
-			if (l1.second > l2.second)
-				return 1;
-			else if (l1.second < l2.second)
-				return -1;
-			else
-				return 0;
+		int skip(int i, double score) {
+			while (i < size && Double.compare(scores[i], score) == 0)
+				i++;
+			return i;
+		}
+
+		double squaredError() {
+			double error = 0;
+			for (int i = 0; i < size; i++)
+				error += (scores[i] - label(i)) * (scores[i] - label(i));
+			return error;
+		}
+
+		void bin(double[] counts, double[] labelSums) {
+			for (int i = 0; i < size; i++) {
+				int bin = brierBin(scores[i], counts.length);
+				if (bin >= 0) {
+					counts[bin]++;
+					labelSums[bin] += label(i);
+				}
+			}
 		}
 	}
 }
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.evaluation;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * a multiset of scores answering "how many are below x" in O(log n) expected
+ * time, with insertion and removal in the same. scores can be any double, so
+ * ranks can't be fixed up front as a fenwick tree over a known range would
+ * need; instead this is a treap, a binary search tree balanced by random
+ * priorities, kept in parallel primitive arrays with the number of scores
+ * under each node. repeated scores share a node.
+ *
+ * @author jattenberg
+ */
+class ScoreRankTree implements Serializable {
+
+	private static final long serialVersionUID = -3154771090187262419L;
+
+	/** node 0 is the empty tree */
+	private double[] keys = new double[16];
+	private int[] priorities = new int[16];
+	private int[] left = new int[16];
+	private int[] right = new int[16];
+	/** times the node's score was inserted */
+	private int[] counts = new int[16];
+	/** scores in the subtree rooted at the node */
+	private int[] sums = new int[16];
+	private int root = 0;
+	private int nodes = 1;
+	/** removed nodes, chained through left */
+	private int free = 0;
+	private int seed = 0x2545F491;
+
+	/**
+	 * add a score.
+	 *
+	 * @param score
+	 *            the score
+	 */
+	void insert(double score) {
+		root = insert(root, key(score));
+	}
+
+	/**
+	 * remove one copy of a score.
+	 *
+	 * @param score
+	 *            the score, which must have been inserted
+	 */
+	void remove(double score) {
+		root = remove(root, key(score));
+	}
+
+	/**
+	 * @return the number of scores held
+	 */
+	int size() {
+		return sums[root];
+	}
+
+	/**
+	 * the number of scores less than a score, plus some fraction of those
+	 * equal to it.
+	 *
+	 * @param score
+	 *            the score
+	 * @param tieWeight
+	 *            weight given to scores equal to score
+	 * @return #{x < score} + tieWeight * #{x == score}
+	 */
+	double countBelow(double score, double tieWeight) {
+		score = key(score);
+		double below = 0;
+		int node = root;
+		while (node != 0) {
+			int comparison = Double.compare(score, keys[node]);
+			if (comparison < 0) {
+				node = left[node];
+			} else if (comparison > 0) {
+				below += sums[left[node]] + counts[node];
+				node = right[node];
+			} else {
+				return below + sums[left[node]] + tieWeight * counts[node];
+			}
+		}
+		return below;
+	}
+
+	/**
+	 * remove every score, keeping the storage.
+	 */
+	void clear() {
+		root = 0;
+		nodes = 1;
+		free = 0;
+	}
+
+	/**
+	 * -0 and 0 are the same score
+	 */
+	private static double key(double score) {
+		return score == 0 ? 0 : score;
+	}
+
+	private int insert(int node, double key) {
+		if (node == 0)
+			return allocate(key);
+		int comparison = Double.compare(key, keys[node]);
+		if (comparison == 0) {
+			counts[node]++;
+		} else if (comparison < 0) {
+			// allocating may replace the arrays, so recurse before indexing
+			int child = insert(left[node], key);
+			left[node] = child;
+			if (priorities[left[node]] > priorities[node])
+				node = rotateRight(node);
+		} else {
+			int child = insert(right[node], key);
+			right[node] = child;
+			if (priorities[right[node]] > priorities[node])
+				node = rotateLeft(node);
+		}
+		sums[node] = sums[left[node]] + sums[right[node]] + counts[node];
+		return node;
+	}
+
+	private int remove(int node, double key) {
+		if (node == 0)
+			throw new IllegalStateException("score " + key + " isn't present");
+		int comparison = Double.compare(key, keys[node]);
+		if (comparison < 0) {
+			left[node] = remove(left[node], key);
+		} else if (comparison > 0) {
+			right[node] = remove(right[node], key);
+		} else if (--counts[node] == 0) {
+			int merged = merge(left[node], right[node]);
+			left[node] = free;
+			free = node;
+			return merged;
+		}
+		sums[node] = sums[left[node]] + sums[right[node]] + counts[node];
+		return node;
+	}
+
+	/**
+	 * join two trees, every key in a below every key in b.
+	 */
+	private int merge(int a, int b) {
+		if (a == 0)
+			return b;
+		if (b == 0)
+			return a;
+		if (priorities[a] > priorities[b]) {
+			right[a] = merge(right[a], b);
+			sums[a] = sums[left[a]] + sums[right[a]] + counts[a];
+			return a;
+		} else {
+			left[b] = merge(a, left[b]);
+			sums[b] = sums[left[b]] + sums[right[b]] + counts[b];
+			return b;
+		}
+	}
+
+	private int rotateRight(int node) {
+		int pivot = left[node];
+		left[node] = right[pivot];
+		right[pivot] = node;
+		sums[node] = sums[left[node]] + sums[right[node]] + counts[node];
+		return pivot;
+	}
+
+	private int rotateLeft(int node) {
+		int pivot = right[node];
+		right[node] = left[pivot];
+		left[pivot] = node;
+		sums[node] = sums[left[node]] + sums[right[node]] + counts[node];
+		return pivot;
+	}
+
+	private int allocate(double key) {
+		int node;
+		if (free != 0) {
+			node = free;
+			free = left[node];
+		} else {
+			if (nodes == keys.length) {
+				int capacity = 2 * nodes;
+				keys = Arrays.copyOf(keys, capacity);
+				priorities = Arrays.copyOf(priorities, capacity);
+				left = Arrays.copyOf(left, capacity);
+				right = Arrays.copyOf(right, capacity);
+				counts = Arrays.copyOf(counts, capacity);
+				sums = Arrays.copyOf(sums, capacity);
+			}
+			node = nodes++;
+		}
+		// xorshift
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		keys[node] = key;
+		priorities[node] = seed;
+		left[node] = 0;
+		right[node] = 0;
+		counts[node] = 1;
+		sums[node] = 1;
+		return node;
+	}
+}
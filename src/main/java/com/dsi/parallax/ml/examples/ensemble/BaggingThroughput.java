@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.examples.ensemble;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang.time.StopWatch;
+
+import com.dsi.parallax.ml.classifier.Classifier;
+import com.dsi.parallax.ml.classifier.ensemble.BaggingEnsenbleClassifier;
+import com.dsi.parallax.ml.classifier.trees.ID3Builder;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
+import com.google.common.collect.Lists;
+
+/**
+ * compares bagging the way {@link BaggingEnsenbleClassifier} used to: models
+ * trained one after another on copied bags, predictions collected into a
+ * boxed list, with the ensemble's threaded training on bootstrap views and
+ * list-free prediction. reports training time, and prediction time and bytes
+ * allocated per prediction where the jvm can measure it.
+ * 
+ * usage: BaggingThroughput [instances] [threads] [models]
+ */
+public class BaggingThroughput {
+
+	private static final int DIMENSIONS = 20;
+
+	/**
+	 * The main method.
+	 * 
+	 * @param args
+	 *            the arguments
+	 */
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+				.getRuntime().availableProcessors();
+		int numModels = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		BinaryClassificationInstances instances = getInstances(size);
+		ID3Builder builder = new ID3Builder(DIMENSIONS, true).setMaxDepth(8)
+				.setMinExamples(20);
+
+		StopWatch sw = new StopWatch();
+		sw.start();
+		List<Classifier<?>> members = Lists.newArrayList();
+		for (int i = 0; i < numModels; i++) {
+			Classifier<?> member = builder.build();
+			member.train(instances.getBag().getBagInstances());
+			members.add(member);
+		}
+		sw.stop();
+		System.out.println("copied bags, sequential- train time(ms): "
+				+ sw.getTime());
+
+		sw.reset();
+		sw.start();
+		BaggingEnsenbleClassifier ensemble = new BaggingEnsenbleClassifier(
+				DIMENSIONS, true).setClassifierBuilder(builder)
+				.setNumModels(numModels).setThreads(threads).initialize();
+		ensemble.train(instances);
+		sw.stop();
+		System.out.println("bootstrap views, " + threads
+				+ " threads- train time(ms): " + sw.getTime());
+
+		// first pass warms up the jit; it isn't reported
+		for (int rep = 0; rep < 2; rep++) {
+			boolean warm = rep > 0;
+
+			long bytes = allocatedBytes();
+			sw.reset();
+			sw.start();
+			double checksum = 0;
+			for (BinaryClassificationInstance x : instances) {
+				List<Double> predictions = Lists.newArrayList();
+				for (Classifier<?> member : members)
+					predictions.add(member.predict(x).getValue());
+				double sum = 0;
+				for (int i = 0; i < predictions.size(); i++)
+					sum += predictions.get(i);
+				checksum += sum / predictions.size();
+			}
+			sw.stop();
+			if (warm)
+				report("boxed list", instances.size(), sw.getTime(),
+						allocatedBytes() - bytes, bytes, checksum);
+
+			bytes = allocatedBytes();
+			sw.reset();
+			sw.start();
+			checksum = 0;
+			for (BinaryClassificationInstance x : instances)
+				checksum += ensemble.predict(x).getValue();
+			sw.stop();
+			if (warm)
+				report("ensemble predict", instances.size(), sw.getTime(),
+						allocatedBytes() - bytes, bytes, checksum);
+
+			double[] predictions = new double[numModels];
+			bytes = allocatedBytes();
+			sw.reset();
+			sw.start();
+			checksum = 0;
+			for (BinaryClassificationInstance x : instances) {
+				ensemble.subPredictions(x, predictions);
+				checksum += predictions[0];
+			}
+			sw.stop();
+			if (warm)
+				report("primitive sub predictions", instances.size(),
+						sw.getTime(), allocatedBytes() - bytes, bytes,
+						checksum);
+		}
+	}
+
+	private static BinaryClassificationInstances getInstances(int size) {
+		Random random = new Random(1);
+		BinaryClassificationInstances insts = new BinaryClassificationInstances(
+				DIMENSIONS);
+		for (int i = 0; i < size; i++) {
+			double[] values = new double[DIMENSIONS];
+			for (int dim = 0; dim < DIMENSIONS; dim++)
+				values[dim] = random.nextGaussian();
+			double label = values[0] + values[1] * values[2]
+					+ random.nextGaussian() > 0 ? 1 : 0;
+			insts.addInstance(new BinaryClassificationInstance(label, values));
+		}
+		return insts;
+	}
+
+	// bytes allocated by this thread so far, or -1 if the jvm can't say
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+			if (sun.isThreadAllocatedMemorySupported()
+					&& sun.isThreadAllocatedMemoryEnabled())
+				return sun.getThreadAllocatedBytes(Thread.currentThread()
+						.getId());
+		}
+		return -1;
+	}
+
+	private static void report(String name, int predictions, long millis,
+			long bytes, long start, double checksum) {
+		System.out.println(name + "- predictions: " + predictions
+				+ " time(ms): " + millis + " bytes/prediction: "
+				+ (start < 0 ? "n/a" : "" + bytes / predictions)
+				+ " checksum: " + checksum);
+	}
+}
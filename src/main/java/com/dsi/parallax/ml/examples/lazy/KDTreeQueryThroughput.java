@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.examples.lazy;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang.time.StopWatch;
+
+import com.dsi.parallax.ml.util.FlatKDTree;
+import com.dsi.parallax.ml.util.KDTree;
+import com.dsi.parallax.ml.util.KDTree.Entry;
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.ml.vector.LinearVectorFactory;
+import com.google.common.collect.Lists;
+
+/**
+ * measures k nearest neighbor queries per second against squared euclidean
+ * kd-trees of uniform random points, running the same batch of queries with
+ * 1, 2, 4 ... up to the given number of threads via
+ * {@link KDTree#nearestNeighbors(List, int, boolean, int)}. both the linked
+ * {@link KDTree.SqrEuclid} and the bulk built {@link FlatKDTree} are measured,
+ * along with the mean latency of a single query.
+ *
+ * usage: KDTreeQueryThroughput [points] [dimensions] [queries] [k] [threads]
+ */
+public class KDTreeQueryThroughput {
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the arguments
+	 */
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int dimensions = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int queries = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+		int k = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime
+				.getRuntime().availableProcessors();
+
+		Random random = new Random(1);
+		List<LinearVector> points = Lists.newArrayList();
+		for (int i = 0; i < size; i++)
+			points.add(randomPoint(random, dimensions));
+		List<LinearVector> batch = Lists.newArrayList();
+		for (int i = 0; i < queries; i++)
+			batch.add(randomPoint(random, dimensions));
+
+		run("linked", new KDTree.SqrEuclid<Integer>(dimensions, null), points,
+				batch, k, threads);
+		run("flat", new FlatKDTree<Integer>(dimensions, null,
+				FlatKDTree.Metric.SQREUCLID), points, batch, k, threads);
+	}
+
+	private static void run(String name, KDTree<Integer> tree,
+			List<LinearVector> points, List<LinearVector> batch, int k,
+			int threads) {
+		StopWatch sw = new StopWatch();
+		sw.start();
+		for (int i = 0; i < points.size(); i++)
+			tree.addPoint(points.get(i), i);
+		if (tree instanceof FlatKDTree)
+			((FlatKDTree<Integer>) tree).rebuild();
+		sw.stop();
+		System.out.println(name + "- built tree of " + points.size()
+				+ " points, time(ms): " + sw.getTime());
+
+		// warm up the jit before anything is reported
+		tree.nearestNeighbors(batch.subList(0, Math.min(1000, batch.size())),
+				k, false, 1);
+
+		for (int t = 1; t <= threads; t = t < threads ? Math.min(2 * t,
+				threads) : t + 1) {
+			sw.reset();
+			sw.start();
+			List<List<Entry<Integer>>> results = tree.nearestNeighbors(batch,
+					k, false, t);
+			sw.stop();
+			double checksum = 0;
+			for (List<Entry<Integer>> neighbors : results)
+				for (Entry<Integer> entry : neighbors)
+					checksum += entry.distance;
+			long millis = Math.max(1, sw.getTime());
+			System.out.println(name + "- threads: " + t + " time(ms): "
+					+ sw.getTime() + " queries/s: " + 1000. * batch.size()
+					/ millis + " latency(us): " + 1000. * millis * t
+					/ batch.size() + " checksum: " + checksum);
+		}
+	}
+
+	private static LinearVector randomPoint(Random random, int dimensions) {
+		double[] values = new double[dimensions];
+		for (int d = 0; d < dimensions; d++)
+			values[d] = random.nextDouble();
+		return LinearVectorFactory.getDenseVector(values);
+	}
+}
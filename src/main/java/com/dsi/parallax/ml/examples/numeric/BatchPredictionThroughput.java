@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.examples.numeric;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang.time.StopWatch;
+
+import com.dsi.parallax.ml.classifier.AbstractClassifier;
+import com.dsi.parallax.ml.classifier.linear.optimizable.GradientUpdateableLogisticRegression;
+import com.dsi.parallax.ml.classifier.linear.updateable.LogisticRegression;
+import com.dsi.parallax.ml.classifier.trees.ID3TreeClassifier;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
+import com.google.common.collect.Lists;
+
+/**
+ * compares scoring instances one at a time through predict with
+ * {@link AbstractClassifier#predictBatch} on one thread and on several, for a
+ * couple of linear models and a decision tree. each model is trained on a
+ * small sample and then scores a larger synthetic batch.
+ *
+ * usage: BatchPredictionThroughput [instances] [threads]
+ */
+public class BatchPredictionThroughput {
+
+	private static final int DIMENSIONS = 50;
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the arguments
+	 */
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+				.getRuntime().availableProcessors();
+
+		BinaryClassificationInstances training = getInstances(10000, 1);
+		BinaryClassificationInstances scoring = getInstances(size, 2);
+
+		List<AbstractClassifier<?>> models = Lists.newArrayList();
+		models.add(new LogisticRegression(DIMENSIONS, true));
+		models.add(new GradientUpdateableLogisticRegression(DIMENSIONS, true));
+		models.add(new ID3TreeClassifier(DIMENSIONS, true).setMaxDepth(12));
+		for (AbstractClassifier<?> model : models) {
+			model.initialize();
+			model.train(training);
+			run(model, scoring, threads);
+		}
+	}
+
+	private static void run(AbstractClassifier<?> model,
+			BinaryClassificationInstances scoring, int threads) {
+		String name = model.getClass().getSimpleName();
+		StopWatch sw = new StopWatch();
+		// first pass warms up the jit; it isn't reported
+		for (int rep = 0; rep < 2; rep++) {
+			boolean warm = rep > 0;
+
+			sw.reset();
+			sw.start();
+			double checksum = 0;
+			for (BinaryClassificationInstance x : scoring)
+				checksum += model.predict(x).getValue();
+			sw.stop();
+			if (warm)
+				report(name + ", predict", scoring.size(), sw.getTime(),
+						checksum);
+
+			for (int t : threads > 1 ? new int[] { 1, threads }
+					: new int[] { 1 }) {
+				model.setPredictionThreads(t);
+				sw.reset();
+				sw.start();
+				double[] predictions = model.predictBatch(scoring);
+				sw.stop();
+				checksum = 0;
+				for (double prediction : predictions)
+					checksum += prediction;
+				if (warm)
+					report(name + ", predictBatch " + t + " threads",
+							scoring.size(), sw.getTime(), checksum);
+			}
+		}
+	}
+
+	private static BinaryClassificationInstances getInstances(int size,
+			long seed) {
+		Random random = new Random(seed);
+		BinaryClassificationInstances insts = new BinaryClassificationInstances(
+				DIMENSIONS);
+		for (int i = 0; i < size; i++) {
+			double[] values = new double[DIMENSIONS];
+			for (int dim = 0; dim < DIMENSIONS; dim++)
+				values[dim] = random.nextGaussian();
+			double label = values[0] + values[1] * values[2]
+					+ random.nextGaussian() > 0 ? 1 : 0;
+			insts.addInstance(new BinaryClassificationInstance(label, values));
+		}
+		return insts;
+	}
+
+	private static void report(String name, int predictions, long millis,
+			double checksum) {
+		System.out.println(name + "- predictions: " + predictions
+				+ " time(ms): " + millis + " us/prediction: " + 1000.
+				* millis / predictions + " checksum: " + checksum);
+	}
+}
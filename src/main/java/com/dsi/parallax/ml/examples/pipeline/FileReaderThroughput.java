@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.examples.pipeline;
+
+import com.dsi.parallax.pipeline.file.BufferedReaderIterable;
+import com.dsi.parallax.pipeline.file.MemoryMappedFileReaderIterable;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang.time.StopWatch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * compares the line throughput of {@link BufferedReaderIterable},
+ * {@link MemoryMappedFileReaderIterable} and regions from
+ * {@link MemoryMappedFileReaderIterable#split(File, int)} read by several
+ * threads. all readers decode UTF-8. each reader also computes a line count
+ * and checksum, which must agree across readers. point it at a large file to
+ * get meaningful numbers.
+ *
+ * usage: FileReaderThroughput [file] [threads] [repetitions]
+ */
+public class FileReaderThroughput {
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the arguments
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		File file = new File(args.length > 0 ? args[0]
+				: "data/science.small.vw");
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+				.getRuntime().availableProcessors();
+		int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		// first pass warms up the jit and the page cache; it isn't reported
+		for (int rep = 0; rep <= repetitions; rep++) {
+			boolean warm = rep > 0;
+
+			StopWatch sw = new StopWatch();
+			sw.start();
+			long[] buffered = scan(new BufferedReaderIterable(
+					new BufferedReader(new InputStreamReader(
+							new FileInputStream(file), "UTF-8"))));
+			sw.stop();
+			if (warm)
+				report("buffered reader", file, buffered, sw.getTime());
+
+			sw.reset();
+			sw.start();
+			long[] mapped = scan(new MemoryMappedFileReaderIterable(file));
+			sw.stop();
+			if (warm)
+				report("memory mapped", file, mapped, sw.getTime());
+
+			sw.reset();
+			sw.start();
+			long[] split = scanSplit(file, threads);
+			sw.stop();
+			if (warm)
+				report("memory mapped, split (" + threads + " threads)", file,
+						split, sw.getTime());
+
+			if (buffered[0] != mapped[0] || buffered[1] != mapped[1]
+					|| buffered[0] != split[0] || buffered[1] != split[1])
+				throw new IllegalStateException(
+						"readers disagree on the contents of " + file);
+		}
+	}
+
+	// line count and an order independent checksum of the lines
+	private static long[] scan(Iterable<String> lines) {
+		long count = 0;
+		long checksum = 0;
+		for (String line : lines) {
+			count++;
+			checksum += line.hashCode();
+		}
+		return new long[] { count, checksum };
+	}
+
+	private static long[] scanSplit(File file, int threads)
+			throws IOException, InterruptedException, ExecutionException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<long[]>> futures = Lists.newArrayList();
+			for (final MemoryMappedFileReaderIterable region : MemoryMappedFileReaderIterable
+					.split(file, threads)) {
+				futures.add(executor.submit(new Callable<long[]>() {
+					@Override
+					public long[] call() {
+						return scan(region);
+					}
+				}));
+			}
+			long[] total = new long[2];
+			for (Future<long[]> future : futures) {
+				long[] part = future.get();
+				total[0] += part[0];
+				total[1] += part[1];
+			}
+			return total;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void report(String name, File file, long[] result,
+			long millis) {
+		double seconds = Math.max(millis, 1) / 1000.;
+		System.out.println(name + "- lines: " + result[0] + " time(ms): "
+				+ millis + " lines/sec: " + (result[0] / seconds) + " MB/sec: "
+				+ (file.length() / (1024. * 1024.) / seconds));
+	}
+}
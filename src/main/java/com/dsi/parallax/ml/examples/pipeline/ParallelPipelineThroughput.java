@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.examples.pipeline;
+
+import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
+import com.dsi.parallax.ml.target.BinaryTargetNumericParser;
+import com.dsi.parallax.ml.vector.util.ValueScaling;
+import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.FileSource;
+import com.dsi.parallax.pipeline.Pipeline;
+import com.dsi.parallax.pipeline.ValueScalingPipe;
+import com.dsi.parallax.pipeline.file.FileToLinesPipe;
+import com.dsi.parallax.pipeline.instance.BinaryInstancesFromVectorPipe;
+import com.dsi.parallax.pipeline.text.*;
+import org.apache.commons.lang.time.StopWatch;
+
+import java.io.File;
+import java.util.Iterator;
+
+/**
+ * compares the throughput of the serial {@link Pipeline#process()} with
+ * {@link Pipeline#processBatched(int)} and
+ * {@link Pipeline#processParallel(int, int, boolean)} on a VW to instances
+ * pipeline. point it at a large VW file to get meaningful numbers.
+ *
+ * usage: ParallelPipelineThroughput [vw file] [threads] [repetitions]
+ */
+public class ParallelPipelineThroughput {
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the arguments
+	 */
+	public static void main(String[] args) {
+		String filename = args.length > 0 ? args[0] : "data/science.small.vw";
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+				.getRuntime().availableProcessors();
+		int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		int dimensions = (int) Math.pow(2, 18);
+
+		for (int rep = 0; rep < repetitions; rep++) {
+			report("serial", drain(buildPipeline(filename, dimensions)
+					.process()));
+			report("serial, batched",
+					drain(buildPipeline(filename, dimensions).processBatched(
+							256)));
+			report("parallel, ordered (" + threads + " threads)",
+					drain(buildPipeline(filename, dimensions).processParallel(
+							threads, 1024, true)));
+			report("parallel, unordered (" + threads + " threads)",
+					drain(buildPipeline(filename, dimensions).processParallel(
+							threads, 1024, false)));
+		}
+	}
+
+	private static Pipeline<File, BinaryClassificationInstance> buildPipeline(
+			String filename, int dimensions) {
+		return Pipeline
+				.newPipeline(new FileSource(filename))
+				.addPipe(new FileToLinesPipe())
+				.addPipe(new StringToVWPipe())
+				.addPipe(new VWtoLabeledStringPipe())
+				.addPipe(new TextSanitizerPipe())
+				.addPipe(new StringToTokenSequencePipe())
+				.addPipe(new StringSequenceToNGramsPipe(new int[] { 1, 2 }))
+				.addPipe(new StringSequenceToNumericDictionaryPipe(dimensions))
+				.addPipe(new ValueScalingPipe(ValueScaling.ABS))
+				.addPipe(new ValueScalingPipe(ValueScaling.PRESERVING))
+				.addPipe(
+						new BinaryInstancesFromVectorPipe(
+								new BinaryTargetNumericParser()));
+	}
+
+	private static long[] drain(
+			Iterator<Context<BinaryClassificationInstance>> it) {
+		StopWatch sw = new StopWatch();
+		sw.start();
+		long records = 0;
+		while (it.hasNext()) {
+			it.next();
+			records++;
+		}
+		sw.stop();
+		return new long[] { records, sw.getTime() };
+	}
+
+	private static void report(String name, long[] result) {
+		double seconds = Math.max(result[1], 1) / 1000.;
+		System.out.println(name + "- records: " + result[0] + " time(ms): "
+				+ result[1] + " records/sec: " + (result[0] / seconds));
+	}
+}
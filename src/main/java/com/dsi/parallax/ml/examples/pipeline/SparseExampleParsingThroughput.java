@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.examples.pipeline;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.apache.commons.lang.time.StopWatch;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.FileSource;
+import com.dsi.parallax.pipeline.Pipe;
+import com.dsi.parallax.pipeline.Pipeline;
+import com.dsi.parallax.pipeline.file.LargeFileToLabeledVectorsPipe;
+import com.dsi.parallax.pipeline.file.LargeFileToLinesPipe;
+import com.dsi.parallax.pipeline.file.MappedLineReader;
+import com.dsi.parallax.pipeline.text.NumericVWToLabeledVectorPipe;
+import com.dsi.parallax.pipeline.text.SVMLightToLabeledVectorPipe;
+import com.dsi.parallax.pipeline.text.SparseExampleFormat;
+import com.dsi.parallax.pipeline.text.SparseExampleParser;
+
+/**
+ * compares the records per second of reading labeled vectors from VW and
+ * SVMLight files with {@link LargeFileToLinesPipe} followed by
+ * {@link NumericVWToLabeledVectorPipe} or {@link SVMLightToLabeledVectorPipe},
+ * against {@link LargeFileToLabeledVectorsPipe}, which parses the mapped bytes
+ * in place, and against a bare {@link SparseExampleParser} over a
+ * {@link MappedLineReader}, which builds no vectors. the files are generated,
+ * without repeated feature indices so every reader sees the same features;
+ * each run computes a checksum, which must agree.
+ *
+ * usage: SparseExampleParsingThroughput [examples] [features per example]
+ * [repetitions]
+ */
+public class SparseExampleParsingThroughput {
+
+	private static final int DIMENSIONS = (int) Math.pow(2, 20);
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the arguments
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int examples = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int features = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+		int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		for (SparseExampleFormat format : SparseExampleFormat.values()) {
+			File file = generate(format, examples, features);
+			System.out.println(format + ": " + file.length() / (1024 * 1024)
+					+ "MB");
+			// first pass warms up the jit and the page cache; it isn't reported
+			for (int rep = 0; rep <= repetitions; rep++) {
+				boolean warm = rep > 0;
+
+				StopWatch sw = new StopWatch();
+				sw.start();
+				long strings = checksum(strings(file, format));
+				sw.stop();
+				if (warm)
+					report("string pipes", examples, sw.getTime());
+
+				sw.reset();
+				sw.start();
+				long bytes = checksum(bytes(file, format));
+				sw.stop();
+				if (warm)
+					report("byte pipe", examples, sw.getTime());
+
+				sw.reset();
+				sw.start();
+				long parsed = parse(file, format);
+				sw.stop();
+				if (warm)
+					report("parser only", examples, sw.getTime());
+
+				if (strings != bytes || strings != parsed)
+					throw new IllegalStateException(
+							"readers disagree on the contents of " + file);
+			}
+		}
+	}
+
+	private static File generate(SparseExampleFormat format, int examples,
+			int features) throws IOException {
+		File file = File.createTempFile("examples", "." + format);
+		file.deleteOnExit();
+		Random random = new Random(1);
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8"));
+		try {
+			for (int i = 0; i < examples; i++) {
+				out.write(random.nextBoolean() ? "1" : "-1");
+				if (format == SparseExampleFormat.VW)
+					out.write(" |");
+				int index = 0;
+				for (int f = 0; f < features; f++) {
+					index += 1 + random.nextInt(DIMENSIONS / features - 1);
+					out.write(" " + index + ":" + random.nextFloat());
+				}
+				out.write("\n");
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static Iterator<Context<LinearVector>> strings(File file,
+			SparseExampleFormat format) {
+		Pipe<String, LinearVector> parser = format == SparseExampleFormat.VW ? new NumericVWToLabeledVectorPipe(
+				DIMENSIONS) : new SVMLightToLabeledVectorPipe(DIMENSIONS);
+		return Pipeline.newPipeline(new FileSource(file))
+				.addPipe(new LargeFileToLinesPipe()).addPipe(parser).process();
+	}
+
+	private static Iterator<Context<LinearVector>> bytes(File file,
+			SparseExampleFormat format) {
+		return Pipeline.newPipeline(new FileSource(file))
+				.addPipe(new LargeFileToLabeledVectorsPipe(format, DIMENSIONS))
+				.process();
+	}
+
+	// checksum of the labels and features of every vector, in file order;
+	// features are summed, as vectors don't iterate in insertion order
+	private static long checksum(Iterator<Context<LinearVector>> vectors) {
+		long checksum = 0;
+		while (vectors.hasNext()) {
+			Context<LinearVector> context = vectors.next();
+			LinearVector vector = context.getData();
+			long features = 0;
+			for (int index : vector)
+				features += feature(index, vector.getValue(index));
+			checksum = 31 * (31 * checksum + context.getLabel().hashCode())
+					+ features;
+		}
+		return checksum;
+	}
+
+	private static long feature(int index, double value) {
+		return index * 17L + Double.doubleToLongBits(value);
+	}
+
+	// the same checksum, straight from the parser's arrays
+	private static long parse(File file, SparseExampleFormat format)
+			throws IOException {
+		MappedLineReader reader = new MappedLineReader(file);
+		SparseExampleParser parser = new SparseExampleParser(format);
+		long checksum = 0;
+		while (reader.next()) {
+			if (!parser.parse(reader.getBuffer(), 0, reader.getLength()))
+				continue;
+			long features = 0;
+			for (int k = 0; k < parser.size(); k++)
+				features += feature(parser.getIndex(k), parser.getValue(k));
+			checksum = 31 * (31 * checksum + parser.getLabel().hashCode())
+					+ features;
+		}
+		return checksum;
+	}
+
+	private static void report(String name, int records, long millis) {
+		double seconds = Math.max(millis, 1) / 1000.;
+		System.out.println(name + "- records: " + records + " time(ms): "
+				+ millis + " records/sec: " + (records / seconds));
+	}
+}
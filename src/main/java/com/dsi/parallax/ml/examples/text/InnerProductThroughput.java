@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.examples.text;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.lang.time.StopWatch;
+
+import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.vector.LinearVectorFactory;
+import com.google.common.collect.Lists;
+
+/**
+ * compares the inner products and distances in {@link Instance}, which merge
+ * sorted primitive feature views, against the way they used to be computed:
+ * a HashSet of boxed indices per call and a getFeatureValue lookup per
+ * index. runs every pair of a set of zipf-distributed bag-of-words vectors,
+ * then dense vectors, and reports time and bytes allocated per pair where the
+ * jvm can measure it.
+ *
+ * usage: InnerProductThroughput [instances] [words per instance]
+ */
+public class InnerProductThroughput {
+
+	private static final int DIMENSIONS = (int) Math.pow(2, 18);
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the arguments
+	 */
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int words = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+		List<BinaryClassificationInstance> text = getTextInstances(size, words);
+		compare("sparse text", text);
+		compare("dense", getDenseInstances(size / 4, 50));
+	}
+
+	private static void compare(String name,
+			List<BinaryClassificationInstance> insts) {
+		long pairs = (long) insts.size() * insts.size();
+		StopWatch sw = new StopWatch();
+		// first pass warms up the jit and builds the feature views; it isn't
+		// reported
+		for (int rep = 0; rep < 2; rep++) {
+			boolean warm = rep > 0;
+
+			long bytes = allocatedBytes();
+			sw.reset();
+			sw.start();
+			double checksum = 0;
+			for (Instance<?> x : insts)
+				for (Instance<?> y : insts)
+					checksum += hashSetInnerProduct(x, y);
+			sw.stop();
+			if (warm)
+				report(name + ", hash set inner product", pairs, sw.getTime(),
+						allocatedBytes() - bytes, bytes, checksum);
+
+			bytes = allocatedBytes();
+			sw.reset();
+			sw.start();
+			checksum = 0;
+			for (Instance<?> x : insts)
+				for (Instance<?> y : insts)
+					checksum += Instance.innerProduct(x, y);
+			sw.stop();
+			if (warm)
+				report(name + ", merged inner product", pairs, sw.getTime(),
+						allocatedBytes() - bytes, bytes, checksum);
+
+			bytes = allocatedBytes();
+			sw.reset();
+			sw.start();
+			checksum = 0;
+			for (Instance<?> x : insts)
+				for (Instance<?> y : insts)
+					checksum += hashSetLNdist(x, y, 2);
+			sw.stop();
+			if (warm)
+				report(name + ", hash set L2 distance", pairs, sw.getTime(),
+						allocatedBytes() - bytes, bytes, checksum);
+
+			bytes = allocatedBytes();
+			sw.reset();
+			sw.start();
+			checksum = 0;
+			for (Instance<?> x : insts)
+				for (Instance<?> y : insts)
+					checksum += Instance.computeLNdist(x, y, 2);
+			sw.stop();
+			if (warm)
+				report(name + ", merged L2 distance", pairs, sw.getTime(),
+						allocatedBytes() - bytes, bytes, checksum);
+		}
+	}
+
+	// what Instance.innerProduct used to do
+	private static double hashSetInnerProduct(Instance<?> x, Instance<?> y) {
+		double tot = 0;
+		Set<Integer> seen = new HashSet<Integer>();
+		for (int i : x) {
+			tot += x.getFeatureValue(i) * y.getFeatureValue(i);
+			seen.add(i);
+		}
+		for (int i : y) {
+			if (!seen.contains(i))
+				tot += y.getFeatureValue(i) * x.getFeatureValue(i);
+		}
+		return tot;
+	}
+
+	// what Instance.computeLNdist used to do
+	private static double hashSetLNdist(Instance<?> x, Instance<?> y, double n2) {
+		double tot = 0;
+		Set<Integer> indexSet = new HashSet<Integer>();
+		for (int i : x) {
+			indexSet.add(i);
+			tot += Math.pow(
+					Math.abs(x.getFeatureValue(i) - y.getFeatureValue(i)), n2);
+		}
+		for (int i : y) {
+			if (!indexSet.contains(i))
+				tot += Math.pow(
+						Math.abs(x.getFeatureValue(i) - y.getFeatureValue(i)),
+						n2);
+		}
+		return Math.pow(tot, 1. / n2);
+	}
+
+	/**
+	 * word counts drawn from a zipf distribution over hashed word indices.
+	 */
+	private static List<BinaryClassificationInstance> getTextInstances(
+			int size, int words) {
+		Random random = new Random(1);
+		int vocabulary = 50000;
+		double[] cumulative = new double[vocabulary];
+		double total = 0;
+		for (int rank = 0; rank < vocabulary; rank++) {
+			total += 1. / (rank + 1);
+			cumulative[rank] = total;
+		}
+		int[] hashes = new int[vocabulary];
+		for (int rank = 0; rank < vocabulary; rank++)
+			hashes[rank] = random.nextInt(DIMENSIONS);
+
+		List<BinaryClassificationInstance> insts = Lists.newArrayList();
+		for (int i = 0; i < size; i++) {
+			BinaryClassificationInstance inst = new BinaryClassificationInstance(
+					DIMENSIONS);
+			for (int w = 0; w < words; w++) {
+				int rank = Arrays.binarySearch(cumulative,
+						random.nextDouble() * total);
+				rank = rank < 0 ? Math.min(-rank - 1, vocabulary - 1) : rank;
+				inst.addFeature(hashes[rank], 1);
+			}
+			insts.add(inst);
+		}
+		return insts;
+	}
+
+	private static List<BinaryClassificationInstance> getDenseInstances(
+			int size, int dimensions) {
+		Random random = new Random(2);
+		List<BinaryClassificationInstance> insts = Lists.newArrayList();
+		for (int i = 0; i < size; i++) {
+			double[] values = new double[dimensions];
+			for (int dim = 0; dim < dimensions; dim++)
+				values[dim] = random.nextGaussian();
+			insts.add(new BinaryClassificationInstance(LinearVectorFactory
+					.getDenseVector(values)));
+		}
+		return insts;
+	}
+
+	// bytes allocated by this thread so far, or -1 if the jvm can't say
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+			if (sun.isThreadAllocatedMemorySupported()
+					&& sun.isThreadAllocatedMemoryEnabled())
+				return sun.getThreadAllocatedBytes(Thread.currentThread()
+						.getId());
+		}
+		return -1;
+	}
+
+	private static void report(String name, long pairs, long millis,
+			long bytes, long start, double checksum) {
+		System.out.println(name + "- pairs: " + pairs + " time(ms): "
+				+ millis + " bytes/pair: "
+				+ (start < 0 ? "n/a" : "" + bytes / pairs) + " checksum: "
+				+ checksum);
+	}
+}
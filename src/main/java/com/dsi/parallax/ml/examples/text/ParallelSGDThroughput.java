@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.examples.text;
+
+import java.util.List;
+
+import org.apache.commons.lang.time.StopWatch;
+
+import com.dsi.parallax.ml.classifier.linear.updateable.AbstractLinearUpdateableClassifier;
+import com.dsi.parallax.ml.classifier.linear.updateable.LogisticRegression;
+import com.dsi.parallax.ml.classifier.linear.updateable.PassiveAggressive;
+import com.dsi.parallax.ml.evaluation.OnlineEvaluation;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
+import com.dsi.parallax.pipeline.precompiled.VWtoBinaryInstancesPipeline;
+import com.google.common.collect.Lists;
+
+/**
+ * compares serial sgd with lock-free training on several threads for the
+ * linear updateable models that support it. each model is trained one epoch
+ * at a time on 4/5 of a vw formatted text file, reporting the time per epoch
+ * and the AUC and accuracy on the held out 1/5 after each epoch, so
+ * convergence can be compared as well as speed.
+ *
+ * usage: ParallelSGDThroughput [vw file] [threads] [epochs]
+ */
+public class ParallelSGDThroughput {
+
+	private static final int DIMENSIONS = (int) Math.pow(2, 18);
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the arguments
+	 */
+	public static void main(String[] args) {
+		String file = args.length > 0 ? args[0] : "data/science.small.vw";
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+				.getRuntime().availableProcessors();
+		int epochs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		BinaryClassificationInstances insts = new VWtoBinaryInstancesPipeline(
+				file, DIMENSIONS).next();
+		BinaryClassificationInstances training = insts.getTraining(0, 5);
+		BinaryClassificationInstances testing = insts.getTesting(0, 5);
+
+		for (int t : threads > 1 ? new int[] { 1, threads } : new int[] { 1 }) {
+			List<AbstractLinearUpdateableClassifier<?>> models = Lists
+					.newArrayList();
+			models.add(new LogisticRegression(DIMENSIONS, true).setThreads(t));
+			models.add(new PassiveAggressive(DIMENSIONS, true).setThreads(t));
+			for (AbstractLinearUpdateableClassifier<?> model : models)
+				run(model, training, testing, epochs);
+		}
+	}
+
+	private static void run(AbstractLinearUpdateableClassifier<?> model,
+			BinaryClassificationInstances training,
+			BinaryClassificationInstances testing, int epochs) {
+		String name = model.getClass().getSimpleName() + ", "
+				+ model.getThreads() + " threads";
+		StopWatch sw = new StopWatch();
+		long total = 0;
+		for (int epoch = 1; epoch <= epochs; epoch++) {
+			sw.reset();
+			sw.start();
+			model.updateModel(training);
+			sw.stop();
+			total += sw.getTime();
+
+			OnlineEvaluation eval = new OnlineEvaluation();
+			eval.add(testing, model);
+			System.out.println(name + "- epoch: " + epoch + " time(ms): "
+					+ sw.getTime() + " AUC: " + eval.computeAUC()
+					+ " accuracy: " + eval.computeAccuracy());
+		}
+		System.out.println(name + "- mean time per epoch(ms): "
+				+ (double) total / epochs);
+	}
+}
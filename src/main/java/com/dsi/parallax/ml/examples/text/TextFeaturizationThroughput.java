@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.examples.text;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.lang.time.StopWatch;
+
+import com.dsi.parallax.ml.dictionary.HashDictionary;
+import com.dsi.parallax.ml.util.HashFunctionType;
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.text.StringSequenceStopWordsFilterPipe;
+import com.dsi.parallax.pipeline.text.StringSequenceToNGramsPipe;
+import com.dsi.parallax.pipeline.text.StringSequenceToNumericDictionaryPipe;
+import com.dsi.parallax.pipeline.text.StringToTokenSequencePipe;
+import com.dsi.parallax.pipeline.text.TextSanitizerPipe;
+import com.dsi.parallax.pipeline.text.TextToHashedVectorPipe;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+/**
+ * compares the records per second of the text featurization chain
+ * sanitize, tokenize, drop stop words, form uni- and bigrams and hash, against
+ * {@link TextToHashedVectorPipe} doing the same in one pass, for the java and
+ * murmur hashes. each run computes a checksum of the vectors, which must agree
+ * between the two. the lines of the file are repeated to make a larger corpus.
+ *
+ * usage: TextFeaturizationThroughput [file] [copies of the file] [repetitions]
+ */
+public class TextFeaturizationThroughput {
+
+	private static final int DIMENSIONS = (int) Math.pow(2, 18);
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the arguments
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		File file = new File(args.length > 0 ? args[0]
+				: "data/science.small.vw");
+		int copies = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		List<String> lines = Files.readLines(file, Charset.forName("UTF-8"));
+		List<String> corpus = Lists.newArrayList();
+		for (int copy = 0; copy < copies; copy++)
+			corpus.addAll(lines);
+
+		for (HashFunctionType type : new HashFunctionType[] {
+				HashFunctionType.JAVA, HashFunctionType.MURMUR3 }) {
+			HashDictionary dict = new HashDictionary(DIMENSIONS, false, type);
+			// first pass warms up the jit; it isn't reported
+			for (int rep = 0; rep <= repetitions; rep++) {
+				boolean warm = rep > 0;
+
+				List<Context<String>> contexts = contexts(corpus);
+				StopWatch sw = new StopWatch();
+				sw.start();
+				long chain = checksum(chain(dict, contexts));
+				sw.stop();
+				if (warm)
+					report("chain, " + type, corpus.size(), sw.getTime());
+
+				contexts = contexts(corpus);
+				sw.reset();
+				sw.start();
+				long fused = checksum(fused(dict, contexts));
+				sw.stop();
+				if (warm)
+					report("fused, " + type, corpus.size(), sw.getTime());
+
+				if (chain != fused)
+					throw new IllegalStateException(
+							"fused pipe disagrees with the chain for " + type);
+			}
+		}
+	}
+
+	// pipes reuse the context they are given, so each run needs its own
+	private static List<Context<String>> contexts(List<String> corpus) {
+		List<Context<String>> contexts = Lists
+				.newArrayListWithCapacity(corpus.size());
+		for (String line : corpus)
+			contexts.add(new Context<String>(line));
+		return contexts;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Iterator<Context<LinearVector>> chain(HashDictionary dict,
+			List<Context<String>> corpus) {
+		Iterator<Context<List<String>>> tokens = new StringToTokenSequencePipe()
+				.processIterator(new TextSanitizerPipe()
+						.processIterator(corpus.iterator()));
+		tokens = new StringSequenceStopWordsFilterPipe()
+				.processIterator(tokens);
+		tokens = new StringSequenceToNGramsPipe(new int[] { 1, 2 })
+				.processIterator(tokens);
+		return new StringSequenceToNumericDictionaryPipe(dict)
+				.processIterator(tokens);
+	}
+
+	private static Iterator<Context<LinearVector>> fused(HashDictionary dict,
+			List<Context<String>> corpus) {
+		return new TextToHashedVectorPipe(dict).setStopWords().setNGrams(1, 2)
+				.processIterator(corpus.iterator());
+	}
+
+	// order dependent checksum of the features of every vector
+	private static long checksum(Iterator<Context<LinearVector>> vectors) {
+		long checksum = 0;
+		while (vectors.hasNext()) {
+			LinearVector vector = vectors.next().getData();
+			for (int index : vector.getFeatureIndicies())
+				checksum = 31 * checksum + index * 17
+						+ Double.doubleToLongBits(vector.getValue(index));
+		}
+		return checksum;
+	}
+
+	private static void report(String name, int records, long millis) {
+		double seconds = Math.max(millis, 1) / 1000.;
+		System.out.println(name + "- records: " + records + " time(ms): "
+				+ millis + " records/sec: " + (records / seconds));
+	}
+}
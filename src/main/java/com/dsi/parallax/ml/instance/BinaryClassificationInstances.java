@@ -157,6 +157,26 @@ public class BinaryClassificationInstances extends
 		return new BinaryClassificationInstances(dimensions, instances);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.parallax.ml.instance.Instances#makeView(java.util.List)
+	 */
+	@Override
+	protected Instances<BinaryClassificationInstance> makeView(
+			List<BinaryClassificationInstance> view) {
+		BinaryClassificationInstances out = new BinaryClassificationInstances(
+				dimensions);
+		out.instances = view;
+		for (BinaryClassificationInstance x : view) {
+			if (x.getLabel().getValue() > 0.5)
+				out.posN++;
+			else
+				out.negN++;
+		}
+		return out;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
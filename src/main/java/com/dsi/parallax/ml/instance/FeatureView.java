@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.instance;
+
+import java.util.Arrays;
+
+import com.dsi.parallax.ml.vector.DenseVector;
+import com.dsi.parallax.ml.vector.LinearVector;
+
+/**
+ * a read-only, primitive copy of the feature values in a {@link LinearVector}.
+ * sparse vectors become the indices of their stored values in increasing
+ * order alongside the values themselves; dense vectors become a plain array
+ * of values. inner products and distances between two views are computed by
+ * merging the sorted indices, without boxing or allocating anything.
+ *
+ * views are built and cached by {@link Instance#getFeatureView()}.
+ *
+ * @author jattenberg
+ */
+public final class FeatureView {
+
+	/** the vector this is a view of */
+	private final LinearVector source;
+
+	/** stored indices in increasing order, null when the view is dense */
+	private final int[] indices;
+
+	/** values at each of the indices, or at each dimension if dense */
+	private final double[] values;
+
+	private FeatureView(LinearVector source, int[] indices, double[] values) {
+		this.source = source;
+		this.indices = indices;
+		this.values = values;
+	}
+
+	/**
+	 * copy the values of a vector.
+	 *
+	 * @param vector
+	 *            the vector
+	 * @return the view
+	 */
+	public static FeatureView of(LinearVector vector) {
+		if (vector instanceof DenseVector) {
+			double[] values = new double[vector.size()];
+			for (int i = 0; i < values.length; i++)
+				values[i] = vector.getValue(i);
+			return new FeatureView(vector, null, values);
+		}
+
+		int[] indices = new int[16];
+		int count = 0;
+		boolean sorted = true;
+		for (int i : vector) {
+			if (count == indices.length)
+				indices = Arrays.copyOf(indices, 2 * count);
+			sorted &= count == 0 || indices[count - 1] < i;
+			indices[count++] = i;
+		}
+		indices = Arrays.copyOf(indices, count);
+
+		if (!sorted) {
+			// sort index and position together, keys are non-negative
+			long[] keys = new long[count];
+			for (int k = 0; k < count; k++)
+				keys[k] = ((long) indices[k] << 32) | k;
+			Arrays.sort(keys);
+			for (int k = 0; k < count; k++)
+				indices[k] = (int) (keys[k] >>> 32);
+		}
+		double[] values = new double[count];
+		for (int k = 0; k < count; k++)
+			values[k] = vector.getValue(indices[k]);
+		return new FeatureView(vector, indices, values);
+	}
+
+	/**
+	 * whether this view was built from the given vector.
+	 *
+	 * @param vector
+	 *            the vector
+	 * @return true if vector is the source of this view
+	 */
+	public boolean isViewOf(LinearVector vector) {
+		return source == vector;
+	}
+
+	/**
+	 * whether the view holds every dimension rather than just the stored
+	 * indices.
+	 *
+	 * @return true if dense
+	 */
+	public boolean isDense() {
+		return indices == null;
+	}
+
+	/**
+	 * the number of values held.
+	 *
+	 * @return the number of values
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * the dimension of the kth value held.
+	 *
+	 * @param k
+	 *            position in the view
+	 * @return the index
+	 */
+	public int index(int k) {
+		return indices == null ? k : indices[k];
+	}
+
+	/**
+	 * the kth value held.
+	 *
+	 * @param k
+	 *            position in the view
+	 * @return the value
+	 */
+	public double value(int k) {
+		return values[k];
+	}
+
+	/**
+	 * the value at a dimension, zero if nothing is stored there.
+	 *
+	 * @param dimension
+	 *            the dimension
+	 * @return the value
+	 */
+	public double getValue(int dimension) {
+		if (indices == null)
+			return dimension >= 0 && dimension < values.length ? values[dimension]
+					: 0;
+		int k = Arrays.binarySearch(indices, dimension);
+		return k < 0 ? 0 : values[k];
+	}
+
+	/**
+	 * inner product of two views.
+	 *
+	 * @param x
+	 *            the x
+	 * @param y
+	 *            the y
+	 * @return the inner product
+	 */
+	public static double dot(FeatureView x, FeatureView y) {
+		if (x.isDense() && y.isDense()) {
+			double[] xv = x.values, yv = y.values;
+			int n = Math.min(xv.length, yv.length);
+			double tot = 0;
+			for (int i = 0; i < n; i++)
+				tot += xv[i] * yv[i];
+			return tot;
+		}
+		if (x.isDense())
+			return denseDot(x.values, y);
+		if (y.isDense())
+			return denseDot(y.values, x);
+
+		int[] xi = x.indices, yi = y.indices;
+		double[] xv = x.values, yv = y.values;
+		int a = 0, b = 0;
+		double tot = 0;
+		while (a < xi.length && b < yi.length) {
+			int i = xi[a], j = yi[b];
+			if (i == j)
+				tot += xv[a++] * yv[b++];
+			else if (i < j)
+				a++;
+			else
+				b++;
+		}
+		return tot;
+	}
+
+	/**
+	 * inner product of this view with a vector, eg the weights of a linear
+	 * model. the backing array of a dense vector is read directly.
+	 *
+	 * @param w
+	 *            the vector
+	 * @return the inner product
+	 */
+	public double dot(LinearVector w) {
+		if (w instanceof DenseVector) {
+			double[] wv = w.getW();
+			if (!isDense())
+				return denseDot(wv, this);
+			int n = Math.min(wv.length, values.length);
+			double tot = 0;
+			for (int i = 0; i < n; i++)
+				tot += wv[i] * values[i];
+			return tot;
+		}
+		double tot = 0;
+		for (int k = 0; k < values.length; k++)
+			tot += w.getValue(index(k)) * values[k];
+		return tot;
+	}
+
+	private static double denseDot(double[] dense, FeatureView sparse) {
+		int[] si = sparse.indices;
+		double[] sv = sparse.values;
+		double tot = 0;
+		for (int k = 0; k < si.length; k++) {
+			if (si[k] >= dense.length)
+				break;
+			tot += dense[si[k]] * sv[k];
+		}
+		return tot;
+	}
+
+	/**
+	 * squared euclidean distance between two views.
+	 *
+	 * @param x
+	 *            the x
+	 * @param y
+	 *            the y
+	 * @return the squared distance
+	 */
+	public static double squaredDistance(FeatureView x, FeatureView y) {
+		return sumOfPowers(x, y, 2);
+	}
+
+	/**
+	 * L-p distance between two views, (sum_i |x_i - y_i|^p)^(1/p).
+	 *
+	 * @param x
+	 *            the x
+	 * @param y
+	 *            the y
+	 * @param p
+	 *            the exponent
+	 * @return the distance
+	 */
+	public static double distance(FeatureView x, FeatureView y, double p) {
+		double tot = sumOfPowers(x, y, p);
+		if (p == 2)
+			return Math.sqrt(tot);
+		if (p == 1)
+			return tot;
+		return Math.pow(tot, 1. / p);
+	}
+
+	private static double power(double diff, double p) {
+		if (p == 2)
+			return diff * diff;
+		if (p == 1)
+			return Math.abs(diff);
+		return Math.pow(Math.abs(diff), p);
+	}
+
+	/**
+	 * sum_i |x_i - y_i|^p over the union of the indices held by both views.
+	 */
+	private static double sumOfPowers(FeatureView x, FeatureView y, double p) {
+		double tot = 0;
+		if (x.isDense() && y.isDense()) {
+			double[] xv = x.values, yv = y.values;
+			int n = Math.min(xv.length, yv.length);
+			for (int i = 0; i < n; i++)
+				tot += power(xv[i] - yv[i], p);
+			for (int i = n; i < xv.length; i++)
+				tot += power(xv[i], p);
+			for (int i = n; i < yv.length; i++)
+				tot += power(yv[i], p);
+			return tot;
+		}
+
+		int xn = x.size(), yn = y.size();
+		int a = 0, b = 0;
+		while (a < xn && b < yn) {
+			int i = x.index(a), j = y.index(b);
+			if (i == j)
+				tot += power(x.values[a++] - y.values[b++], p);
+			else if (i < j)
+				tot += power(x.values[a++], p);
+			else
+				tot += power(y.values[b++], p);
+		}
+		while (a < xn)
+			tot += power(x.values[a++], p);
+		while (b < yn)
+			tot += power(y.values[b++], p);
+		return tot;
+	}
+}
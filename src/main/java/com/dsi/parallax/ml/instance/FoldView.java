@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.instance;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * a read-only, index based view of one side of a cross-validation fold. the
+ * testing side is the range [start, end) of the backing list, the training
+ * side is everything else. nothing is copied; get(i) maps i onto the backing
+ * list, which must not be modified while the view is in use.
+ *
+ * @param <I>
+ *            the type of instance
+ * @author jattenberg
+ */
+class FoldView<I> extends AbstractList<I> implements RandomAccess,
+		Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<I> backing;
+	private final int start;
+	private final int end;
+	private final boolean testing;
+
+	/**
+	 * Instantiates a new fold view.
+	 *
+	 * @param backing
+	 *            the full list of instances
+	 * @param start
+	 *            the first index in the testing fold
+	 * @param end
+	 *            one past the last index in the testing fold
+	 * @param testing
+	 *            whether this views the testing fold or the rest
+	 */
+	FoldView(List<I> backing, int start, int end, boolean testing) {
+		checkArgument(0 <= start && start <= end && end <= backing.size(),
+				"invalid fold [%s, %s) of %s instances", start, end,
+				backing.size());
+		this.backing = backing;
+		this.start = start;
+		this.end = end;
+		this.testing = testing;
+	}
+
+	@Override
+	public I get(int index) {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("index: " + index + " size: "
+					+ size());
+		if (testing)
+			return backing.get(start + index);
+		return backing.get(index < start ? index : index + end - start);
+	}
+
+	@Override
+	public int size() {
+		return testing ? end - start : backing.size() - (end - start);
+	}
+}
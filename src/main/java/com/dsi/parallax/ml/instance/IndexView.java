@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.instance;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * a read-only view of the elements of a list at the given indices, which may
+ * repeat, as in a bootstrap sample. nothing is copied; get(i) returns
+ * backing.get(indices[i]), so the backing list must not be modified while the
+ * view is in use.
+ *
+ * @param <I>
+ *            the type of instance
+ * @author jattenberg
+ */
+class IndexView<I> extends AbstractList<I> implements RandomAccess,
+		Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<I> backing;
+	private final int[] indices;
+
+	/**
+	 * Instantiates a new index view.
+	 *
+	 * @param backing
+	 *            the full list of instances
+	 * @param indices
+	 *            the indices into backing, in the order they're viewed
+	 */
+	IndexView(List<I> backing, int[] indices) {
+		this.backing = backing;
+		this.indices = indices;
+	}
+
+	@Override
+	public I get(int index) {
+		return backing.get(indices[index]);
+	}
+
+	@Override
+	public int size() {
+		return indices.length;
+	}
+}
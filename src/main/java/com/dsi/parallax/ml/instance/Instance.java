@@ -6,6 +6,7 @@ package com.dsi.parallax.ml.instance;
 import com.dsi.parallax.ml.target.Target;
 import com.dsi.parallax.ml.util.pair.FirstDescendingComparator;
 import com.dsi.parallax.ml.util.pair.PrimitivePair;
+import com.dsi.parallax.ml.vector.DenseVector;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.ml.vector.LinearVectorFactory;
 import com.dsi.parallax.ml.vector.util.ValueScaling;
@@ -13,6 +14,7 @@ import com.google.common.collect.Maps;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.dsi.parallax.ml.util.MLUtils.hashDouble;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -56,6 +58,12 @@ public abstract class Instance<T extends Target> implements Serializable,
 	protected double L0norm = -1, L1norm = -1, L2norm = -1, LINFnorm = -1; // lazily
 																			// instantiated
 
+	/**
+	 * lazily built primitive copy of the vector, shared with instances that
+	 * share the vector.
+	 */
+	private transient AtomicReference<FeatureView> featureView = new AtomicReference<FeatureView>();
+
 	/**
 	 * Instantiates a new instance.
 	 * 
@@ -151,6 +159,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	 */
 	public Instance(Instance<T> instance) {
 		this.vector = instance.vector;
+		this.featureView = instance.featureViewCache();
 		this.ID = instance.ID;
 		this.label = instance.label;
 		this.freq = instance.freq;
@@ -280,6 +289,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	 */
 	public void addFeature(int dim, double value) {
 		vector.updateValue(dim, value);
+		invalidateFeatureView();
 		L0norm = -1;
 		L2norm = -1;
 		L1norm = -1;
@@ -489,6 +499,39 @@ public abstract class Instance<T extends Target> implements Serializable,
 		return out;
 	}
 
+	/**
+	 * a primitive copy of the feature values, sorted by index, used for inner
+	 * products and distances between instances. built on first use and kept
+	 * until the instance is modified; changes made to the vector directly,
+	 * rather than through this instance, aren't noticed. since the copy lives
+	 * as long as the instance, it's meant for instances used many times, eg
+	 * over the passes of training; see {@link #dot(LinearVector)} for
+	 * scoring.
+	 * 
+	 * @return the feature view
+	 */
+	public FeatureView getFeatureView() {
+		AtomicReference<FeatureView> cache = featureViewCache();
+		FeatureView view = cache.get();
+		if (view == null || !view.isViewOf(vector)) {
+			view = FeatureView.of(vector);
+			cache.set(view);
+		}
+		return view;
+	}
+
+	private AtomicReference<FeatureView> featureViewCache() {
+		// null after deserialization
+		if (featureView == null)
+			featureView = new AtomicReference<FeatureView>();
+		return featureView;
+	}
+
+	private void invalidateFeatureView() {
+		if (featureView != null)
+			featureView.set(null);
+	}
+
 	/**
 	 * Inner product.
 	 * 
@@ -499,17 +542,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	 * @return the double
 	 */
 	public static final double innerProduct(Instance<?> x, Instance<?> y) {
-		double tot = 0;
-		Set<Integer> seen = new HashSet<Integer>();
-		for (int i : x) {
-			tot += x.getFeatureValue(i) * y.getFeatureValue(i);
-			seen.add(i);
-		}
-		for (int i : y) {
-			if (!seen.contains(i))
-				tot += y.getFeatureValue(i) * x.getFeatureValue(i);
-		}
-		return tot;
+		return FeatureView.dot(x.getFeatureView(), y.getFeatureView());
 	}
 
 	/**
@@ -524,20 +557,21 @@ public abstract class Instance<T extends Target> implements Serializable,
 	 * @return the double
 	 */
 	public static double computeLNdist(Instance<?> x, Instance<?> y, double n2) {
-		double tot = 0;
-		Set<Integer> indexSet = new HashSet<Integer>();
-		for (int i : x) {
-			indexSet.add(i);
-			tot += Math.pow(
-					Math.abs(x.getFeatureValue(i) - y.getFeatureValue(i)), n2);
-		}
-		for (int i : y) {
-			if (!indexSet.contains(i))
-				tot += Math.pow(
-						Math.abs(x.getFeatureValue(i) - y.getFeatureValue(i)),
-						n2);
-		}
-		return Math.pow(tot, 1. / n2);
+		return FeatureView.distance(x.getFeatureView(), y.getFeatureView(), n2);
+	}
+
+	/**
+	 * squared euclidean distance between two instances.
+	 * 
+	 * @param x
+	 *            the x
+	 * @param y
+	 *            the y
+	 * @return the squared distance
+	 */
+	public static double squaredDistance(Instance<?> x, Instance<?> y) {
+		return FeatureView.squaredDistance(x.getFeatureView(),
+				y.getFeatureView());
 	}
 
 	/*
@@ -561,6 +595,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public void updateValue(int index, double value) {
 		vector.updateValue(index, value);
+		invalidateFeatureView();
 	}
 
 	/*
@@ -571,6 +606,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public void resetValue(int index, double value) {
 		vector.resetValue(index, value);
+		invalidateFeatureView();
 	}
 
 	/*
@@ -581,6 +617,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public void delete(int index) {
 		vector.delete(index);
+		invalidateFeatureView();
 	}
 
 	/*
@@ -601,6 +638,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public void initW(double param) {
 		vector.initW(param);
+		invalidateFeatureView();
 	}
 
 	/*
@@ -621,6 +659,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public void setW(double[] W) {
 		vector.setW(W);
+		invalidateFeatureView();
 	}
 
 	/*
@@ -631,6 +670,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public void setW(List<Double> W) {
 		vector.setW(W);
+		invalidateFeatureView();
 	}
 
 	/*
@@ -691,6 +731,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public LinearVector timesEquals(double value) {
 		vector.timesEquals(value);
+		invalidateFeatureView();
 		return this;
 	}
 
@@ -702,6 +743,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public Instance<T> plusEquals(double value) {
 		vector.plusEquals(value);
+		invalidateFeatureView();
 		return this;
 	}
 
@@ -713,6 +755,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public Instance<T> minusEquals(double value) {
 		vector.minusEquals(value);
+		invalidateFeatureView();
 		return this;
 	}
 
@@ -726,6 +769,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public Instance<T> plusEquals(LinearVector vect) {
 		vector.plusEquals(vect);
+		invalidateFeatureView();
 		return this;
 	}
 
@@ -739,6 +783,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public Instance<T> minusEquals(LinearVector vect) {
 		vector.minusEquals(vect);
+		invalidateFeatureView();
 		return this;
 	}
 
@@ -752,6 +797,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public Instance<T> plusEqualsVectorTimes(LinearVector vect, double factor) {
 		vector.plusEqualsVectorTimes(vect, factor);
+		invalidateFeatureView();
 		return this;
 	}
 
@@ -765,6 +811,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public Instance<T> minusEqualsVectorTimes(LinearVector vect, double factor) {
 		vector.minusEqualsVectorTimes(vect, factor);
+		invalidateFeatureView();
 		return this;
 	}
 
@@ -774,6 +821,7 @@ public abstract class Instance<T extends Target> implements Serializable,
 	@Override
 	public void absNormalize() {
 		vector.absNormalize();
+		invalidateFeatureView();
 	}
 
 	/**
@@ -820,9 +868,40 @@ public abstract class Instance<T extends Target> implements Serializable,
 		return vector.minusVectorTimes(vect, factor);
 	}
 
+	/**
+	 * inner product of the feature values with a vector, eg the weights of a
+	 * linear model. a feature view already cached on this instance is used,
+	 * but none is built, so scoring an instance once doesn't leave a copy of
+	 * its features behind. the backing arrays of dense vectors are read
+	 * directly.
+	 * 
+	 * @param w
+	 *            the vector
+	 * @return the inner product
+	 */
 	@Override
-	public double dot(LinearVector vect) {
-		return vector.dot(vect);
+	public double dot(LinearVector w) {
+		FeatureView view = featureView == null ? null : featureView.get();
+		if (view != null && view.isViewOf(vector))
+			return view.dot(w);
+		double tot = 0;
+		if (w instanceof DenseVector) {
+			double[] wv = w.getW();
+			if (vector instanceof DenseVector) {
+				double[] xv = vector.getW();
+				int n = Math.min(xv.length, wv.length);
+				for (int i = 0; i < n; i++)
+					tot += xv[i] * wv[i];
+				return tot;
+			}
+			for (int x_i : vector)
+				if (x_i < wv.length)
+					tot += vector.getValue(x_i) * wv[x_i];
+			return tot;
+		}
+		for (int x_i : vector)
+			tot += vector.getValue(x_i) * w.getValue(x_i);
+		return tot;
 	}
 
 	@Override
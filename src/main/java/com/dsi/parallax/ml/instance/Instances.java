@@ -279,6 +279,109 @@ public abstract class Instances<I extends Instance<?>> implements Serializable,
 		return (T) testing;
 	}
 
+	/**
+	 * Gets a read-only view of the training instances for the specified fold;
+	 * the same instances as {@link #getTraining(int, int)}, but indexed into
+	 * this collection rather than copied. this collection must not be modified
+	 * while the view is in use.
+	 * 
+	 * @param <T>
+	 *            the generic type
+	 * @param fold
+	 *            the fold id
+	 * @param numFolds
+	 *            the total number of folds
+	 * @return a view of the training instances
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Instances<I>> T getTrainingView(int fold, int numFolds) {
+		return (T) makeView(foldView(fold, numFolds, false));
+	}
+
+	/**
+	 * Gets a read-only view of the testing instances for the specified fold;
+	 * the same instances as {@link #getTesting(int, int)}, but indexed into
+	 * this collection rather than copied. this collection must not be modified
+	 * while the view is in use.
+	 * 
+	 * @param <T>
+	 *            the generic type
+	 * @param fold
+	 *            the fold id
+	 * @param numFolds
+	 *            the total number of folds
+	 * @return a view of the testing instances
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Instances<I>> T getTestingView(int fold, int numFolds) {
+		return (T) makeView(foldView(fold, numFolds, true));
+	}
+
+	/**
+	 * Gets a read-only view of a contiguous range of the instances, indexed
+	 * into this collection rather than copied. this collection must not be
+	 * modified while the view is in use.
+	 * 
+	 * @param <T>
+	 *            the generic type
+	 * @param from
+	 *            first instance in the view
+	 * @param to
+	 *            one past the last instance in the view
+	 * @return a view of the instances in [from, to)
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Instances<I>> T getRangeView(int from, int to) {
+		checkArgument(from >= 0 && from <= to && to <= size(),
+				"invalid range [%s, %s) of %s instances", from, to, size());
+		return (T) makeView(Collections.unmodifiableList(instances.subList(
+				from, to)));
+	}
+
+	private FoldView<I> foldView(int fold, int numFolds, boolean testing) {
+		checkArgument(numFolds > 0 && fold >= 0 && fold < numFolds,
+				"invalid fold %s of %s", fold, numFolds);
+		int foldSize = this.size() / numFolds;
+		int start = fold * foldSize;
+		int end = Math.min(start + foldSize, this.size());
+		return new FoldView<I>(instances, start, end, testing);
+	}
+
+	/**
+	 * Gets a read-only view of a bootstrap sample: as many instances as there
+	 * are in this collection, drawn uniformly with replacement. the sample is
+	 * indexed into this collection rather than copied, so this collection
+	 * must not be modified while the view is in use.
+	 * 
+	 * @param <T>
+	 *            the generic type
+	 * @param random
+	 *            the source of the draws
+	 * @return a view of the bootstrap sample
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Instances<I>> T getBootstrapView(Random random) {
+		int[] indices = new int[size()];
+		for (int i = 0; i < indices.length; i++)
+			indices[i] = random.nextInt(indices.length);
+		return (T) makeView(new IndexView<I>(instances, indices));
+	}
+
+	/**
+	 * Make instances backed directly by the supplied list, without copying.
+	 * subclasses keeping summaries of their contents should override this to
+	 * compute them.
+	 * 
+	 * @param view
+	 *            the backing list
+	 * @return the instances
+	 */
+	protected Instances<I> makeView(List<I> view) {
+		Instances<I> out = makeIstances(dimensions);
+		out.instances = view;
+		return out;
+	}
+
 	/**
 	 * Gets the bag.
 	 * 
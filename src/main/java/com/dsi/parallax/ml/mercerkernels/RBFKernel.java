@@ -5,9 +5,6 @@ package com.dsi.parallax.ml.mercerkernels;
 
 import com.dsi.parallax.ml.instance.Instance;
 
-import java.util.HashSet;
-import java.util.Set;
-
 // TODO: Auto-generated Javadoc
 /**
  * The Class RBFKernel.
@@ -31,19 +28,7 @@ public class RBFKernel implements Kernel {
 	 */
 	@Override
 	public double InnerProduct(Instance<?> x, Instance<?> y) {
-		double ip = 0.0;
-		Set<Integer> dims = new HashSet<Integer>();
-		for (int x_i : x) {
-			dims.add(x_i);
-			ip += Math.pow(x.getFeatureValue(x_i) - y.getFeatureValue(x_i), 2);
-		}
-		for (int x_i : y) {
-			if (!dims.contains(x_i))
-				ip += Math.pow(x.getFeatureValue(x_i) - y.getFeatureValue(x_i),
-						2);
-
-		}
-
+		double ip = Instance.squaredDistance(x, y);
 		ip *= gamma;
 
 		return Math.exp(-ip);
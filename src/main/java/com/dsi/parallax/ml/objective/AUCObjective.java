@@ -16,7 +16,8 @@ import com.dsi.parallax.ml.target.BinaryClassificationTarget;
  *
  * @author jattenberg
  */
-public class AUCObjective implements Objective<BinaryClassificationTarget>{
+public class AUCObjective implements
+		PartialObjective<BinaryClassificationTarget, ReceiverOperatingCharacteristic> {
 
 	/* (non-Javadoc)
 	 * @see com.parallax.ml.objective.Objective#evaluate(java.lang.Iterable, com.parallax.ml.model.Model)
@@ -24,11 +25,28 @@ public class AUCObjective implements Objective<BinaryClassificationTarget>{
 	@Override
 	public <I extends Instance<BinaryClassificationTarget>, E extends Iterable<I>, M extends Model<BinaryClassificationTarget, M>> double evaluate(
 			E instances, M model) {
+		return score(accumulate(instances, model));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.objective.PartialObjective#accumulate(java.lang.Iterable, com.dsi.parallax.ml.model.Model)
+	 */
+	@Override
+	public <I extends Instance<BinaryClassificationTarget>, E extends Iterable<I>, M extends Model<BinaryClassificationTarget, M>> ReceiverOperatingCharacteristic accumulate(
+			E instances, M model) {
 		ReceiverOperatingCharacteristic ROC = new ReceiverOperatingCharacteristic();
 		
 		for(I inst : instances)
 			ROC.add(inst.getLabel(), model.predict(inst));
-		return ROC.binaryAUC();
+		return ROC;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.objective.PartialObjective#score(com.dsi.parallax.ml.util.Mergeable)
+	 */
+	@Override
+	public double score(ReceiverOperatingCharacteristic partial) {
+		return partial.binaryAUC();
 	}
 
 }
@@ -27,6 +27,17 @@ public abstract class AbstractObjectiveScorer<T extends Target> implements Objec
 		this.objective = objective;
 	}
 	
+	/**
+	 * Gets the objective function; objectives keep no state, so they may be
+	 * evaluated from several threads while partial scores are accumulated on
+	 * one.
+	 *
+	 * @return the objective
+	 */
+	public Objective<T> getObjective() {
+		return objective;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.parallax.ml.objective.ObjectiveScorer#evaluate(java.lang.Iterable, com.parallax.ml.model.Model)
 	 */
@@ -19,7 +19,8 @@ import com.dsi.parallax.ml.target.BinaryClassificationTarget;
  *
  * @author jattenberg
  */
-public class AccuracyObjective implements Objective<BinaryClassificationTarget>{
+public class AccuracyObjective implements
+		PartialObjective<BinaryClassificationTarget, ConfusionMatrix> {
 
 	/* (non-Javadoc)
 	 * @see com.parallax.ml.objective.Objective#evaluate(java.lang.Iterable, com.parallax.ml.model.Model)
@@ -27,11 +28,28 @@ public class AccuracyObjective implements Objective<BinaryClassificationTarget>{
 	@Override
 	public <I extends Instance<BinaryClassificationTarget>, E extends Iterable<I>, M extends Model<BinaryClassificationTarget, M>> double evaluate(
 			E instances, M model) {
+		return score(accumulate(instances, model));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.objective.PartialObjective#accumulate(java.lang.Iterable, com.dsi.parallax.ml.model.Model)
+	 */
+	@Override
+	public <I extends Instance<BinaryClassificationTarget>, E extends Iterable<I>, M extends Model<BinaryClassificationTarget, M>> ConfusionMatrix accumulate(
+			E instances, M model) {
 		ConfusionMatrix conf = new ConfusionMatrix(2);
 		
 		for(I inst : instances)
 			conf.addInfo(inst.getLabel(), model.predict(inst));
-		return conf.computeAccuracy();
+		return conf;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.dsi.parallax.ml.objective.PartialObjective#score(com.dsi.parallax.ml.util.Mergeable)
+	 */
+	@Override
+	public double score(ConfusionMatrix partial) {
+		return partial.computeAccuracy();
 	}
 
 }
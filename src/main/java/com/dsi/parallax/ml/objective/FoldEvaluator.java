@@ -7,18 +7,33 @@ import com.dsi.parallax.ml.classifier.Classifier;
 import com.dsi.parallax.ml.classifier.ClassifierBuilder;
 import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.util.Mergeable;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 // TODO: Auto-generated Javadoc
 /**
  * cross-validates the performance of a classifier on some specified data using
  * a given objective value.
+ * 
+ * folds are trained and tested in parallel on index based views of the input
+ * data (see {@link BinaryClassificationInstances#getTrainingView(int, int)}),
+ * so no fold copies the dataset. unless a thread count is given, all
+ * evaluators share one pool sized to the available cores. the objective is
+ * computed on the worker threads and the partial scores are handed to the
+ * scorer on the calling thread, in fold order.
+ *
+ * alternatively, a {@link PartialObjective} can be pooled over the folds:
+ * each fold accumulates its own partial, eg a confusion matrix, and these are
+ * merged once to score every held out prediction together.
  *
  * @author jattenberg
  */
@@ -27,6 +42,18 @@ public class FoldEvaluator {
 	/** The Constant LOGGER. */
 	private static final Logger LOGGER = Logger.getLogger(FoldEvaluator.class);
 	
+	/** executor shared by all evaluators that don't ask for their own. */
+	private static final ExecutorService SHARED_EXECUTOR = Executors
+			.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					new ThreadFactoryBuilder().setDaemon(true)
+							.setNameFormat("parallax-folds-%d").build());
+	
+	/**
+	 * set on threads running a fold, so that nested cross-validation runs
+	 * inline rather than waiting on the pool it is running in.
+	 */
+	private static final ThreadLocal<Boolean> IN_FOLD = new ThreadLocal<Boolean>();
+	
 	/** The executor. */
 	private final ExecutorService executor;
 	
@@ -44,23 +71,26 @@ public class FoldEvaluator {
 	}
 
 	/**
-	 * Instantiates a new fold evaluator.
+	 * Instantiates a new fold evaluator using the shared executor.
 	 *
 	 * @param folds the folds
 	 */
 	public FoldEvaluator(int folds) {
 		this.folds = folds;
-		executor = Executors.newFixedThreadPool(Math.min(DEFAULT_FOLDS, folds));
+		executor = SHARED_EXECUTOR;
 	}
 	
 	/**
-	 * Instantiates a new fold evaluator.
+	 * Instantiates a new fold evaluator with its own pool of threads.
 	 *
 	 * @param folds the folds
+	 * @param threads the number of threads
 	 */
 	public FoldEvaluator(int folds, int threads) {
 		this.folds = folds;
-		executor = Executors.newFixedThreadPool(threads);
+		executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setDaemon(true)
+						.setNameFormat("parallax-folds-%d").build());
 	}
 
 	/**
@@ -81,7 +111,7 @@ public class FoldEvaluator {
 	/**
 	 * Evaluate.
 	 *
-	 * @param inputData the input data
+	 * @param inputData the input data; must not be modified during evaluation
 	 * @param scorer the scorer
 	 * @param builder the builder
 	 * @return the double
@@ -90,70 +120,183 @@ public class FoldEvaluator {
 			ObjectiveScorer<BinaryClassificationTarget> scorer,
 			ClassifierBuilder<?, ?> builder) {
 		scorer.reset();
-		List<Callable<Object>> todo = new ArrayList<Callable<Object>>(folds);
+		List<FoldCallable> todo = new ArrayList<FoldCallable>(folds);
 
 		for (int fold = 0; fold < folds; fold++) {
-			BinaryClassificationInstances training = inputData.getTraining(
+			BinaryClassificationInstances training = inputData
+					.getTrainingView(fold, folds);
+			BinaryClassificationInstances testing = inputData.getTestingView(
 					fold, folds);
-			BinaryClassificationInstances testing = inputData.getTesting(fold,
-					folds);
-			FoldRunnable runnable = new FoldRunnable(training, testing, scorer,
-					builder);
-			todo.add(Executors.callable(runnable));
+			todo.add(new FoldCallable(training, testing, scorer, builder));
+		}
+		for (Double partialScore : run(todo)) {
+			if (partialScore != null)
+				scorer.evaluate(partialScore);
 		}
+		return scorer.getScore();
+	}
+
+	/**
+	 * Evaluate an objective over the predictions on every held out fold
+	 * together, rather than averaging a score per fold. each fold builds its
+	 * own partial on a worker thread; the partials are merged on the calling
+	 * thread.
+	 *
+	 * @param <P> the partial accumulated by the objective
+	 * @param inputData the input data; must not be modified during evaluation
+	 * @param objective the objective
+	 * @param builder the builder
+	 * @return the objective over all held out predictions
+	 */
+	public <P extends Mergeable<P>> double evaluatePooled(
+			BinaryClassificationInstances inputData,
+			PartialObjective<BinaryClassificationTarget, P> objective,
+			ClassifierBuilder<?, ?> builder) {
+		List<PartialCallable<P>> todo = new ArrayList<PartialCallable<P>>(
+				folds);
+		for (int fold = 0; fold < folds; fold++) {
+			BinaryClassificationInstances training = inputData
+					.getTrainingView(fold, folds);
+			BinaryClassificationInstances testing = inputData.getTestingView(
+					fold, folds);
+			todo.add(new PartialCallable<P>(training, testing, objective,
+					builder));
+		}
+		P pooled = null;
+		for (P partial : run(todo))
+			pooled = pooled == null ? partial : pooled.merge(partial);
+		return objective.score(pooled);
+	}
+
+	private <V> List<V> run(List<? extends FoldTask<V>> todo) {
+		List<V> out = new ArrayList<V>(todo.size());
 		try {
-			executor.invokeAll(todo);
+			if (Boolean.TRUE.equals(IN_FOLD.get())) {
+				for (FoldTask<V> callable : todo)
+					out.add(callable.call());
+			} else {
+				for (Future<V> future : executor.invokeAll(todo))
+					out.add(future.get());
+			}
 		} catch (InterruptedException e) {
 			LOGGER.error("error executing threads: " + e.getLocalizedMessage());
+			Thread.currentThread().interrupt();
 			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			LOGGER.error("error evaluating fold: "
+					+ e.getCause().getLocalizedMessage());
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
 		}
-		return scorer.getScore();
+		return out;
 	}
 
 	/**
-	 * The Class FoldRunnable.
+	 * trains a model on one fold and computes something on the held out
+	 * instances.
 	 */
-	private class FoldRunnable implements Runnable {
+	private static abstract class FoldTask<V> implements Callable<V> {
 
 		/** The testing. */
 		final BinaryClassificationInstances training, testing;
-		
-		/** The scorer. */
-		final ObjectiveScorer<BinaryClassificationTarget> scorer;
-		
+
 		/** The builder. */
 		final ClassifierBuilder<?, ?> builder;
 
+		FoldTask(BinaryClassificationInstances training,
+				BinaryClassificationInstances testing,
+				ClassifierBuilder<?, ?> builder) {
+			this.training = training;
+			this.testing = testing;
+			this.builder = builder;
+		}
+
+		@Override
+		public V call() {
+			Boolean nested = IN_FOLD.get();
+			IN_FOLD.set(Boolean.TRUE);
+			try {
+				Classifier<?> model = builder.build();
+				model.train(training);
+				return test(model);
+			} finally {
+				IN_FOLD.set(nested);
+			}
+		}
+
 		/**
-		 * Instantiates a new fold runnable.
+		 * @param model the model trained on this fold
+		 * @return the result on the testing fold
+		 */
+		@SuppressWarnings("rawtypes")
+		abstract V test(Classifier model);
+	}
+
+	/**
+	 * computes an objective on the held out instances of one fold.
+	 */
+	private static class FoldCallable extends FoldTask<Double> {
+
+		/** The scorer. */
+		final ObjectiveScorer<BinaryClassificationTarget> scorer;
+
+		/**
+		 * Instantiates a new fold callable.
 		 *
 		 * @param training the training
 		 * @param testing the testing
 		 * @param scorer the scorer
 		 * @param builder the builder
 		 */
-		public FoldRunnable(BinaryClassificationInstances training,
+		public FoldCallable(BinaryClassificationInstances training,
 				BinaryClassificationInstances testing,
 				ObjectiveScorer<BinaryClassificationTarget> scorer,
 				ClassifierBuilder<?, ?> builder) {
-			super();
-			this.training = training;
-			this.testing = testing;
-			this.builder = builder;
+			super(training, testing, builder);
 			this.scorer = scorer;
 		}
 
-		/* (non-Javadoc)
-		 * @see java.lang.Runnable#run()
+		/**
+		 * @return the objective on the testing fold, to be given to the scorer
+		 *         by the caller, or null if the scorer has already seen it
 		 */
 		@SuppressWarnings({ "rawtypes", "unchecked" })
 		@Override
-		public void run() {
-			Classifier model = builder.build();
-			model.train(training);
-			synchronized (this) {
+		Double test(Classifier model) {
+			if (scorer instanceof AbstractObjectiveScorer)
+				return ((AbstractObjectiveScorer) scorer).getObjective()
+						.evaluate(testing, model);
+			// unknown scorers evaluate and accumulate in one step
+			synchronized (scorer) {
 				scorer.evaluate(testing, model);
 			}
+			return null;
+		}
+	}
+
+	/**
+	 * accumulates a partial objective on the held out instances of one fold.
+	 */
+	private static class PartialCallable<P extends Mergeable<P>> extends
+			FoldTask<P> {
+
+		/** The objective. */
+		final PartialObjective<BinaryClassificationTarget, P> objective;
+
+		PartialCallable(BinaryClassificationInstances training,
+				BinaryClassificationInstances testing,
+				PartialObjective<BinaryClassificationTarget, P> objective,
+				ClassifierBuilder<?, ?> builder) {
+			super(training, testing, builder);
+			this.objective = objective;
+		}
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		@Override
+		P test(Classifier model) {
+			// raw model, so the generic return type is erased
+			return (P) objective.accumulate(testing, model);
 		}
 	}
 }
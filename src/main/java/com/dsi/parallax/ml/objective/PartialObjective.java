@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.objective;
+
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.model.Model;
+import com.dsi.parallax.ml.target.Target;
+import com.dsi.parallax.ml.util.Mergeable;
+
+/**
+ * an objective computed from a partial that can be accumulated over
+ * disjoint sets of instances, eg on separate threads or folds, and merged
+ * before scoring. evaluating the objective over the union of the sets is the
+ * score of the merged partials.
+ * 
+ * @param <T>
+ *            the target type
+ * @param <P>
+ *            the partial
+ * 
+ * @see FoldEvaluator#evaluatePooled(com.dsi.parallax.ml.instance.BinaryClassificationInstances,
+ *      PartialObjective, com.dsi.parallax.ml.classifier.ClassifierBuilder)
+ * 
+ * @author jattenberg
+ */
+public interface PartialObjective<T extends Target, P extends Mergeable<P>>
+		extends Objective<T> {
+
+	/**
+	 * a new partial holding the model's predictions on the instances.
+	 * 
+	 * @param <I>
+	 *            the generic type
+	 * @param <E>
+	 *            the element type
+	 * @param <M>
+	 *            the generic type
+	 * @param instances
+	 *            the instances
+	 * @param model
+	 *            the model
+	 * @return the partial
+	 */
+	public <I extends Instance<T>, E extends Iterable<I>, M extends Model<T, M>> P accumulate(
+			E instances, M model);
+
+	/**
+	 * the objective over every prediction in a partial.
+	 * 
+	 * @param partial
+	 *            the partial, possibly merged from several
+	 * @return the score
+	 */
+	public double score(P partial);
+}
@@ -1,22 +1,21 @@
 package com.dsi.parallax.ml.projection;
 
 import com.dsi.parallax.ml.instance.Instances;
+import com.dsi.parallax.ml.util.FeatureStatistics;
 import com.dsi.parallax.ml.util.MLUtils;
-import com.dsi.parallax.ml.util.pair.PrimitivePair;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.ml.vector.LinearVectorFactory;
-import com.google.common.collect.Maps;
-import org.apache.commons.math.stat.descriptive.SummaryStatistics;
 
 import java.util.Collection;
-import java.util.Map;
 
 
 /**
  * Class for Normalizing the data. It computes and stores the means and 
  * standard deviation of all the features and uses them to normalize 
  * each feature. This involves subtracting the mean of each feature 
- * from its value and dividing the result by the standard deviation
+ * from its value and dividing the result by the standard deviation.
+ * the statistics are gathered in one pass over the non-zeros of the data,
+ * and kept in arrays indexed by feature.
  *  
  * @author spchopra
  *
@@ -27,8 +26,8 @@ public class DataNormalization extends AbstractConstructedProjection {
 	/** The Constant serialVersionUID. */
     private static final long serialVersionUID = 2910854500392344039L;
 
-	/** The map which stores the mean and standard deviation */
-    private Map<Integer, PrimitivePair> meanStdDevPairs;
+	/** The mean and standard deviation of each feature */
+    private double[] means = new double[0], stdDevs = new double[0];
     
     /** The is trained. */
     private boolean isTrained = false;
@@ -40,7 +39,6 @@ public class DataNormalization extends AbstractConstructedProjection {
      */
     public DataNormalization(int inDim) {
     	super(inDim, inDim);
-    	meanStdDevPairs = Maps.newHashMap();
     }
     
     /**
@@ -51,7 +49,6 @@ public class DataNormalization extends AbstractConstructedProjection {
      */
     public DataNormalization(int inDim, Collection<LinearVector> X) {
     	super(inDim, inDim);
-        meanStdDevPairs = Maps.newHashMap();
         build(X);
     }
     
@@ -70,22 +67,18 @@ public class DataNormalization extends AbstractConstructedProjection {
      */
     @Override
     public void build(Collection<LinearVector> X) {
-    	Map<Integer, SummaryStatistics> stats = Maps.newHashMap();
-        // loop over the linear vectors and collect the feature values
-        for(LinearVector vect : X) {
-        	for (int i = 0; i < vect.size(); i++) {
-        		if (!stats.containsKey(i)) { 
-        			stats.put(i,  new SummaryStatistics());
-        		}
-        		stats.get(i).addValue(vect.getValue(i));
-        	}
-        }
-        // compute the mean and standard deviation of the data        
-        for (int i : stats.keySet()) {
-        	double mean = stats.get(i).getMean();
-        	double stdDev = stats.get(i).getStandardDeviation();
-        	meanStdDevPairs.put(i, new PrimitivePair(mean, stdDev));
-        }
+        build(FeatureStatistics.fit(X));
+    }
+
+    /**
+     * Takes the mean and standard deviation from statistics gathered
+     * elsewhere, eg merged from partitions of the data
+     *
+     * @param stats the statistics
+     */
+    public void build(FeatureStatistics stats) {
+        means = stats.getMeans();
+        stdDevs = stats.getStandardDeviations();
         isTrained = true;
     }
     
@@ -111,13 +104,10 @@ public class DataNormalization extends AbstractConstructedProjection {
     	
     	for (int i = 0; i < output.size(); i++) { 
     		double value = input.getValue(i);
-    		if (!meanStdDevPairs.containsKey(i)) { 
+    		if (i >= means.length || MLUtils.floatingPointEquals(stdDevs[i], 0)) { 
     			output.resetValue(i, value);
     		} else {
-    			PrimitivePair meanStdDevPair = meanStdDevPairs.get(i);
-    			double norm_value = (value - meanStdDevPair.first)/meanStdDevPair.second;
-    			output.resetValue(i, MLUtils.floatingPointEquals(
-    						meanStdDevPair.second, 0) ? value : norm_value);
+    			output.resetValue(i, (value - means[i])/stdDevs[i]);
     		}
     	}
     	return output;
@@ -134,10 +124,9 @@ public class DataNormalization extends AbstractConstructedProjection {
     	String stds = "Standard Deviation: ";
     	String output = "";
     	
-    	for (int i = 0; i < inDim; i++) {
-    		PrimitivePair meanStdDevPair = meanStdDevPairs.get(i);
-    		means = means + " " + Double.toString(meanStdDevPair.first);
-    		stds = stds + " " + Double.toString(meanStdDevPair.second);
+    	for (int i = 0; i < Math.min(inDim, this.means.length); i++) {
+    		means = means + " " + Double.toString(this.means[i]);
+    		stds = stds + " " + Double.toString(stdDevs[i]);
     	}
     	output = output + means + "\n" + stds;
     	
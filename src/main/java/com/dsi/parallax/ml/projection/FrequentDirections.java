@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.projection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.ejml.alg.dense.decomposition.DecompositionFactory;
+import org.ejml.alg.dense.decomposition.EigenDecomposition;
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.ops.CommonOps;
+
+import com.dsi.parallax.ml.util.Mergeable;
+import com.dsi.parallax.ml.vector.LinearVector;
+
+/**
+ * a streaming sketch of a matrix's row space, from Liberty 2013. rows are
+ * copied into an l x d buffer; when it fills, the buffer is replaced by its
+ * SVD with every squared singular value shrunk by the median one, which
+ * empties at least half of the rows. B^T B stays within 2 ||A||_F^2 / l of
+ * A^T A however many rows are added, so the top components of the sketch
+ * approximate those of the data in O(l d) memory.
+ *
+ * rows are sketched uncentered; the sum of the rows is kept alongside so
+ * {@link PrincipalComponentsAnalysis#build(FrequentDirections)} can center
+ * exactly. sketches of partitions of the data can be
+ * {@link #merge(FrequentDirections)}d.
+ *
+ * @author jattenberg
+ */
+public class FrequentDirections implements Mergeable<FrequentDirections>,
+		Serializable {
+
+	private static final long serialVersionUID = 7710624113542617260L;
+
+	private final int dimension;
+	private final int rows;
+	private final DenseMatrix64F B;
+	/** B B^T, kept up to date as rows are added */
+	private final DenseMatrix64F gram;
+	private final double[] sums;
+	private int filled = 0;
+	private long count = 0;
+
+	/**
+	 * Instantiates a new sketch.
+	 *
+	 * @param dimension
+	 *            the length of the rows
+	 * @param rows
+	 *            the number of rows held, l; errors shrink in proportion to
+	 *            1 / l
+	 */
+	public FrequentDirections(int dimension, int rows) {
+		checkArgument(dimension > 0, "dimension must be positive, given: %s",
+				dimension);
+		checkArgument(rows >= 2, "at least 2 rows must be held, given: %s",
+				rows);
+		this.dimension = dimension;
+		this.rows = rows;
+		B = new DenseMatrix64F(rows, dimension);
+		gram = new DenseMatrix64F(rows, rows);
+		sums = new double[dimension];
+	}
+
+	public int getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * @return the number of rows the sketch holds, l
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the number of rows added
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * add a row.
+	 *
+	 * @param x
+	 *            the row
+	 */
+	public void add(LinearVector x) {
+		checkArgument(x.size() == dimension,
+				"vector size %s doesn't match the sketch's %s", x.size(),
+				dimension);
+		if (filled == rows)
+			shrink();
+		int offset = filled * dimension;
+		for (int x_i : x) {
+			double value = x.getValue(x_i);
+			B.data[offset + x_i] = value;
+			sums[x_i] += value;
+		}
+		// only the new row's non-zeros contribute to its inner products
+		for (int row = 0; row <= filled; row++) {
+			double dot = 0;
+			for (int x_i : x)
+				dot += B.data[row * dimension + x_i] * x.getValue(x_i);
+			gram.set(row, filled, dot);
+			gram.set(filled, row, dot);
+		}
+		filled++;
+		count++;
+	}
+
+	/**
+	 * add the rows summarized by another sketch.
+	 *
+	 * @param other
+	 *            the other sketch, unchanged; not this one
+	 * @return this
+	 */
+	@Override
+	public FrequentDirections merge(FrequentDirections other) {
+		checkArgument(other != this, "a sketch can't be merged with itself");
+		checkArgument(dimension == other.dimension,
+				"sketch dimensions differ: %s, %s", dimension, other.dimension);
+		for (int row = 0; row < other.filled; row++) {
+			if (filled == rows)
+				shrink();
+			System.arraycopy(other.B.data, row * dimension, B.data, filled
+					* dimension, dimension);
+			for (int i = 0; i <= filled; i++) {
+				double dot = 0;
+				for (int j = 0; j < dimension; j++)
+					dot += B.data[i * dimension + j]
+							* B.data[filled * dimension + j];
+				gram.set(i, filled, dot);
+				gram.set(filled, i, dot);
+			}
+			filled++;
+		}
+		for (int j = 0; j < dimension; j++)
+			sums[j] += other.sums[j];
+		count += other.count;
+		return this;
+	}
+
+	/**
+	 * @return the mean of the rows added
+	 */
+	public double[] getMean() {
+		double[] mean = new double[dimension];
+		if (count > 0)
+			for (int j = 0; j < dimension; j++)
+				mean[j] = sums[j] / count;
+		return mean;
+	}
+
+	/**
+	 * @return a copy of the sketch's non-empty rows, B
+	 */
+	public DenseMatrix64F getSketch() {
+		DenseMatrix64F sketch = new DenseMatrix64F(filled, dimension);
+		System.arraycopy(B.data, 0, sketch.data, 0, filled * dimension);
+		return sketch;
+	}
+
+	/**
+	 * replace the rows by their right singular vectors scaled by the shrunken
+	 * singular values, leaving the rows past the median empty. the singular
+	 * vectors are found from the small l x l gram matrix B B^T: for each of
+	 * its eigenpairs (s^2, u), u^T B / s is a right singular vector of B.
+	 * this is far cheaper than an SVD of the wide B, and the directions it
+	 * loses precision on are those shrunk away. the new rows are orthogonal,
+	 * so their gram matrix is the diagonal of shrunken squares.
+	 */
+	private void shrink() {
+		EigenDecomposition<DenseMatrix64F> eig = DecompositionFactory.eigSymm(
+				rows, true);
+		if (!eig.decompose(gram.copy()))
+			throw new RuntimeException("eigen decomposition failed");
+		double[] squares = new double[rows];
+		for (int i = 0; i < rows; i++)
+			squares[i] = eig.getEigenvalue(i).getReal();
+		double[] sorted = squares.clone();
+		Arrays.sort(sorted);
+		double delta = sorted[rows - 1 - rows / 2];
+
+		int kept = 0;
+		for (double square : squares)
+			if (square > delta)
+				kept++;
+		DenseMatrix64F scaled = new DenseMatrix64F(kept, rows);
+		gram.zero();
+		int row = 0;
+		for (int i = 0; i < rows; i++) {
+			if (squares[i] <= delta)
+				continue;
+			DenseMatrix64F u = eig.getEigenVector(i);
+			double scale = Math.sqrt((squares[i] - delta) / squares[i]);
+			for (int r = 0; r < rows; r++)
+				scaled.set(row, r, scale * u.get(r));
+			gram.set(row, row, squares[i] - delta);
+			row++;
+		}
+		DenseMatrix64F shrunk = new DenseMatrix64F(kept, dimension);
+		CommonOps.mult(scaled, B, shrunk);
+		System.arraycopy(shrunk.data, 0, B.data, 0, shrunk.data.length);
+		Arrays.fill(B.data, shrunk.data.length, B.data.length, 0);
+		filled = kept;
+	}
+}
@@ -0,0 +1,24 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.projection;
+
+/**
+ * how {@link PrincipalComponentsAnalysis} finds its components
+ */
+public enum PCAType {
+
+	/** a full SVD of the dense, centered data matrix */
+	EXACT,
+	/**
+	 * a randomized truncated SVD, a few passes over the data holding only
+	 * d x (k + oversampling) values
+	 */
+	RANDOMIZED,
+	/**
+	 * one pass, summarizing the data with a {@link FrequentDirections}
+	 * sketch; each row costs O(l d), so prefer {@link #RANDOMIZED} for sparse
+	 * data that can be read more than once
+	 */
+	FREQUENT_DIRECTIONS
+}
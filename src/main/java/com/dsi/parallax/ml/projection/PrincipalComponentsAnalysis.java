@@ -3,24 +3,40 @@
  ******************************************************************************/
 package com.dsi.parallax.ml.projection;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.dsi.parallax.ml.instance.Instances;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.ml.vector.LinearVectorFactory;
 import org.apache.commons.lang.time.StopWatch;
 import org.apache.log4j.Logger;
 import org.ejml.alg.dense.decomposition.DecompositionFactory;
+import org.ejml.alg.dense.decomposition.EigenDecomposition;
 import org.ejml.alg.dense.decomposition.SingularValueDecomposition;
 import org.ejml.data.DenseMatrix64F;
 import org.ejml.ops.CommonOps;
 import org.ejml.ops.NormOps;
 import org.ejml.ops.SingularOps;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Random;
 
 // TODO: Auto-generated Javadoc
 /**
  * projection.
  *
+ * by default components come from a full SVD of the dense n x d data matrix,
+ * see {@link PCAType#EXACT}. for more data than that allows,
+ * {@link PCAType#RANDOMIZED} finds only the top components with a randomized
+ * range finder (Halko, Martinsson and Tropp 2011) over the centered scatter
+ * matrix, making {@link #setPowerIterations(int)} + 2 sparse passes over the
+ * data and holding d x (k + {@link #setOversampling(int)}) values.
+ * {@link PCAType#FREQUENT_DIRECTIONS} makes one pass, summarizing the data
+ * with a {@link FrequentDirections} sketch; sketches of a stream can also be
+ * built directly, see {@link #newSketch()} and
+ * {@link #build(FrequentDirections)}.
+ *
  * @author jattenberg
  */
 public class PrincipalComponentsAnalysis extends AbstractConstructedProjection {
@@ -46,6 +62,21 @@ public class PrincipalComponentsAnalysis extends AbstractConstructedProjection {
     /** The sample index. */
     private int sampleIndex;
     
+    /** how components are found */
+    private PCAType type = PCAType.EXACT;
+    
+    /** extra directions sampled beyond the components kept */
+    private int oversampling = 10;
+    
+    /** passes refining the randomized range, sharpening the spectrum */
+    private int powerIterations = 1;
+    
+    /** rows of the frequent directions sketch, 0 for 2 (k + oversampling) */
+    private int sketchSize = 0;
+    
+    /** seeds the randomized range finder, so builds are repeatable */
+    private static final long SEED = 1234567;
+    
     /**
      * Instantiates a new principal components analysis.
      *
@@ -84,6 +115,256 @@ public class PrincipalComponentsAnalysis extends AbstractConstructedProjection {
      */
     @Override
     public void build(Collection<LinearVector> X) {
+        switch (type) {
+        case RANDOMIZED:
+            buildRandomized(X);
+            return;
+        case FREQUENT_DIRECTIONS:
+            FrequentDirections sketch = newSketch();
+            for (LinearVector x : X)
+                sketch.add(x);
+            build(sketch);
+            return;
+        default:
+            buildExact(X);
+        }
+    }
+    
+    /**
+     * Sets how components are found.
+     *
+     * @param type the type
+     * @return this
+     */
+    public PrincipalComponentsAnalysis setType(PCAType type) {
+        this.type = type;
+        return this;
+    }
+    
+    public PCAType getType() {
+        return type;
+    }
+    
+    /**
+     * Sets the number of extra directions the approximate types track beyond
+     * the components kept.
+     *
+     * @param oversampling the oversampling
+     * @return this
+     */
+    public PrincipalComponentsAnalysis setOversampling(int oversampling) {
+        checkArgument(oversampling >= 0, "oversampling must be non-negative, given: %s", oversampling);
+        this.oversampling = oversampling;
+        return this;
+    }
+    
+    /**
+     * Sets the number of extra passes {@link PCAType#RANDOMIZED} makes to
+     * refine its range; more help when the spectrum decays slowly.
+     *
+     * @param powerIterations the power iterations
+     * @return this
+     */
+    public PrincipalComponentsAnalysis setPowerIterations(int powerIterations) {
+        checkArgument(powerIterations >= 0, "power iterations must be non-negative, given: %s", powerIterations);
+        this.powerIterations = powerIterations;
+        return this;
+    }
+    
+    /**
+     * Sets the number of rows held by {@link PCAType#FREQUENT_DIRECTIONS}
+     * sketches.
+     *
+     * @param sketchSize the sketch size
+     * @return this
+     */
+    public PrincipalComponentsAnalysis setSketchSize(int sketchSize) {
+        checkArgument(sketchSize > outDim, "sketch size must exceed the %s components, given: %s", outDim, sketchSize);
+        this.sketchSize = sketchSize;
+        return this;
+    }
+    
+    /**
+     * an empty sketch of this analysis' input, eg one for each partition of a
+     * stream.
+     *
+     * @return the sketch
+     */
+    public FrequentDirections newSketch() {
+        return new FrequentDirections(inDim, sketchSize > 0 ? sketchSize : 2 * (outDim + oversampling));
+    }
+    
+    /**
+     * find the components of the data summarized by a sketch, eg the merged
+     * sketches of several partitions.
+     *
+     * @param sketch the sketch
+     */
+    public void build(FrequentDirections sketch) {
+        checkArgument(sketch.getDimension() == inDim, "sketch dimension %s doesn't match %s", sketch.getDimension(), inDim);
+        if( outDim > sketch.getCount() )
+            throw new IllegalArgumentException("More data needed to compute the desired number of components");
+        StopWatch sw = new StopWatch();
+        sw.start();
+        mean = sketch.getMean();
+        DenseMatrix64F B = sketch.getSketch();
+        
+        // the centered scatter B^T B - n mu mu^T lies in the span of B's rows
+        // and the mean
+        DenseMatrix64F span = new DenseMatrix64F(inDim, B.numRows + 1);
+        for( int i = 0; i < B.numRows; i++ )
+            for( int j = 0; j < inDim; j++ )
+                span.set(j, i, B.get(i, j));
+        for( int j = 0; j < inDim; j++ )
+            span.set(j, B.numRows, mean[j]);
+        DenseMatrix64F Q = orthonormalize(span);
+        if( outDim > Q.numCols )
+            throw new IllegalArgumentException("More components requested that the data's length.");
+        
+        DenseMatrix64F BQ = new DenseMatrix64F(B.numRows, Q.numCols);
+        CommonOps.mult(B, Q, BQ);
+        DenseMatrix64F scatter = new DenseMatrix64F(Q.numCols, Q.numCols);
+        CommonOps.multTransA(BQ, BQ, scatter);
+        DenseMatrix64F projectedMean = new DenseMatrix64F(Q.numCols, 1);
+        CommonOps.multTransA(Q, DenseMatrix64F.wrap(inDim, 1, mean), projectedMean);
+        double n = sketch.getCount();
+        for( int a = 0; a < Q.numCols; a++ )
+            for( int b = 0; b < Q.numCols; b++ )
+                scatter.set(a, b, scatter.get(a, b) - n * projectedMean.get(a) * projectedMean.get(b));
+        
+        V_t = topComponents(scatter, Q, outDim);
+        isTrained = true;
+        logger.info("components of a " + B.numRows + " row sketch of " + sketch.getCount() + " examples took: " + sw.getTime() + "ms");
+    }
+    
+    /**
+     * the randomized range finder. a gaussian d x l test matrix is multiplied
+     * by the centered scatter matrix and orthonormalized, a few times, then
+     * the scatter matrix is restricted to the resulting l dimensional range
+     * and the top eigenvectors of that small problem are lifted back.
+     *
+     * @param X the data, read 2 + powerIterations times
+     */
+    private void buildRandomized(Collection<LinearVector> X) {
+        if( outDim > inDim )
+            throw new IllegalArgumentException("More components requested that the data's length.");
+        if( outDim > X.size() )
+            throw new IllegalArgumentException("More data needed to compute the desired number of components");
+        StopWatch sw = new StopWatch();
+        sw.start();
+        int l = Math.min(outDim + oversampling, inDim);
+        Random random = new Random(SEED);
+        DenseMatrix64F Q = new DenseMatrix64F(inDim, l);
+        for( int i = 0; i < Q.data.length; i++ )
+            Q.data[i] = random.nextGaussian();
+        
+        mean = new double[inDim];
+        for( int pass = 0; pass <= powerIterations; pass++ )
+            Q = orthonormalize(scatterTimes(X, Q));
+        
+        DenseMatrix64F scatter = new DenseMatrix64F(l, l);
+        CommonOps.multTransA(Q, scatterTimes(X, Q), scatter);
+        V_t = topComponents(scatter, Q, outDim);
+        isTrained = true;
+        logger.info("randomized SVD of " + X.size() + " examples, " + (powerIterations + 2) + " passes, took: " + sw.getTime() + "ms");
+    }
+    
+    /**
+     * one pass over the data computing (A - 1 mu^T)^T (A - 1 mu^T) M without
+     * centering, or densifying, any row: the product is accumulated as
+     * sum_x x (x^T M), then corrected by (1 / n) s (s^T M) where s is the sum
+     * of the rows. also sets the mean.
+     */
+    private DenseMatrix64F scatterTimes(Collection<LinearVector> X, DenseMatrix64F M) {
+        int l = M.numCols;
+        DenseMatrix64F out = new DenseMatrix64F(inDim, l);
+        double[] sums = new double[inDim];
+        double[] t = new double[l];
+        long n = 0;
+        for( LinearVector x : X ) {
+            if( x.size() != inDim )
+                throw new IllegalArgumentException("Unexpected sample size");
+            Arrays.fill(t, 0);
+            for( int x_i : x ) {
+                double value = x.getValue(x_i);
+                int offset = x_i * l;
+                for( int c = 0; c < l; c++ )
+                    t[c] += value * M.data[offset + c];
+            }
+            for( int x_i : x ) {
+                double value = x.getValue(x_i);
+                int offset = x_i * l;
+                for( int c = 0; c < l; c++ )
+                    out.data[offset + c] += value * t[c];
+                sums[x_i] += value;
+            }
+            n++;
+        }
+        Arrays.fill(t, 0);
+        for( int j = 0; j < inDim; j++ ) {
+            mean[j] = sums[j] / n;
+            for( int c = 0; c < l; c++ )
+                t[c] += mean[j] * M.data[j * l + c];
+        }
+        for( int j = 0; j < inDim; j++ )
+            for( int c = 0; c < l; c++ )
+                out.data[j * l + c] -= sums[j] * t[c];
+        return out;
+    }
+    
+    /**
+     * an orthonormal basis containing a tall matrix's columns. the left
+     * singular vectors are used rather than a QR decomposition, which fails
+     * on the rank deficient matrices sparse data often gives.
+     */
+    private static DenseMatrix64F orthonormalize(DenseMatrix64F Y) {
+        SingularValueDecomposition<DenseMatrix64F> svd = 
+                DecompositionFactory.svd(Y.numRows, Y.numCols, true, false, true);
+        if( !svd.decompose(Y) )
+            throw new RuntimeException("SVD failed");
+        return svd.getU(false);
+    }
+    
+    /**
+     * the top k eigenvectors of a symmetric matrix, expressed in the basis Q
+     * it was restricted to, as the rows of a k x d matrix.
+     */
+    private static DenseMatrix64F topComponents(DenseMatrix64F scatter, DenseMatrix64F Q, int k) {
+        int size = scatter.numRows;
+        // symmetrize away rounding error
+        for( int a = 0; a < size; a++ )
+            for( int b = 0; b < a; b++ ) {
+                double average = (scatter.get(a, b) + scatter.get(b, a)) / 2;
+                scatter.set(a, b, average);
+                scatter.set(b, a, average);
+            }
+        EigenDecomposition<DenseMatrix64F> eig = DecompositionFactory.eigSymm(size, true);
+        if( !eig.decompose(scatter) )
+            throw new RuntimeException("eigen decomposition failed");
+        
+        boolean[] taken = new boolean[size];
+        DenseMatrix64F components = new DenseMatrix64F(k, Q.numRows);
+        DenseMatrix64F component = new DenseMatrix64F(Q.numRows, 1);
+        for( int c = 0; c < k; c++ ) {
+            int best = -1;
+            for( int i = 0; i < size; i++ )
+                if( !taken[i] && (best < 0 || eig.getEigenvalue(i).getReal() > eig.getEigenvalue(best).getReal()) )
+                    best = i;
+            taken[best] = true;
+            CommonOps.mult(Q, eig.getEigenVector(best), component);
+            double norm = NormOps.normF(component);
+            for( int j = 0; j < Q.numRows; j++ )
+                components.set(c, j, component.get(j) / norm);
+        }
+        return components;
+    }
+    
+    /**
+     * copy the data into a dense matrix and take its full SVD.
+     *
+     * @param X the data
+     */
+    private void buildExact(Collection<LinearVector> X) {
         logger.info("adding " + X.size() + " examples to internal data structure for SVD");
         StopWatch sw = new StopWatch();
         sw.start();
@@ -5,7 +5,8 @@ package com.dsi.parallax.ml.projection;
 
 import com.dsi.parallax.ml.instance.Instances;
 import com.dsi.parallax.ml.vector.LinearVector;
-import com.google.common.collect.Lists;
+import com.google.common.base.Function;
+import com.google.common.collect.Collections2;
 
 import java.util.Collection;
 
@@ -74,10 +75,24 @@ public class RandomPCAProjection extends AbstractConstructedProjection
      */
     @Override
     public void build(Collection<LinearVector> X) {
-        Collection<LinearVector> Y = Lists.newLinkedList();
-        for(LinearVector x : X)
-            Y.add(hashproj.project(x));
-        pca.build(Y);
+        // hashed lazily, on each pass the pca makes, rather than held
+        pca.build(Collections2.transform(X, new Function<LinearVector, LinearVector>() {
+            @Override
+            public LinearVector apply(LinearVector x) {
+                return hashproj.project(x);
+            }
+        }));
+    }
+    
+    /**
+     * Sets how the components of the hashed vectors are found.
+     *
+     * @param type the type
+     * @return this
+     */
+    public RandomPCAProjection setType(PCAType type) {
+        pca.setType(type);
+        return this;
     }
     
     /* (non-Javadoc)
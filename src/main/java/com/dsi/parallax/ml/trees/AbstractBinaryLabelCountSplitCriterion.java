@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.trees;
+
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+
+/**
+ * Base class for {@link BinaryLabelCountSplitCriterion}s; tallies the label
+ * counts on either side of a split from an {@link AttributeValueSet} and
+ * scores them with {@link #computeObjective(double[][])}.
+ * 
+ * @author jattenberg
+ */
+public abstract class AbstractBinaryLabelCountSplitCriterion implements
+		BinaryLabelCountSplitCriterion {
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.parallax.ml.trees.SplitCriterion#computeObjective(com.parallax.ml
+	 * .trees.AttributeValueSet, double)
+	 */
+	@Override
+	public double computeObjective(
+			AttributeValueSet<BinaryClassificationTarget> attributeValues,
+			double split) {
+		double[][] counts = new double[2][2];
+
+		for (AttributeValueLabel<BinaryClassificationTarget> avl : attributeValues
+				.keySet()) {
+			int index = avl.getLabel().getValue() > 0.5 ? 1 : 0;
+			int threshSide = avl.getValue() > split ? 1 : 0;
+
+			counts[threshSide][index] += attributeValues.get(avl);
+		}
+		return computeObjective(counts);
+	}
+}
@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.trees;
+
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+
+/**
+ * a binary target split criterion whose objective depends only on how many
+ * examples of each class fall on either side of the split. such criteria can
+ * be evaluated from running label counts, so every threshold on a feature can
+ * be scored in a single pass over its sorted values.
+ * 
+ * @author jattenberg
+ */
+public interface BinaryLabelCountSplitCriterion extends
+		SplitCriterion<BinaryClassificationTarget> {
+
+	/**
+	 * Compute the objective of a split given its label counts.
+	 * 
+	 * @param counts
+	 *            counts[side][label]; side 0 holds examples with values less
+	 *            than or equal to the split, side 1 those greater. label 1 is
+	 *            the positive class (label value > 0.5), label 0 the negative.
+	 * @return the objective of the split
+	 */
+	public double computeObjective(double[][] counts);
+}
@@ -3,7 +3,6 @@
  ******************************************************************************/
 package com.dsi.parallax.ml.trees;
 
-import com.dsi.parallax.ml.target.BinaryClassificationTarget;
 import com.dsi.parallax.ml.util.MLUtils;
 
 /**
@@ -12,39 +11,28 @@ import com.dsi.parallax.ml.util.MLUtils;
  * 
  * @see {@link <a href="http://en.wikipedia.org/wiki/Gini_coefficient">Gini Coefficient</a>}
  */
-public class BinaryTargetGiniSplitCriterion implements
-		SplitCriterion<BinaryClassificationTarget> {
+public class BinaryTargetGiniSplitCriterion extends
+		AbstractBinaryLabelCountSplitCriterion {
 
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see
-	 * com.parallax.ml.trees.SplitCriterion#computeObjective(com.parallax.ml
-	 * .trees.AttributeValueSet, double)
+	 * com.parallax.ml.trees.BinaryLabelCountSplitCriterion#computeObjective
+	 * (double[][])
 	 */
 	@Override
-	public double computeObjective(
-			AttributeValueSet<BinaryClassificationTarget> attributeValues,
-			double split) {
-		double[] priors = new double[2];
-		double[][] posteriors = new double[2][2];
-		double[] xCounts = new double[2];
-
-		for (AttributeValueLabel<BinaryClassificationTarget> avl : attributeValues
-				.keySet()) {
-			int index = avl.getLabel().getValue() > 0.5 ? 1 : 0;
-			int threshSide = avl.getValue() > split ? 1 : 0;
-
-			priors[index] += attributeValues.get(avl);
-			posteriors[threshSide][index] += attributeValues.get(avl);
-			xCounts[threshSide] += attributeValues.get(avl);
-		}
+	public double computeObjective(double[][] counts) {
+		double[] priors = new double[] { counts[0][0] + counts[1][0],
+				counts[0][1] + counts[1][1] };
+		double[] xCounts = new double[] { counts[0][0] + counts[0][1],
+				counts[1][0] + counts[1][1] };
 
 		double impurity = MLUtils.giniImpurity(priors);
 		double posProb = xCounts[1] / (xCounts[1] + xCounts[0]);
 
-		impurity -= posProb * MLUtils.giniImpurity(posteriors[1]);
-		impurity -= (1. - posProb) * MLUtils.giniImpurity(posteriors[0]);
+		impurity -= posProb * MLUtils.giniImpurity(counts[1]);
+		impurity -= (1. - posProb) * MLUtils.giniImpurity(counts[0]);
 
 		return impurity;
 	}
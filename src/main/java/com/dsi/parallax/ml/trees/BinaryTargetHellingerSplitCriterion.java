@@ -3,8 +3,6 @@
  ******************************************************************************/
 package com.dsi.parallax.ml.trees;
 
-import com.dsi.parallax.ml.target.BinaryClassificationTarget;
-
 /**
  * A binary label tree decision function learner that learns a vector value
  * threshold function using the Hellinger distance. The Hellinger distance is
@@ -23,39 +21,27 @@ import com.dsi.parallax.ml.target.BinaryClassificationTarget;
  * 
  * The Hellinger distance ranges between 0 and sqrt(2), inclusive.
  */
-public class BinaryTargetHellingerSplitCriterion implements
-		SplitCriterion<BinaryClassificationTarget> {
+public class BinaryTargetHellingerSplitCriterion extends
+		AbstractBinaryLabelCountSplitCriterion {
 
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see
-	 * com.parallax.ml.trees.SplitCriterion#computeObjective(com.parallax.ml
-	 * .trees.AttributeValueSet, double)
+	 * com.parallax.ml.trees.BinaryLabelCountSplitCriterion#computeObjective
+	 * (double[][])
 	 */
 	@Override
-	public double computeObjective(
-			AttributeValueSet<BinaryClassificationTarget> attributeValues,
-			double split) {
-
-		double[][] posteriors = new double[2][2];
-		double[] xCounts = new double[2];
-
-		for (AttributeValueLabel<BinaryClassificationTarget> avl : attributeValues
-				.keySet()) {
-			int index = avl.getLabel().getValue() > 0.5 ? 1 : 0;
-			int threshSide = avl.getValue() > split ? 1 : 0;
-
-			posteriors[threshSide][index] += attributeValues.get(avl);
-			xCounts[threshSide] += attributeValues.get(avl);
-		}
+	public double computeObjective(double[][] counts) {
+		double[] xCounts = new double[] { counts[0][0] + counts[0][1],
+				counts[1][0] + counts[1][1] };
 
 		double hellingerSum = 0.0;
 
-		hellingerSum += Math.pow(Math.sqrt(posteriors[1][0] / xCounts[0])
-				- Math.sqrt(posteriors[1][1] / xCounts[1]), 2);
-		hellingerSum += Math.pow(Math.sqrt(posteriors[0][0] / xCounts[0])
-				- Math.sqrt(posteriors[0][1] / xCounts[1]), 2);
+		hellingerSum += Math.pow(Math.sqrt(counts[1][0] / xCounts[0])
+				- Math.sqrt(counts[1][1] / xCounts[1]), 2);
+		hellingerSum += Math.pow(Math.sqrt(counts[0][0] / xCounts[0])
+				- Math.sqrt(counts[0][1] / xCounts[1]), 2);
 
 		return Math.sqrt(hellingerSum);
 
@@ -3,7 +3,6 @@
  ******************************************************************************/
 package com.dsi.parallax.ml.trees;
 
-import com.dsi.parallax.ml.target.BinaryClassificationTarget;
 import com.dsi.parallax.ml.util.MLUtils;
 
 /**
@@ -11,38 +10,28 @@ import com.dsi.parallax.ml.util.MLUtils;
  * gain provided by a particular split.
  * {@link <a href="http://en.wikipedia.org/wiki/Information_gain_in_decision_trees">Information Gain</a>}
  */
-public class BinaryTargetInfoGainSplitCriterion implements
-		SplitCriterion<BinaryClassificationTarget> {
+public class BinaryTargetInfoGainSplitCriterion extends
+		AbstractBinaryLabelCountSplitCriterion {
 
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see
-	 * com.parallax.ml.trees.SplitCriterion#computeObjective(com.parallax.ml
-	 * .trees.AttributeValueSet, double)
+	 * com.parallax.ml.trees.BinaryLabelCountSplitCriterion#computeObjective
+	 * (double[][])
 	 */
 	@Override
-	public double computeObjective(
-			AttributeValueSet<BinaryClassificationTarget> attributeValues,
-			double split) {
-		double[] priors = new double[2];
-		double[][] posteriors = new double[2][2];
-		double[] xCounts = new double[2];
+	public double computeObjective(double[][] counts) {
+		double[] priors = new double[] { counts[0][0] + counts[1][0],
+				counts[0][1] + counts[1][1] };
+		double[] xCounts = new double[] { counts[0][0] + counts[0][1],
+				counts[1][0] + counts[1][1] };
 
-		for (AttributeValueLabel<BinaryClassificationTarget> avl : attributeValues
-				.keySet()) {
-			int index = avl.getLabel().getValue() > 0.5 ? 1 : 0;
-			int threshSide = avl.getValue() > split ? 1 : 0;
-
-			priors[index] += attributeValues.get(avl);
-			posteriors[threshSide][index] += attributeValues.get(avl);
-			xCounts[threshSide] += attributeValues.get(avl);
-		}
 		double entropy = MLUtils.entropy(priors);
 		double posProb = xCounts[1] / (xCounts[1] + xCounts[0]);
 
-		entropy -= posProb * MLUtils.entropy(posteriors[1]);
-		entropy -= (1. - posProb) * MLUtils.entropy(posteriors[0]);
+		entropy -= posProb * MLUtils.entropy(counts[1]);
+		entropy -= (1. - posProb) * MLUtils.entropy(counts[0]);
 		return entropy;
 	}
 }
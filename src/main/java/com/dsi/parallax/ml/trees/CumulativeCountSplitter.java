@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.trees;
+
+import java.util.Map.Entry;
+
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+
+/**
+ * finds the same splits as {@link OrderedSplitter}, but when the criterion is
+ * a {@link BinaryLabelCountSplitCriterion} every candidate is scored from
+ * running label counts in a single pass over the attribute values, rather
+ * than rescanning all of them for each candidate. other criteria are handed
+ * to an {@link OrderedSplitter}.
+ * 
+ * @author jattenberg
+ */
+public class CumulativeCountSplitter implements
+		Splitter<BinaryClassificationTarget> {
+
+	/** splitter used for criteria that can't be scored from counts. */
+	private final OrderedSplitter<BinaryClassificationTarget> ordered = new OrderedSplitter<BinaryClassificationTarget>();
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.parallax.ml.trees.Splitter#buildSplit(com.parallax.ml.trees.SplitCriterion
+	 * , com.parallax.ml.trees.AttributeValueSet, int)
+	 */
+	@Override
+	public Benefit buildSplit(SplitCriterion<BinaryClassificationTarget> criterion,
+			AttributeValueSet<BinaryClassificationTarget> attributeValues,
+			int index) {
+		if (!(criterion instanceof BinaryLabelCountSplitCriterion))
+			return ordered.buildSplit(criterion, attributeValues, index);
+
+		double[] totals = new double[2];
+		for (Entry<AttributeValueLabel<BinaryClassificationTarget>, Double> entry : attributeValues
+				.entrySet())
+			totals[labelIndex(entry.getKey())] += entry.getValue();
+
+		CumulativeSplitScan scan = new CumulativeSplitScan(
+				(BinaryLabelCountSplitCriterion) criterion, totals);
+		double value = Double.NaN;
+		double[] group = new double[2];
+		for (Entry<AttributeValueLabel<BinaryClassificationTarget>, Double> entry : attributeValues
+				.entrySet()) {
+			double current = entry.getKey().getValue();
+			if (current != value && !Double.isNaN(value)) {
+				scan.add(value, group[0], group[1]);
+				group[0] = 0;
+				group[1] = 0;
+			}
+			value = current;
+			group[labelIndex(entry.getKey())] += entry.getValue();
+		}
+		if (!Double.isNaN(value))
+			scan.add(value, group[0], group[1]);
+		return scan.getBenefit(index);
+	}
+
+	private static int labelIndex(
+			AttributeValueLabel<BinaryClassificationTarget> avl) {
+		return avl.getLabel().getValue() > 0.5 ? 1 : 0;
+	}
+}
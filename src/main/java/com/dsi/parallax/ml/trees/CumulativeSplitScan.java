@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.trees;
+
+/**
+ * finds the best threshold on a single feature in one pass. values are fed in
+ * ascending order, one group per distinct value along with the label counts
+ * of that group; running counts give the label counts on either side of each
+ * candidate split. candidates are chosen as in {@link OrderedSplitter}: the
+ * midpoint between adjacent values, wherever the last label of the lower value
+ * differs from the first label of the higher one.
+ * 
+ * @author jattenberg
+ */
+class CumulativeSplitScan {
+
+	private final BinaryLabelCountSplitCriterion criterion;
+	private final double[] totals;
+	private final double[] below = new double[2];
+	private final double[][] counts = new double[2][2];
+	private double lastValue = Double.NaN;
+	private boolean lastHasPositive;
+	private double bestSplit = Double.NaN;
+	private double bestSplitBenefit = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Instantiates a new scan.
+	 * 
+	 * @param criterion
+	 *            the criterion used to score each split
+	 * @param totals
+	 *            the number of negative and positive examples over all values
+	 */
+	CumulativeSplitScan(BinaryLabelCountSplitCriterion criterion,
+			double[] totals) {
+		this.criterion = criterion;
+		this.totals = totals;
+	}
+
+	/**
+	 * adds the next distinct value.
+	 * 
+	 * @param value
+	 *            the value, greater than any previously added
+	 * @param negatives
+	 *            the number of negative examples with this value
+	 * @param positives
+	 *            the number of positive examples with this value
+	 */
+	void add(double value, double negatives, double positives) {
+		if (!Double.isNaN(lastValue) && lastHasPositive != (negatives == 0)) {
+			double split = (lastValue + value) / 2.0;
+			counts[0][0] = below[0];
+			counts[0][1] = below[1];
+			// the midpoint of adjacent doubles may round up to value
+			if (value <= split) {
+				counts[0][0] += negatives;
+				counts[0][1] += positives;
+			}
+			counts[1][0] = totals[0] - counts[0][0];
+			counts[1][1] = totals[1] - counts[0][1];
+			double benefit = criterion.computeObjective(counts);
+			if (benefit > bestSplitBenefit) {
+				bestSplitBenefit = benefit;
+				bestSplit = split;
+			}
+		}
+		below[0] += negatives;
+		below[1] += positives;
+		lastValue = value;
+		lastHasPositive = positives > 0;
+	}
+
+	/**
+	 * @param index
+	 *            the index of the feature scanned
+	 * @return the benefit of the best split found
+	 */
+	Benefit getBenefit(int index) {
+		return new Benefit(index, bestSplitBenefit, bestSplit);
+	}
+}
@@ -0,0 +1,406 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.trees;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.instance.Instances;
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.target.Target;
+import com.dsi.parallax.ml.util.Histogram;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * An AttributeValueCache that bins every feature once, at the root of the
+ * tree, and searches splits over per-bin label counts. the non-zero values of
+ * each feature are summarized with a streaming {@link Histogram}; bin
+ * boundaries are the midpoints between adjacent histogram centroids, with zero
+ * always kept as a centroid of its own, so a feature gets at most maxBins
+ * bins. a feature with fewer distinct values than that is binned exactly.
+ *
+ * each node keeps a [bin][label] count table for every feature, so finding
+ * the best split on a feature costs the number of bins rather than the number
+ * of examples. when a node is split only the smaller child is counted; the
+ * larger child's table is the parent's minus the smaller's. split thresholds
+ * are bin boundaries, so trees are approximate where a feature had to be
+ * summarized.
+ *
+ * {@link TreeBuilder} uses this whenever it's paired with a
+ * {@link BinaryLabelCountSplitCriterion}; otherwise it behaves like
+ * {@link RecomputingAttributeValueCache}.
+ *
+ * @author jattenberg
+ */
+public class HistogramAttributeValueCache implements
+		SplitSearchingAttributeValueCache {
+
+	/** the default maximum number of bins per feature. */
+	public static final int DEFAULT_BINS = 255;
+
+	/** the maximum number of bins per feature. */
+	private final int maxBins;
+
+	/** label counts for each node being built, by identity. */
+	private final Map<Object, Node> nodes = new IdentityHashMap<Object, Node>();
+
+	/** used when the split criterion can't be evaluated from counts. */
+	private final RecomputingAttributeValueCache recomputing = new RecomputingAttributeValueCache();
+
+	/**
+	 * Instantiates a new histogram attribute value cache with
+	 * {@link #DEFAULT_BINS} bins per feature.
+	 */
+	public HistogramAttributeValueCache() {
+		this(DEFAULT_BINS);
+	}
+
+	/**
+	 * Instantiates a new histogram attribute value cache.
+	 *
+	 * @param maxBins
+	 *            the maximum number of bins per feature, at least 2
+	 */
+	public HistogramAttributeValueCache(int maxBins) {
+		checkArgument(maxBins >= 2, "maxBins must be at least 2, given %s",
+				maxBins);
+		this.maxBins = maxBins;
+	}
+
+	/**
+	 * @return the maximum number of bins per feature
+	 */
+	public int getMaxBins() {
+		return maxBins;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.parallax.ml.trees.AttributeValueCache#getAttributeValueSet(com.parallax
+	 * .ml.instance.Instances, int)
+	 */
+	@Override
+	public <T extends Target, I extends Instances<? extends Instance<T>>> AttributeValueSet<T> getAttributeValueSet(
+			I instances, int dimension) {
+		return recomputing.getAttributeValueSet(instances, dimension);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.parallax.ml.trees.SplitSearchingAttributeValueCache#buildSplit(com
+	 * .parallax.ml.trees.BinaryLabelCountSplitCriterion,
+	 * com.parallax.ml.instance.Instances, int)
+	 */
+	@Override
+	public Benefit buildSplit(BinaryLabelCountSplitCriterion criterion,
+			Instances<? extends Instance<BinaryClassificationTarget>> instances,
+			int dimension) {
+		Node node = getNode(instances);
+		Binning binning = node.binning;
+		double bestSplit = Double.NaN;
+		double bestSplitBenefit = Double.NEGATIVE_INFINITY;
+
+		double[] below = new double[2];
+		double[][] counts = new double[2][2];
+		// the last bin of a feature has nothing above it
+		for (int bin = binning.offsets[dimension]; bin < binning.offsets[dimension + 1] - 1; bin++) {
+			int negatives = node.counts[2 * bin];
+			int positives = node.counts[2 * bin + 1];
+			if (negatives + positives == 0)
+				continue;
+			below[0] += negatives;
+			below[1] += positives;
+			if (below[0] + below[1] == node.totals[0] + node.totals[1])
+				break;
+			counts[0][0] = below[0];
+			counts[0][1] = below[1];
+			counts[1][0] = node.totals[0] - below[0];
+			counts[1][1] = node.totals[1] - below[1];
+			double benefit = criterion.computeObjective(counts);
+			if (benefit > bestSplitBenefit) {
+				bestSplitBenefit = benefit;
+				bestSplit = binning.cuts[bin];
+			}
+		}
+		return new Benefit(dimension, bestSplitBenefit, bestSplit);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.parallax.ml.trees.SplitSearchingAttributeValueCache#partition(com
+	 * .parallax.ml.instance.Instances, com.parallax.ml.instance.Instances,
+	 * com.parallax.ml.instance.Instances, int, double)
+	 */
+	@Override
+	public void partition(
+			Instances<? extends Instance<BinaryClassificationTarget>> parent,
+			Instances<? extends Instance<BinaryClassificationTarget>> left,
+			Instances<? extends Instance<BinaryClassificationTarget>> right,
+			int dimension, double split) {
+		Node node = getNode(parent);
+
+		// same test as Instances.splitOnValue: value <= split goes left
+		int[] leftRows = new int[node.rows.length];
+		int[] rightRows = new int[node.rows.length];
+		int leftSize = 0, rightSize = 0, row = 0;
+		for (Instance<BinaryClassificationTarget> inst : parent) {
+			if (inst.getFeatureValue(dimension) <= split)
+				leftRows[leftSize++] = node.rows[row++];
+			else
+				rightRows[rightSize++] = node.rows[row++];
+		}
+		checkState(leftSize == left.size() && rightSize == right.size(),
+				"children of sizes %s, %s don't match the split %s, %s",
+				left.size(), right.size(), leftSize, rightSize);
+		leftRows = trim(leftRows, leftSize);
+		rightRows = trim(rightRows, rightSize);
+
+		// count the smaller child, subtract it from the parent for the other
+		Node leftNode, rightNode;
+		if (leftSize <= rightSize) {
+			leftNode = count(node.binning, leftRows);
+			rightNode = subtract(node, leftNode, rightRows);
+		} else {
+			rightNode = count(node.binning, rightRows);
+			leftNode = subtract(node, rightNode, leftRows);
+		}
+
+		synchronized (nodes) {
+			nodes.put(left, leftNode);
+			nodes.put(right, rightNode);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.parallax.ml.trees.SplitSearchingAttributeValueCache#release(com
+	 * .parallax.ml.instance.Instances)
+	 */
+	@Override
+	public void release(Instances<?> instances) {
+		synchronized (nodes) {
+			nodes.remove(instances);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.parallax.ml.trees.SplitSearchingAttributeValueCache#clear()
+	 */
+	@Override
+	public void clear() {
+		synchronized (nodes) {
+			nodes.clear();
+		}
+	}
+
+	private Node getNode(
+			Instances<? extends Instance<BinaryClassificationTarget>> instances) {
+		synchronized (nodes) {
+			Node node = nodes.get(instances);
+			if (null == node) {
+				Binning binning = new Binning(instances, maxBins);
+				int[] rows = new int[binning.labels.length];
+				for (int row = 0; row < rows.length; row++)
+					rows[row] = row;
+				node = count(binning, rows);
+				nodes.put(instances, node);
+			}
+			return node;
+		}
+	}
+
+	private static int[] trim(int[] rows, int size) {
+		if (rows.length == size)
+			return rows;
+		int[] trimmed = new int[size];
+		System.arraycopy(rows, 0, trimmed, 0, size);
+		return trimmed;
+	}
+
+	/** builds the count table for the given rows directly. */
+	private static Node count(Binning binning, int[] rows) {
+		Node node = new Node(binning, rows);
+		for (int row : rows) {
+			int label = binning.labels[row];
+			node.totals[label]++;
+			for (int i = binning.rowOffsets[row]; i < binning.rowOffsets[row + 1]; i++)
+				node.counts[2 * binning.entries[i] + label]++;
+		}
+		// so far each feature's bins only hold its non-zero values
+		for (int dim = 0; dim < binning.dimensions; dim++) {
+			int from = binning.offsets[dim], to = binning.offsets[dim + 1];
+			if (from == to)
+				continue;
+			int negatives = (int) node.totals[0], positives = (int) node.totals[1];
+			for (int bin = from; bin < to; bin++) {
+				negatives -= node.counts[2 * bin];
+				positives -= node.counts[2 * bin + 1];
+			}
+			node.counts[2 * binning.zeroBins[dim]] += negatives;
+			node.counts[2 * binning.zeroBins[dim] + 1] += positives;
+		}
+		return node;
+	}
+
+	/** the count table of parent's other child, given one of them. */
+	private static Node subtract(Node parent, Node child, int[] rows) {
+		Node node = new Node(parent.binning, rows);
+		node.totals[0] = parent.totals[0] - child.totals[0];
+		node.totals[1] = parent.totals[1] - child.totals[1];
+		for (int i = 0; i < node.counts.length; i++)
+			node.counts[i] = parent.counts[i] - child.counts[i];
+		return node;
+	}
+
+	/**
+	 * the bins of every feature, and the bin of every non-zero value in the
+	 * instances the tree is being built from. the bins of feature d are
+	 * [offsets[d], offsets[d + 1]); values in bin b are at most cuts[b] and
+	 * greater than cuts[b - 1]. features that are zero everywhere have no bins.
+	 * the bins of row r's non-zero values are entries[rowOffsets[r],
+	 * rowOffsets[r + 1]).
+	 */
+	private static class Binning {
+		final int dimensions;
+		final int[] offsets;
+		final int[] zeroBins;
+		final double[] cuts;
+		final byte[] labels;
+		final int[] rowOffsets;
+		final int[] entries;
+
+		Binning(Instances<? extends Instance<BinaryClassificationTarget>> instances,
+				int maxBins) {
+			dimensions = instances.getDimensions();
+			labels = new byte[instances.size()];
+			rowOffsets = new int[instances.size() + 1];
+
+			// one bin is reserved for zero
+			Histogram[] histograms = new Histogram[dimensions];
+			int[] nonZeros = new int[dimensions];
+			int row = 0;
+			for (Instance<BinaryClassificationTarget> inst : instances) {
+				labels[row] = (byte) (inst.getLabel().getValue() > 0.5 ? 1 : 0);
+				for (int dim : inst) {
+					double value = inst.getFeatureValue(dim);
+					if (dim < dimensions && value != 0) {
+						if (null == histograms[dim])
+							histograms[dim] = new Histogram(maxBins - 1);
+						histograms[dim].add(value);
+						nonZeros[dim]++;
+						rowOffsets[row + 1]++;
+					}
+				}
+				row++;
+			}
+
+			offsets = new int[dimensions + 1];
+			zeroBins = new int[dimensions];
+			double[][] featureCuts = new double[dimensions][];
+			for (int dim = 0; dim < dimensions; dim++) {
+				if (null != histograms[dim])
+					featureCuts[dim] = cuts(histograms[dim],
+							nonZeros[dim] < labels.length);
+				int bins = null == featureCuts[dim] ? 0
+						: featureCuts[dim].length + 1;
+				offsets[dim + 1] = offsets[dim] + bins;
+			}
+			cuts = new double[offsets[dimensions]];
+			for (int dim = 0; dim < dimensions; dim++) {
+				if (null == featureCuts[dim])
+					continue;
+				System.arraycopy(featureCuts[dim], 0, cuts, offsets[dim],
+						featureCuts[dim].length);
+				cuts[offsets[dim + 1] - 1] = Double.POSITIVE_INFINITY;
+				zeroBins[dim] = offsets[dim] + bin(featureCuts[dim], 0);
+			}
+
+			for (row = 0; row < labels.length; row++)
+				rowOffsets[row + 1] += rowOffsets[row];
+			entries = new int[rowOffsets[labels.length]];
+			int entry = 0;
+			for (Instance<BinaryClassificationTarget> inst : instances) {
+				for (int dim : inst) {
+					double value = inst.getFeatureValue(dim);
+					if (dim < dimensions && value != 0)
+						entries[entry++] = offsets[dim]
+								+ bin(featureCuts[dim], value);
+				}
+			}
+		}
+
+		/**
+		 * boundaries between the histogram's centroids, and zero if the
+		 * feature has any zeros.
+		 */
+		private static double[] cuts(Histogram histogram, boolean hasZeros) {
+			List<Double> bins = histogram.toList();
+			int used = histogram.getUsedBins();
+			double[] centroids = new double[used + 1];
+			int size = 0;
+			boolean zeroPending = hasZeros;
+			// toList() is [bin count, x0, y0, x1, y1, ...] in ascending x
+			for (int b = 0; b < used; b++) {
+				double x = bins.get(1 + 2 * b);
+				if (zeroPending && x >= 0) {
+					centroids[size++] = 0;
+					zeroPending = false;
+				}
+				if (size == 0 || x != centroids[size - 1])
+					centroids[size++] = x;
+			}
+			if (zeroPending)
+				centroids[size++] = 0;
+
+			double[] cuts = new double[size - 1];
+			for (int i = 0; i < cuts.length; i++) {
+				double cut = (centroids[i] + centroids[i + 1]) / 2.0;
+				// the midpoint of adjacent doubles may round up
+				cuts[i] = cut < centroids[i + 1] ? cut : centroids[i];
+			}
+			return cuts;
+		}
+
+		/** the number of cuts below value. */
+		private static int bin(double[] cuts, double value) {
+			int low = 0, high = cuts.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (cuts[mid] < value)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * the instances at a node, as rows of the binning, with negative and
+	 * positive counts for every bin interleaved.
+	 */
+	private static class Node {
+		final Binning binning;
+		final int[] rows;
+		final int[] counts;
+		final double[] totals = new double[2];
+
+		Node(Binning binning, int[] rows) {
+			this.binning = binning;
+			this.rows = rows;
+			counts = new int[2 * binning.cuts.length];
+		}
+	}
+}
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.trees;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.instance.Instances;
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.target.Target;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * An AttributeValueCache that sorts each feature once, at the root of the
+ * tree, and searches splits directly over primitive arrays. for every node it
+ * keeps, per feature, the rows with a non-zero value in ascending order of
+ * value; zeros are implicit, so sparse data costs only its non-zero entries.
+ *
+ * {@link #buildSplit(BinaryLabelCountSplitCriterion, Instances, int)} scores
+ * every threshold on a feature in one pass using running label counts, and
+ * finds the same splits as {@link OrderedSplitter} for 0/1 labels.
+ * {@link #partition(Instances, Instances, Instances, int, double)} hands the
+ * sorted columns down to the children of a split without re-sorting.
+ * {@link TreeBuilder} uses these whenever this cache is paired with a
+ * {@link BinaryLabelCountSplitCriterion}; otherwise it behaves like
+ * {@link RecomputingAttributeValueCache}.
+ *
+ * @author jattenberg
+ */
+public class PresortedAttributeValueCache implements
+		SplitSearchingAttributeValueCache {
+
+	/** sorted columns for each node being built, by identity. */
+	private final Map<Object, Columns> columns = new IdentityHashMap<Object, Columns>();
+
+	/** used when the split criterion can't be evaluated from counts. */
+	private final RecomputingAttributeValueCache recomputing = new RecomputingAttributeValueCache();
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.parallax.ml.trees.AttributeValueCache#getAttributeValueSet(com.parallax
+	 * .ml.instance.Instances, int)
+	 */
+	@Override
+	public <T extends Target, I extends Instances<? extends Instance<T>>> AttributeValueSet<T> getAttributeValueSet(
+			I instances, int dimension) {
+		return recomputing.getAttributeValueSet(instances, dimension);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.parallax.ml.trees.SplitSearchingAttributeValueCache#buildSplit(com
+	 * .parallax.ml.trees.BinaryLabelCountSplitCriterion,
+	 * com.parallax.ml.instance.Instances, int)
+	 */
+	@Override
+	public Benefit buildSplit(BinaryLabelCountSplitCriterion criterion,
+			Instances<? extends Instance<BinaryClassificationTarget>> instances,
+			int dimension) {
+		Columns node = getColumns(instances);
+		int from = node.offsets[dimension];
+		int to = node.offsets[dimension + 1];
+
+		double[] zeros = new double[] { node.totals[0], node.totals[1] };
+		for (int i = from; i < to; i++)
+			zeros[node.labels[node.rows[i]]]--;
+		boolean zerosPending = zeros[0] + zeros[1] > 0;
+
+		CumulativeSplitScan scan = new CumulativeSplitScan(criterion,
+				node.totals);
+		int i = from;
+		while (i < to) {
+			double value = node.values[i];
+			if (zerosPending && Double.compare(value, 0) > 0) {
+				scan.add(0, zeros[0], zeros[1]);
+				zerosPending = false;
+			}
+			int negatives = 0, positives = 0;
+			for (; i < to && Double.compare(node.values[i], value) == 0; i++) {
+				if (node.labels[node.rows[i]] == 1)
+					positives++;
+				else
+					negatives++;
+			}
+			scan.add(value, negatives, positives);
+		}
+		if (zerosPending)
+			scan.add(0, zeros[0], zeros[1]);
+		return scan.getBenefit(dimension);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.parallax.ml.trees.SplitSearchingAttributeValueCache#partition(com
+	 * .parallax.ml.instance.Instances, com.parallax.ml.instance.Instances,
+	 * com.parallax.ml.instance.Instances, int, double)
+	 */
+	@Override
+	public void partition(
+			Instances<? extends Instance<BinaryClassificationTarget>> parent,
+			Instances<? extends Instance<BinaryClassificationTarget>> left,
+			Instances<? extends Instance<BinaryClassificationTarget>> right,
+			int dimension, double split) {
+		Columns node = getColumns(parent);
+
+		// same test as Instances.splitOnValue: value <= split goes left
+		boolean[] goesRight = new boolean[node.size];
+		if (!(0 <= split))
+			Arrays.fill(goesRight, true);
+		for (int i = node.offsets[dimension]; i < node.offsets[dimension + 1]; i++)
+			goesRight[node.rows[i]] = !(node.values[i] <= split);
+
+		int[] newRow = new int[node.size];
+		int leftSize = 0, rightSize = 0;
+		for (int row = 0; row < node.size; row++)
+			newRow[row] = goesRight[row] ? rightSize++ : leftSize++;
+		checkState(leftSize == left.size() && rightSize == right.size(),
+				"children of sizes %s, %s don't match the split %s, %s",
+				left.size(), right.size(), leftSize, rightSize);
+
+		Columns leftColumns = new Columns(leftSize, node.dimensions);
+		Columns rightColumns = new Columns(rightSize, node.dimensions);
+		for (int row = 0; row < node.size; row++) {
+			Columns child = goesRight[row] ? rightColumns : leftColumns;
+			child.labels[newRow[row]] = node.labels[row];
+			child.totals[node.labels[row]]++;
+		}
+
+		int leftEntries = 0;
+		for (int i = 0; i < node.offsets[node.dimensions]; i++)
+			if (!goesRight[node.rows[i]])
+				leftEntries++;
+		leftColumns.allocate(leftEntries);
+		rightColumns.allocate(node.offsets[node.dimensions] - leftEntries);
+
+		// walking each column in order keeps the children's columns sorted
+		int l = 0, r = 0;
+		for (int dim = 0; dim < node.dimensions; dim++) {
+			leftColumns.offsets[dim] = l;
+			rightColumns.offsets[dim] = r;
+			for (int i = node.offsets[dim]; i < node.offsets[dim + 1]; i++) {
+				int row = node.rows[i];
+				if (goesRight[row]) {
+					rightColumns.rows[r] = newRow[row];
+					rightColumns.values[r++] = node.values[i];
+				} else {
+					leftColumns.rows[l] = newRow[row];
+					leftColumns.values[l++] = node.values[i];
+				}
+			}
+		}
+		leftColumns.offsets[node.dimensions] = l;
+		rightColumns.offsets[node.dimensions] = r;
+
+		synchronized (columns) {
+			columns.put(left, leftColumns);
+			columns.put(right, rightColumns);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.parallax.ml.trees.SplitSearchingAttributeValueCache#release(com
+	 * .parallax.ml.instance.Instances)
+	 */
+	@Override
+	public void release(Instances<?> instances) {
+		synchronized (columns) {
+			columns.remove(instances);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.parallax.ml.trees.SplitSearchingAttributeValueCache#clear()
+	 */
+	@Override
+	public void clear() {
+		synchronized (columns) {
+			columns.clear();
+		}
+	}
+
+	private Columns getColumns(
+			Instances<? extends Instance<BinaryClassificationTarget>> instances) {
+		synchronized (columns) {
+			Columns node = columns.get(instances);
+			if (null == node) {
+				node = sort(instances);
+				columns.put(instances, node);
+			}
+			return node;
+		}
+	}
+
+	private static Columns sort(
+			Instances<? extends Instance<BinaryClassificationTarget>> instances) {
+		int dimensions = instances.getDimensions();
+		Columns node = new Columns(instances.size(), dimensions);
+
+		int row = 0;
+		for (Instance<BinaryClassificationTarget> inst : instances) {
+			node.labels[row] = (byte) (inst.getLabel().getValue() > 0.5 ? 1 : 0);
+			node.totals[node.labels[row]]++;
+			for (int dim : inst)
+				if (dim < dimensions && inst.getFeatureValue(dim) != 0)
+					node.offsets[dim + 1]++;
+			row++;
+		}
+		for (int dim = 0; dim < dimensions; dim++)
+			node.offsets[dim + 1] += node.offsets[dim];
+		node.allocate(node.offsets[dimensions]);
+
+		int[] next = new int[dimensions];
+		System.arraycopy(node.offsets, 0, next, 0, dimensions);
+		row = 0;
+		for (Instance<BinaryClassificationTarget> inst : instances) {
+			for (int dim : inst) {
+				double value = inst.getFeatureValue(dim);
+				if (dim < dimensions && value != 0) {
+					node.rows[next[dim]] = row;
+					node.values[next[dim]++] = value;
+				}
+			}
+			row++;
+		}
+		for (int dim = 0; dim < dimensions; dim++)
+			sort(node.values, node.rows, node.offsets[dim],
+					node.offsets[dim + 1]);
+		return node;
+	}
+
+	// sorts values[from, to) ascending, moving rows along with them
+	private static void sort(double[] values, int[] rows, int from, int to) {
+		while (to - from > 16) {
+			int mid = (from + to) >>> 1;
+			if (Double.compare(values[mid], values[from]) < 0)
+				swap(values, rows, mid, from);
+			if (Double.compare(values[to - 1], values[from]) < 0)
+				swap(values, rows, to - 1, from);
+			if (Double.compare(values[to - 1], values[mid]) < 0)
+				swap(values, rows, to - 1, mid);
+			double pivot = values[mid];
+			int i = from, j = to - 1;
+			while (i <= j) {
+				while (Double.compare(values[i], pivot) < 0)
+					i++;
+				while (Double.compare(values[j], pivot) > 0)
+					j--;
+				if (i <= j)
+					swap(values, rows, i++, j--);
+			}
+			// recurse into the smaller half, loop on the larger
+			if (j - from < to - i) {
+				sort(values, rows, from, j + 1);
+				from = i;
+			} else {
+				sort(values, rows, i, to);
+				to = j + 1;
+			}
+		}
+		for (int i = from + 1; i < to; i++)
+			for (int j = i; j > from
+					&& Double.compare(values[j], values[j - 1]) < 0; j--)
+				swap(values, rows, j, j - 1);
+	}
+
+	private static void swap(double[] values, int[] rows, int i, int j) {
+		double value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+		int row = rows[i];
+		rows[i] = rows[j];
+		rows[j] = row;
+	}
+
+	/**
+	 * the non-zero entries of every feature at a node, sorted by value. the
+	 * entries of feature d are at [offsets[d], offsets[d + 1]); rows index the
+	 * node's instances in iteration order.
+	 */
+	private static class Columns {
+		final int size;
+		final int dimensions;
+		final byte[] labels;
+		final double[] totals = new double[2];
+		final int[] offsets;
+		int[] rows;
+		double[] values;
+
+		Columns(int size, int dimensions) {
+			this.size = size;
+			this.dimensions = dimensions;
+			labels = new byte[size];
+			offsets = new int[dimensions + 1];
+		}
+
+		void allocate(int entries) {
+			rows = new int[entries];
+			values = new double[entries];
+		}
+	}
+}
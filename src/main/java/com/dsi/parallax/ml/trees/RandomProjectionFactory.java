@@ -10,7 +10,7 @@ import com.dsi.parallax.ml.projection.Projection;
 /**
  * A factory for creating RandomProjection objects.
  */
-public class RandomProjectionFactory implements ProjectionFactory {
+public class RandomProjectionFactory implements SeededProjectionFactory {
 
 	/** The salt. */
 	private int salt;
@@ -39,4 +39,15 @@ public class RandomProjectionFactory implements ProjectionFactory {
 		int outdim = (int) Math.max(1, Math.round(inputDim * percentage));
 		return new HashProjection(inputDim, outdim, salt++);
 	}
+
+	/* (non-Javadoc)
+	 * @see com.parallax.ml.trees.SeededProjectionFactory#buildProjection(int, double, long)
+	 */
+	@Override
+	public Projection buildProjection(int inputDim, double percentage,
+			long seed) {
+		int outdim = (int) Math.max(1, Math.round(inputDim * percentage));
+		return new HashProjection(inputDim, outdim, salt
+				+ (int) (seed ^ (seed >>> 32)));
+	}
 }
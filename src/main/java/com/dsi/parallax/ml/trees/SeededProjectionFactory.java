@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.trees;
+
+import com.dsi.parallax.ml.projection.Projection;
+
+/**
+ * A ProjectionFactory whose projections are determined by a seed, rather
+ * than by how many projections it has built so far. {@link TreeBuilder} seeds
+ * each projection with the position of its node, so trees come out the same
+ * however many threads build them.
+ */
+public interface SeededProjectionFactory extends ProjectionFactory {
+
+	/**
+	 * Builds the projection.
+	 *
+	 * @param inputDim the input dim
+	 * @param percentage the percentage
+	 * @param seed the seed
+	 * @return the projection
+	 */
+	public Projection buildProjection(int inputDim, double percentage,
+			long seed);
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.trees;
+
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.instance.Instances;
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+
+/**
+ * An AttributeValueCache that keeps its own per-node representation of the
+ * training data and searches for splits over it directly, rather than
+ * building an {@link AttributeValueSet} for a {@link Splitter}.
+ * {@link TreeBuilder} uses these whenever the split criterion is a
+ * {@link BinaryLabelCountSplitCriterion}, telling the cache how each node was
+ * split so state can be handed down to the children.
+ *
+ * nodes are identified by their instances object, so the instances at a node
+ * must not be modified while the tree is built.
+ *
+ * @author jattenberg
+ */
+public interface SplitSearchingAttributeValueCache extends AttributeValueCache {
+
+	/**
+	 * Find the best split on a single feature.
+	 *
+	 * @param criterion
+	 *            the criterion used to score splits
+	 * @param instances
+	 *            the instances at the node
+	 * @param dimension
+	 *            the feature to split on
+	 * @return the benefit of the best split on the feature
+	 */
+	public Benefit buildSplit(BinaryLabelCountSplitCriterion criterion,
+			Instances<? extends Instance<BinaryClassificationTarget>> instances,
+			int dimension);
+
+	/**
+	 * record how the instances at a node were split, passing whatever is kept
+	 * for the node on to its children. left and right must be the result of
+	 * parent.splitOnValue(dimension, split).
+	 *
+	 * @param parent
+	 *            the instances at the node being split
+	 * @param left
+	 *            the instances with values less than or equal to the split
+	 * @param right
+	 *            the instances with values greater than the split
+	 * @param dimension
+	 *            the feature split on
+	 * @param split
+	 *            the threshold
+	 */
+	public void partition(
+			Instances<? extends Instance<BinaryClassificationTarget>> parent,
+			Instances<? extends Instance<BinaryClassificationTarget>> left,
+			Instances<? extends Instance<BinaryClassificationTarget>> right,
+			int dimension, double split);
+
+	/**
+	 * drop whatever is kept for a node once it's been split or made a leaf.
+	 *
+	 * @param instances
+	 *            the instances at the node
+	 */
+	public void release(Instances<?> instances);
+
+	/**
+	 * drop everything kept for the tree being built.
+	 */
+	public void clear();
+}
@@ -118,6 +118,17 @@ public class Tree<T extends Target> implements Serializable {
 				}));
 	}
 
+	/**
+	 * the edges to this node's children, ordered by split index, split value
+	 * and direction.
+	 *
+	 * @return the edges, empty for a leaf
+	 */
+	public Set<Edge<T>> getEdges() {
+		return children == null ? Collections.<Edge<T>> emptySet()
+				: Collections.unmodifiableSet(children);
+	}
+
 	/**
 	 * Decend tree.
 	 *
@@ -158,6 +169,15 @@ public class Tree<T extends Target> implements Serializable {
 		return projection;
 	}
 
+	/**
+	 * Gets the model making predictions at a leaf.
+	 *
+	 * @return the model, null for an internal node
+	 */
+	public Model<T, ?> getModel() {
+		return model;
+	}
+
 	/**
 	 * Sets the model.
 	 *
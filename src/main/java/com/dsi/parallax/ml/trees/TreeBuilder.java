@@ -6,12 +6,20 @@ package com.dsi.parallax.ml.trees;
 import com.dsi.parallax.ml.instance.Instance;
 import com.dsi.parallax.ml.instance.Instances;
 import com.dsi.parallax.ml.projection.Projection;
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
 import com.dsi.parallax.ml.target.Target;
 import com.dsi.parallax.ml.util.pair.GenericPair;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -60,6 +68,18 @@ public class TreeBuilder<T extends Target> {
 	/** The projected size. */
 	protected double projectedSize = 0.75;
 
+	/** The number of threads used to build a tree. */
+	protected int threads = 1;
+
+	/**
+	 * the fewest instances at a node for its benefits and subtrees to be
+	 * computed as separate tasks.
+	 */
+	protected int parallelThreshold = 1000;
+
+	/** runs benefit and subtree tasks while a tree is built with threads. */
+	private ThreadPoolExecutor executor;
+
 	/**
 	 * Instantiates a new tree builder.
 	 *
@@ -82,10 +102,24 @@ public class TreeBuilder<T extends Target> {
 			I instances) {
 
 		Root<T> root = Root.buildRoot(instances);
-		if (shouldStop(instances, 0))
-			root.addLeaf(leafCreator.changeTreeToLeaf(root, instances));
-		else
-			buildTree(root, root, instances, 1);
+		if (threads > 1)
+			executor = new ThreadPoolExecutor(threads, threads, 0L,
+					TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactoryBuilder().setDaemon(true)
+							.setNameFormat("parallax-tree-%d").build());
+		try {
+			if (shouldStop(instances, 0))
+				root.addLeaf(leafCreator.changeTreeToLeaf(root, instances));
+			else
+				buildTree(root, root, instances, 1, 1L);
+		} finally {
+			if (null != executor) {
+				executor.shutdownNow();
+				executor = null;
+			}
+			if (null != splitSearchingCache())
+				splitSearchingCache().clear();
+		}
 
 		if (null != pruner)
 			pruner.prune(root);
@@ -117,12 +151,18 @@ public class TreeBuilder<T extends Target> {
 	 * @param currentNode the current node
 	 * @param instances the instances
 	 * @param depth the depth
+	 * @param node identifies the node's position in the tree, seeding any
+	 *            projection made there. see {@link #childNode(long, int)}.
 	 */
 	@SuppressWarnings("unchecked")
 	protected <I extends Instances<? extends Instance<T>>> void buildTree(
-			Root<T> root, Tree<T> currentNode, I instances, int depth) {
+			final Root<T> root, Tree<T> currentNode, I instances,
+			final int depth, final long node) {
+		SplitSearchingAttributeValueCache searching = splitSearchingCache();
 		if (shouldStop(instances, depth)) {
-			root.addLeaf(leafCreator.changeTreeToLeaf(currentNode, instances));
+			if (null != searching)
+				searching.release(instances);
+			addLeaf(root, leafCreator.changeTreeToLeaf(currentNode, instances));
 			return;
 		}
 
@@ -133,8 +173,8 @@ public class TreeBuilder<T extends Target> {
 			training = instances;
 
 		if (projectionFactory != null) {
-			Projection projection = projectionFactory.buildProjection(
-					training.getDimensions(), projectedSize);
+			Projection projection = buildProjection(training.getDimensions(),
+					node);
 			currentNode.addProjection(projection);
 			training = (I) training.project(projection);
 		}
@@ -155,7 +195,7 @@ public class TreeBuilder<T extends Target> {
 			int splitIndex = bestBenefit.getIndex();
 			double splitValue = bestBenefit.getSplit();
 
-			GenericPair<I, I> leftAndRight = (GenericPair<I, I>) training
+			final GenericPair<I, I> leftAndRight = (GenericPair<I, I>) training
 					.splitOnValue(splitIndex, splitValue);
 
 			boolean splitOk = true;
@@ -166,17 +206,43 @@ public class TreeBuilder<T extends Target> {
 			}
 
 			if (splitOk) {
+				if (null != searching) {
+					searching.partition(
+							(Instances<? extends Instance<BinaryClassificationTarget>>) training,
+							(Instances<? extends Instance<BinaryClassificationTarget>>) leftAndRight.first,
+							(Instances<? extends Instance<BinaryClassificationTarget>>) leftAndRight.second,
+							splitIndex, splitValue);
+					searching.release(training);
+					searching.release(instances);
+				}
+
 				// make trees, add them to parent
 
 				Tree<T> leftTree = new Tree<T>(leftAndRight.first,
 						new LessThanOrEqualsToSplitCondition(splitIndex,
 								splitValue), currentNode);
-				Tree<T> rightTree = new Tree<T>(leftAndRight.second,
+				final Tree<T> rightTree = new Tree<T>(leftAndRight.second,
 						new GreaterThanSplitCondition(splitIndex, splitValue),
 						currentNode);
 
-				buildTree(root, leftTree, leftAndRight.first, depth + 1);
-				buildTree(root, rightTree, leftAndRight.second, depth + 1);
+				if (null != executor && training.size() >= parallelThreshold) {
+					FutureTask<Void> right = fork(new Callable<Void>() {
+						@Override
+						public Void call() {
+							buildTree(root, rightTree, leftAndRight.second,
+									depth + 1, childNode(node, 2));
+							return null;
+						}
+					});
+					buildTree(root, leftTree, leftAndRight.first, depth + 1,
+							childNode(node, 1));
+					join(right);
+				} else {
+					buildTree(root, leftTree, leftAndRight.first, depth + 1,
+							childNode(node, 1));
+					buildTree(root, rightTree, leftAndRight.second,
+							depth + 1, childNode(node, 2));
+				}
 
 				splitFound = true;
 				break;
@@ -184,8 +250,13 @@ public class TreeBuilder<T extends Target> {
 
 		}
 
-		if (!splitFound)
-			root.addLeaf(leafCreator.changeTreeToLeaf(currentNode, training));
+		if (!splitFound) {
+			if (null != searching) {
+				searching.release(training);
+				searching.release(instances);
+			}
+			addLeaf(root, leafCreator.changeTreeToLeaf(currentNode, training));
+		}
 	}
 
 	/**
@@ -196,15 +267,53 @@ public class TreeBuilder<T extends Target> {
 	 * @return the list
 	 */
 	protected <I extends Instances<? extends Instance<T>>> List<Benefit> computeBenefits(
-			I training) {
+			final I training) {
+		int dimensions = training.getDimensions();
+		List<Benefit> benefits;
+		if (null != executor && training.size() >= parallelThreshold
+				&& dimensions > 1) {
+			int chunks = Math.min(threads, dimensions);
+			List<FutureTask<List<Benefit>>> tasks = Lists.newArrayList();
+			for (int chunk = 1; chunk < chunks; chunk++) {
+				final int from = (int) ((long) chunk * dimensions / chunks);
+				final int to = (int) ((long) (chunk + 1) * dimensions / chunks);
+				tasks.add(fork(new Callable<List<Benefit>>() {
+					@Override
+					public List<Benefit> call() {
+						return computeBenefits(training, from, to);
+					}
+				}));
+			}
+			benefits = computeBenefits(training, 0, dimensions / chunks);
+			for (FutureTask<List<Benefit>> task : tasks)
+				benefits.addAll(join(task));
+		} else {
+			benefits = computeBenefits(training, 0, dimensions);
+		}
+		// the sort is stable, so ties stay in dimension order however the
+		// benefits were computed
+		Collections.sort(benefits);
+		return benefits;
+	}
+
+	/**
+	 * Compute the benefits of a range of dimensions, in order.
+	 *
+	 * @param <I> the generic type
+	 * @param training the training
+	 * @param from the first dimension
+	 * @param to one past the last dimension
+	 * @return the list
+	 */
+	protected <I extends Instances<? extends Instance<T>>> List<Benefit> computeBenefits(
+			I training, int from, int to) {
 		List<Benefit> benefits = Lists.newArrayList();
 
-		for (int dim = 0; dim < training.getDimensions(); dim++) {
+		for (int dim = from; dim < to; dim++) {
 			Benefit benefit = computeBenefit(training, dim);
 			if (null != benefit)
 				benefits.add(benefit);
 		}
-		Collections.sort(benefits);
 		return benefits;
 	}
 
@@ -216,13 +325,116 @@ public class TreeBuilder<T extends Target> {
 	 * @param dim the dim
 	 * @return the benefit
 	 */
+	@SuppressWarnings("unchecked")
 	protected <I extends Instances<? extends Instance<T>>> Benefit computeBenefit(
 			I training, int dim) {
+		SplitSearchingAttributeValueCache searching = splitSearchingCache();
+		if (null != searching)
+			return searching.buildSplit(
+					(BinaryLabelCountSplitCriterion) splitCriterion,
+					(Instances<? extends Instance<BinaryClassificationTarget>>) training,
+					dim);
 		AttributeValueSet<T> attributeValues = attributeValueCache
 				.getAttributeValueSet(training, dim);
 		return splitter.buildSplit(splitCriterion, attributeValues, dim);
 	}
 
+	/**
+	 * the position of a node's child: the SplitMix64 finalizer applied to the
+	 * parent's position offset by the child's slot. positions are spread over
+	 * all 64 bits, so nodes of deep trees don't share a position, and with it
+	 * a projection, the way an overflowing int would.
+	 *
+	 * @param node the parent's position
+	 * @param child the child's slot, 1 for x <= v and 2 for x > v
+	 * @return the child's position
+	 */
+	static long childNode(long node, int child) {
+		long z = node + child * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * build the projection for a node. factories that take a seed get the
+	 * node's position, so projections don't depend on the order nodes are
+	 * built in.
+	 *
+	 * @param dimensions the number of dimensions being projected
+	 * @param node the node's position in the tree
+	 * @return the projection
+	 */
+	private Projection buildProjection(int dimensions, long node) {
+		if (projectionFactory instanceof SeededProjectionFactory)
+			return ((SeededProjectionFactory) projectionFactory)
+					.buildProjection(dimensions, projectedSize, node);
+		synchronized (projectionFactory) {
+			return projectionFactory.buildProjection(dimensions, projectedSize);
+		}
+	}
+
+	/**
+	 * record a leaf; subtrees built on other threads add leaves concurrently.
+	 *
+	 * @param root the root
+	 * @param leaf the leaf
+	 */
+	private void addLeaf(Root<T> root, Tree<T> leaf) {
+		synchronized (root) {
+			root.addLeaf(leaf);
+		}
+	}
+
+	/**
+	 * start a task on the executor.
+	 *
+	 * @param callable the task
+	 * @return the task, for {@link #join(FutureTask)}
+	 */
+	private <V> FutureTask<V> fork(Callable<V> callable) {
+		FutureTask<V> task = new FutureTask<V>(callable);
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * wait for a forked task. if no thread has picked it up yet it's run
+	 * here instead, so a thread never waits on a task queued behind it.
+	 *
+	 * @param task the task
+	 * @return the task's result
+	 */
+	private <V> V join(FutureTask<V> task) {
+		if (executor.remove(task))
+			task.run();
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * the attribute value cache, if it can search splits on its own for the
+	 * current criterion.
+	 *
+	 * @return the split searching cache, or null
+	 */
+	private SplitSearchingAttributeValueCache splitSearchingCache() {
+		if (attributeValueCache instanceof SplitSearchingAttributeValueCache
+				&& splitCriterion instanceof BinaryLabelCountSplitCriterion)
+			return (SplitSearchingAttributeValueCache) attributeValueCache;
+		return null;
+	}
+
 	/**
 	 * Should stop.
 	 *
@@ -378,4 +590,36 @@ public class TreeBuilder<T extends Target> {
 		return this;
 	}
 
+	/**
+	 * Sets the number of threads used to build a tree. with more than one,
+	 * the benefits of a node's dimensions are computed in parallel and its
+	 * subtrees are built as separate tasks, for nodes with at least
+	 * {@link #setParallelThreshold(int)} instances. the tree built doesn't
+	 * depend on the number of threads.
+	 *
+	 * @param threads the threads
+	 * @return the tree builder
+	 */
+	public TreeBuilder<T> setThreads(int threads) {
+		checkArgument(threads > 0, "threads must be positive, given: %s",
+				threads);
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * Sets the fewest instances at a node for its work to be split into
+	 * parallel tasks.
+	 *
+	 * @param parallelThreshold the parallel threshold
+	 * @return the tree builder
+	 */
+	public TreeBuilder<T> setParallelThreshold(int parallelThreshold) {
+		checkArgument(parallelThreshold >= 0,
+				"parallelThreshold must be non-negative, given: %s",
+				parallelThreshold);
+		this.parallelThreshold = parallelThreshold;
+		return this;
+	}
+
 }
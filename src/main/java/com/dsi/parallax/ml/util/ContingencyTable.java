@@ -3,7 +3,17 @@
  ******************************************************************************/
 package com.dsi.parallax.ml.util;
 
-public class ContingencyTable {
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * counts (or weights) of observations cross classified by row and column,
+ * with the totals needed for the usual tests of association kept as values
+ * are added.
+ * 
+ * not thread safe; threads should each fill their own table and
+ * {@link #merge(ContingencyTable)} them when done.
+ */
+public class ContingencyTable implements Mergeable<ContingencyTable> {
 
     private final int numRows, numCols;
     private final double[] rowTotals, colTotals;
@@ -16,18 +26,70 @@ public class ContingencyTable {
         rowTotals = new double[numRows];
         colTotals = new double[numCols];
         total = 0;
-        entryValues = new double[numRows][];
+        entryValues = new double[numRows][numCols];
     }
 
+    /**
+     * Instantiates a copy of a contingency table.
+     * 
+     * @param other
+     *            the table to copy
+     */
+    public ContingencyTable(ContingencyTable other) {
+        this(other.numRows, other.numCols);
+        merge(other);
+    }
+
+    /**
+     * adds an observation to a cell.
+     * 
+     * @param row
+     *            the row
+     * @param column
+     *            the column
+     * @param value
+     *            the count or weight of the observation
+     */
     public void addValue(int row, int column, double value) {
 
-        rowTotals[row] = value;
-        colTotals[column] = value;
+        rowTotals[row] += value;
+        colTotals[column] += value;
 
-        entryValues[row][column] = value;
+        entryValues[row][column] += value;
         total += value;
     }
 
+    /**
+     * adds every cell of another table of the same shape to this one.
+     * 
+     * @param other
+     *            the other table
+     * @return this
+     */
+    @Override
+    public ContingencyTable merge(ContingencyTable other) {
+        checkArgument(other.numRows == numRows && other.numCols == numCols,
+                "can't merge a %sx%s table into a %sx%s table", other.numRows,
+                other.numCols, numRows, numCols);
+        for (int row = 0; row < numRows; row++) {
+            rowTotals[row] += other.rowTotals[row];
+            for (int col = 0; col < numCols; col++)
+                entryValues[row][col] += other.entryValues[row][col];
+        }
+        for (int col = 0; col < numCols; col++)
+            colTotals[col] += other.colTotals[col];
+        total += other.total;
+        return this;
+    }
+
+    public double getValue(int row, int column) {
+        return entryValues[row][column];
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
     /**
      * Returns chi-squared probability for a given matrix.
      * 
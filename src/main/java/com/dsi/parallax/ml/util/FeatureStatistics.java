@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * the mean and standard deviation of each feature of a set of vectors, in one
+ * pass over their non-zero entries. each feature keeps a count, mean and sum
+ * of squared deviations of its non-zero values, updated as in Welford 1962;
+ * the zeros of the vectors it's missing from are folded in when asked, and
+ * statistics of different partitions are combined as in Chan, Golub and
+ * LeVeque 1979. everything is held in arrays indexed by feature.
+ *
+ * @author jattenberg
+ */
+public class FeatureStatistics implements Mergeable<FeatureStatistics>,
+		Serializable {
+
+	private static final long serialVersionUID = -1733291546204628470L;
+
+	/** vectors seen */
+	private long count = 0;
+	/** size of the largest vector seen */
+	private int dimension = 0;
+	/** per feature: non-zero values, their mean and summed squared deviations */
+	private long[] nonZeros = new long[0];
+	private double[] means = new double[0];
+	private double[] squares = new double[0];
+
+	/**
+	 * add a vector; features it doesn't hold count as 0.
+	 *
+	 * @param vect
+	 *            the vector
+	 */
+	public void add(LinearVector vect) {
+		count++;
+		grow(vect.size());
+		for (int x_i : vect) {
+			double value = vect.getValue(x_i);
+			if (value == 0)
+				continue;
+			long n = ++nonZeros[x_i];
+			double delta = value - means[x_i];
+			means[x_i] += delta / n;
+			squares[x_i] += delta * (value - means[x_i]);
+		}
+	}
+
+	/**
+	 * add the statistics of another set of vectors.
+	 *
+	 * @param other
+	 *            the other statistics, unchanged
+	 * @return this
+	 */
+	@Override
+	public FeatureStatistics merge(FeatureStatistics other) {
+		count += other.count;
+		grow(other.dimension);
+		for (int x_i = 0; x_i < other.dimension; x_i++) {
+			long n = nonZeros[x_i], m = other.nonZeros[x_i];
+			if (m == 0)
+				continue;
+			double delta = other.means[x_i] - means[x_i];
+			means[x_i] += delta * m / (n + m);
+			squares[x_i] += other.squares[x_i] + delta * delta * n * m
+					/ (n + m);
+			nonZeros[x_i] = n + m;
+		}
+		return this;
+	}
+
+	private void grow(int size) {
+		if (size > dimension) {
+			dimension = size;
+			if (size > means.length) {
+				int capacity = Math.max(size, 2 * means.length);
+				nonZeros = Arrays.copyOf(nonZeros, capacity);
+				means = Arrays.copyOf(means, capacity);
+				squares = Arrays.copyOf(squares, capacity);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of vectors added
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the size of the largest vector added
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * the mean of a feature over every vector.
+	 *
+	 * @param x_i
+	 *            the feature
+	 * @return the mean
+	 */
+	public double getMean(int x_i) {
+		checkArgument(x_i >= 0 && x_i < dimension,
+				"feature %s outside [0, %s)", x_i, dimension);
+		return count == 0 ? 0 : means[x_i] * nonZeros[x_i] / count;
+	}
+
+	/**
+	 * the sample variance of a feature over every vector, as
+	 * SummaryStatistics computes it; 0 with fewer than two vectors.
+	 *
+	 * @param x_i
+	 *            the feature
+	 * @return the variance
+	 */
+	public double getVariance(int x_i) {
+		checkArgument(x_i >= 0 && x_i < dimension,
+				"feature %s outside [0, %s)", x_i, dimension);
+		if (count < 2)
+			return 0;
+		long n = nonZeros[x_i];
+		// the zeros contribute no deviation of their own, only their distance
+		// from the non-zero mean
+		double m2 = squares[x_i] + means[x_i] * means[x_i] * n * (count - n)
+				/ count;
+		return Math.max(0, m2 / (count - 1));
+	}
+
+	/**
+	 * the sample standard deviation of a feature over every vector.
+	 *
+	 * @param x_i
+	 *            the feature
+	 * @return the standard deviation
+	 */
+	public double getStandardDeviation(int x_i) {
+		return Math.sqrt(getVariance(x_i));
+	}
+
+	/**
+	 * @return the mean of each feature, indexed by feature
+	 */
+	public double[] getMeans() {
+		double[] out = new double[dimension];
+		for (int x_i = 0; x_i < dimension; x_i++)
+			out[x_i] = getMean(x_i);
+		return out;
+	}
+
+	/**
+	 * @return the standard deviation of each feature, indexed by feature
+	 */
+	public double[] getStandardDeviations() {
+		double[] out = new double[dimension];
+		for (int x_i = 0; x_i < dimension; x_i++)
+			out[x_i] = getStandardDeviation(x_i);
+		return out;
+	}
+
+	/**
+	 * the statistics of some vectors, split into contiguous partitions
+	 * accumulated on separate threads and then merged.
+	 *
+	 * @param vectors
+	 *            the vectors
+	 * @param threads
+	 *            the number of threads
+	 * @return the statistics
+	 */
+	public static FeatureStatistics fit(final List<LinearVector> vectors,
+			int threads) {
+		checkArgument(threads > 0, "threads must be positive, given: %s",
+				threads);
+		threads = Math.min(threads, vectors.size());
+		if (threads <= 1)
+			return fit(vectors);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setDaemon(true)
+						.setNameFormat("parallax-statistics-%d").build());
+		try {
+			List<Future<FeatureStatistics>> futures = Lists.newArrayList();
+			for (int t = 0; t < threads; t++) {
+				final int lo = (int) ((long) vectors.size() * t / threads);
+				final int hi = (int) ((long) vectors.size() * (t + 1) / threads);
+				futures.add(pool.submit(new Callable<FeatureStatistics>() {
+					@Override
+					public FeatureStatistics call() {
+						return fit(vectors.subList(lo, hi));
+					}
+				}));
+			}
+			FeatureStatistics stats = new FeatureStatistics();
+			for (Future<FeatureStatistics> future : futures)
+				stats.merge(future.get());
+			return stats;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * the statistics of some vectors, on the calling thread.
+	 *
+	 * @param vectors
+	 *            the vectors
+	 * @return the statistics
+	 */
+	public static FeatureStatistics fit(Iterable<LinearVector> vectors) {
+		FeatureStatistics stats = new FeatureStatistics();
+		for (LinearVector vect : vectors)
+			stats.add(vect);
+		return stats;
+	}
+}
@@ -0,0 +1,702 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+
+/**
+ * a kd-tree that is bulk built over snapshots of its points, with every
+ * coordinate in one contiguous double[] and the nodes in parallel primitive
+ * arrays. leaves are contiguous runs of that array, so a leaf scan is a tight
+ * loop over doubles rather than a getValue call per coordinate, and the
+ * distance kernels are static methods chosen once per leaf.
+ *
+ * added points are indexed log-structured, in a few such sub-trees of
+ * roughly doubling size. new points collect in a buffer of at most 64 that
+ * every query scans; when it fills it is built into a sub-tree along with
+ * the newest sub-trees no larger than it. so each point is rebuilt O(log n)
+ * times and a query searches O(log n) sub-trees, however adds and queries
+ * are interleaved. points pushed out by the size limit are skipped by
+ * queries until they pass a fraction of the live points, when every
+ * sub-tree is rebuilt into one.
+ *
+ * queries hold a read lock, so they may run concurrently with each other.
+ * adds and rebuilds hold the write lock: they wait for running queries to
+ * finish and block new ones until they are done, including any rebuild an
+ * add triggers.
+ *
+ * @author jattenberg
+ */
+public class FlatKDTree<T> extends KDTree<T> {
+
+	/** the distance used by a flat tree */
+	public static enum Metric {
+		/** squared euclidean distance */
+		SQREUCLID,
+		/** manhattan distance */
+		MANHATTAN
+	}
+
+	/** maximum points in a leaf */
+	private static final int LEAF_SIZE = 16;
+
+	/** at most this many points are kept unindexed */
+	private static final int MAX_PENDING = 64;
+
+	private final int dimensions;
+	private final boolean manhattan;
+	private final int sizeLimit;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/** rebuild once expired points exceed this share of the live points */
+	private double rebuildFraction = 0.25;
+
+	/** the bulk built sub-trees, oldest and largest first */
+	private List<Snapshot> snapshots = new ArrayList<Snapshot>();
+
+	// points added since the last build, ids are insertion order
+	private double[] pendingCoords;
+	private int[] pendingIds;
+	private Object[] pendingData;
+	private LinearVector[] pendingPositions;
+	private int pendingCount;
+
+	/** total points ever added; ids below added - sizeLimit have expired */
+	private int added;
+
+	/**
+	 * Construct a flat tree.
+	 *
+	 * @param dimensions
+	 *            number of dimensions
+	 * @param sizeLimit
+	 *            maximum number of points kept, older points are dropped. null
+	 *            for no limit
+	 * @param metric
+	 *            the distance
+	 */
+	public FlatKDTree(int dimensions, Integer sizeLimit, Metric metric) {
+		super(dimensions, null);
+		checkArgument(dimensions > 0, "dimensions must be positive: %s",
+				dimensions);
+		checkArgument(sizeLimit == null || sizeLimit > 0,
+				"sizeLimit must be positive: %s", sizeLimit);
+		this.dimensions = dimensions;
+		this.manhattan = metric == Metric.MANHATTAN;
+		this.sizeLimit = sizeLimit == null ? Integer.MAX_VALUE : sizeLimit;
+		this.pendingCoords = new double[MAX_PENDING * dimensions];
+		this.pendingIds = new int[MAX_PENDING];
+		this.pendingData = new Object[MAX_PENDING];
+		this.pendingPositions = new LinearVector[MAX_PENDING];
+	}
+
+	/**
+	 * sets the share of live points that points pushed out by the size limit
+	 * may reach before every sub-tree is rebuilt into one. smaller values
+	 * mean less wasted memory and query time, and more frequent rebuilds.
+	 *
+	 * @param rebuildFraction
+	 *            the rebuild fraction
+	 */
+	public void setRebuildFraction(double rebuildFraction) {
+		checkArgument(rebuildFraction > 0,
+				"rebuildFraction must be positive: %s", rebuildFraction);
+		this.rebuildFraction = rebuildFraction;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.dsi.parallax.ml.util.KDTree#size()
+	 */
+	@Override
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return Math.min(added, sizeLimit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.dsi.parallax.ml.util.KDTree#addPoint(com.dsi.parallax.ml.vector.
+	 * LinearVector, java.lang.Object)
+	 */
+	@Override
+	public void addPoint(LinearVector location, T value) {
+		checkArgument(location.size() == dimensions,
+				"input location size (%s) must equal kd-tree dimension (%s)",
+				location.size(), dimensions);
+		lock.writeLock().lock();
+		try {
+			int offset = pendingCount * dimensions;
+			for (int i = 0; i < dimensions; i++)
+				pendingCoords[offset + i] = location.getValue(i);
+			pendingIds[pendingCount] = added++;
+			pendingData[pendingCount] = value;
+			pendingPositions[pendingCount] = location;
+			pendingCount++;
+			if (pendingCount == MAX_PENDING)
+				index();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * builds the pending points into a sub-tree, merged with the newest
+	 * sub-trees that are no larger than what has been merged so far, then
+	 * drops or compacts expired points.
+	 */
+	private void index() {
+		int oldest = oldestLive();
+		List<Snapshot> merging = new ArrayList<Snapshot>();
+		int size = pendingCount;
+		while (!snapshots.isEmpty()
+				&& snapshots.get(snapshots.size() - 1).size <= size) {
+			Snapshot newest = snapshots.remove(snapshots.size() - 1);
+			merging.add(newest);
+			size += newest.size;
+		}
+		Snapshot built = build(merging, oldest);
+		if (built.size > 0)
+			snapshots.add(built);
+
+		// sub-trees are in id order, so wholly expired ones are at the front
+		while (!snapshots.isEmpty() && snapshots.get(0).newestId < oldest)
+			snapshots.remove(0);
+		int expired = 0;
+		for (Snapshot snapshot : snapshots)
+			expired += snapshot.expired(oldest);
+		if (expired > rebuildFraction * Math.min(added, sizeLimit))
+			rebuild();
+	}
+
+	/**
+	 * rebuild the index over every live point into a single tree now, rather
+	 * than waiting for the rebuild policy.
+	 */
+	public void rebuild() {
+		lock.writeLock().lock();
+		try {
+			Snapshot built = build(snapshots, oldestLive());
+			snapshots = new ArrayList<Snapshot>();
+			if (built.size > 0)
+				snapshots.add(built);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * bulk builds a sub-tree over the live points of some sub-trees and of
+	 * the pending buffer, which is emptied.
+	 */
+	private Snapshot build(List<Snapshot> parts, int oldest) {
+		int size = pendingCount;
+		for (Snapshot part : parts)
+			size += part.size;
+		double[] coords = new double[size * dimensions];
+		int[] ids = new int[size];
+		Object[] data = new Object[size];
+		LinearVector[] positions = new LinearVector[size];
+		int count = 0;
+		for (Snapshot part : parts) {
+			for (int p = 0; p < part.size; p++) {
+				if (part.ids[p] < oldest)
+					continue;
+				System.arraycopy(part.coords, p * dimensions, coords, count
+						* dimensions, dimensions);
+				ids[count] = part.ids[p];
+				data[count] = part.data[p];
+				positions[count++] = part.positions[p];
+			}
+		}
+		for (int p = 0; p < pendingCount; p++) {
+			if (pendingIds[p] < oldest)
+				continue;
+			System.arraycopy(pendingCoords, p * dimensions, coords, count
+					* dimensions, dimensions);
+			ids[count] = pendingIds[p];
+			data[count] = pendingData[p];
+			positions[count++] = pendingPositions[p];
+		}
+		Arrays.fill(pendingData, 0, pendingCount, null);
+		Arrays.fill(pendingPositions, 0, pendingCount, null);
+		pendingCount = 0;
+		return Snapshot.build(Arrays.copyOf(coords, count * dimensions),
+				Arrays.copyOf(ids, count), Arrays.copyOf(data, count),
+				Arrays.copyOf(positions, count), dimensions);
+	}
+
+	private int oldestLive() {
+		return added > sizeLimit ? added - sizeLimit : 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.dsi.parallax.ml.util.KDTree#nearestNeighbor(com.dsi.parallax.ml.vector
+	 * .LinearVector, int, boolean)
+	 */
+	@Override
+	public List<Entry<T>> nearestNeighbor(LinearVector location, int count,
+			boolean sequentialSorting) {
+		if (count <= 0)
+			return Collections.emptyList();
+		double[] query = new double[dimensions];
+		for (int i = 0; i < dimensions; i++)
+			query[i] = location.getValue(i);
+
+		lock.readLock().lock();
+		try {
+			int oldest = oldestLive();
+			Heap heap = new Heap(count);
+			int base = 0;
+			for (Snapshot snapshot : snapshots) {
+				searchSnapshot(snapshot, base, query, oldest, heap);
+				base += snapshot.size;
+			}
+			for (int p = 0; p < pendingCount; p++) {
+				if (pendingIds[p] < oldest)
+					continue;
+				double dist = manhattan ? manhattan(pendingCoords, p
+						* dimensions, query) : sqrEuclid(pendingCoords, p
+						* dimensions, query);
+				if (dist < heap.range())
+					heap.add(dist, -p - 1);
+			}
+
+			List<Entry<T>> results = new ArrayList<Entry<T>>(heap.size);
+			if (sequentialSorting) {
+				while (heap.size > 0) {
+					int point = heap.removeLargest();
+					results.add(entry(point, heap.removedDist));
+				}
+			} else {
+				for (int k = 0; k < heap.size; k++)
+					results.add(entry(heap.point[k], heap.dist[k]));
+			}
+			return results;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Entry<T> entry(int point, double dist) {
+		if (point < 0)
+			return new Entry<T>(dist, (T) pendingData[-point - 1],
+					pendingPositions[-point - 1]);
+		int t = 0;
+		while (point >= snapshots.get(t).size)
+			point -= snapshots.get(t++).size;
+		Snapshot snapshot = snapshots.get(t);
+		return new Entry<T>(dist, (T) snapshot.data[point],
+				snapshot.positions[point]);
+	}
+
+	/**
+	 * depth first search of a sub-tree, nearer child first, with the nodes
+	 * still to visit on a stack local to the query. its points go in the heap
+	 * numbered from base.
+	 */
+	private void searchSnapshot(Snapshot s, int base, double[] query,
+			int oldest, Heap heap) {
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			double bound = manhattan ? manhattanToBox(s.lower, s.upper, node
+					* dimensions, query) : sqrEuclidToBox(s.lower, s.upper, node
+					* dimensions, query);
+			if (bound > heap.range())
+				continue;
+
+			int left = s.left[node];
+			if (left < 0) {
+				// leaf, a contiguous run of points
+				boolean expired = s.oldestId < oldest;
+				for (int p = s.start[node], end = s.end[node]; p < end; p++) {
+					if (expired && s.ids[p] < oldest)
+						continue;
+					double dist = manhattan ? manhattan(s.coords, p
+							* dimensions, query) : sqrEuclid(s.coords, p
+							* dimensions, query);
+					if (dist < heap.range())
+						heap.add(dist, base + p);
+				}
+				continue;
+			}
+
+			if (top + 2 > stack.length)
+				stack = Arrays.copyOf(stack, 2 * stack.length);
+			// the farther child goes on the stack first, so it's visited last
+			int right = s.right[node];
+			if (query[s.splitDimension[node]] > s.splitValue[node]) {
+				stack[top++] = left;
+				stack[top++] = right;
+			} else {
+				stack[top++] = right;
+				stack[top++] = left;
+			}
+		}
+	}
+
+	private static double sqrEuclid(double[] coords, int offset,
+			double[] query) {
+		double d = 0;
+		for (int i = 0; i < query.length; i++) {
+			double diff = coords[offset + i] - query[i];
+			if (diff == diff)
+				d += diff * diff;
+		}
+		return d;
+	}
+
+	private static double manhattan(double[] coords, int offset,
+			double[] query) {
+		double d = 0;
+		for (int i = 0; i < query.length; i++) {
+			double diff = coords[offset + i] - query[i];
+			if (diff == diff)
+				d += diff < 0 ? -diff : diff;
+		}
+		return d;
+	}
+
+	private static double sqrEuclidToBox(double[] lower, double[] upper,
+			int offset, double[] query) {
+		double d = 0;
+		for (int i = 0; i < query.length; i++) {
+			double q = query[i], diff = 0;
+			if (q > upper[offset + i])
+				diff = q - upper[offset + i];
+			else if (q < lower[offset + i])
+				diff = lower[offset + i] - q;
+			d += diff * diff;
+		}
+		return d;
+	}
+
+	private static double manhattanToBox(double[] lower, double[] upper,
+			int offset, double[] query) {
+		double d = 0;
+		for (int i = 0; i < query.length; i++) {
+			double q = query[i];
+			if (q > upper[offset + i])
+				d += q - upper[offset + i];
+			else if (q < lower[offset + i])
+				d += lower[offset + i] - q;
+		}
+		return d;
+	}
+
+	// Distance measurements for the superclass's own structure, which a flat
+	// tree never uses
+	@Override
+	protected double pointDist(LinearVector p1, LinearVector p2) {
+		double d = 0;
+		for (int i = 0; i < dimensions; i++) {
+			double diff = p1.getValue(i) - p2.getValue(i);
+			if (diff == diff)
+				d += manhattan ? Math.abs(diff) : diff * diff;
+		}
+		return d;
+	}
+
+	@Override
+	protected double pointRegionDist(LinearVector point, LinearVector min,
+			LinearVector max) {
+		double d = 0;
+		for (int i = 0; i < dimensions; i++) {
+			double q = point.getValue(i), diff = 0;
+			if (q > max.getValue(i))
+				diff = q - max.getValue(i);
+			else if (q < min.getValue(i))
+				diff = min.getValue(i) - q;
+			if (diff == diff)
+				d += manhattan ? diff : diff * diff;
+		}
+		return d;
+	}
+
+	/**
+	 * an immutable, bulk built sub-tree. points are reordered so each leaf is
+	 * a contiguous run [start, end) of coords; each node's bounding box is in
+	 * lower and upper at node * dimensions. a sub-tree holds every point with
+	 * an id from oldestId to newestId, since points are indexed in the order
+	 * they are added.
+	 */
+	private static final class Snapshot {
+		final double[] coords;
+		final int[] ids;
+		final Object[] data;
+		final LinearVector[] positions;
+		final int size;
+		final int oldestId;
+		final int newestId;
+
+		int[] start, end, left, right, splitDimension;
+		double[] splitValue, lower, upper;
+		int nodes;
+
+		private final int dimensions;
+
+		private Snapshot(double[] coords, int[] ids, Object[] data,
+				LinearVector[] positions, int dimensions) {
+			this.coords = coords;
+			this.ids = ids;
+			this.data = data;
+			this.positions = positions;
+			this.size = ids.length;
+			this.dimensions = dimensions;
+			int oldest = Integer.MAX_VALUE, newest = Integer.MIN_VALUE;
+			for (int id : ids) {
+				oldest = Math.min(oldest, id);
+				newest = Math.max(newest, id);
+			}
+			this.oldestId = oldest;
+			this.newestId = newest;
+		}
+
+		/** the number of points with ids before oldest */
+		int expired(int oldest) {
+			return Math.max(0, Math.min(oldest, newestId + 1) - oldestId);
+		}
+
+		static Snapshot build(double[] coords, int[] ids, Object[] data,
+				LinearVector[] positions, int dimensions) {
+			int n = ids.length;
+			int[] order = new int[n];
+			for (int p = 0; p < n; p++)
+				order[p] = p;
+			Snapshot unordered = new Snapshot(coords, ids, data, positions,
+					dimensions);
+			unordered.allocateNodes(2 * (n / (LEAF_SIZE / 2) + 1));
+			if (n > 0)
+				unordered.buildNode(order, 0, n);
+
+			// lay the points out in leaf order
+			double[] sortedCoords = new double[coords.length];
+			int[] sortedIds = new int[n];
+			Object[] sortedData = new Object[n];
+			LinearVector[] sortedPositions = new LinearVector[n];
+			for (int p = 0; p < n; p++) {
+				int from = order[p];
+				System.arraycopy(coords, from * dimensions, sortedCoords, p
+						* dimensions, dimensions);
+				sortedIds[p] = ids[from];
+				sortedData[p] = data[from];
+				sortedPositions[p] = positions[from];
+			}
+			Snapshot snapshot = new Snapshot(sortedCoords, sortedIds,
+					sortedData, sortedPositions, dimensions);
+			snapshot.start = unordered.start;
+			snapshot.end = unordered.end;
+			snapshot.left = unordered.left;
+			snapshot.right = unordered.right;
+			snapshot.splitDimension = unordered.splitDimension;
+			snapshot.splitValue = unordered.splitValue;
+			snapshot.lower = unordered.lower;
+			snapshot.upper = unordered.upper;
+			snapshot.nodes = unordered.nodes;
+			return snapshot;
+		}
+
+		private void allocateNodes(int capacity) {
+			start = new int[capacity];
+			end = new int[capacity];
+			left = new int[capacity];
+			right = new int[capacity];
+			splitDimension = new int[capacity];
+			splitValue = new double[capacity];
+			lower = new double[capacity * dimensions];
+			upper = new double[capacity * dimensions];
+		}
+
+		private void growNodes() {
+			int capacity = 2 * start.length;
+			start = Arrays.copyOf(start, capacity);
+			end = Arrays.copyOf(end, capacity);
+			left = Arrays.copyOf(left, capacity);
+			right = Arrays.copyOf(right, capacity);
+			splitDimension = Arrays.copyOf(splitDimension, capacity);
+			splitValue = Arrays.copyOf(splitValue, capacity);
+			lower = Arrays.copyOf(lower, capacity * dimensions);
+			upper = Arrays.copyOf(upper, capacity * dimensions);
+		}
+
+		/**
+		 * builds the node over order[from, to), splitting at the median of
+		 * the widest dimension. returns the node's index.
+		 */
+		private int buildNode(int[] order, int from, int to) {
+			if (nodes == start.length)
+				growNodes();
+			int node = nodes++;
+			start[node] = from;
+			end[node] = to;
+			left[node] = -1;
+			right[node] = -1;
+
+			int box = node * dimensions;
+			Arrays.fill(lower, box, box + dimensions, Double.POSITIVE_INFINITY);
+			Arrays.fill(upper, box, box + dimensions, Double.NEGATIVE_INFINITY);
+			for (int k = from; k < to; k++) {
+				int offset = order[k] * dimensions;
+				for (int i = 0; i < dimensions; i++) {
+					double v = coords[offset + i];
+					if (v != v) {
+						// like KDTree, a NaN leaves a dimension unbounded
+						lower[box + i] = Double.NEGATIVE_INFINITY;
+						upper[box + i] = Double.POSITIVE_INFINITY;
+					} else if (v < lower[box + i])
+						lower[box + i] = v;
+					if (v > upper[box + i])
+						upper[box + i] = v;
+				}
+			}
+			if (to - from <= LEAF_SIZE)
+				return node;
+
+			int widest = -1;
+			double width = 0;
+			for (int i = 0; i < dimensions; i++) {
+				double w = upper[box + i] - lower[box + i];
+				if (w > width && w != Double.POSITIVE_INFINITY) {
+					widest = i;
+					width = w;
+				}
+			}
+			// every point is the same, or NaN, in every dimension
+			if (widest < 0)
+				return node;
+
+			int median = (from + to) >>> 1;
+			select(order, from, to - 1, median, widest);
+			splitDimension[node] = widest;
+			splitValue[node] = coords[order[median] * dimensions + widest];
+
+			int l = buildNode(order, from, median);
+			int r = buildNode(order, median, to);
+			left[node] = l;
+			right[node] = r;
+			return node;
+		}
+
+		private double key(int[] order, int k, int dimension) {
+			double v = coords[order[k] * dimensions + dimension];
+			return v == v ? v : Double.NEGATIVE_INFINITY;
+		}
+
+		/**
+		 * partial sort of order[lo, hi] so the kth smallest along dimension
+		 * is at k, smaller to its left and larger to its right.
+		 */
+		private void select(int[] order, int lo, int hi, int k, int dimension) {
+			while (hi > lo) {
+				double pivot = key(order, (lo + hi) >>> 1, dimension);
+				int i = lo, j = hi;
+				while (i <= j) {
+					while (key(order, i, dimension) < pivot)
+						i++;
+					while (key(order, j, dimension) > pivot)
+						j--;
+					if (i <= j) {
+						int tmp = order[i];
+						order[i++] = order[j];
+						order[j--] = tmp;
+					}
+				}
+				if (k <= j)
+					hi = j;
+				else if (k >= i)
+					lo = i;
+				else
+					return;
+			}
+		}
+	}
+
+	/**
+	 * the closest 'capacity' points seen so far, as a max-heap on distance.
+	 * points in the sub-trees are numbered on from 0 across them, pending
+	 * points are -p - 1.
+	 */
+	private static final class Heap {
+		final double[] dist;
+		final int[] point;
+		int size;
+		double removedDist;
+
+		Heap(int capacity) {
+			dist = new double[capacity];
+			point = new int[capacity];
+		}
+
+		double range() {
+			return size < dist.length ? Double.POSITIVE_INFINITY : dist[0];
+		}
+
+		void add(double d, int p) {
+			if (size < dist.length) {
+				int c = size++;
+				while (c > 0) {
+					int parent = (c - 1) >>> 1;
+					if (dist[parent] >= d)
+						break;
+					dist[c] = dist[parent];
+					point[c] = point[parent];
+					c = parent;
+				}
+				dist[c] = d;
+				point[c] = p;
+			} else if (d < dist[0]) {
+				siftDown(d, p, size);
+			}
+		}
+
+		int removeLargest() {
+			int largest = point[0];
+			removedDist = dist[0];
+			size--;
+			if (size > 0)
+				siftDown(dist[size], point[size], size);
+			return largest;
+		}
+
+		// place (d, p) at the root and sift it down among the first n
+		private void siftDown(double d, int p, int n) {
+			int c = 0;
+			while (true) {
+				int child = 2 * c + 1;
+				if (child >= n)
+					break;
+				if (child + 1 < n && dist[child + 1] > dist[child])
+					child++;
+				if (dist[child] <= d)
+					break;
+				dist[c] = dist[child];
+				point[c] = point[child];
+				c = child;
+			}
+			dist[c] = d;
+			point[c] = p;
+		}
+	}
+}
@@ -4,6 +4,7 @@
 package com.dsi.parallax.ml.util;
 
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 
 public enum HashFunctionType
@@ -12,7 +13,7 @@ public enum HashFunctionType
 		@Override
 		public int hash(String input, int bins)
 		{
-			byte[] bytes = sha.digest(input.getBytes());
+			byte[] bytes = SHA_DIGEST.get().digest(input.getBytes());
 			int out = 17;
 			for(byte b : bytes)
 				out = 31*out+b;
@@ -25,7 +26,7 @@ public enum HashFunctionType
 		@Override
 		public int hash(String input, int bins)
 		{
-			byte[] bytes = md5.digest(input.getBytes());
+			byte[] bytes = MD5_DIGEST.get().digest(input.getBytes());
 			int out = 17;
 			for(byte b : bytes)
 				out = 31*out+b;
@@ -52,22 +53,73 @@ public enum HashFunctionType
 		{
 			return Math.abs((input).hashCode()) % bins;
 		}
-	};
+	},
+	MURMUR3
+	{
+		@Override
+		public int hash(String input, int bins)
+		{
+			return SeededHashFunctionType.bin(
+					SeededHashFunctionType.MURMUR3.hash(input, 0), bins);
+		}
 
-	static MessageDigest md5, sha;
-	static
+		@Override
+		public SeededHashFunctionType getSeededHash()
+		{
+			return SeededHashFunctionType.MURMUR3;
+		}
+	},
+	XXHASH
 	{
-		try
+		@Override
+		public int hash(String input, int bins)
 		{
-			md5 = MessageDigest.getInstance("MD5");
-			sha = MessageDigest.getInstance("SHA-256");
-		} catch (Exception e)
+			return SeededHashFunctionType.bin(
+					SeededHashFunctionType.XXHASH.hash(input, 0), bins);
+		}
+
+		@Override
+		public SeededHashFunctionType getSeededHash()
 		{
-			// TODO: handle exception
+			return SeededHashFunctionType.XXHASH;
 		}
-		
+	};
+
+	// MessageDigests keep state between update and digest, so each thread
+	// gets its own
+	private static final ThreadLocal<MessageDigest> MD5_DIGEST = digest("MD5");
+	private static final ThreadLocal<MessageDigest> SHA_DIGEST = digest("SHA-256");
+
+	private static ThreadLocal<MessageDigest> digest(final String algorithm)
+	{
+		return new ThreadLocal<MessageDigest>()
+		{
+			@Override
+			protected MessageDigest initialValue()
+			{
+				try
+				{
+					return MessageDigest.getInstance(algorithm);
+				} catch (NoSuchAlgorithmException e)
+				{
+					throw new IllegalStateException(e);
+				}
+			}
+		};
 	}
+
 	public abstract int hash(String input, int bins);
+
+	/**
+	 * the character-level, seeded form of this hash, for callers that fold a
+	 * namespace or hash number into the seed instead of into the string.
+	 * 
+	 * @return the seeded hash, or null if this hash has no seeded form
+	 */
+	public SeededHashFunctionType getSeededHash()
+	{
+		return null;
+	}
 	private static int jenkinsHashOnBytes(int bins, byte[] input)
 	{
 		long hash = 0;
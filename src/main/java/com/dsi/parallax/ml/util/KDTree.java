@@ -12,11 +12,19 @@ package com.dsi.parallax.ml.util;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.ml.vector.LinearVectorFactory;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -31,6 +39,8 @@ public abstract class KDTree<T> {
 	// Root only
 	private final LinkedList<LinearVector> locationStack;
 	private final Integer sizeLimit;
+	// queries share the read lock, addPoint takes the write lock
+	private final ReentrantReadWriteLock lock;
 
 	// Leaf only
 	private LinearVector[] locations;
@@ -46,9 +56,6 @@ public abstract class KDTree<T> {
 	private LinearVector minLimit, maxLimit;
 	private boolean singularity;
 
-	// Temporary
-	private Status status;
-
 	/**
 	 * Construct a KDTree with a given number of dimensions and a limit on
 	 * maxiumum size (after which it throws away old points)
@@ -65,6 +72,7 @@ public abstract class KDTree<T> {
 		// Init as root
 		this.parent = null;
 		this.sizeLimit = sizeLimit;
+		this.lock = new ReentrantReadWriteLock();
 		if (sizeLimit != null) {
 			this.locationStack = Lists.newLinkedList();
 		} else {
@@ -89,6 +97,7 @@ public abstract class KDTree<T> {
 		this.parent = parent;
 		this.locationStack = null;
 		this.sizeLimit = null;
+		this.lock = null;
 	}
 
 	/**
@@ -99,12 +108,22 @@ public abstract class KDTree<T> {
 	}
 
 	/**
-	 * Add a point and associated value to the tree
+	 * Add a point and associated value to the tree. Blocks while queries are
+	 * running, and queries block while a point is being added.
 	 */
 	public void addPoint(LinearVector location, T value) {
 		checkArgument(location.size() == dimensions,
 				"input location size (%s) must equal kd-tree dimension (%s)",
 				location.size(), dimensions);
+		lock.writeLock().lock();
+		try {
+			insert(location, value);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void insert(LinearVector location, T value) {
 		KDTree<T> cursor = this;
 
 		while (cursor.locations == null
@@ -283,13 +302,6 @@ public abstract class KDTree<T> {
 		// If we got here... we couldn't find the value to remove. Weird...
 	}
 
-	/**
-	 * Enumeration representing the status of a node during the running
-	 */
-	private static enum Status {
-		NONE, LEFTVISITED, RIGHTVISITED, ALLVISITED
-	}
-
 	/**
 	 * Stores a distance and value to output
 	 */
@@ -298,7 +310,7 @@ public abstract class KDTree<T> {
 		public final T value;
 		public final LinearVector position;
 
-		private Entry(double distance, T value, LinearVector position) {
+		Entry(double distance, T value, LinearVector position) {
 			this.distance = distance;
 			this.value = value;
 			this.position = position;
@@ -306,90 +318,141 @@ public abstract class KDTree<T> {
 	}
 
 	/**
-	 * Calculates the nearest 'count' points to 'location'
+	 * Calculates the nearest 'count' points to 'location'. Traversal state is
+	 * kept per query, so any number of threads may query at once.
 	 */
-	@SuppressWarnings("unchecked")
 	public List<Entry<T>> nearestNeighbor(LinearVector location, int count,
 			boolean sequentialSorting) {
-		KDTree<T> cursor = this;
-		cursor.status = Status.NONE;
+		lock.readLock().lock();
+		try {
+			return search(location, count, sequentialSorting);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Calculates the nearest 'count' points to each of 'locations', spreading
+	 * the queries over one thread per available processor.
+	 */
+	public List<List<Entry<T>>> nearestNeighbors(
+			List<? extends LinearVector> locations, int count) {
+		return nearestNeighbors(locations, count, false, Runtime.getRuntime()
+				.availableProcessors());
+	}
+
+	/**
+	 * Calculates the nearest 'count' points to each of 'locations' using up to
+	 * 'threads' threads. Results are in the same order as the locations.
+	 */
+	public List<List<Entry<T>>> nearestNeighbors(
+			final List<? extends LinearVector> locations, final int count,
+			final boolean sequentialSorting, int threads) {
+		checkArgument(threads > 0, "threads must be positive: %s", threads);
+		final int size = locations.size();
+		final int workers = Math.min(threads, size);
+		if (workers <= 1) {
+			List<List<Entry<T>>> results = Lists.newArrayListWithCapacity(size);
+			for (LinearVector location : locations)
+				results.add(nearestNeighbor(location, count, sequentialSorting));
+			return results;
+		}
+
+		final AtomicReferenceArray<List<Entry<T>>> results = new AtomicReferenceArray<List<Entry<T>>>(
+				size);
+		ExecutorService executor = QueryPool.EXECUTOR;
+		try {
+			List<Future<?>> futures = Lists.newArrayListWithCapacity(workers);
+			for (int w = 0; w < workers; w++) {
+				final int offset = w;
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						for (int i = offset; i < size; i += workers)
+							results.set(i, nearestNeighbor(locations.get(i),
+									count, sequentialSorting));
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+
+		List<List<Entry<T>>> out = Lists.newArrayListWithCapacity(size);
+		for (int i = 0; i < size; i++)
+			out.add(results.get(i));
+		return out;
+	}
+
+	/**
+	 * holds the daemon threads batches of queries run on, shared by every tree
+	 * and created the first time a batch is split. the pool grows with
+	 * demand, so batches from several callers don't queue behind each other.
+	 */
+	private static class QueryPool {
+		static final ExecutorService EXECUTOR = Executors
+				.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
+						.setNameFormat("parallax-kdtree-%d").build());
+	}
+
+	/**
+	 * depth first search, nearer child first, with the nodes still to visit
+	 * on a stack local to the query. a node is skipped when popped if the
+	 * results so far are closer than anything in its bounds.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Entry<T>> search(LinearVector location, int count,
+			boolean sequentialSorting) {
 		double range = Double.POSITIVE_INFINITY;
 		ResultHeap resultHeap = new ResultHeap(count);
-
-		do {
-			if (cursor.status == Status.ALLVISITED) {
-				// At a fully visited part. Move up the tree
-				cursor = cursor.parent;
+		ArrayDeque<KDTree<T>> stack = new ArrayDeque<KDTree<T>>();
+		stack.push(this);
+
+		while (!stack.isEmpty()) {
+			KDTree<T> cursor = stack.pop();
+			if (cursor.locationCount == 0
+					|| (cursor != this && !cursor.singularity && pointRegionDist(
+							location, cursor.minLimit, cursor.maxLimit) > range)) {
 				continue;
 			}
 
-			if (cursor.status == Status.NONE && cursor.locations != null) {
+			if (cursor.locations != null) {
 				// At a leaf. Use the data.
-				if (cursor.locationCount > 0) {
-					if (cursor.singularity) {
-						double dist = pointDist(cursor.locations[0], location);
-						if (dist <= range) {
-							for (int i = 0; i < cursor.locationCount; i++) {
-								resultHeap.addValue(dist, cursor.data[i],
-										cursor.locations[i]);
-							}
-						}
-					} else {
+				if (cursor.singularity) {
+					double dist = pointDist(cursor.locations[0], location);
+					if (dist <= range) {
 						for (int i = 0; i < cursor.locationCount; i++) {
-							double dist = pointDist(cursor.locations[i],
-									location);
 							resultHeap.addValue(dist, cursor.data[i],
 									cursor.locations[i]);
 						}
 					}
-					range = resultHeap.getMaxDist();
-				}
-
-				if (cursor.parent == null) {
-					break;
-				}
-				cursor = cursor.parent;
-				continue;
-			}
-
-			// Going to descend
-			KDTree<T> nextCursor = null;
-			if (cursor.status == Status.NONE) {
-				// At a fresh node, descend the most probably useful direction
-				if (location.getValue(cursor.splitDimension) > cursor.splitValue) {
-					// Descend right
-					nextCursor = cursor.right;
-					cursor.status = Status.RIGHTVISITED;
 				} else {
-					// Descend left;
-					nextCursor = cursor.left;
-					cursor.status = Status.LEFTVISITED;
+					for (int i = 0; i < cursor.locationCount; i++) {
+						double dist = pointDist(cursor.locations[i], location);
+						resultHeap.addValue(dist, cursor.data[i],
+								cursor.locations[i]);
+					}
 				}
-			} else if (cursor.status == Status.LEFTVISITED) {
-				// Left node visited, descend right.
-				nextCursor = cursor.right;
-				cursor.status = Status.ALLVISITED;
-			} else if (cursor.status == Status.RIGHTVISITED) {
-				// Right node visited, descend left.
-				nextCursor = cursor.left;
-				cursor.status = Status.ALLVISITED;
+				range = resultHeap.getMaxDist();
+				continue;
 			}
 
-			// Check if it's worth descending. Assume it is if it's sibling has
-			// not been visited yet.
-			if (cursor.status == Status.ALLVISITED) {
-				if (nextCursor.locationCount == 0
-						|| (!nextCursor.singularity && pointRegionDist(
-								location, nextCursor.minLimit,
-								nextCursor.maxLimit) > range)) {
-					continue;
-				}
+			// the farther child goes on the stack first, so it's visited last
+			if (location.getValue(cursor.splitDimension) > cursor.splitValue) {
+				stack.push(cursor.left);
+				stack.push(cursor.right);
+			} else {
+				stack.push(cursor.right);
+				stack.push(cursor.left);
 			}
-
-			// Descend down the tree
-			cursor = nextCursor;
-			cursor.status = Status.NONE;
-		} while (cursor.parent != null || cursor.status != Status.ALLVISITED);
+		}
 
 		ArrayList<Entry<T>> results = new ArrayList<Entry<T>>(resultHeap.values);
 		if (sequentialSorting) {
@@ -678,6 +741,7 @@ public abstract class KDTree<T> {
 				// Replace the max entry with the new entry
 				data[0] = value;
 				distance[0] = dist;
+				positions[0] = position;
 				downHeapify(0);
 			}
 		}
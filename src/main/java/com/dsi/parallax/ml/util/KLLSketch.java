@@ -0,0 +1,293 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * streaming quantiles in bounded memory, from Karnin, Lang and Liberty 2016.
+ * values are kept in a stack of levels; an item at level h stands for 2^h
+ * values. when the sketch is full the lowest overfull level is sorted and
+ * every other item, starting at random, is promoted to the next level. level
+ * capacities shrink geometrically from the top, which holds about k items, so
+ * the sketch keeps O(k) values however many it has seen while rank errors
+ * shrink in proportion to 1 / k.
+ *
+ * sketches of any size can be {@link #merge(KLLSketch)}d, eg to combine
+ * sketches of shards of a stream built in parallel.
+ *
+ * @author jattenberg
+ */
+public class KLLSketch implements Mergeable<KLLSketch>, Serializable {
+
+	private static final long serialVersionUID = 3317826203950851462L;
+
+	/** default size parameter, ranks are typically within a percent or two */
+	public static final int DEFAULT_K = 200;
+
+	/** ratio of each level's capacity to the one above it */
+	private static final double DECAY = 2. / 3.;
+
+	/** no level is made smaller than this */
+	private static final int MIN_CAPACITY = 8;
+
+	private final int k;
+	private final Random random;
+	private double[][] levels = new double[1][];
+	private int[] sizes = new int[1];
+	private int retained = 0, capacity;
+	private long count = 0;
+	private double min = Double.NaN, max = Double.NaN;
+
+	/**
+	 * Instantiates a new sketch of size {@link #DEFAULT_K}.
+	 */
+	public KLLSketch() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * Instantiates a new sketch.
+	 *
+	 * @param k
+	 *            the size parameter, the capacity of the top level
+	 */
+	public KLLSketch(int k) {
+		this(k, new Random());
+	}
+
+	/**
+	 * Instantiates a new sketch whose compactions are repeatable.
+	 *
+	 * @param k
+	 *            the size parameter, the capacity of the top level
+	 * @param seed
+	 *            seed for choosing which items are promoted
+	 */
+	public KLLSketch(int k, long seed) {
+		this(k, new Random(seed));
+	}
+
+	private KLLSketch(int k, Random random) {
+		checkArgument(k >= MIN_CAPACITY, "k must be at least %s, given: %s",
+				MIN_CAPACITY, k);
+		this.k = k;
+		this.random = random;
+		levels[0] = new double[capacity(0)];
+		capacity = capacity(0);
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * @return the number of values added
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the number of values held
+	 */
+	public int getRetained() {
+		return retained;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * add a value; NaN is ignored.
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void update(double value) {
+		if (Double.isNaN(value))
+			return;
+		append(0, value);
+		count++;
+		if (count == 1 || value < min)
+			min = value;
+		if (count == 1 || value > max)
+			max = value;
+		if (retained >= capacity)
+			compress();
+	}
+
+	/**
+	 * add the values summarized by another sketch.
+	 *
+	 * @param other
+	 *            the other sketch, unchanged; not this one
+	 * @return this
+	 */
+	@Override
+	public KLLSketch merge(KLLSketch other) {
+		checkArgument(other != this, "a sketch can't be merged with itself");
+		if (other.count == 0)
+			return this;
+		for (int h = 0; h < other.levels.length; h++)
+			for (int i = 0; i < other.sizes[h]; i++)
+				append(h, other.levels[h][i]);
+		min = count == 0 ? other.min : Math.min(min, other.min);
+		max = count == 0 ? other.max : Math.max(max, other.max);
+		count += other.count;
+		while (retained >= capacity)
+			compress();
+		return this;
+	}
+
+	/**
+	 * the value at a fraction of the way through the values seen, the
+	 * smallest held value whose rank covers the fraction.
+	 *
+	 * @param fraction
+	 *            between 0 and 1
+	 * @return the quantile, NaN if the sketch is empty
+	 */
+	public double quantile(double fraction) {
+		return quantiles(new double[] { fraction })[0];
+	}
+
+	/**
+	 * several quantiles at once, sorting the held values only once.
+	 *
+	 * @param fractions
+	 *            each between 0 and 1
+	 * @return the quantiles, NaN if the sketch is empty
+	 */
+	public double[] quantiles(double[] fractions) {
+		double[] out = new double[fractions.length];
+		for (double fraction : fractions)
+			checkArgument(fraction >= 0 && fraction <= 1,
+					"fractions must be in [0, 1], given: %s", fraction);
+		if (count == 0) {
+			Arrays.fill(out, Double.NaN);
+			return out;
+		}
+		double[] values = new double[retained];
+		double[] weights = new double[retained];
+		sorted(values, weights);
+		for (int q = 0; q < fractions.length; q++) {
+			if (fractions[q] == 0) {
+				out[q] = min;
+				continue;
+			}
+			double target = fractions[q] * count;
+			double cumulative = 0;
+			out[q] = max;
+			for (int i = 0; i < values.length; i++) {
+				cumulative += weights[i];
+				if (cumulative >= target) {
+					out[q] = values[i];
+					break;
+				}
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * the approximate fraction of values seen at or below a value.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the rank, NaN if the sketch is empty
+	 */
+	public double rank(double value) {
+		if (count == 0)
+			return Double.NaN;
+		double below = 0;
+		for (int h = 0; h < levels.length; h++)
+			for (int i = 0; i < sizes[h]; i++)
+				if (levels[h][i] <= value)
+					below += 1L << h;
+		return below / count;
+	}
+
+	/**
+	 * fill the arrays with the held values ascending and the number of values
+	 * each stands for.
+	 */
+	private void sorted(double[] values, double[] weights) {
+		int n = 0;
+		for (int h = 0; h < levels.length; h++) {
+			System.arraycopy(levels[h], 0, values, n, sizes[h]);
+			Arrays.fill(weights, n, n + sizes[h], 1L << h);
+			n += sizes[h];
+		}
+		PrimitiveSort.sort(values, weights, 0, n, 1);
+	}
+
+	private void append(int level, double value) {
+		while (level >= levels.length)
+			addLevel();
+		if (sizes[level] == levels[level].length)
+			levels[level] = Arrays.copyOf(levels[level],
+					Math.max(MIN_CAPACITY, 2 * sizes[level]));
+		levels[level][sizes[level]++] = value;
+		retained++;
+	}
+
+	private void addLevel() {
+		int height = levels.length + 1;
+		levels = Arrays.copyOf(levels, height);
+		sizes = Arrays.copyOf(sizes, height);
+		levels[height - 1] = new double[MIN_CAPACITY];
+		capacity = 0;
+		for (int h = 0; h < height; h++)
+			capacity += capacity(h);
+	}
+
+	/**
+	 * the number of items level h may hold before it's compacted.
+	 */
+	private int capacity(int level) {
+		int depth = levels.length - 1 - level;
+		return Math.max(MIN_CAPACITY,
+				(int) Math.ceil(k * Math.pow(DECAY, depth)));
+	}
+
+	/**
+	 * compact the lowest level at or over its capacity; there is one whenever
+	 * the sketch as a whole is.
+	 */
+	private void compress() {
+		int h = 0;
+		while (sizes[h] < capacity(h))
+			h++;
+		compact(h);
+	}
+
+	/**
+	 * sort a level and promote every other item to the level above, leaving
+	 * the largest item behind when there is an odd number.
+	 */
+	private void compact(int level) {
+		int size = sizes[level];
+		double[] items = levels[level];
+		Arrays.sort(items, 0, size);
+		int pairs = size / 2;
+		int offset = random.nextBoolean() ? 1 : 0;
+		for (int i = 0; i < pairs; i++)
+			append(level + 1, items[2 * i + offset]);
+		int leftover = size - 2 * pairs;
+		if (leftover > 0)
+			items[0] = items[size - 1];
+		sizes[level] = leftover;
+		retained -= 2 * pairs;
+	}
+}
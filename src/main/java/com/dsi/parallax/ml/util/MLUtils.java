@@ -21,7 +21,10 @@ public class MLUtils {
 	public static final double LOG2 = Math.log(2);
 	public static final double ROOT2 = Math.sqrt(2);
 	public static final double SMALL = 1e-6;
-	private static final int LONGEST_WORD = 15;
+	/** words longer than this are dropped by {@link #cleanText(String, boolean)} */
+	public static final int LONGEST_WORD = 15;
+	/** characters separating words in {@link #cleanText(String, boolean)} */
+	public static final String CLEAN_TEXT_DELIMITERS = " +.,~\\<>\\$?!:;(){}|-0123456789\b\t\n\f\r\"\'\\\\/\\=\\&\\%\\_";
 	private final static int MIN_QSORT_SIZE = 7;
 	public static final Random GENERATOR = new Random(
 			System.currentTimeMillis());
@@ -32,8 +35,7 @@ public class MLUtils {
 	private final static String cleanText(String tmp, int maxlen,
 			boolean ignoreStopWords) {
 
-		StringTokenizer tok = new StringTokenizer(tmp,
-				" +.,~\\<>\\$?!:;(){}|-0123456789\b\t\n\f\r\"\'\\\\/\\=\\&\\%\\_");
+		StringTokenizer tok = new StringTokenizer(tmp, CLEAN_TEXT_DELIMITERS);
 		StringBuilder buff = new StringBuilder();
 		while (tok.hasMoreTokens()) {
 			String out = tok.nextToken();
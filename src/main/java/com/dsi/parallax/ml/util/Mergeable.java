@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+/**
+ * a partial result that can be combined with others of its kind, so that
+ * threads or folds can each accumulate their own and combine them once at the
+ * end. merging is associative: the order partials are merged in doesn't
+ * change the result, beyond floating point rounding.
+ * 
+ * @param <P>
+ *            the type of partial, for method chaining
+ * 
+ * @author jattenberg
+ */
+public interface Mergeable<P extends Mergeable<P>> {
+
+	/**
+	 * add another partial's observations to this one.
+	 * 
+	 * @param other
+	 *            the other partial, unchanged
+	 * @return this
+	 */
+	public P merge(P other);
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * sorts ranges of double arrays, optionally carrying a second array of values
+ * along with the keys, and optionally on several threads. a parallel sort
+ * sorts a chunk per thread then merges pairs of chunks until one run remains,
+ * using a buffer the size of the range.
+ *
+ * @author jattenberg
+ */
+public class PrimitiveSort {
+
+	/** ranges shorter than this are sorted on the calling thread */
+	public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+	private PrimitiveSort() {
+	}
+
+	/**
+	 * sort a range of keys ascending.
+	 *
+	 * @param keys
+	 *            the keys
+	 * @param from
+	 *            first index, inclusive
+	 * @param to
+	 *            last index, exclusive
+	 * @param threads
+	 *            the number of threads to sort with
+	 */
+	public static void sort(double[] keys, int from, int to, int threads) {
+		sort(keys, null, from, to, threads);
+	}
+
+	/**
+	 * sort a range of keys ascending, moving each value with its key. the
+	 * order of equal keys isn't preserved.
+	 *
+	 * @param keys
+	 *            the keys
+	 * @param values
+	 *            values aligned with the keys, or null
+	 * @param from
+	 *            first index, inclusive
+	 * @param to
+	 *            last index, exclusive
+	 * @param threads
+	 *            the number of threads to sort with
+	 */
+	public static void sort(final double[] keys, final double[] values,
+			int from, int to, int threads) {
+		checkArgument(threads > 0, "threads must be positive, given: %s",
+				threads);
+		checkArgument(0 <= from && from <= to && to <= keys.length,
+				"bad range [%s, %s) of %s", from, to, keys.length);
+		checkArgument(values == null || values.length >= to,
+				"values shorter than the range");
+		int length = to - from;
+		threads = Math.min(threads, length / (PARALLEL_THRESHOLD / 2));
+		if (threads <= 1) {
+			sortSerial(keys, values, from, to);
+			return;
+		}
+
+		final int[] runs = new int[threads + 1];
+		for (int t = 0; t <= threads; t++)
+			runs[t] = from + (int) ((long) length * t / threads);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setDaemon(true)
+						.setNameFormat("parallax-sort-%d").build());
+		try {
+			List<Future<?>> futures = Lists.newArrayList();
+			for (int t = 0; t < threads; t++) {
+				final int lo = runs[t], hi = runs[t + 1];
+				futures.add(pool.submit(new Runnable() {
+					@Override
+					public void run() {
+						sortSerial(keys, values, lo, hi);
+					}
+				}));
+			}
+			await(futures);
+
+			// merge neighbouring runs back and forth between the arrays and
+			// buffers, which are offset by from
+			double[] keySource = keys, keyTarget = new double[length];
+			double[] valueSource = values, valueTarget = values == null ? null
+					: new double[length];
+			int sourceOffset = 0, targetOffset = from;
+			int numRuns = threads;
+			int[] bounds = runs;
+			while (numRuns > 1) {
+				int[] merged = new int[(numRuns + 1) / 2 + 1];
+				futures.clear();
+				for (int r = 0; r < numRuns; r += 2) {
+					merged[r / 2] = bounds[r];
+					int hi = r + 2 <= numRuns ? bounds[r + 2] : bounds[r + 1];
+					futures.add(pool.submit(new Merge(keySource, valueSource,
+							sourceOffset, keyTarget, valueTarget,
+							targetOffset, bounds[r], bounds[r + 1], hi)));
+				}
+				merged[merged.length - 1] = to;
+				await(futures);
+
+				double[] swap = keySource;
+				keySource = keyTarget;
+				keyTarget = swap;
+				swap = valueSource;
+				valueSource = valueTarget;
+				valueTarget = swap;
+				int offset = sourceOffset;
+				sourceOffset = targetOffset;
+				targetOffset = offset;
+				numRuns = merged.length - 1;
+				bounds = merged;
+			}
+			if (keySource != keys) {
+				System.arraycopy(keySource, 0, keys, from, length);
+				if (values != null)
+					System.arraycopy(valueSource, 0, values, from, length);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void await(List<Future<?>> futures) {
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private static void sortSerial(double[] keys, double[] values, int from,
+			int to) {
+		if (values == null)
+			Arrays.sort(keys, from, to);
+		else
+			heapSort(keys, values, from, to);
+	}
+
+	/**
+	 * in place, O(n log n) in the worst case, no recursion.
+	 */
+	private static void heapSort(double[] keys, double[] values, int from,
+			int to) {
+		int length = to - from;
+		for (int i = length / 2 - 1; i >= 0; i--)
+			siftDown(keys, values, from, i, length);
+		for (int end = length - 1; end > 0; end--) {
+			swap(keys, values, from, from + end);
+			siftDown(keys, values, from, 0, end);
+		}
+	}
+
+	private static void siftDown(double[] keys, double[] values, int from,
+			int root, int length) {
+		while (2 * root + 1 < length) {
+			int child = 2 * root + 1;
+			if (child + 1 < length
+					&& Double.compare(keys[from + child], keys[from + child + 1]) < 0)
+				child++;
+			if (Double.compare(keys[from + root], keys[from + child]) >= 0)
+				return;
+			swap(keys, values, from + root, from + child);
+			root = child;
+		}
+	}
+
+	private static void swap(double[] keys, double[] values, int i, int j) {
+		double key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		double value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+
+	/**
+	 * merges the sorted runs [lo, mid) and [mid, hi) of a source into the
+	 * same positions of a target. positions are indices into the array being
+	 * sorted; a buffer holds position p at p - from, so each array comes with
+	 * the shift to subtract.
+	 */
+	private static class Merge implements Callable<Void> {
+		private final double[] keySource, valueSource, keyTarget, valueTarget;
+		private final int sourceShift, targetShift, lo, mid, hi;
+
+		Merge(double[] keySource, double[] valueSource, int sourceOffset,
+				double[] keyTarget, double[] valueTarget, int targetOffset,
+				int lo, int mid, int hi) {
+			this.keySource = keySource;
+			this.valueSource = valueSource;
+			this.keyTarget = keyTarget;
+			this.valueTarget = valueTarget;
+			this.sourceShift = sourceOffset;
+			this.targetShift = targetOffset;
+			this.lo = lo;
+			this.mid = mid;
+			this.hi = hi;
+		}
+
+		@Override
+		public Void call() {
+			int i = lo, j = mid;
+			for (int k = lo; k < hi; k++) {
+				int source;
+				if (j >= hi
+						|| (i < mid && Double.compare(keySource[i - sourceShift],
+								keySource[j - sourceShift]) <= 0))
+					source = i++;
+				else
+					source = j++;
+				keyTarget[k - targetShift] = keySource[source - sourceShift];
+				if (valueSource != null)
+					valueTarget[k - targetShift] = valueSource[source
+							- sourceShift];
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+/**
+ * 32 bit hash functions that work straight from the characters of a string,
+ * without encoding them to bytes, and that take a seed. seeds let callers fold
+ * extra state into a hash- a namespace, or which of several hashes is being
+ * taken- without building a new string for each combination. both are
+ * stateless and safe to use from any number of threads.
+ *
+ * characters are hashed as their little-endian utf-16 bytes, so results match
+ * the byte-oriented versions of each algorithm run on those bytes.
+ *
+ * @author jattenberg
+ */
+public enum SeededHashFunctionType {
+	/** MurmurHash3, x86 32 bit variant */
+	MURMUR3 {
+		@Override
+		public int hash(CharSequence chars, int start, int end, int seed) {
+			int h1 = seed;
+			int i = start + 1;
+			for (; i < end; i += 2) {
+				int k1 = chars.charAt(i - 1) | (chars.charAt(i) << 16);
+				h1 = murmurMixH1(h1, murmurMixK1(k1));
+			}
+			if (i == end)
+				h1 ^= murmurMixK1(chars.charAt(end - 1));
+			return murmurFinalize(h1, 2 * (end - start));
+		}
+	},
+	/** xxHash, 32 bit variant */
+	XXHASH {
+		@Override
+		public int hash(CharSequence chars, int start, int end, int seed) {
+			int length = end - start;
+			int i = start;
+			int h;
+			if (length >= 8) {
+				// 16 byte stripes, 8 characters each
+				int v1 = seed + XX_P1 + XX_P2;
+				int v2 = seed + XX_P2;
+				int v3 = seed;
+				int v4 = seed - XX_P1;
+				int limit = end - 8;
+				for (; i <= limit; i += 8) {
+					v1 = xxRound(v1, lane(chars, i));
+					v2 = xxRound(v2, lane(chars, i + 2));
+					v3 = xxRound(v3, lane(chars, i + 4));
+					v4 = xxRound(v4, lane(chars, i + 6));
+				}
+				h = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7)
+						+ Integer.rotateLeft(v3, 12)
+						+ Integer.rotateLeft(v4, 18);
+			} else {
+				h = seed + XX_P5;
+			}
+			h += 2 * length;
+			for (; i + 1 < end; i += 2) {
+				h += lane(chars, i) * XX_P3;
+				h = Integer.rotateLeft(h, 17) * XX_P4;
+			}
+			if (i < end) {
+				char c = chars.charAt(i);
+				h += (c & 0xff) * XX_P5;
+				h = Integer.rotateLeft(h, 11) * XX_P1;
+				h += (c >>> 8) * XX_P5;
+				h = Integer.rotateLeft(h, 11) * XX_P1;
+			}
+			h ^= h >>> 15;
+			h *= XX_P2;
+			h ^= h >>> 13;
+			h *= XX_P3;
+			h ^= h >>> 16;
+			return h;
+		}
+	};
+
+	private static final int MURMUR_C1 = 0xcc9e2d51;
+	private static final int MURMUR_C2 = 0x1b873593;
+
+	private static final int XX_P1 = 0x9E3779B1;
+	private static final int XX_P2 = 0x85EBCA77;
+	private static final int XX_P3 = 0xC2B2AE3D;
+	private static final int XX_P4 = 0x27D4EB2F;
+	private static final int XX_P5 = 0x165667B1;
+
+	/**
+	 * hash a range of characters.
+	 *
+	 * @param chars
+	 *            the characters
+	 * @param start
+	 *            first character hashed
+	 * @param end
+	 *            one past the last character hashed
+	 * @param seed
+	 *            the seed
+	 * @return the hash
+	 */
+	public abstract int hash(CharSequence chars, int start, int end, int seed);
+
+	/**
+	 * hash all of the characters.
+	 *
+	 * @param chars
+	 *            the characters
+	 * @param seed
+	 *            the seed
+	 * @return the hash
+	 */
+	public int hash(CharSequence chars, int seed) {
+		return hash(chars, 0, chars.length(), seed);
+	}
+
+	/**
+	 * the seed for the kth of several hashes taken under a base seed, eg one
+	 * derived from a namespace.
+	 *
+	 * @param seed
+	 *            the base seed
+	 * @param k
+	 *            which hash
+	 * @return the combined seed
+	 */
+	public static int combineSeeds(int seed, int k) {
+		return k == 0 ? seed : murmurFinalize(murmurMixH1(seed,
+				murmurMixK1(k)), 4);
+	}
+
+	/**
+	 * map a hash to one of bins buckets.
+	 *
+	 * @param hash
+	 *            the hash
+	 * @param bins
+	 *            number of buckets
+	 * @return a bucket in [0, bins)
+	 */
+	public static int bin(int hash, int bins) {
+		return (hash & Integer.MAX_VALUE) % bins;
+	}
+
+	private static int murmurMixK1(int k1) {
+		k1 *= MURMUR_C1;
+		k1 = Integer.rotateLeft(k1, 15);
+		return k1 * MURMUR_C2;
+	}
+
+	private static int murmurMixH1(int h1, int k1) {
+		h1 ^= k1;
+		h1 = Integer.rotateLeft(h1, 13);
+		return h1 * 5 + 0xe6546b64;
+	}
+
+	private static int murmurFinalize(int h1, int length) {
+		h1 ^= length;
+		h1 ^= h1 >>> 16;
+		h1 *= 0x85ebca6b;
+		h1 ^= h1 >>> 13;
+		h1 *= 0xc2b2ae35;
+		h1 ^= h1 >>> 16;
+		return h1;
+	}
+
+	// two characters as a little-endian 4 byte lane
+	private static int lane(CharSequence chars, int i) {
+		return chars.charAt(i) | (chars.charAt(i + 1) << 16);
+	}
+
+	private static int xxRound(int acc, int lane) {
+		acc += lane * XX_P2;
+		acc = Integer.rotateLeft(acc, 13);
+		return acc * XX_P1;
+	}
+}
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.optimization;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+
+/**
+ * limited memory BFGS over the full training set. each iteration takes the
+ * gradient of the whole loss, turns it into a search direction with the last
+ * few steps and gradient changes, and backtracks along that direction until
+ * the loss falls enough (the armijo condition). deterministic, unlike
+ * {@link com.dsi.parallax.optimization.stochastic.StochasticLBFGS}, so the loss
+ * drops every iteration and the usual value and gradient convergence tests
+ * apply. minimizes {@link Optimizable#computeLoss()}, with
+ * {@link Optimizable#computeGradient()} taken as its gradient.
+ *
+ * @author jattenberg
+ */
+public class LBFGS extends AbstractOptimizer {
+
+	private static final long serialVersionUID = 6027148519745583491L;
+
+	/** sufficient decrease, as a fraction of that predicted by the slope */
+	private static final double ARMIJO = 1e-4;
+	/** factor the step shrinks by when the loss doesn't fall enough */
+	private static final double BACKTRACK = 0.5;
+	private static final int MAX_BACKTRACKS = 50;
+
+	private final Optimizable optimizable;
+	private final LBFGSHistory history;
+	private final int dimension;
+	private boolean converged = false;
+	private int iterations = 0;
+
+	/** parameters, gradient and direction, reused every iteration */
+	private final double[] parameters;
+	private final double[] gradient;
+	private final double[] direction;
+	private final double[] step;
+	private final double[] change;
+	private final double[] trialGradient;
+
+	/**
+	 * Class constructor.
+	 *
+	 * @param function
+	 *            the function to minimize
+	 * @param memory
+	 *            the number of prior steps used to estimate the inverse
+	 *            hessian
+	 */
+	public LBFGS(Optimizable function, int memory) {
+		checkArgument(memory > 0, "memory must be positive, given: %s", memory);
+		this.optimizable = function;
+		this.dimension = function.getNumParameters();
+		history = new LBFGSHistory(dimension, memory);
+		parameters = new double[dimension];
+		gradient = new double[dimension];
+		direction = new double[dimension];
+		step = new double[dimension];
+		change = new double[dimension];
+		trialGradient = new double[dimension];
+	}
+
+	/**
+	 * Class constructor, remembering the last 10 steps.
+	 *
+	 * @param function
+	 *            the function to minimize
+	 */
+	public LBFGS(Optimizable function) {
+		this(function, 10);
+	}
+
+	@Override
+	public Optimizable getOptimizable() {
+		return optimizable;
+	}
+
+	@Override
+	public boolean isConverged() {
+		return converged;
+	}
+
+	/**
+	 * @return the number of iterations taken so far
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	public LBFGS setMaxIterations(int maxIterations) {
+		checkArgument(maxIterations > 0,
+				"maxIterations must be positive, given: %s", maxIterations);
+		this.maxIterations = maxIterations;
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.dsi.parallax.optimization.Optimizer#optimize(int)
+	 */
+	@Override
+	public boolean optimize(int numIterations) {
+		if (converged)
+			return true;
+
+		LinearVector vector = optimizable.getVector();
+		LBFGSHistory.toArray(vector, 1, parameters);
+		Gradient grad = optimizable.computeGradient();
+		LBFGSHistory.toArray(grad, 1, gradient);
+		double value = optimizable.computeLoss();
+
+		for (int iteration = 0; iteration < numIterations; iteration++) {
+			if (norm(gradient) < gradientTolerance) {
+				logger.info("LBFGS converged: gradient norm below "
+						+ gradientTolerance);
+				converged = true;
+				return true;
+			}
+
+			for (int i = 0; i < dimension; i++)
+				direction[i] = -gradient[i];
+			// without history, start with a step of unit length
+			history.applyInverseHessian(direction,
+					history.size() == 0 ? 1 / norm(gradient) : history
+							.newestScale());
+			double slope = dot(gradient, direction);
+			if (!(slope < 0)) {
+				logger.info("LBFGS: not a descent direction, resetting history");
+				history.clear();
+				for (int i = 0; i < dimension; i++)
+					direction[i] = -gradient[i] / norm(gradient);
+				slope = dot(gradient, direction);
+			}
+
+			double rate = 1;
+			double trialValue = Double.NaN;
+			int backtracks;
+			for (backtracks = 0; backtracks < MAX_BACKTRACKS; backtracks++) {
+				for (int i = 0; i < dimension; i++) {
+					step[i] = rate * direction[i];
+					vector.resetValue(i, parameters[i] + step[i]);
+				}
+				trialValue = optimizable.computeLoss(vector);
+				if (trialValue <= value + ARMIJO * rate * slope)
+					break;
+				rate *= BACKTRACK;
+			}
+			if (backtracks == MAX_BACKTRACKS) {
+				logger.info("LBFGS converged: no step along the search direction lowers the loss");
+				for (int i = 0; i < dimension; i++)
+					vector.resetValue(i, parameters[i]);
+				optimizable.setParameters(vector);
+				converged = true;
+				return true;
+			}
+			optimizable.setParameters(vector);
+
+			LBFGSHistory.toArray(optimizable.computeGradient(vector), 1,
+					trialGradient);
+			for (int i = 0; i < dimension; i++) {
+				parameters[i] += step[i];
+				change[i] = trialGradient[i] - gradient[i];
+			}
+			history.add(step, change);
+			System.arraycopy(trialGradient, 0, gradient, 0, dimension);
+
+			double oldValue = value;
+			value = trialValue;
+			iterations++;
+			logger.debug("LBFGS: at iteration " + iterations + ", loss = "
+					+ value);
+			if (checkValueTerminationCondition(value, oldValue)) {
+				logger.info("LBFGS converged: old value= " + oldValue
+						+ " new value= " + value + " tolerance=" + tolerance);
+				converged = true;
+				return true;
+			}
+			if (iterations >= maxIterations) {
+				logger.warn("Too many iterations in LBFGS");
+				converged = true;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * forget the history and convergence, for example after the function
+	 * has changed.
+	 */
+	public void reset() {
+		history.clear();
+		converged = false;
+	}
+
+	private static double dot(double[] a, double[] b) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			sum += a[i] * b[i];
+		return sum;
+	}
+
+	private static double norm(double[] a) {
+		return Math.sqrt(dot(a, a));
+	}
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.optimization;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+
+/**
+ * the last few parameter steps s and gradient changes y seen by an L-BFGS
+ * optimizer, kept in a fixed ring of dense arrays along with s'y and y'y for
+ * each pair. once the ring has filled, adding a pair overwrites the oldest and
+ * applying the inverse hessian estimate allocates nothing.
+ *
+ * @author jattenberg
+ */
+public class LBFGSHistory implements Serializable {
+
+	private static final long serialVersionUID = 4101525384927013622L;
+
+	private final int dimension;
+	private final double[][] s;
+	private final double[][] y;
+	/** s'y for each pair */
+	private final double[] sy;
+	/** y'y for each pair */
+	private final double[] yy;
+	/** scratch space for the two loop recursion */
+	private final double[] alphas;
+	/** slot of the newest pair */
+	private int newest = -1;
+	private int size = 0;
+
+	/**
+	 * Class constructor.
+	 *
+	 * @param dimension
+	 *            the number of parameters
+	 * @param capacity
+	 *            the number of (s, y) pairs remembered
+	 */
+	public LBFGSHistory(int dimension, int capacity) {
+		checkArgument(dimension > 0, "dimension must be positive, given: %s",
+				dimension);
+		checkArgument(capacity > 0, "capacity must be positive, given: %s",
+				capacity);
+		this.dimension = dimension;
+		s = new double[capacity][];
+		y = new double[capacity][];
+		sy = new double[capacity];
+		yy = new double[capacity];
+		alphas = new double[capacity];
+	}
+
+	/**
+	 * remember a step and the change in gradient it caused, replacing the
+	 * oldest pair when full. pairs where s'y isn't positive carry no
+	 * curvature information and would make the estimate indefinite, so they
+	 * are dropped.
+	 *
+	 * @param step
+	 *            s, the change in parameters. copied
+	 * @param gradientChange
+	 *            y, the change in gradient. copied
+	 * @return true if the pair was kept
+	 */
+	public boolean add(double[] step, double[] gradientChange) {
+		double stepDotChange = dot(step, gradientChange);
+		double changeDotChange = dot(gradientChange, gradientChange);
+		if (!(stepDotChange > 0) || Double.isInfinite(stepDotChange)
+				|| !(changeDotChange > 0))
+			return false;
+		int slot = (newest + 1) % s.length;
+		if (s[slot] == null) {
+			s[slot] = new double[dimension];
+			y[slot] = new double[dimension];
+		}
+		System.arraycopy(step, 0, s[slot], 0, dimension);
+		System.arraycopy(gradientChange, 0, y[slot], 0, dimension);
+		sy[slot] = stepDotChange;
+		yy[slot] = changeDotChange;
+		newest = slot;
+		size = Math.min(size + 1, s.length);
+		return true;
+	}
+
+	/**
+	 * multiply a vector by the inverse hessian estimate, in place, using the
+	 * two loop recursion.
+	 *
+	 * @param direction
+	 *            the vector to multiply, usually the negative gradient
+	 * @param initialScale
+	 *            the diagonal of the initial inverse hessian estimate
+	 */
+	public void applyInverseHessian(double[] direction, double initialScale) {
+		for (int k = 0; k < size; k++) {
+			int slot = slot(size - 1 - k);
+			double alpha = dot(s[slot], direction) / sy[slot];
+			alphas[slot] = alpha;
+			plusTimes(direction, y[slot], -alpha);
+		}
+		for (int i = 0; i < dimension; i++)
+			direction[i] *= initialScale;
+		for (int k = 0; k < size; k++) {
+			int slot = slot(k);
+			double beta = dot(y[slot], direction) / sy[slot];
+			plusTimes(direction, s[slot], alphas[slot] - beta);
+		}
+	}
+
+	/**
+	 * s'y / y'y for the newest pair, the usual diagonal of the initial inverse
+	 * hessian estimate.
+	 *
+	 * @return the scale, 1 if there's no history
+	 */
+	public double newestScale() {
+		return size == 0 ? 1 : sy[newest] / yy[newest];
+	}
+
+	/**
+	 * s'y / y'y averaged over every pair, a steadier initial inverse hessian
+	 * estimate when gradients are noisy.
+	 *
+	 * @return the scale, 1 if there's no history
+	 */
+	public double averageScale() {
+		if (size == 0)
+			return 1;
+		double sum = 0;
+		for (int k = 0; k < size; k++)
+			sum += sy[slot(k)] / yy[slot(k)];
+		return sum / size;
+	}
+
+	/**
+	 * @return the number of pairs held
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * forget every pair, keeping the storage.
+	 */
+	public void clear() {
+		newest = -1;
+		size = 0;
+	}
+
+	/**
+	 * the slot of the kth oldest pair.
+	 */
+	private int slot(int k) {
+		return (newest - size + 1 + k + s.length) % s.length;
+	}
+
+	/**
+	 * copy factor * a vector into a dense array.
+	 *
+	 * @param vector
+	 *            the vector
+	 * @param factor
+	 *            multiplies each entry
+	 * @param out
+	 *            the array written, entries not in the vector are zeroed
+	 */
+	public static void toArray(LinearVector vector, double factor, double[] out) {
+		Arrays.fill(out, 0);
+		for (int index : vector)
+			out[index] = factor * vector.getValue(index);
+	}
+
+	private static double dot(double[] a, double[] b) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			sum += a[i] * b[i];
+		return sum;
+	}
+
+	private static void plusTimes(double[] a, double[] b, double factor) {
+		for (int i = 0; i < a.length; i++)
+			a[i] += factor * b[i];
+	}
+}
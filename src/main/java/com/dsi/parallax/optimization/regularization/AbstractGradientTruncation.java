@@ -3,6 +3,8 @@
  ******************************************************************************/
 package com.dsi.parallax.optimization.regularization;
 
+import com.dsi.parallax.ml.vector.LinearVector;
+
 import java.io.Serializable;
 
 public abstract class AbstractGradientTruncation implements GradientTruncation,
@@ -40,6 +42,29 @@ public abstract class AbstractGradientTruncation implements GradientTruncation,
 		this.bins = bins;
 	}
 
+	/**
+	 * truncates once after a batch of updates, eg a pass made by several
+	 * threads, if the period elapsed at any point during the batch.
+	 * 
+	 * @param vector
+	 *            the parameters
+	 * @param updates
+	 *            the number of updates in the batch
+	 * @return the parameters
+	 */
+	@Override
+	public LinearVector truncateParameters(LinearVector vector, int updates) {
+		int end = epoch + updates;
+		int last = end - end % period;
+		if (last > epoch) {
+			// truncateParameters(vector) truncates when it counts up to last
+			epoch = last - 1;
+			truncateParameters(vector);
+		}
+		epoch = end;
+		return vector;
+	}
+
 	@Override
 	public void intialize() {
 		lastAccessed = new int[bins];
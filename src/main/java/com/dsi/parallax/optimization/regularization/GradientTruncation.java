@@ -10,6 +10,7 @@ import com.dsi.parallax.ml.vector.LinearVector;
 public interface GradientTruncation
 {
 	public LinearVector truncateParameters(LinearVector vector);
+	public LinearVector truncateParameters(LinearVector vector, int updates);
 	public void intialize();
 	public TruncationType getType();
 }
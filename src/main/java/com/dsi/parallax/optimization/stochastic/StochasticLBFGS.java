@@ -10,17 +10,13 @@ import com.google.common.collect.Iterables;
 package com.dsi.parallax.optimization.stochastic;
 
 import com.dsi.parallax.ml.vector.LinearVector;
-import com.dsi.parallax.ml.vector.LinearVectorFactory;
-import com.dsi.parallax.ml.vector.util.VectorUtils;
 import com.dsi.parallax.optimization.Gradient;
+import com.dsi.parallax.optimization.LBFGSHistory;
 import com.dsi.parallax.optimization.Optimizable;
 import com.dsi.parallax.optimization.regularization.GradientTruncation;
 import com.dsi.parallax.optimization.regularization.LinearCoefficientLossType;
 import com.dsi.parallax.optimization.stochastic.anneal.AnnealingSchedule;
-import com.google.common.collect.Lists;
 
-import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -28,11 +24,17 @@ import static com.google.common.base.Preconditions.checkArgument;
 //TODO: still baking
 public class StochasticLBFGS extends AbstractGradientStochasticOptimizer {
 
-	/** cache of s_{t-i} to y_{t-i} for online LBFGS */
-	private final LinkedHashMap<LinearVector, LinearVector> stYtCache;
+	/** the last bandwidth steps s_{t-i} and gradient changes y_{t-i} */
+	private final LBFGSHistory history;
 	private final double lambda;
 	private final double epsilon;
 
+	/** gradient, search direction, step and gradient change, reused */
+	private final double[] gradient;
+	private final double[] direction;
+	private final double[] step;
+	private final double[] change;
+
 	public StochasticLBFGS(int dimension, boolean bias,
 			AnnealingSchedule annealingSchedule, GradientTruncation truncation,
 			Map<LinearCoefficientLossType, Double> coefficientWeights,
@@ -42,7 +44,7 @@ public class StochasticLBFGS extends AbstractGradientStochasticOptimizer {
 				coefficientWeights, regularizeIntercept, regularizationWeight);
 		checkArgument(bandwidth >= 1,
 				"bandwidth must be greater than 1, given: %s", bandwidth);
-		stYtCache = new Cache(bandwidth);
+		history = new LBFGSHistory(dimension, bandwidth);
 		checkArgument(lambda >= 0, "lambda must be non-negative given: %s",
 				lambda);
 		this.lambda = lambda;
@@ -50,6 +52,10 @@ public class StochasticLBFGS extends AbstractGradientStochasticOptimizer {
 		checkArgument(epsilon > 0, "epsilon must be greater than 0. given: %s",
 				epsilon);
 		this.epsilon = epsilon;
+		gradient = new double[dimension];
+		direction = new double[dimension];
+		step = new double[dimension];
+		change = new double[dimension];
 	}
 
 	@Override
@@ -71,82 +77,29 @@ public class StochasticLBFGS extends AbstractGradientStochasticOptimizer {
 	}
 
 	private void LBFGSUpdate(Optimizable function, LinearVector grad) {
-		// 1. p_t = -grad_t
-		LinearVector p_t = LinearVectorFactory.getScaledVector(grad, -1.);
 		epoch++;
-
-		List<LinearVector> stList = Lists.newArrayList(stYtCache.keySet()); // s_ti
-																			// in
-																			// oldest
-																			// to
-																			// newest
-																			// order
-		double[] alphas = new double[stList.size()];
-		int ct = 0;
-
-		for (LinearVector s_ti : Lists.reverse(stList)) {
-			LinearVector y_ti = stYtCache.get(s_ti);
-
-			double numerator = VectorUtils.dotProduct(s_ti, p_t);
-			double denominator = VectorUtils.dotProduct(s_ti, y_ti);
-			double alpha = numerator / denominator;
-			alphas[ct++] = alpha;
-			p_t.minusEqualsVectorTimes(y_ti, alpha);
-		}
-
-		if (stYtCache.size() == 0) {
-			p_t.timesEquals(epsilon);
-		} else {
-			double updateFactor = 0.;
-
-			for (LinearVector s_ti : stList) {
-				LinearVector y_ti = stYtCache.get(s_ti);
-
-				double numerator = VectorUtils.dotProduct(s_ti, y_ti);
-				double denominator = VectorUtils.dotProduct(y_ti, y_ti);
-				updateFactor += numerator / denominator;
-			}
-			p_t.timesEquals(updateFactor / stYtCache.size());
-		}
-
-		for (LinearVector s_ti : stList) {
-			LinearVector y_ti = stYtCache.get(s_ti);
-			double numerator = VectorUtils.dotProduct(y_ti, p_t);
-			double denominator = VectorUtils.dotProduct(y_ti, s_ti);
-
-			double beta = numerator / denominator;
-			double alpha = alphas[--ct];
-			p_t.plusEqualsVectorTimes(s_ti, alpha - beta);
-		}
-		LinearVector s_t = LinearVectorFactory.getVector(dimension);
-		for (int x_i : p_t) {
-			s_t.resetValue(x_i, annealingSchedule.learningRate(epoch, x_i)*p_t.getValue(x_i));
+		LBFGSHistory.toArray(grad, 1, gradient);
+
+		// p_t = -H_t grad_t, with H_0 = epsilon I until there's history
+		for (int i = 0; i < dimension; i++)
+			direction[i] = -gradient[i];
+		history.applyInverseHessian(direction,
+				history.size() == 0 ? epsilon : history.averageScale());
+
+		// s_t = learning rate * p_t, taken in place
+		LinearVector parameters = function.getVector();
+		for (int i = 0; i < dimension; i++) {
+			step[i] = direction[i] == 0 ? 0 : annealingSchedule.learningRate(
+					epoch, i) * direction[i];
+			if (step[i] != 0)
+				parameters.updateValue(i, step[i]);
 		}
 
-		LinearVector parameters = LinearVectorFactory.getVector(function.getVector());
-		parameters.plusEquals(s_t);
-		
-		LinearVector y_t = LinearVectorFactory.getScaledVector(grad, -1);
-		y_t.plusEqualsVectorTimes(s_t, lambda);
-		y_t.plusEquals(function.computeGradient(parameters));
+		// y_t = grad(w_t + s_t) - grad_t + lambda s_t, on the same examples
+		LBFGSHistory.toArray(function.computeGradient(parameters), 1, change);
+		for (int i = 0; i < dimension; i++)
+			change[i] += lambda * step[i] - gradient[i];
 		function.setParameters(parameters);
-		stYtCache.put(s_t, y_t);
-	}
-
-	public static class Cache extends LinkedHashMap<LinearVector, LinearVector> {
-
-		private static final long serialVersionUID = 6876090945205389388L;
-		private final int capacity;
-
-		public Cache(int capacity) {
-			super(capacity + 1, 1.1f, true);
-			this.capacity = capacity;
-		}
-
-		@Override
-		public boolean removeEldestEntry(
-				Map.Entry<LinearVector, LinearVector> eldest) {
-			return size() > capacity;
-		}
+		history.add(step, change);
 	}
 }
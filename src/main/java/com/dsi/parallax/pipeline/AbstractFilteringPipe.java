@@ -5,10 +5,12 @@ package com.dsi.parallax.pipeline;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 
 import java.util.Iterator;
+import java.util.List;
 
-public abstract class AbstractFilteringPipe<O> implements Pipe<O,O> {
+public abstract class AbstractFilteringPipe<O> implements BatchPipe<O,O> {
 
 	private static final long serialVersionUID = 7261224792924050612L;
 	transient protected PipePredicate predicate;
@@ -21,6 +23,17 @@ public abstract class AbstractFilteringPipe<O> implements Pipe<O,O> {
 	public Iterator<Context<O>> processIterator(Iterator<Context<O>> source) {
 		return Iterators.filter(source, predicate);
 	}
+
+	@Override
+	public List<Context<O>> operateBatch(List<Context<O>> batch) {
+		List<Context<O>> out = Lists.newArrayListWithCapacity(batch.size());
+		for (int i = 0; i < batch.size(); i++) {
+			Context<O> context = batch.get(i);
+			if (operate(context))
+				out.add(context);
+		}
+		return out;
+	}
 	
 	abstract protected boolean operate(Context<O> context);
 	
@@ -5,8 +5,10 @@ package com.dsi.parallax.pipeline;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 
 import java.util.Iterator;
+import java.util.List;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -16,7 +18,7 @@ import static com.google.common.base.Preconditions.checkArgument;
  *
  * @author jattenberg
  */
-public abstract class AbstractPipe<I,O> implements Pipe<I,O> {
+public abstract class AbstractPipe<I,O> implements BatchPipe<I,O> {
 
     private static final long serialVersionUID = -1495191273036923098L;
     transient protected PipelineFunction function;
@@ -32,6 +34,17 @@ public abstract class AbstractPipe<I,O> implements Pipe<I,O> {
 	public Iterator<Context<O>> processIterator(Iterator<Context<I>> source) {
 		return Iterators.transform(source, function);
 	}
+
+	// applies operate() to each element of the batch in a single loop.
+	// pipes with per-record scratch space can override this to share it
+	// across the batch
+	@Override
+	public List<Context<O>> operateBatch(List<Context<I>> batch) {
+		List<Context<O>> out = Lists.newArrayListWithCapacity(batch.size());
+		for (int i = 0; i < batch.size(); i++)
+			out.add(operate(batch.get(i)));
+		return out;
+	}
     
 	protected void checkValidSizes(int[] in) {
 		for(int i : in)
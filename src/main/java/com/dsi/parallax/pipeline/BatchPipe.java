@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline;
+
+import java.util.List;
+
+/**
+ * interface for pipes that can process a micro-batch of contexts in a single
+ * call. {@link Pipeline#processBatched(int)} hands consecutive batch pipes a
+ * list of contexts at a time rather than stacking a lazy iterator per pipe,
+ * amortizing the per-record dispatch and allocation over the whole batch.
+ * 
+ * @author jattenberg
+ * 
+ * @param <I>
+ *            the type of input iterator
+ * @param <O>
+ *            the type of output iterator
+ */
+public interface BatchPipe<I, O> extends Pipe<I, O> {
+
+	/**
+	 * processes a batch of contexts, in order. filtering pipes may return
+	 * fewer contexts than they are given.
+	 * 
+	 * @param batch
+	 *            the input contexts
+	 * @return the output contexts, in the order of the input
+	 */
+	public List<Context<O>> operateBatch(List<Context<I>> batch);
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline;
+
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * runs a sequence of {@link BatchPipe}s over micro-batches of the upstream
+ * contexts. each batch is pushed through every stage with a single
+ * operateBatch call per stage before any of its output is handed on.
+ * 
+ * @author jattenberg
+ */
+public class BatchStageIterator<I, O> implements Iterator<Context<O>> {
+
+	private final Iterator<Context<I>> source;
+	private final List<BatchPipe<?, ?>> stages;
+	private final int batchSize;
+	private Iterator<Context<O>> current;
+
+	/**
+	 * Instantiates a new batch stage.
+	 * 
+	 * @param source
+	 *            the upstream contexts
+	 * @param stages
+	 *            the batch pipes to apply, in order
+	 * @param batchSize
+	 *            the maximum number of contexts per batch
+	 */
+	public BatchStageIterator(Iterator<Context<I>> source,
+			List<BatchPipe<?, ?>> stages, int batchSize) {
+		checkArgument(batchSize > 0, "batchSize must be positive, given: %s",
+				batchSize);
+		this.source = source;
+		this.stages = Lists.newArrayList(stages);
+		this.batchSize = batchSize;
+		current = Collections.<Context<O>> emptyList().iterator();
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			if (!source.hasNext())
+				return false;
+			current = operateBatch(nextBatch()).iterator();
+		}
+		return true;
+	}
+
+	@Override
+	public Context<O> next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return current.next();
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException(
+				"remove is not supported in batched pipelines");
+	}
+
+	private List<Context<I>> nextBatch() {
+		List<Context<I>> batch = Lists.newArrayListWithCapacity(batchSize);
+		while (batch.size() < batchSize && source.hasNext())
+			batch.add(source.next());
+		return batch;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private List<Context<O>> operateBatch(List<Context<I>> batch) {
+		List contexts = batch;
+		for (BatchPipe stage : stages) {
+			if (contexts.isEmpty())
+				break;
+			contexts = stage.operateBatch(contexts);
+		}
+		return contexts;
+	}
+}
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * runs a sequence of {@link StatelessPipe}s over a pool of worker threads.
+ * a reader thread pulls contexts from the upstream iterator and hands them to
+ * the workers through a bounded queue; each worker pushes a context through
+ * every stage and hands the results back through a second bounded queue. at
+ * most queueSize records are in flight at once, so a slow consumer applies back
+ * pressure all the way to the source. when ordered, records are emitted in the
+ * order they were read from upstream; otherwise they are emitted as soon as
+ * they are finished.
+ *
+ * the reader and workers stop on their own once the upstream iterator is
+ * exhausted or a record fails. a consumer that stops iterating before then
+ * must {@link #close()} the stage, or its threads stay blocked on the full
+ * queues.
+ *
+ * @author jattenberg
+ */
+public class ParallelStageIterator<I, O> implements Iterator<Context<O>>,
+		Closeable {
+
+	private final Iterator<Context<I>> source;
+	private final List<Pipe<?, ?>> stages;
+	private final int threads;
+	private final boolean ordered;
+	private final Semaphore inFlight;
+	private final BlockingQueue<Slot> input;
+	private final BlockingQueue<Slot> output;
+	private final Map<Long, Slot> pending;
+	private volatile ExecutorService executor;
+	private Iterator<Context<O>> current;
+	private long nextSequence;
+	private int finishedWorkers;
+	private volatile boolean exhausted;
+
+	/**
+	 * Instantiates a new parallel stage.
+	 *
+	 * @param source
+	 *            the upstream contexts
+	 * @param stages
+	 *            the stateless pipes to apply, in order
+	 * @param threads
+	 *            the number of worker threads
+	 * @param queueSize
+	 *            the maximum number of records in flight
+	 * @param ordered
+	 *            whether output should keep the order of the input
+	 */
+	public ParallelStageIterator(Iterator<Context<I>> source,
+			List<Pipe<?, ?>> stages, int threads, int queueSize,
+			boolean ordered) {
+		checkArgument(threads > 0, "threads must be positive, given: %s",
+				threads);
+		checkArgument(queueSize > 0, "queueSize must be positive, given: %s",
+				queueSize);
+		this.source = source;
+		this.stages = Lists.newArrayList(stages);
+		this.threads = threads;
+		this.ordered = ordered;
+		inFlight = new Semaphore(queueSize);
+		// room for every record in flight plus one end marker per worker
+		input = new ArrayBlockingQueue<Slot>(queueSize + threads);
+		output = new ArrayBlockingQueue<Slot>(queueSize + threads);
+		pending = Maps.newHashMap();
+		current = Collections.<Context<O>> emptyList().iterator();
+	}
+
+	private void start() {
+		executor = Executors.newFixedThreadPool(threads + 1,
+				new ThreadFactoryBuilder().setDaemon(true)
+						.setNameFormat("parallax-pipeline-%d").build());
+		executor.execute(new Reader());
+		for (int i = 0; i < threads; i++)
+			executor.execute(new Worker());
+		executor.shutdown();
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!exhausted && !current.hasNext()) {
+			if (null == executor)
+				start();
+			Slot slot = nextSlot();
+			if (null == slot) {
+				close();
+				return false;
+			}
+			inFlight.release();
+			if (null != slot.error) {
+				close();
+				throw slot.error;
+			}
+			current = slot.results.iterator();
+		}
+		return !exhausted;
+	}
+
+	@Override
+	public Context<O> next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return current.next();
+	}
+
+	/**
+	 * stops the reader and workers, interrupting any blocked on a queue, and
+	 * drops the records in flight. the stage then reports no more records;
+	 * a consumer blocked waiting for one is released.
+	 */
+	@Override
+	public void close() {
+		exhausted = true;
+		if (null == executor)
+			return;
+		executor.shutdownNow();
+		input.clear();
+		output.clear();
+		for (int i = 0; i < threads; i++)
+			output.offer(new Slot(-1, null));
+	}
+
+	/**
+	 * @return true once the stage has been closed or has run to its end
+	 */
+	public boolean isClosed() {
+		return exhausted;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException(
+				"remove is not supported in parallel pipelines");
+	}
+
+	private Slot nextSlot() {
+		while (true) {
+			if (ordered) {
+				Slot slot = pending.remove(nextSequence);
+				if (null != slot) {
+					nextSequence++;
+					return slot;
+				}
+			}
+			if (finishedWorkers == threads)
+				return null;
+			Slot slot = take(output);
+			if (slot.isEndMarker())
+				finishedWorkers++;
+			else if (!ordered)
+				return slot;
+			else
+				pending.put(slot.sequence, slot);
+		}
+	}
+
+	private static <T> T take(BlockingQueue<T> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private List<Context<O>> operate(Context<I> context) {
+		Iterator it = Iterators.singletonIterator(context);
+		for (Pipe pipe : stages)
+			it = pipe.processIterator(it);
+		if (!it.hasNext())
+			return Collections.emptyList();
+		List<Context<O>> out = Lists.newArrayListWithCapacity(1);
+		Iterators.addAll(out, it);
+		return out;
+	}
+
+	/**
+	 * a unit of work passed between the reader, the workers and the consumer.
+	 * a slot with a negative sequence number marks the end of the stream.
+	 */
+	private class Slot {
+		final long sequence;
+		final Context<I> context;
+		List<Context<O>> results;
+		RuntimeException error;
+
+		Slot(long sequence, Context<I> context) {
+			this.sequence = sequence;
+			this.context = context;
+		}
+
+		boolean isEndMarker() {
+			return sequence < 0;
+		}
+	}
+
+	private class Reader implements Runnable {
+		@Override
+		public void run() {
+			long sequence = 0;
+			try {
+				try {
+					while (true) {
+						inFlight.acquire();
+						if (!source.hasNext())
+							break;
+						input.put(new Slot(sequence++, source.next()));
+					}
+				} catch (RuntimeException e) {
+					Slot failed = new Slot(sequence, null);
+					failed.error = e;
+					input.put(failed);
+				}
+				for (int i = 0; i < threads; i++)
+					input.put(new Slot(-1, null));
+			} catch (InterruptedException e) {
+				// the consumer has abandoned this stage
+			}
+		}
+	}
+
+	private class Worker implements Runnable {
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Slot slot = input.take();
+					if (null == slot.error && !slot.isEndMarker()) {
+						try {
+							slot.results = operate(slot.context);
+						} catch (RuntimeException e) {
+							slot.error = e;
+						}
+					}
+					output.put(slot);
+					if (slot.isEndMarker())
+						return;
+				}
+			} catch (InterruptedException e) {
+				// the consumer has abandoned this stage
+			}
+		}
+	}
+}
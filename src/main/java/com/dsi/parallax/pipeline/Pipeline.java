@@ -5,6 +5,9 @@ package com.dsi.parallax.pipeline;
 
 import com.google.common.collect.Lists;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Closeable;
 import java.io.Serializable;
 import java.util.Iterator;
 import java.util.List;
@@ -15,10 +18,13 @@ import java.util.List;
  * format to something that is appropriate for binary classification 
  * @author jattenberg 
  */
-public class Pipeline<I, O> implements Serializable {
+public class Pipeline<I, O> implements Serializable, Closeable {
     private static final long serialVersionUID = 4827997256416927082L;
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
     private Source<I> source;
     private List<Pipe<?, ?>> pipeline;
+    // parallel stages started by processParallel that may still be running
+    private transient List<ParallelStageIterator<?, ?>> parallelStages;
 
     private Pipeline() {
         pipeline = Lists.newLinkedList();
@@ -94,6 +100,138 @@ public class Pipeline<I, O> implements Serializable {
         return it;
     }
 
+    /**
+     * processes the pipeline in micro-batches. consecutive {@link BatchPipe}s
+     * are grouped into a single stage that pulls up to batchSize contexts at a
+     * time and passes them through each pipe's operateBatch in turn; all other
+     * pipes run as in {@link #process()}. output is identical to
+     * {@link #process()}, in the same order.
+     * 
+     * @param batchSize
+     *            the maximum number of contexts per batch
+     * @return an iterator of the context of the final output type
+     */
+    @SuppressWarnings("unchecked")
+    public Iterator<Context<O>> processBatched(int batchSize) {
+        checkArgument(batchSize > 0, "batchSize must be positive, given: %s",
+                batchSize);
+        @SuppressWarnings("rawtypes")
+        Iterator it = source.provideData();
+        List<BatchPipe<?, ?>> stage = Lists.newArrayList();
+        for (@SuppressWarnings("rawtypes")
+        Pipe pipe : pipeline) {
+            if (pipe instanceof BatchPipe) {
+                stage.add((BatchPipe<?, ?>) pipe);
+                continue;
+            }
+            it = batch(it, stage, batchSize);
+            stage.clear();
+            it = pipe.processIterator(it);
+        }
+        return batch(it, stage, batchSize);
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static Iterator batch(Iterator it, List<BatchPipe<?, ?>> stage,
+            int batchSize) {
+        if (stage.isEmpty())
+            return it;
+        return new BatchStageIterator(it, stage, batchSize);
+    }
+
+    /**
+     * processes the pipeline using the specified number of worker threads,
+     * preserving the order of the input.
+     * 
+     * @param threads
+     *            the number of worker threads used for each parallel stage
+     * @return an iterator of the context of the final output type
+     * @see #processParallel(int, int, boolean)
+     */
+    public Iterator<Context<O>> processParallel(int threads) {
+        return processParallel(threads, DEFAULT_QUEUE_SIZE, true);
+    }
+
+    /**
+     * processes the pipeline in a pipelined, parallel fashion. consecutive
+     * {@link StatelessPipe}s are grouped into a single stage and run across a
+     * pool of worker threads; all other pipes run serially, as in
+     * {@link #process()}, and pull from the preceding stage as it produces
+     * output. stages are connected by bounded queues, so at most queueSize
+     * records are held by any one parallel stage.
+     * 
+     * the stages' threads stop once the output has been read to its end. if
+     * the output is abandoned before then, {@link #close()} the pipeline to
+     * stop them.
+     * 
+     * @param threads
+     *            the number of worker threads used for each parallel stage
+     * @param queueSize
+     *            the maximum number of records in flight in each parallel stage
+     * @param ordered
+     *            whether the output should keep the order of the source. when
+     *            false, records are emitted as soon as they are processed
+     * @return an iterator of the context of the final output type
+     */
+    @SuppressWarnings("unchecked")
+    public Iterator<Context<O>> processParallel(int threads, int queueSize,
+            boolean ordered) {
+        checkArgument(threads > 0, "threads must be positive, given: %s",
+                threads);
+        checkArgument(queueSize > 0, "queueSize must be positive, given: %s",
+                queueSize);
+        @SuppressWarnings("rawtypes")
+        Iterator it = source.provideData();
+        List<Pipe<?, ?>> stage = Lists.newArrayList();
+        for (@SuppressWarnings("rawtypes")
+        Pipe pipe : pipeline) {
+            if (pipe instanceof StatelessPipe) {
+                stage.add(pipe);
+                continue;
+            }
+            it = parallelize(it, stage, threads, queueSize, ordered);
+            stage.clear();
+            it = pipe.processIterator(it);
+        }
+        return parallelize(it, stage, threads, queueSize, ordered);
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private Iterator parallelize(Iterator it, List<Pipe<?, ?>> stage,
+            int threads, int queueSize, boolean ordered) {
+        if (stage.isEmpty())
+            return it;
+        ParallelStageIterator parallel = new ParallelStageIterator(it, stage,
+                threads, queueSize, ordered);
+        synchronized (this) {
+            if (null == parallelStages)
+                parallelStages = Lists.newArrayList();
+            // forget stages that have already finished
+            for (Iterator<ParallelStageIterator<?, ?>> stages = parallelStages
+                    .iterator(); stages.hasNext();)
+                if (stages.next().isClosed())
+                    stages.remove();
+            parallelStages.add(parallel);
+        }
+        return parallel;
+    }
+
+    /**
+     * stops the worker threads of every parallel stage started by
+     * {@link #processParallel(int, int, boolean)} that is still running, eg
+     * because its output was abandoned part way through. iterators returned
+     * by processParallel report no more records once closed; the pipeline
+     * itself can still be processed again.
+     */
+    @Override
+    public synchronized void close() {
+        if (null == parallelStages)
+            return;
+        for (ParallelStageIterator<?, ?> stage : parallelStages)
+            stage.close();
+        parallelStages.clear();
+    }
+
 	public Source<I> getSource() {
 		return source;
 	}
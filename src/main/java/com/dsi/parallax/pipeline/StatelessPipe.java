@@ -0,0 +1,22 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline;
+
+/**
+ * marker interface for pipes that keep no mutable state between records.
+ * processIterator may be called from several threads at once, each call
+ * seeing a disjoint set of contexts. {@link Pipeline#processParallel(int)} runs
+ * consecutive stateless pipes across a pool of worker threads; all other pipes
+ * are run serially, as in {@link Pipeline#process()}.
+ *
+ * @author jattenberg
+ *
+ * @param <I>
+ *            the type of input iterator
+ * @param <O>
+ *            the type of output iterator
+ */
+public interface StatelessPipe<I, O> extends Pipe<I, O> {
+
+}
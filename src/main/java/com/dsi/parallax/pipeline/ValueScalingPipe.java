@@ -18,7 +18,8 @@ import java.util.Set;
  *
  * @author Josh Attenberg
  */
-public class ValueScalingPipe extends AbstractPipe<LinearVector, LinearVector> {
+public class ValueScalingPipe extends AbstractPipe<LinearVector, LinearVector>
+		implements StatelessPipe<LinearVector, LinearVector> {
 
 	private static final long serialVersionUID = -1786610491732670544L;
 	private ValueScaling scaling = ValueScaling.UNSCALED;
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline.discretization;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+
+import com.dsi.parallax.ml.util.KLLSketch;
+import com.dsi.parallax.ml.util.Mergeable;
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * a {@link KLLSketch} of the values of each feature of a stream of vectors,
+ * used by {@link QuantileDiscretizationPipe} to learn bucket boundaries in
+ * bounded memory. sketches of different partitions of a stream can be
+ * {@link #merge(FeatureQuantileSketches)}d and the result passed to
+ * {@link QuantileDiscretizationPipe#train(FeatureQuantileSketches)}.
+ *
+ * @author jattenberg
+ */
+public class FeatureQuantileSketches implements
+		Mergeable<FeatureQuantileSketches>, Serializable {
+
+	private static final long serialVersionUID = -6021457187793385116L;
+
+	private final int k;
+	private final Set<Integer> examinedFeatures;
+	private final Map<Integer, KLLSketch> sketches = Maps.newTreeMap();
+	private int size = -1;
+
+	/**
+	 * Instantiates sketches of every feature.
+	 *
+	 * @param k
+	 *            size parameter of each sketch
+	 */
+	public FeatureQuantileSketches(int k) {
+		this(k, null);
+	}
+
+	/**
+	 * Instantiates sketches of some features.
+	 *
+	 * @param k
+	 *            size parameter of each sketch
+	 * @param examinedFeatures
+	 *            the features to sketch, null for all
+	 */
+	public FeatureQuantileSketches(int k, Set<Integer> examinedFeatures) {
+		this.k = k;
+		this.examinedFeatures = examinedFeatures == null ? null : Sets
+				.newTreeSet(examinedFeatures);
+	}
+
+	/**
+	 * add the values of a vector's features.
+	 *
+	 * @param vect
+	 *            the vector
+	 */
+	public void add(LinearVector vect) {
+		size = Math.max(size, vect.size());
+		for (int x_i : vect) {
+			if (examinedFeatures != null && !examinedFeatures.contains(x_i))
+				continue;
+			KLLSketch sketch = sketches.get(x_i);
+			if (sketch == null) {
+				// seeded by feature, so repeated runs learn the same bounds
+				sketch = new KLLSketch(k, x_i);
+				sketches.put(x_i, sketch);
+			}
+			sketch.update(vect.getValue(x_i));
+		}
+	}
+
+	/**
+	 * @return the size of the vectors added, -1 before any are
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * the sketch of a feature's values.
+	 *
+	 * @param x_i
+	 *            the feature
+	 * @return the sketch, empty if the feature wasn't seen
+	 */
+	public KLLSketch getSketch(int x_i) {
+		KLLSketch sketch = sketches.get(x_i);
+		return sketch == null ? new KLLSketch(k, x_i) : sketch;
+	}
+
+	/**
+	 * add the sketches of another partition of the stream.
+	 *
+	 * @param other
+	 *            the other sketches, unchanged
+	 * @return this
+	 */
+	@Override
+	public FeatureQuantileSketches merge(FeatureQuantileSketches other) {
+		checkArgument(k == other.k, "sketch sizes differ: %s, %s", k, other.k);
+		size = Math.max(size, other.size);
+		for (Map.Entry<Integer, KLLSketch> entry : other.sketches.entrySet()) {
+			KLLSketch sketch = sketches.get(entry.getKey());
+			if (sketch == null) {
+				sketch = new KLLSketch(k, entry.getKey());
+				sketches.put(entry.getKey(), sketch);
+			}
+			sketch.merge(entry.getValue());
+		}
+		return this;
+	}
+}
@@ -3,6 +3,9 @@
  ******************************************************************************/
 package com.dsi.parallax.pipeline.discretization;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.dsi.parallax.ml.util.KLLSketch;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.pipeline.Context;
 import com.google.common.collect.DiscreteDomains;
@@ -23,6 +26,15 @@ import java.util.Set;
  * map each continuous feature into an indicator for the value's qualtile
  * membership.
  *
+ * by default the boundaries are exact percentiles of the values read for
+ * initialization, which are all held in memory. with
+ * {@link #setSketchSize(int)} each feature is summarized by a
+ * {@link KLLSketch} instead, whose memory doesn't grow with the data. to learn
+ * boundaries from a stream too large to buffer, {@link #train(Iterator)} on
+ * it in one pass, or build {@link FeatureQuantileSketches} of its partitions
+ * in parallel, merge them and {@link #train(FeatureQuantileSketches)}; the
+ * trained pipe then transforms without buffering anything.
+ *
  * @author jattenberg
  * 
  * TODO: extract method into own class
@@ -35,6 +47,9 @@ public class QuantileDiscretizationPipe extends AbstractDiscretizationPipe {
 	/** The size. */
 	private int size;
 
+	/** size parameter of the quantile sketches, 0 for exact percentiles */
+	private int sketchSize = 0;
+
 	/**
 	 * Instantiates a new quantile discretization pipe.
 	 *
@@ -84,6 +99,80 @@ public class QuantileDiscretizationPipe extends AbstractDiscretizationPipe {
 				readToInitialize);
 	}
 
+	/**
+	 * summarize each feature with a {@link KLLSketch} of the given size
+	 * rather than keeping every value.
+	 *
+	 * @param sketchSize the sketch size, eg {@link KLLSketch#DEFAULT_K}
+	 * @return this
+	 */
+	public QuantileDiscretizationPipe setSketchSize(int sketchSize) {
+		checkArgument(sketchSize > 0, "sketch size must be positive, given: %s",
+				sketchSize);
+		this.sketchSize = sketchSize;
+		return this;
+	}
+
+	/**
+	 * empty sketches of the features this pipe discretizes, eg one for each
+	 * partition of a stream.
+	 *
+	 * @return the sketches
+	 */
+	public FeatureQuantileSketches newSketches() {
+		return new FeatureQuantileSketches(
+				sketchSize > 0 ? sketchSize : KLLSketch.DEFAULT_K,
+				examinedFeatures);
+	}
+
+	/**
+	 * learn the boundaries from a whole stream in one pass, holding only the
+	 * sketches.
+	 *
+	 * @param source the stream
+	 */
+	public void train(Iterator<Context<LinearVector>> source) {
+		FeatureQuantileSketches sketches = newSketches();
+		while (source.hasNext())
+			sketches.add(source.next().getData());
+		train(sketches);
+	}
+
+	/**
+	 * learn the boundaries from sketches of the data, eg the merged sketches of
+	 * several partitions.
+	 *
+	 * @param sketches the sketches
+	 */
+	public void train(FeatureQuantileSketches sketches) {
+		if (sketches.getSize() >= 0) {
+			size = sketches.getSize();
+			int ct = 0;
+			for (int x_i : features())
+				indexToBounds.put(x_i, addBoundsInfo(ct++, sketches
+						.getSketch(x_i).quantiles(quantileFractions())));
+		}
+		isTrained = true;
+	}
+
+	/**
+	 * the features to discretize, in order.
+	 */
+	private Iterable<Integer> features() {
+		return examinedFeatures == null ? Ranges.closedOpen(0, size).asSet(
+				DiscreteDomains.integers()) : examinedFeatures;
+	}
+
+	/**
+	 * the fractions of the data below each boundary.
+	 */
+	private double[] quantileFractions() {
+		double[] fractions = new double[expansionFactor];
+		for (int i = 0; i < expansionFactor; i++)
+			fractions[i] = (i + 1.) / (expansionFactor + .1);
+		return fractions;
+	}
+
 	/**
 	 * Adds the bounds info.
 	 *
@@ -93,10 +182,14 @@ public class QuantileDiscretizationPipe extends AbstractDiscretizationPipe {
 	 */
 	private DiscreteBounds addBoundsInfo(int dataCount,
 			DescriptiveStatistics descriptiveStatistics) {
+		double[] fractions = quantileFractions();
 		double[] bounds = new double[expansionFactor];
 		for (int i = 0; i < expansionFactor; i++)
-			bounds[i] = descriptiveStatistics.getPercentile(100. * (i + 1.)
-					/ (expansionFactor + .1));
+			bounds[i] = descriptiveStatistics.getPercentile(100. * fractions[i]);
+		return addBoundsInfo(dataCount, bounds);
+	}
+
+	private DiscreteBounds addBoundsInfo(int dataCount, double[] bounds) {
 		return new DiscreteBounds(size + dataCount*expansionFactor, bounds);
 	}
 
@@ -129,15 +222,17 @@ public class QuantileDiscretizationPipe extends AbstractDiscretizationPipe {
 	 */
 	@Override
 	protected void batchProcess(List<Context<LinearVector>> infoList) {
+		if (sketchSize > 0) {
+			train(infoList.iterator());
+			return;
+		}
 		Map<Integer, DescriptiveStatistics> dataMap = Maps.newTreeMap();
 
 		if (infoList.size() > 0) {
 			LinearVector vect = infoList.get(0).getData();
 			size = vect.size();
 			
-			for (int x_i : examinedFeatures == null ? Ranges
-					.closedOpen(0, size).asSet(DiscreteDomains.integers())
-					: examinedFeatures) {
+			for (int x_i : features()) {
 				dataMap.put(x_i, new DescriptiveStatistics());
 			}
 			Iterator<LinearVector> vects = Iterators.transform(
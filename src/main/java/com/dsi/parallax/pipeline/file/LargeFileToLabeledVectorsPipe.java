@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline.file;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.pipeline.AbstractExpandingPipe;
+import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.text.NumericVWToLabeledVectorPipe;
+import com.dsi.parallax.pipeline.text.SVMLightToLabeledVectorPipe;
+import com.dsi.parallax.pipeline.text.SparseExampleFormat;
+import com.dsi.parallax.pipeline.text.SparseExampleParser;
+import com.google.common.collect.AbstractIterator;
+import com.google.gson.reflect.TypeToken;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+
+/**
+ * Reads labeled vectors from a file of VW or SVMLight examples by memory
+ * mapping it and parsing the bytes of each line in place, without decoding
+ * the lines into strings or splitting them; the same vectors and labels as
+ * {@link LargeFileToLinesPipe} followed by
+ * {@link NumericVWToLabeledVectorPipe} or
+ * {@link SVMLightToLabeledVectorPipe}, at a fraction of the cost. The tag of
+ * each example, if any, becomes the id of its context. Blank lines are
+ * skipped.
+ *
+ * @author jattenberg
+ */
+public class LargeFileToLabeledVectorsPipe extends
+		AbstractExpandingPipe<File, LinearVector> {
+	private static final Logger LOGGER = Logger
+			.getLogger(LargeFileToLabeledVectorsPipe.class);
+	private static final long serialVersionUID = -2206316484969018826L;
+
+	private final SparseExampleFormat format;
+	private final int dimensions;
+
+	/**
+	 * Class constructor.
+	 *
+	 * @param format
+	 *            the format of the file's lines
+	 * @param dimensions
+	 *            number of dimensions in the problem space
+	 */
+	public LargeFileToLabeledVectorsPipe(SparseExampleFormat format,
+			int dimensions) {
+		super();
+		this.format = format;
+		this.dimensions = dimensions;
+	}
+
+	/**
+	 * @return Type
+	 */
+	@Override
+	public Type getType() {
+		return new TypeToken<LargeFileToLabeledVectorsPipe>() {
+		}.getType();
+	}
+
+	@Override
+	protected Iterator<Context<LinearVector>> operate(Context<File> context) {
+		final MappedLineReader reader = new MappedLineReader(
+				context.getData());
+		final SparseExampleParser parser = new SparseExampleParser(format);
+		return new AbstractIterator<Context<LinearVector>>() {
+			@Override
+			protected Context<LinearVector> computeNext() {
+				try {
+					while (reader.next())
+						if (parser.parse(reader.getBuffer(), 0,
+								reader.getLength()))
+							return Context.createContext(parser.getTag(),
+									parser.getLabel(),
+									parser.toVector(dimensions));
+				} catch (IOException e) {
+					LOGGER.error(e.getLocalizedMessage());
+					try {
+						reader.close();
+					} catch (IOException closing) {
+						LOGGER.error(closing.getLocalizedMessage());
+					}
+				}
+				return endOfData();
+			}
+		};
+	}
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * reads the lines of a region of a memory mapped file as raw bytes. each line
+ * is copied into a reusable buffer instead of being decoded, so once the
+ * buffer has grown to the longest line nothing is allocated per line; parse
+ * the bytes in place, eg with
+ * {@link com.dsi.parallax.pipeline.text.SparseExampleParser}. lines are split
+ * as by {@link MemoryMappedFileReaderIterable}, which decodes them, and
+ * regions can come from {@link MemoryMappedFileReaderIterable#split(File, int)}.
+ *
+ * <pre>
+ * while (reader.next())
+ * 	parser.parse(reader.getBuffer(), 0, reader.getLength());
+ * </pre>
+ *
+ * @author jattenberg
+ */
+public class MappedLineReader implements Closeable {
+	private static final byte NEW_LINE = '\n';
+	private static final byte CARRIAGE_RETURN = '\r';
+
+	private final File file;
+	private final long end;
+	private final int windowSize;
+	private FileChannel channel;
+	private MappedByteBuffer window;
+	// file offset of the first byte in the window
+	private long windowStart;
+	// file offset of the first byte of the next line
+	private long position;
+	private byte[] buffer = new byte[256];
+	private int length;
+
+	/**
+	 * Class constructor specifying file to read.
+	 *
+	 * @param f
+	 *            file, preferably a very large file.
+	 */
+	public MappedLineReader(File f) {
+		this(f, 0, f.length());
+	}
+
+	/**
+	 * Class constructor specifying a region of the file to read. the region
+	 * should begin at the start of a line and end just after a line break or
+	 * at the end of the file.
+	 *
+	 * @param f
+	 *            file, preferably a very large file.
+	 * @param start
+	 *            offset of the first byte to read
+	 * @param end
+	 *            offset just past the last byte to read
+	 */
+	public MappedLineReader(File f, long start, long end) {
+		this(f, start, end, MemoryMappedFileReaderIterable.MAX_BUFFER_SIZE);
+	}
+
+	MappedLineReader(File f, long start, long end, int windowSize) {
+		checkArgument(0 <= start && start <= end && end <= f.length(),
+				"invalid region [%s, %s) for file of length %s", start, end,
+				f.length());
+		checkArgument(windowSize > 0, "windowSize must be positive: %s",
+				windowSize);
+		this.file = f;
+		this.end = end;
+		this.windowSize = windowSize;
+		position = start;
+	}
+
+	/**
+	 * read the next line into the buffer, without its line break.
+	 *
+	 * @return false, and the file is closed, once the region is exhausted
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		if (position >= end) {
+			close();
+			return false;
+		}
+		if (window == null)
+			map(position);
+		int from = (int) (position - windowStart);
+		int limit = window.limit();
+		int i = from;
+		while (true) {
+			while (i < limit && window.get(i) != NEW_LINE)
+				i++;
+			if (i < limit || windowStart + limit == end)
+				break;
+			// the line runs past the window; remap so it starts the window
+			checkState(from > 0,
+					"line at offset %s is longer than the mapping window",
+					position);
+			map(position);
+			i -= from;
+			from = 0;
+			limit = window.limit();
+		}
+		int lineEnd = i;
+		position = windowStart + (i < limit ? i + 1 : i);
+		if (lineEnd > from && window.get(lineEnd - 1) == CARRIAGE_RETURN)
+			lineEnd--;
+		length = lineEnd - from;
+		if (length > buffer.length)
+			buffer = new byte[Math.max(length, buffer.length * 2)];
+		window.position(from);
+		window.get(buffer, 0, length);
+		return true;
+	}
+
+	/**
+	 * @return the buffer holding the current line from offset 0; it is
+	 *         overwritten by {@link #next()}
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return the length of the current line in bytes
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	private void map(long offset) throws IOException {
+		if (channel == null)
+			channel = new RandomAccessFile(file, "r").getChannel();
+		long size = Math.min(end - offset, windowSize);
+		window = channel.map(MapMode.READ_ONLY, offset, size);
+		windowStart = offset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		if (channel != null) {
+			try {
+				channel.close();
+			} finally {
+				channel = null;
+			}
+		}
+	}
+}
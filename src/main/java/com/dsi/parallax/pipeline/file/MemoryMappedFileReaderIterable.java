@@ -3,221 +3,214 @@
  ******************************************************************************/
 package com.dsi.parallax.pipeline.file;
 
-import com.google.common.io.Files;
-import org.apache.commons.lang.StringUtils;
+import com.google.common.collect.Lists;
+import org.apache.log4j.Logger;
 
-import java.io.*;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 /**
- * MemoryMappedFileReaderIterable specializes in reading <b>large</b> files, typically in multiple 
- * GBs, by first mapping the file into Direct Byte Buffer, or memory mapping the file, and then
- * reading values from the local memory instead of doing disc seeks. Reading file by first 
- * memory mapping the file is the fastest file read option available in java. 
+ * MemoryMappedFileReaderIterable specializes in reading <b>large</b> files, typically in multiple
+ * GBs, by memory mapping the file and scanning the mapped bytes directly for line breaks.
+ * Only the bytes of each line are decoded, as UTF-8; nothing else is copied. Files larger
+ * than 2GB are mapped one window at a time.
+ * <p>
+ * Lines are split on '\n'; a trailing '\r' is dropped, so CRLF files read the same as with
+ * {@link BufferedReaderIterable}. Empty lines are kept. To parse the bytes of each line without
+ * decoding them, use a {@link MappedLineReader}.
  * <p>
- * To use this class, you need to add <b>-XX:MaxDirectMemorySize=XG</b>, where X is close to 
- * the size of file to be read in GB, to java vm options. 
+ * A file can be cut into several regions at line boundaries with {@link #split(File, int)},
+ * so that each region can be read by a different thread.
  * <p>
- * 
+ * Like {@link BufferedReaderIterable}, this is a single pass iterable; iterator() always
+ * returns the same iterator.
+ *
  * @author Rahul Ratnakar
  */
 public class MemoryMappedFileReaderIterable implements Iterable<String> {
-    private Iterator<String> iterator;
-    static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE; // This is 2GB. 
-    static final String NEW_LINE = System.getProperty("line.separator");
-    ByteBuffer[] buffArray = null;
+	private static final Logger LOGGER = Logger
+			.getLogger(MemoryMappedFileReaderIterable.class);
+	static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE; // This is 2GB.
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final byte NEW_LINE = '\n';
+
+	private final File file;
+	private final long start;
+	private final long end;
+	private final int windowSize;
+	private Iterator<String> iterator;
 
     /**
      * Class constructor specifying file to read.
      * @param f file, preferably a very large file.
-     * @throws IOException 
+     * @throws IOException
      */
 	public MemoryMappedFileReaderIterable(File f) throws IOException {
-		FileChannel channel = new RandomAccessFile(f, "r").getChannel();
-		long fileLength = f.length();
-		int buffArraySize = 1;
-		if (fileLength > MAX_BUFFER_SIZE) {
-			buffArraySize = (int) (fileLength / MAX_BUFFER_SIZE) + 1;
+		this(f, 0, f.length());
+	}
+
+	/**
+	 * Class constructor specifying a region of the file to read. the region
+	 * should begin at the start of a line and end just after a line break or
+	 * at the end of the file; see {@link #split(File, int)}.
+	 *
+	 * @param f
+	 *            file, preferably a very large file.
+	 * @param start
+	 *            offset of the first byte to read
+	 * @param end
+	 *            offset just past the last byte to read
+	 * @throws IOException
+	 */
+	public MemoryMappedFileReaderIterable(File f, long start, long end)
+			throws IOException {
+		this(f, start, end, MAX_BUFFER_SIZE);
+	}
+
+	MemoryMappedFileReaderIterable(File f, long start, long end,
+			int windowSize) throws IOException {
+		checkArgument(0 <= start && start <= end && end <= f.length(),
+				"invalid region [%s, %s) for file of length %s", start, end,
+				f.length());
+		checkArgument(windowSize > 0, "windowSize must be positive: %s",
+				windowSize);
+		this.file = f;
+		this.start = start;
+		this.end = end;
+		this.windowSize = windowSize;
+		iterator = new MemoryMappedFileReaderIterator();
+	}
+
+	/**
+	 * cuts a file into at most parts regions of roughly equal size. each
+	 * boundary is moved forward to just after the next line break, so no line
+	 * is split between regions; regions that would be empty are dropped.
+	 *
+	 * @param f
+	 *            file to split
+	 * @param parts
+	 *            the desired number of regions
+	 * @return readers for each region, in file order
+	 * @throws IOException
+	 */
+	public static List<MemoryMappedFileReaderIterable> split(File f, int parts)
+			throws IOException {
+		checkArgument(parts > 0, "parts must be positive: %s", parts);
+		long length = f.length();
+		List<MemoryMappedFileReaderIterable> out = Lists.newArrayList();
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			long regionStart = 0;
+			for (int part = 1; part <= parts && regionStart < length; part++) {
+				long regionEnd = part == parts ? length : Math.max(regionStart,
+						nextLineStart(raf, length * part / parts));
+				if (regionEnd > regionStart) {
+					out.add(new MemoryMappedFileReaderIterable(f, regionStart,
+							regionEnd));
+					regionStart = regionEnd;
+				}
+			}
+		} finally {
+			raf.close();
 		}
-		buffArray = new ByteBuffer[buffArraySize];
-		long start = 0;
-		for(int i = 0; i < buffArraySize ; i++ ) {
-			buffArray[i] = channel.map(MapMode.READ_ONLY, start, Math.min((fileLength - start) , MAX_BUFFER_SIZE ));
-			start = start + MAX_BUFFER_SIZE;
+		return out;
+	}
+
+	// the offset just after the first line break at or after position
+	private static long nextLineStart(RandomAccessFile raf, long position)
+			throws IOException {
+		if (position == 0)
+			return 0;
+		byte[] buff = new byte[8 * 1024];
+		long length = raf.length();
+		// a break just before position already ends a line
+		long offset = position - 1;
+		while (offset < length) {
+			raf.seek(offset);
+			int read = raf.read(buff);
+			if (read <= 0)
+				break;
+			for (int i = 0; i < read; i++)
+				if (buff[i] == NEW_LINE)
+					return offset + i + 1;
+			offset += read;
 		}
-		iterator = new MemoryMappedFileReaderIterator();
+		return length;
+	}
+
+	/**
+	 * @return offset of the first byte of this region
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * @return offset just past the last byte of this region
+	 */
+	public long getEnd() {
+		return end;
 	}
 
     @Override
 	public Iterator<String> iterator() {
         return iterator;
     }
-    
-	public static void main(String[] args) throws IOException {
-		String file = args[0];
-		if(StringUtils.isNotBlank(file)) {
-			String mmFileOut = file + ".mm";
-			String buffFileOut = file + ".buff";
-			BufferedWriter mmOut = new BufferedWriter(new FileWriter(new File(mmFileOut)));
-			try {
-				long start = System.nanoTime();
-				Iterable<String> itr = new MemoryMappedFileReaderIterable(new File(file));
-				while (itr.iterator().hasNext()) {
-					mmOut.write(itr.iterator().next());
-				}
-				long mmTime = System.nanoTime() - start;
-				mmOut.close();
 
-				BufferedWriter buffOut = new BufferedWriter(new FileWriter(new File(buffFileOut)));
+	private class MemoryMappedFileReaderIterator implements Iterator<String> {
+		private final MappedLineReader reader = new MappedLineReader(file,
+				start, end, windowSize);
+		private String line;
 
-				start = System.nanoTime();
-				itr = new BufferedReaderIterable(new File(file));
-				while (itr.iterator().hasNext()) {
-					buffOut.write(itr.iterator().next());
-				}
-				long buffTime = System.nanoTime() - start;
-				buffOut.close();
-				System.out.println("File size " + new File(file).length());
-				long mmchecksum = Files.getChecksum(new File(mmFileOut), new java.util.zip.CRC32());
-				long buffchecksum = Files.getChecksum(new File(buffFileOut), new java.util.zip.CRC32());
-				System.out.println("MemoryMapped :- " + "Time = " + mmTime + " , chksum = " +  mmchecksum);
-				System.out.println("Buffered :- " + "Time = " + buffTime + " , chksum = " +  buffchecksum);
-				if(mmchecksum == buffchecksum) {
-					System.out.println(mmTime <= buffTime ? "Memory mapped is better by " + (buffTime - mmTime) + " ns." : "Bufffered is better by " + (mmTime - buffTime) + " ns.");
-				} else {
-					System.out.println("ERROR!! Checksum does not match");
-				}
-				new File(mmFileOut).delete();
-				new File(buffFileOut).delete();
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-			System.out.println("Done");
+		public MemoryMappedFileReaderIterator() {
+			advance();
 		}
-		
-	}
 
-    private class MemoryMappedFileReaderIterator implements Iterator<String> {
-        private String line ;
-        final int SIZE = 8*1024; // make it configurable? 
-        byte[] tempArray; 
-        LinkedList<String>  readStrings = new LinkedList<String>();
-        String carryOverString = "";
-        
-        int readStringCurPos = 0;
-        int readStringLength = 0;
-        
-        int currentBufferIndex = 0 ;
-        byte[] tempChars = new byte[NEW_LINE.length()];
-
-        public MemoryMappedFileReaderIterator() {
-        	if(buffArray != null)
-            advance();
-        }
-
-        @Override
+		@Override
 		public boolean hasNext() {
-            return line != null;
-        }
+			return line != null;
+		}
 
-        @Override
+		@Override
 		public String next() {
-            String retval = line;
-            advance();
-            return retval;
-        }
+			if (line == null)
+				throw new NoSuchElementException();
+			String retval = line;
+			advance();
+			return retval;
+		}
 
-        @Override
+		@Override
 		public void remove() {
-            throw new UnsupportedOperationException(
-                    "Remove not supported on BufferedReader iteration.");
-        }
+			throw new UnsupportedOperationException(
+					"Remove not supported on memory mapped file iteration.");
+		}
 
 		private void advance() {
-			if((currentBufferIndex < buffArray.length) &&  (readStringCurPos >= readStringLength)) {
-				int remaining = buffArray[currentBufferIndex].remaining(); 
-				if(remaining == 0 && ((currentBufferIndex + 1) < buffArray.length)) {
-					buffArray[currentBufferIndex] = null;
-					currentBufferIndex++;
-				}
-				int toCopy = Math.min(buffArray[currentBufferIndex].remaining(),  SIZE) ;
-				if(toCopy > 0) {
-					tempArray = new byte[toCopy]; 
-					buffArray[currentBufferIndex].get(tempArray,0,toCopy);
-					split(new String(tempArray),NEW_LINE,readStrings);
-					System.arraycopy(tempArray, 0 , tempChars, 0, NEW_LINE.length());
-					if(new String(tempChars).equalsIgnoreCase(NEW_LINE)) {
-						readStrings.add(0, carryOverString);
-					} else {
-						readStrings.set(0, carryOverString + readStrings.get(0)) ;
-					}
-					System.arraycopy(tempArray, tempArray.length - NEW_LINE.length() , tempChars, 0, NEW_LINE.length());
-					if(!new String(tempChars).equalsIgnoreCase(NEW_LINE)) {
-						carryOverString = readStrings.get(readStrings.size()-1);
-						readStringLength = readStrings.size()-1;
-					} else {
-						carryOverString = "";
-						readStringLength = readStrings.size();
-					}
-					readStringCurPos = 0;
-				}
-			}
-			if(readStringCurPos < readStringLength) {
-				line = readStrings.get(readStringCurPos++);
-			} else {
-				if(StringUtils.isNotEmpty(carryOverString)) 
-				{
-					line = carryOverString;
-					carryOverString = null;
-				} else {
-					line = null;
-				}
+			try {
+				line = reader.next() ? new String(reader.getBuffer(), 0,
+						reader.getLength(), UTF8) : null;
+			} catch (IOException e) {
+				LOGGER.error(e.getLocalizedMessage());
+				line = null;
 			}
+			if (line == null)
+				close();
 		}
-		
-		private void split(String str, String separatorChars,LinkedList<String> list) {
-			list.clear();
-			if (StringUtils.isNotBlank(str) && StringUtils.isNotEmpty(separatorChars)) {
-				int len = str.length();
-				int i = 0, start = 0;
-				boolean match = false;
-				if (separatorChars.length() == 1) {
-
-					char sep = separatorChars.charAt(0);
-					while (i < len) {
-						if (str.charAt(i) == sep) {
-							if (match) {
-								list.add(str.substring(start, i));
-								match = false;
-							}
-							start = ++i;
-							continue;
-						} 
-						match = true;
-						i++;
-					}
-				} else {
-					while (i < len) {
-						if (separatorChars.indexOf(str.charAt(i)) >= 0) {
-							if (match) {
-								list.add(str.substring(start, i));
-								match = false;
-							}
-							start = ++i;
-							continue;
-						} 
-						match = true;
-						i++;
-					}
-				}
-				if (match) {
-					list.add(str.substring(start, i));
-				}
+
+		private void close() {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				LOGGER.error(e.getLocalizedMessage());
 			}
 		}
-    }
-}
+	}
+}
\ No newline at end of file
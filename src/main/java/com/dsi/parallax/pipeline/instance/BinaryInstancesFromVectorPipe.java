@@ -10,6 +10,7 @@ import com.dsi.parallax.ml.target.TargetParser;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.pipeline.AbstractPipe;
 import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.StatelessPipe;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
@@ -30,7 +31,8 @@ import java.lang.reflect.Type;
  * @author jattenberg
  */
 public class BinaryInstancesFromVectorPipe extends
-		AbstractPipe<LinearVector, BinaryClassificationInstance> {
+		AbstractPipe<LinearVector, BinaryClassificationInstance> implements
+		StatelessPipe<LinearVector, BinaryClassificationInstance> {
 
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = 4592209650013108791L;
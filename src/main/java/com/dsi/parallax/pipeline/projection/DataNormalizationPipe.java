@@ -2,6 +2,7 @@ package com.dsi.parallax.pipeline.projection;
 
 
 import com.dsi.parallax.ml.projection.DataNormalization;
+import com.dsi.parallax.ml.util.FeatureStatistics;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.pipeline.AbstractAccumulatingPipe;
 import com.dsi.parallax.pipeline.Context;
@@ -9,6 +10,7 @@ import com.google.common.collect.Collections2;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
+import java.util.Iterator;
 import java.util.List;
 
 // TODO: Auto-generated Javadoc
@@ -82,4 +84,27 @@ public class DataNormalizationPipe extends AbstractAccumulatingPipe<LinearVector
 	protected void batchProcess(List<Context<LinearVector>> infoList) {
 		dnorm.build(Collections2.transform(infoList, uncontextifier));
 	}
+
+	/**
+	 * learn the means and standard deviations from a whole stream in one
+	 * pass, without buffering it.
+	 *
+	 * @param source the stream
+	 */
+	public void train(Iterator<Context<LinearVector>> source) {
+		FeatureStatistics stats = new FeatureStatistics();
+		while (source.hasNext())
+			stats.add(source.next().getData());
+		dnorm.build(stats);
+	}
+
+	/**
+	 * take the means and standard deviations from statistics gathered
+	 * elsewhere, eg merged from partitions of the data.
+	 *
+	 * @param stats the statistics
+	 */
+	public void train(FeatureStatistics stats) {
+		dnorm.build(stats);
+	}
 }
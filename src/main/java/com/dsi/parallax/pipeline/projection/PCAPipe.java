@@ -3,6 +3,8 @@
  ******************************************************************************/
 package com.dsi.parallax.pipeline.projection;
 
+import com.dsi.parallax.ml.projection.FrequentDirections;
+import com.dsi.parallax.ml.projection.PCAType;
 import com.dsi.parallax.ml.projection.PrincipalComponentsAnalysis;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.pipeline.AbstractAccumulatingPipe;
@@ -11,6 +13,7 @@ import com.google.common.collect.Collections2;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
+import java.util.Iterator;
 import java.util.List;
 
 // TODO: Auto-generated Javadoc
@@ -18,6 +21,12 @@ import java.util.List;
  * projects linear vectors onto a eigen space
  * optionally compiles the eigen vectors on accumulated vectors.
  *
+ * to find the components of a stream too large to buffer, {@link #train(Iterator)}
+ * on it in one pass, or sketch its partitions in parallel with
+ * {@link PrincipalComponentsAnalysis#newSketch()}, merge them and
+ * {@link #train(FrequentDirections)}; the trained pipe then projects without
+ * buffering anything.
+ *
  * @author jattenberg
  */
 public class PCAPipe extends AbstractAccumulatingPipe<LinearVector, LinearVector> {
@@ -56,6 +65,29 @@ public class PCAPipe extends AbstractAccumulatingPipe<LinearVector, LinearVector
         return pca.isBuilt();
     }
     
+	/**
+	 * find the components of a whole stream in one pass, holding only a
+	 * {@link FrequentDirections} sketch whatever the pca's {@link PCAType}.
+	 *
+	 * @param source the stream
+	 */
+	public void train(Iterator<Context<LinearVector>> source) {
+		FrequentDirections sketch = pca.newSketch();
+		while (source.hasNext())
+			sketch.add(source.next().getData());
+		train(sketch);
+	}
+
+	/**
+	 * find the components of the data summarized by a sketch, eg the merged
+	 * sketches of several partitions.
+	 *
+	 * @param sketch the sketch
+	 */
+	public void train(FrequentDirections sketch) {
+		pca.build(sketch);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.parallax.pipeline.Pipe#getType()
 	 */
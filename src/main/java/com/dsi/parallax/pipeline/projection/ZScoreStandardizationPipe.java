@@ -1,26 +1,40 @@
 package com.dsi.parallax.pipeline.projection;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.dsi.parallax.ml.util.FeatureStatistics;
 import com.dsi.parallax.ml.util.MLUtils;
-import com.dsi.parallax.ml.util.pair.PrimitivePair;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.ml.vector.LinearVectorFactory;
 import com.dsi.parallax.pipeline.AbstractAccumulatingPipe;
 import com.dsi.parallax.pipeline.Context;
-import com.google.common.collect.Collections2;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 import com.google.gson.reflect.TypeToken;
-import org.apache.commons.math.stat.descriptive.SummaryStatistics;
 
 import java.lang.reflect.Type;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * replaces each feature by its z-score, its distance from the feature's mean
+ * in standard deviations. means and standard deviations are learned in one
+ * pass over the non-zeros of the vectors read for initialization, on several
+ * threads if {@link #setThreads(int)}, or from a whole stream with
+ * {@link #train(Iterator)}, or from {@link FeatureStatistics} of partitions
+ * merged elsewhere with {@link #train(FeatureStatistics)}. features with no
+ * spread, and any beyond those seen, are left as they are.
+ *
+ * @author jattenberg
+ */
 public class ZScoreStandardizationPipe extends
 		AbstractAccumulatingPipe<LinearVector, LinearVector> {
 
 	private static final long serialVersionUID = 522307374139407166L;
 
-	private Map<Integer, PrimitivePair> meanStdDevPairs;
+	/** per feature mean and standard deviation, 0 and 1 where unchanged */
+	private double[] means = new double[0], stdDevs = new double[0];
+
+	private int threads = 1;
 
 	public ZScoreStandardizationPipe() {
 		this(-1);
@@ -28,7 +42,21 @@ public class ZScoreStandardizationPipe extends
 
 	public ZScoreStandardizationPipe(int toConsider) {
 		super(toConsider);
-		meanStdDevPairs = Maps.newHashMap();
+	}
+
+	/**
+	 * the number of threads used to gather statistics of the vectors read for
+	 * initialization.
+	 *
+	 * @param threads
+	 *            the number of threads
+	 * @return this
+	 */
+	public ZScoreStandardizationPipe setThreads(int threads) {
+		checkArgument(threads > 0, "threads must be positive, given: %s",
+				threads);
+		this.threads = threads;
+		return this;
 	}
 
 	@Override
@@ -44,21 +72,38 @@ public class ZScoreStandardizationPipe extends
 
 	@Override
 	protected void batchProcess(List<Context<LinearVector>> infoList) {
-		Map<Integer, SummaryStatistics> stats = Maps.newHashMap();
-		for (LinearVector vect : Collections2.transform(infoList,
-				uncontextifier)) {
-			for (int x_i = 0; x_i < vect.size(); x_i++) {
-				if (!stats.containsKey(x_i)) {
-					stats.put(x_i, new SummaryStatistics());
-				}
-				stats.get(x_i).addValue(vect.getValue(x_i));
-			}
-		}
+		train(FeatureStatistics.fit(
+				Lists.transform(infoList, uncontextifier), threads));
+	}
+
+	/**
+	 * learn the means and standard deviations from a whole stream in one pass.
+	 *
+	 * @param source
+	 *            the stream
+	 */
+	public void train(Iterator<Context<LinearVector>> source) {
+		FeatureStatistics stats = new FeatureStatistics();
+		while (source.hasNext())
+			stats.add(source.next().getData());
+		train(stats);
+	}
 
-		for (int x_i : stats.keySet()) {
-			double mean = stats.get(x_i).getMean();
-			double stdDev = stats.get(x_i).getStandardDeviation();
-			meanStdDevPairs.put(x_i, new PrimitivePair(mean, stdDev));
+	/**
+	 * take the means and standard deviations from statistics gathered
+	 * elsewhere, eg merged from partitions of the data.
+	 *
+	 * @param stats
+	 *            the statistics
+	 */
+	public void train(FeatureStatistics stats) {
+		means = stats.getMeans();
+		stdDevs = stats.getStandardDeviations();
+		for (int x_i = 0; x_i < means.length; x_i++) {
+			if (MLUtils.floatingPointEquals(stdDevs[x_i], 0)) {
+				means[x_i] = 0;
+				stdDevs[x_i] = 1;
+			}
 		}
 		isTrained = true;
 	}
@@ -66,18 +111,13 @@ public class ZScoreStandardizationPipe extends
 	private LinearVector ZScoreProject(LinearVector input) {
 		LinearVector output = LinearVectorFactory.getVector(input.size());
 
-		for (int x_i = 0; x_i < output.size(); x_i++) {
-			double value = output.getValue(x_i);
-			if (!meanStdDevPairs.containsKey(x_i)) {
-				output.resetValue(x_i, value);
-			} else {
-				PrimitivePair meanStdDevPair = meanStdDevPairs.get(x_i);
-				double zscore = (value - meanStdDevPair.first)
-						/ meanStdDevPair.second;
-				output.resetValue(x_i, MLUtils.floatingPointEquals(
-						meanStdDevPair.second, 0) ? value : zscore);
-			}
-		}
+		int known = Math.min(input.size(), means.length);
+		for (int x_i = 0; x_i < known; x_i++)
+			output.resetValue(x_i, (input.getValue(x_i) - means[x_i])
+					/ stdDevs[x_i]);
+		for (int x_i : input)
+			if (x_i >= known)
+				output.resetValue(x_i, input.getValue(x_i));
 		return output;
 	}
 }
@@ -0,0 +1,18 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline.text;
+
+/**
+ * line formats of labeled sparse examples read by {@link SparseExampleParser}
+ */
+public enum SparseExampleFormat {
+
+	/**
+	 * vowpal wabbit with numeric features:
+	 * label [weight] ['tag]|namespace[:scale] index[:value] ...
+	 */
+	VW,
+	/** SVMLight: label [qid:query] index:value ... [# info] */
+	SVMLIGHT
+}
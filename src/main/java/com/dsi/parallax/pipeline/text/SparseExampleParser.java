@@ -0,0 +1,478 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline.text;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.ml.vector.LinearVectorFactory;
+
+/**
+ * parses labeled sparse examples in the {@link SparseExampleFormat#VW} and
+ * {@link SparseExampleFormat#SVMLIGHT} formats straight from the bytes of a
+ * line, eg a reusable buffer filled by a
+ * {@link com.dsi.parallax.pipeline.file.MappedLineReader}. the features are
+ * parsed in place into primitive index and value arrays, which are reused
+ * from line to line; the label and tag are only decoded into strings on
+ * request. nothing is allocated per line once the arrays have grown to the
+ * longest example.
+ *
+ * floats in plain decimal notation whose digits fit in a double's 53 bit
+ * mantissa, with powers of ten up to 22, are converted exactly in place;
+ * anything else is passed to {@link Double#parseDouble(String)}, so values
+ * always agree with it.
+ *
+ * the results of a parse are valid until the next one. not thread safe.
+ *
+ * @author jattenberg
+ */
+public class SparseExampleParser {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** the powers of ten a double holds exactly */
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+			POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+	}
+
+	/** mantissas below this are held exactly by a double */
+	private static final long MAX_EXACT = 1L << 53;
+
+	private static final String QUERY_ID = "qid:";
+
+	private final SparseExampleFormat format;
+
+	private byte[] line;
+	// scratch for lines given as strings
+	private byte[] encoded = new byte[256];
+	private int labelFrom, labelTo, tagFrom, tagTo;
+	private double weight;
+	private int queryId;
+
+	private int[] indices = new int[64];
+	private double[] values = new double[64];
+	private int size;
+
+	private int[] namespaceStarts = new int[4];
+	private int[] namespaceFroms = new int[4];
+	private int[] namespaceTos = new int[4];
+	private int namespaces;
+
+	// header token bounds, vw only
+	private int[] tokenFroms = new int[4];
+	private int[] tokenTos = new int[4];
+
+	/**
+	 * Class constructor.
+	 *
+	 * @param format
+	 *            the format of the lines parsed
+	 */
+	public SparseExampleParser(SparseExampleFormat format) {
+		this.format = format;
+	}
+
+	public SparseExampleFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * parse a line, without its line break.
+	 *
+	 * @param line
+	 *            buffer holding the line
+	 * @param offset
+	 *            offset of the line's first byte
+	 * @param length
+	 *            length of the line
+	 * @return false if the line holds no example, eg it is blank
+	 * @throws NumberFormatException
+	 *             if an index, value, weight or query id can't be parsed
+	 */
+	public boolean parse(byte[] line, int offset, int length) {
+		this.line = line;
+		labelFrom = labelTo = tagFrom = tagTo = -1;
+		weight = 1;
+		queryId = -1;
+		size = 0;
+		namespaces = 0;
+		int end = offset + length;
+		if (format == SparseExampleFormat.VW)
+			parseVW(offset, end);
+		else
+			parseSVMLight(offset, end);
+		return labelFrom >= 0 || size > 0 || namespaces > 0;
+	}
+
+	/**
+	 * parse a line held in a string, encoding it into a reusable buffer.
+	 *
+	 * @param line
+	 *            the line
+	 * @return false if the line holds no example, eg it is blank
+	 * @see #parse(byte[], int, int)
+	 */
+	public boolean parse(String line) {
+		int length = line.length();
+		if (encoded.length < length)
+			encoded = new byte[Math.max(length, 2 * encoded.length)];
+		for (int i = 0; i < length; i++) {
+			char c = line.charAt(i);
+			if (c >= 0x80) {
+				byte[] bytes = line.getBytes(UTF8);
+				return parse(bytes, 0, bytes.length);
+			}
+			encoded[i] = (byte) c;
+		}
+		return parse(encoded, 0, length);
+	}
+
+	/**
+	 * @return the label, null if the example has none
+	 */
+	public String getLabel() {
+		return labelFrom < 0 ? null : decode(labelFrom, labelTo);
+	}
+
+	/**
+	 * the label as a number, parsed in place.
+	 *
+	 * @return the label, NaN if the example has none
+	 * @throws NumberFormatException
+	 *             if the label isn't a number
+	 */
+	public double getLabelValue() {
+		return labelFrom < 0 ? Double.NaN : parseDouble(labelFrom, labelTo);
+	}
+
+	/**
+	 * @return the importance weight of a vw example, 1 if none is given and
+	 *         for SVMLight
+	 */
+	public double getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @return the tag of a vw example or the info following # on a SVMLight
+	 *         line, null if there is none
+	 */
+	public String getTag() {
+		return tagFrom < 0 ? null : decode(tagFrom, tagTo);
+	}
+
+	/**
+	 * @return the qid of a SVMLight example, -1 if there is none
+	 */
+	public int getQueryId() {
+		return queryId;
+	}
+
+	/**
+	 * the number of features parsed, including any repeated indices.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * the index of the kth feature.
+	 *
+	 * @param k
+	 *            position in the example
+	 * @return the index
+	 */
+	public int getIndex(int k) {
+		return indices[k];
+	}
+
+	/**
+	 * the value of the kth feature, scaled by its vw namespace's scale.
+	 *
+	 * @param k
+	 *            position in the example
+	 * @return the value
+	 */
+	public double getValue(int k) {
+		return values[k];
+	}
+
+	/**
+	 * @return the number of vw namespaces, including the unnamed one
+	 */
+	public int getNamespaceCount() {
+		return namespaces;
+	}
+
+	/**
+	 * @param n
+	 *            the namespace, in order of appearance
+	 * @return the namespace's name, empty for the unnamed one
+	 */
+	public String getNamespace(int n) {
+		return decode(namespaceFroms[n], namespaceTos[n]);
+	}
+
+	/**
+	 * @param n
+	 *            the namespace, in order of appearance
+	 * @return the position of the namespace's first feature; its features
+	 *         run up to the next namespace's first
+	 */
+	public int getNamespaceStart(int n) {
+		return namespaceStarts[n];
+	}
+
+	/**
+	 * the features as a vector; the last value of a repeated index is kept.
+	 *
+	 * @param dimensions
+	 *            the size of the vector
+	 * @return the vector
+	 */
+	public LinearVector toVector(int dimensions) {
+		LinearVector vect = LinearVectorFactory.getVector(dimensions);
+		for (int k = 0; k < size; k++)
+			vect.resetValue(indices[k], values[k]);
+		return vect;
+	}
+
+	/**
+	 * label [weight [base]] ['tag]|namespace[:scale] index[:value] ...; a tag
+	 * may also be given without the quote, as the last of several header
+	 * tokens touching the first bar. the initial prediction, base, is ignored.
+	 */
+	private void parseVW(int from, int end) {
+		int bar = from;
+		while (bar < end && line[bar] != '|')
+			bar++;
+		int tokens = 0;
+		for (int i = from; i < bar;) {
+			while (i < bar && isSpace(line[i]))
+				i++;
+			if (i == bar)
+				break;
+			if (tokens == tokenFroms.length) {
+				tokenFroms = Arrays.copyOf(tokenFroms, 2 * tokens);
+				tokenTos = Arrays.copyOf(tokenTos, 2 * tokens);
+			}
+			tokenFroms[tokens] = i;
+			while (i < bar && !isSpace(line[i]))
+				i++;
+			tokenTos[tokens++] = i;
+		}
+		int field = 0;
+		for (int t = 0; t < tokens; t++) {
+			if (line[tokenFroms[t]] == '\'') {
+				tagFrom = tokenFroms[t] + 1;
+				tagTo = tokenTos[t];
+			} else if (t == tokens - 1 && t > 0 && tokenTos[t] == bar
+					&& bar < end && tagFrom < 0) {
+				tagFrom = tokenFroms[t];
+				tagTo = tokenTos[t];
+			} else if (field == 0) {
+				labelFrom = tokenFroms[t];
+				labelTo = tokenTos[t];
+				field++;
+			} else if (field++ == 1) {
+				weight = parseDouble(tokenFroms[t], tokenTos[t]);
+			}
+		}
+
+		int i = bar;
+		while (i < end) {
+			// at a bar: the namespace name and scale touch it
+			int nameFrom = ++i;
+			while (i < end && !isSpace(line[i]) && line[i] != ':'
+					&& line[i] != '|')
+				i++;
+			int nameTo = i;
+			double scale = 1;
+			if (i < end && line[i] == ':') {
+				int scaleFrom = ++i;
+				while (i < end && !isSpace(line[i]) && line[i] != '|')
+					i++;
+				scale = parseDouble(scaleFrom, i);
+			}
+			addNamespace(nameFrom, nameTo);
+			while (true) {
+				while (i < end && isSpace(line[i]))
+					i++;
+				if (i == end || line[i] == '|')
+					break;
+				int tokenFrom = i;
+				while (i < end && !isSpace(line[i]) && line[i] != '|')
+					i++;
+				parseFeature(tokenFrom, i, scale);
+			}
+		}
+	}
+
+	/**
+	 * label [qid:query] index:value ... [# info]
+	 */
+	private void parseSVMLight(int from, int end) {
+		for (int i = from; i < end; i++) {
+			if (line[i] == '#') {
+				tagFrom = i + 1;
+				tagTo = end;
+				end = i;
+				while (tagFrom < tagTo && isSpace(line[tagFrom]))
+					tagFrom++;
+				while (tagTo > tagFrom && isSpace(line[tagTo - 1]))
+					tagTo--;
+				break;
+			}
+		}
+		int i = from;
+		while (true) {
+			while (i < end && isSpace(line[i]))
+				i++;
+			if (i == end)
+				break;
+			int tokenFrom = i;
+			while (i < end && !isSpace(line[i]))
+				i++;
+			if (labelFrom < 0) {
+				labelFrom = tokenFrom;
+				labelTo = i;
+			} else if (startsWith(tokenFrom, i, QUERY_ID)) {
+				queryId = parseIndex(tokenFrom + QUERY_ID.length(), i);
+			} else {
+				parseFeature(tokenFrom, i, 1);
+			}
+		}
+	}
+
+	/**
+	 * index[:value], the value defaulting to 1
+	 */
+	private void parseFeature(int from, int to, double scale) {
+		int colon = from;
+		while (colon < to && line[colon] != ':')
+			colon++;
+		int index = parseIndex(from, colon);
+		double value = colon < to ? parseDouble(colon + 1, to) : 1;
+		if (size == indices.length) {
+			indices = Arrays.copyOf(indices, 2 * size);
+			values = Arrays.copyOf(values, 2 * size);
+		}
+		indices[size] = index;
+		values[size++] = value * scale;
+	}
+
+	private void addNamespace(int from, int to) {
+		if (namespaces == namespaceStarts.length) {
+			namespaceStarts = Arrays.copyOf(namespaceStarts, 2 * namespaces);
+			namespaceFroms = Arrays.copyOf(namespaceFroms, 2 * namespaces);
+			namespaceTos = Arrays.copyOf(namespaceTos, 2 * namespaces);
+		}
+		namespaceStarts[namespaces] = size;
+		namespaceFroms[namespaces] = from;
+		namespaceTos[namespaces++] = to;
+	}
+
+	private int parseIndex(int from, int to) {
+		if (from == to)
+			throw new NumberFormatException("missing feature index");
+		int index = 0;
+		for (int i = from; i < to; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9
+					|| index > (Integer.MAX_VALUE - digit) / 10)
+				throw new NumberFormatException("For input string: \""
+						+ decode(from, to) + "\"");
+			index = 10 * index + digit;
+		}
+		return index;
+	}
+
+	/**
+	 * [sign] digits [. digits] [e [sign] digits], converted exactly when the
+	 * significant digits fit in a double's mantissa and the power of ten is
+	 * exact: a single multiplication or division of exact operands is
+	 * correctly rounded.
+	 */
+	private double parseDouble(int from, int to) {
+		int i = from;
+		boolean negative = false;
+		if (i < to && (line[i] == '-' || line[i] == '+'))
+			negative = line[i++] == '-';
+		long mantissa = 0;
+		int exponent = 0;
+		boolean digits = false, point = false;
+		for (; i < to; i++) {
+			byte b = line[i];
+			if (b >= '0' && b <= '9') {
+				digits = true;
+				if (mantissa >= MAX_EXACT)
+					return fallback(from, to);
+				mantissa = 10 * mantissa + (b - '0');
+				if (point)
+					exponent--;
+			} else if (b == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+		if (!digits)
+			return fallback(from, to);
+		if (i < to && (line[i] == 'e' || line[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < to && (line[i] == '-' || line[i] == '+'))
+				negativeExponent = line[i++] == '-';
+			int power = 0, start = i;
+			for (; i < to && line[i] >= '0' && line[i] <= '9'; i++)
+				if (i - start < 4)
+					power = 10 * power + (line[i] - '0');
+				else
+					return fallback(from, to);
+			if (i == start)
+				return fallback(from, to);
+			exponent += negativeExponent ? -power : power;
+		}
+		if (i != to || mantissa >= MAX_EXACT)
+			return fallback(from, to);
+		double value = mantissa;
+		if (mantissa != 0 && exponent != 0) {
+			if (exponent > 0 && exponent < POWERS_OF_TEN.length)
+				value *= POWERS_OF_TEN[exponent];
+			else if (exponent < 0 && -exponent < POWERS_OF_TEN.length)
+				value /= POWERS_OF_TEN[-exponent];
+			else
+				return fallback(from, to);
+		}
+		return negative ? -value : value;
+	}
+
+	private double fallback(int from, int to) {
+		return Double.parseDouble(decode(from, to));
+	}
+
+	private boolean startsWith(int from, int to, String prefix) {
+		if (to - from < prefix.length())
+			return false;
+		for (int i = 0; i < prefix.length(); i++)
+			if (line[from + i] != prefix.charAt(i))
+				return false;
+		return true;
+	}
+
+	private String decode(int from, int to) {
+		return new String(line, from, to - from, UTF8);
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\f'
+				|| b == 0x0B;
+	}
+}
@@ -5,6 +5,7 @@ package com.dsi.parallax.pipeline.text;
 
 import com.dsi.parallax.pipeline.AbstractPipe;
 import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.StatelessPipe;
 import com.google.common.collect.Lists;
 import com.google.gson.reflect.TypeToken;
 
@@ -16,12 +17,12 @@ import java.util.List;
  *
  * @author Josh Attenberg
  */
-public class StringSequenceToNGramsPipe extends AbstractPipe<List<String>,List<String>> {
+public class StringSequenceToNGramsPipe extends AbstractPipe<List<String>,List<String>>
+        implements StatelessPipe<List<String>,List<String>> {
 
     private static final long serialVersionUID = -4370637810974890776L;
     private int[] gramSizes = null;
     private final static String SEP = "_";
-    private StringBuilder buff;
 
     /**
      * Class constructor specifying gram to create
@@ -39,7 +40,6 @@ public class StringSequenceToNGramsPipe extends AbstractPipe<List<String>,List<S
     	super();
     	checkValidSizes(grams);
         gramSizes = grams;
-        buff = new StringBuilder();
     }
 
     /**
@@ -53,7 +53,24 @@ public class StringSequenceToNGramsPipe extends AbstractPipe<List<String>,List<S
 
 	@Override
 	protected Context<List<String>> operate(Context<List<String>> context) {
-        List<String> payload = context.getData();
+        return Context.createContext(context,
+                ngrams(context.getData(), new StringBuilder()));
+	}
+
+	// one buffer is shared by every record in the batch
+	@Override
+	public List<Context<List<String>>> operateBatch(
+			List<Context<List<String>>> batch) {
+		List<Context<List<String>>> out = Lists
+				.newArrayListWithCapacity(batch.size());
+		StringBuilder buff = new StringBuilder();
+		for (Context<List<String>> context : batch)
+			out.add(Context.createContext(context,
+					ngrams(context.getData(), buff)));
+		return out;
+	}
+
+	private List<String> ngrams(List<String> payload, StringBuilder buff) {
         List<String> out = Lists.newArrayList();
         buff.setLength(0);
         
@@ -70,6 +87,6 @@ public class StringSequenceToNGramsPipe extends AbstractPipe<List<String>,List<S
                 out.add(buff.toString());
             }
         }  
-        return Context.createContext(context, out);
+        return out;
 	}
 }
@@ -4,10 +4,12 @@
 package com.dsi.parallax.pipeline.text;
 
 import com.dsi.parallax.ml.dictionary.Dictionary;
+import com.dsi.parallax.ml.dictionary.FeatureBuffer;
 import com.dsi.parallax.ml.dictionary.HashDictionary;
 import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.pipeline.AbstractPipe;
 import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.StatelessPipe;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
@@ -18,10 +20,13 @@ import java.util.List;
  *
  * @author Josh Attenberg
  */
-public class StringSequenceToNumericDictionaryPipe extends AbstractPipe<List<String>, LinearVector> {
+public class StringSequenceToNumericDictionaryPipe extends AbstractPipe<List<String>, LinearVector>
+        implements StatelessPipe<List<String>, LinearVector> {
 
     private static final long serialVersionUID = -6000453314033083461L;
     private Dictionary dict;
+    // scratch space for hash dictionaries, one per thread running the pipe
+    private transient volatile ThreadLocal<FeatureBuffer> buffers;
 
     /**
      * Class constructor specifying size to create
@@ -52,9 +57,27 @@ public class StringSequenceToNumericDictionaryPipe extends AbstractPipe<List<Str
 	@Override
 	protected Context<LinearVector> operate(Context<List<String>> context) {
         List<String> tokens = context.getData();
-        LinearVector vector = dict.vectorFromText(tokens);
+        LinearVector vector = dict instanceof HashDictionary ? ((HashDictionary) dict)
+                .vectorFromText(tokens, getBuffer()) : dict.vectorFromText(tokens);
         return Context.createContext(context, vector);
 	}
 
+    private FeatureBuffer getBuffer() {
+        ThreadLocal<FeatureBuffer> local = buffers;
+        if (local == null) {
+            synchronized (this) {
+                if (buffers == null)
+                    buffers = new ThreadLocal<FeatureBuffer>() {
+                        @Override
+                        protected FeatureBuffer initialValue() {
+                            return new FeatureBuffer();
+                        }
+                    };
+                local = buffers;
+            }
+        }
+        return local.get();
+    }
+
 
 }
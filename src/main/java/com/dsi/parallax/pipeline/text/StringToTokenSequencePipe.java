@@ -3,10 +3,12 @@
  ******************************************************************************/
 package com.dsi.parallax.pipeline.text;
 
+import com.dsi.parallax.ml.util.lexer.AbstractLexer;
 import com.dsi.parallax.ml.util.lexer.Lexer;
 import com.dsi.parallax.ml.util.lexer.StringLexer;
 import com.dsi.parallax.pipeline.AbstractPipe;
 import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.StatelessPipe;
 import com.google.common.collect.Lists;
 import com.google.gson.reflect.TypeToken;
 
@@ -19,17 +21,19 @@ import java.util.regex.Pattern;
  *
  * @author jattenberg
  */
-public class StringToTokenSequencePipe extends AbstractPipe<String, List<String>> {
+public class StringToTokenSequencePipe extends AbstractPipe<String, List<String>>
+        implements StatelessPipe<String, List<String>> {
 
     private static final long serialVersionUID = -2208971330459989832L;
-    private final Lexer lexer;
+    // lexers carry per-input state, so a fresh one is made for each record
+    private final Pattern pattern;
 
     /**
      * Class constructor
      */
     public StringToTokenSequencePipe() {
     	super();
-        lexer = new StringLexer();
+        pattern = AbstractLexer.LEX_ALPHA;
     }
 
     /**
@@ -38,7 +42,7 @@ public class StringToTokenSequencePipe extends AbstractPipe<String, List<String>
      */
     public StringToTokenSequencePipe(Pattern pattern) {
     	super();
-        lexer = new StringLexer(pattern);
+        this.pattern = pattern;
     }
 
     /**
@@ -47,7 +51,7 @@ public class StringToTokenSequencePipe extends AbstractPipe<String, List<String>
      */
     public StringToTokenSequencePipe(String pattern) {
     	super();
-        lexer = new StringLexer(Pattern.compile(pattern));
+        this.pattern = Pattern.compile(pattern);
     }
 
     /**
@@ -62,6 +66,7 @@ public class StringToTokenSequencePipe extends AbstractPipe<String, List<String>
 	@Override
 	protected Context<List<String>> operate(Context<String> context) {
         String payload = context.getData();
+        Lexer lexer = new StringLexer(pattern);
         lexer.addInput(payload);
         
         List<String> output = Lists.newArrayList(lexer);
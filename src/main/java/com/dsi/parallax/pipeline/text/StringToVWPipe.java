@@ -6,6 +6,7 @@ package com.dsi.parallax.pipeline.text;
 import com.dsi.parallax.ml.util.VW;
 import com.dsi.parallax.pipeline.AbstractPipe;
 import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.StatelessPipe;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
@@ -15,7 +16,8 @@ import java.lang.reflect.Type;
  *
  * @author Josh Attenberg
  */
-public class StringToVWPipe extends AbstractPipe<String, VW> {
+public class StringToVWPipe extends AbstractPipe<String, VW> implements
+		StatelessPipe<String, VW> {
 
     private static final long serialVersionUID = 1L;
 
@@ -6,6 +6,7 @@ package com.dsi.parallax.pipeline.text;
 import com.dsi.parallax.ml.util.MLUtils;
 import com.dsi.parallax.pipeline.AbstractPipe;
 import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.StatelessPipe;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
@@ -15,7 +16,7 @@ import java.lang.reflect.Type;
  *
  * @author Josh Attenberg
  */
-public class TextSanitizerPipe extends AbstractPipe<String,String> {
+public class TextSanitizerPipe extends AbstractPipe<String,String> implements StatelessPipe<String,String> {
 
     private static final long serialVersionUID = -8813779890998243436L;
 
@@ -0,0 +1,408 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline.text;
+
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import com.dsi.parallax.ml.dictionary.FeatureBuffer;
+import com.dsi.parallax.ml.dictionary.HashDictionary;
+import com.dsi.parallax.ml.util.HashFunctionType;
+import com.dsi.parallax.ml.util.MLUtils;
+import com.dsi.parallax.ml.util.StopWordSet;
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.pipeline.AbstractPipe;
+import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.StatelessPipe;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * turns text straight into a hashed feature vector in one pass over its
+ * characters. gives the same vector as the chain
+ *
+ * <pre>
+ * {@link TextSanitizerPipe} (optional)
+ * {@link StringToTokenSequencePipe} (the default, alphabetic tokens)
+ * {@link StringSequenceStopWordsFilterPipe} (optional)
+ * {@link StringSequenceToNGramsPipe} or {@link StringSequenceToSkipGramsPipe}
+ * {@link StringSequenceToNumericDictionaryPipe} (with a {@link HashDictionary})
+ * </pre>
+ *
+ * configured the same way, without building the cleaned text, token lists or
+ * gram strings in between. tokens are kept as offsets into the text; java
+ * hashes of grams are combined from the hash codes of their tokens, and the
+ * seeded hashes read each gram from a reused buffer.
+ *
+ * stop words are matched with ascii lower casing, which is what
+ * {@link String#toLowerCase()} does to alphabetic tokens outside a few
+ * locales.
+ *
+ * @author jattenberg
+ */
+public class TextToHashedVectorPipe extends AbstractPipe<String, LinearVector>
+		implements StatelessPipe<String, LinearVector> {
+
+	private static final long serialVersionUID = 5529106917427712034L;
+	private static final char SEP = '_';
+	private static final boolean[] DELIMITERS = new boolean[128];
+	static {
+		for (char c : MLUtils.CLEAN_TEXT_DELIMITERS.toCharArray())
+			DELIMITERS[c] = true;
+	}
+
+	private final HashDictionary dict;
+	private boolean sanitize = true;
+	private StopWords stopWords = null;
+	private int[] gramSizes = new int[] { 1 };
+	private boolean skipGrams = false;
+	// scratch space, one per thread running the pipe
+	private transient volatile ThreadLocal<Scratch> scratch;
+
+	/**
+	 * Class constructor specifying size of the hash dictionary to create
+	 *
+	 * @param size
+	 *            size
+	 */
+	public TextToHashedVectorPipe(int size) {
+		this(new HashDictionary(size));
+	}
+
+	/**
+	 * Class constructor specifying the dictionary to create
+	 *
+	 * @param dict
+	 *            HashDictionary
+	 */
+	public TextToHashedVectorPipe(HashDictionary dict) {
+		super();
+		this.dict = dict;
+	}
+
+	/**
+	 * whether to clean the text as {@link TextSanitizerPipe} does before
+	 * tokenizing; on by default.
+	 *
+	 * @param sanitize
+	 *            sanitize
+	 * @return this
+	 */
+	public TextToHashedVectorPipe setSanitize(boolean sanitize) {
+		this.sanitize = sanitize;
+		return this;
+	}
+
+	/**
+	 * drop the default stop words, ignoring case, as
+	 * {@link StringSequenceStopWordsFilterPipe#StringSequenceStopWordsFilterPipe()}
+	 * does.
+	 *
+	 * @return this
+	 */
+	public TextToHashedVectorPipe setStopWords() {
+		return setStopWords(StopWordSet.stopwords, false);
+	}
+
+	/**
+	 * drop stop words before forming grams.
+	 *
+	 * @param altStopWords
+	 *            stop words
+	 * @param caseSensitive
+	 *            case sensitive
+	 * @return this
+	 */
+	public TextToHashedVectorPipe setStopWords(
+			Collection<String> altStopWords, boolean caseSensitive) {
+		stopWords = new StopWords(altStopWords, caseSensitive);
+		return this;
+	}
+
+	/**
+	 * hash runs of consecutive tokens, as {@link StringSequenceToNGramsPipe}
+	 * forms them; unigrams by default.
+	 *
+	 * @param grams
+	 *            gram sizes
+	 * @return this
+	 */
+	public TextToHashedVectorPipe setNGrams(int... grams) {
+		checkValidSizes(grams);
+		gramSizes = grams.clone();
+		skipGrams = false;
+		return this;
+	}
+
+	/**
+	 * hash pairs of tokens some distance apart, as
+	 * {@link StringSequenceToSkipGramsPipe} forms them.
+	 *
+	 * @param grams
+	 *            gram sizes
+	 * @return this
+	 */
+	public TextToHashedVectorPipe setSkipGrams(int... grams) {
+		checkValidSizes(grams);
+		gramSizes = grams.clone();
+		skipGrams = true;
+		return this;
+	}
+
+	/**
+	 * The method returns the class's Type "TextToHashedVectorPipe"
+	 *
+	 * @return Type
+	 */
+	@Override
+	public Type getType() {
+		return new TypeToken<TextToHashedVectorPipe>() {
+		}.getType();
+	}
+
+	@Override
+	protected Context<LinearVector> operate(Context<String> context) {
+		return Context.createContext(context, vectorize(context.getData()));
+	}
+
+	/**
+	 * the hashed feature vector of some text.
+	 *
+	 * @param text
+	 *            the text
+	 * @return the vector
+	 */
+	public LinearVector vectorize(String text) {
+		Scratch state = getScratch();
+		state.clear();
+		if (sanitize) {
+			// words as MLUtils.cleanText splits them
+			int start = 0;
+			for (int i = 0; i <= text.length(); i++) {
+				if (i == text.length() || isDelimiter(text.charAt(i))) {
+					int length = i - start;
+					if (length >= 2 && length <= MLUtils.LONGEST_WORD)
+						lex(text, start, i, state);
+					start = i + 1;
+				}
+			}
+		} else {
+			lex(text, 0, text.length(), state);
+		}
+		return dict.vectorFromBuffer(state.features);
+	}
+
+	private static boolean isDelimiter(char c) {
+		return c < DELIMITERS.length && DELIMITERS[c];
+	}
+
+	// runs of ascii letters, as AbstractLexer.LEX_ALPHA matches them
+	private void lex(String text, int start, int end, Scratch state) {
+		int tokenStart = -1;
+		for (int i = start; i <= end; i++) {
+			boolean alpha = i < end && isAlpha(text.charAt(i));
+			if (alpha && tokenStart < 0) {
+				tokenStart = i;
+			} else if (!alpha && tokenStart >= 0) {
+				if (stopWords == null
+						|| !stopWords.contains(text, tokenStart, i))
+					token(text, tokenStart, i, state);
+				tokenStart = -1;
+			}
+		}
+	}
+
+	private static boolean isAlpha(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private void token(String text, int start, int end, Scratch state) {
+		int code = 0, power = 1;
+		for (int i = start; i < end; i++) {
+			code = 31 * code + text.charAt(i);
+			power *= 31;
+		}
+		int count = state.push(start, end, code, power);
+		for (int len : gramSizes) {
+			if (len <= 0 || len > count)
+				continue;
+			if (len == 1) {
+				feature(text, state, count - 1, count - 1, 1);
+			} else if (skipGrams) {
+				feature(text, state, count - len, count - 1, count - 1
+						- (count - len));
+			} else {
+				feature(text, state, count - len, count - 1, 1);
+			}
+		}
+	}
+
+	/**
+	 * hash the tokens first through last, stepping by step, joined by SEP
+	 */
+	private void feature(String text, Scratch state, int first, int last,
+			int step) {
+		if (dict.getHashType() == HashFunctionType.JAVA) {
+			int code = state.code(first);
+			for (int k = first + step; k <= last; k += step)
+				code = (31 * code + SEP) * state.power(k) + state.code(k);
+			dict.hashTokenCode(code, state.features);
+		} else if (first == last) {
+			dict.hashToken(text, state.start(first), state.end(first),
+					state.features);
+		} else {
+			StringBuilder gram = state.gram;
+			gram.setLength(0);
+			gram.append(text, state.start(first), state.end(first));
+			for (int k = first + step; k <= last; k += step)
+				gram.append(SEP).append(text, state.start(k), state.end(k));
+			dict.hashToken(gram, 0, gram.length(), state.features);
+		}
+	}
+
+	private Scratch getScratch() {
+		if (scratch == null) {
+			synchronized (this) {
+				if (scratch == null)
+					scratch = new ThreadLocal<Scratch>() {
+						@Override
+						protected Scratch initialValue() {
+							return new Scratch(window());
+						}
+					};
+			}
+		}
+		Scratch state = scratch.get();
+		// gram sizes may have grown since this thread's scratch was made
+		if (state.window() < window()) {
+			state = new Scratch(window());
+			scratch.set(state);
+		}
+		return state;
+	}
+
+	/** the most tokens a gram spans */
+	private int window() {
+		int window = 1;
+		for (int len : gramSizes)
+			window = Math.max(window, len);
+		return window;
+	}
+
+	/**
+	 * the features of the current record, and the offsets and hash codes of
+	 * its most recent tokens in a ring as long as the largest gram.
+	 */
+	private static class Scratch {
+		final FeatureBuffer features = new FeatureBuffer();
+		final StringBuilder gram = new StringBuilder();
+		private final int[] starts, ends, codes, powers;
+		private int count = 0;
+
+		Scratch(int window) {
+			starts = new int[window];
+			ends = new int[window];
+			codes = new int[window];
+			powers = new int[window];
+		}
+
+		int window() {
+			return starts.length;
+		}
+
+		void clear() {
+			features.clear();
+			count = 0;
+		}
+
+		/**
+		 * @return the number of tokens seen in this record
+		 */
+		int push(int start, int end, int code, int power) {
+			int slot = count % starts.length;
+			starts[slot] = start;
+			ends[slot] = end;
+			codes[slot] = code;
+			powers[slot] = power;
+			return ++count;
+		}
+
+		int start(int token) {
+			return starts[token % starts.length];
+		}
+
+		int end(int token) {
+			return ends[token % ends.length];
+		}
+
+		/** the token's string hash code */
+		int code(int token) {
+			return codes[token % codes.length];
+		}
+
+		/** 31 to the power of the token's length */
+		int power(int token) {
+			return powers[token % powers.length];
+		}
+	}
+
+	/**
+	 * a set of words that can be probed with a range of characters.
+	 */
+	private static class StopWords implements Serializable {
+
+		private static final long serialVersionUID = -2715730412369617428L;
+		private final char[][] table;
+		private final boolean caseSensitive;
+
+		StopWords(Collection<String> words, boolean caseSensitive) {
+			this.caseSensitive = caseSensitive;
+			int capacity = 16;
+			while (capacity < 2 * words.size())
+				capacity *= 2;
+			table = new char[capacity][];
+			for (String word : words) {
+				int slot = slot(word, 0, word.length(), false);
+				if (table[slot] == null)
+					table[slot] = word.toCharArray();
+			}
+		}
+
+		boolean contains(CharSequence chars, int start, int end) {
+			return table[slot(chars, start, end, !caseSensitive)] != null;
+		}
+
+		/**
+		 * the slot holding the word, or the empty slot where it would go.
+		 */
+		private int slot(CharSequence chars, int start, int end,
+				boolean lower) {
+			int code = 0;
+			for (int i = start; i < end; i++)
+				code = 31 * code + character(chars, i, lower);
+			int mask = table.length - 1;
+			int slot = (code ^ (code >>> 16)) & mask;
+			while (table[slot] != null
+					&& !matches(table[slot], chars, start, end, lower))
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		private static boolean matches(char[] word, CharSequence chars,
+				int start, int end, boolean lower) {
+			if (word.length != end - start)
+				return false;
+			for (int i = 0; i < word.length; i++)
+				if (word[i] != character(chars, start + i, lower))
+					return false;
+			return true;
+		}
+
+		private static char character(CharSequence chars, int i, boolean lower) {
+			char c = chars.charAt(i);
+			return lower && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A'))
+					: c;
+		}
+	}
+}
@@ -6,6 +6,7 @@ package com.dsi.parallax.pipeline.text;
 import com.dsi.parallax.ml.util.VW;
 import com.dsi.parallax.pipeline.AbstractPipe;
 import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.StatelessPipe;
 import com.google.gson.reflect.TypeToken;
 
 import java.lang.reflect.Type;
@@ -16,18 +17,16 @@ import java.util.Map;
  *
  * @author jattenberg
  */
-public class VWtoLabeledStringPipe extends AbstractPipe<VW,String> {
+public class VWtoLabeledStringPipe extends AbstractPipe<VW,String> implements StatelessPipe<VW,String> {
 
     private static final long serialVersionUID = 143740037785791670L;
     private static final String SEP = " ";
-	StringBuilder buff;
 
     /**
      * Class constructor
      */
     public VWtoLabeledStringPipe() {
     	super();
-    	buff = new StringBuilder();
     }
 
     /**
@@ -40,7 +39,7 @@ public class VWtoLabeledStringPipe extends AbstractPipe<VW,String> {
 	}
 
     private String bodyFromVWData(Map<String, String> namespaceData) {
-        buff.setLength(0);
+        StringBuilder buff = new StringBuilder();
         
         boolean first = true;
         for(String key : namespaceData.keySet()) {
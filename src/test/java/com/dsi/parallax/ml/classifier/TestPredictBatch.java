@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.classifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.classifier.ensemble.BaggingEnsenbleClassifier;
+import com.dsi.parallax.ml.classifier.kernelmethods.KernelSGD;
+import com.dsi.parallax.ml.classifier.linear.optimizable.GradientUpdateableLogisticRegression;
+import com.dsi.parallax.ml.classifier.linear.updateable.AROWClassifier;
+import com.dsi.parallax.ml.classifier.linear.updateable.LogisticRegression;
+import com.dsi.parallax.ml.classifier.linear.updateable.Pegasos;
+import com.dsi.parallax.ml.classifier.linear.updateable.PerceptronWithMargin;
+import com.dsi.parallax.ml.classifier.trees.ID3TreeClassifier;
+import com.dsi.parallax.ml.evaluation.OnlineEvaluation;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+
+/**
+ * checks that batch scoring matches scoring one instance at a time.
+ */
+public class TestPredictBatch {
+
+	private static final int DIMENSION = 20;
+
+	private static BinaryClassificationInstances getInstances(int size,
+			Random random) {
+		BinaryClassificationInstances insts = new BinaryClassificationInstances(
+				DIMENSION);
+		for (int i = 0; i < size; i++) {
+			BinaryClassificationInstance inst;
+			if (i % 2 == 0) {
+				double[] values = new double[DIMENSION];
+				for (int d = 0; d < DIMENSION; d++)
+					values[d] = random.nextGaussian();
+				inst = new BinaryClassificationInstance(values[0] + values[1]
+						+ 0.5 * random.nextGaussian() > 0 ? 1 : 0, values);
+			} else {
+				inst = new BinaryClassificationInstance(DIMENSION);
+				double sum = 0;
+				for (int k = 0; k < 4; k++) {
+					int d = random.nextInt(DIMENSION);
+					double value = random.nextGaussian();
+					inst.addFeature(d, value);
+					sum += d < 2 ? value : 0;
+				}
+				inst.setLabel(new BinaryClassificationTarget(sum > 0 ? 1 : 0));
+			}
+			insts.addInstance(inst);
+		}
+		return insts;
+	}
+
+	private static void assertMatchesPredict(AbstractClassifier<?> model,
+			BinaryClassificationInstances testing) {
+		double[] batch = model.predictBatch(testing);
+		assertEquals(testing.size(), batch.length);
+		int i = 0;
+		for (BinaryClassificationInstance inst : testing)
+			assertEquals(model.getClass().getSimpleName(), model
+					.predict(inst).getValue(), batch[i++], 1e-12);
+	}
+
+	/**
+	 * batches large enough to be split over several threads.
+	 */
+	@Test
+	public void testMatchesPredict() {
+		Random random = new Random(12345);
+		BinaryClassificationInstances training = getInstances(1000, random);
+		BinaryClassificationInstances testing = getInstances(5000, random);
+
+		AbstractClassifier<?>[] models = new AbstractClassifier<?>[] {
+				new LogisticRegression(DIMENSION, true),
+				new PerceptronWithMargin(DIMENSION, true),
+				new AROWClassifier(DIMENSION, true),
+				new GradientUpdateableLogisticRegression(DIMENSION, true),
+				new Pegasos(DIMENSION, true),
+				new ID3TreeClassifier(DIMENSION, true),
+				new BaggingEnsenbleClassifier(DIMENSION, true).setNumModels(3) };
+		for (AbstractClassifier<?> model : models) {
+			model.initialize();
+			model.train(training);
+			model.setPredictionThreads(4);
+			assertTrue(model.supportsConcurrentPrediction());
+			assertMatchesPredict(model, testing);
+		}
+	}
+
+	/**
+	 * batches too small to be worth splitting, and models that can't be
+	 * scored concurrently.
+	 */
+	@Test
+	public void testSerial() {
+		Random random = new Random(54321);
+		BinaryClassificationInstances training = getInstances(500, random);
+
+		LogisticRegression lr = new LogisticRegression(DIMENSION, true);
+		lr.train(training);
+		assertMatchesPredict(lr, getInstances(100, random));
+		assertEquals(0, lr.predictBatch(getInstances(0, random)).length);
+
+		KernelSGD ksgd = new KernelSGD(DIMENSION, true);
+		ksgd.train(training);
+		assertFalse(ksgd.supportsConcurrentPrediction());
+		ksgd.setPredictionThreads(4);
+		assertMatchesPredict(ksgd, training);
+
+		BaggingEnsenbleClassifier bagging = new BaggingEnsenbleClassifier(
+				DIMENSION, true)
+				.setClassifierBuilder(KernelSGD.builder(DIMENSION, true))
+				.setNumModels(2);
+		bagging.initialize();
+		assertFalse(bagging.supportsConcurrentPrediction());
+	}
+
+	/**
+	 * evaluation over a batch sees the same scores as adding them one at a
+	 * time.
+	 */
+	@Test
+	public void testOnlineEvaluation() {
+		Random random = new Random(2468);
+		BinaryClassificationInstances training = getInstances(1000, random);
+		BinaryClassificationInstances testing = getInstances(3000, random);
+		ID3TreeClassifier model = new ID3TreeClassifier(DIMENSION, true);
+		model.train(training);
+
+		OnlineEvaluation batch = new OnlineEvaluation();
+		batch.add(testing, model);
+		OnlineEvaluation serial = new OnlineEvaluation();
+		for (BinaryClassificationInstance inst : testing)
+			serial.add(inst.getLabel(), model.predict(inst));
+		assertEquals(serial.computeAUC(), batch.computeAUC(), 1e-12);
+		assertEquals(serial.computeAccuracy(), batch.computeAccuracy(), 1e-12);
+	}
+}
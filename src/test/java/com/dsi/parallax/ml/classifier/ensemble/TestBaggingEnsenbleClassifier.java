@@ -1,7 +1,10 @@
 package com.dsi.parallax.ml.classifier.ensemble;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+
 import org.junit.Test;
 
 import com.dsi.parallax.ml.classifier.ensemble.BaggingEnsenbleClassifier;
@@ -90,4 +93,43 @@ public class TestBaggingEnsenbleClassifier {
 		}
 	}
 
+	@Test
+	public void testThreads() {
+		BinaryClassificationInstances insts = IrisReader.readIris();
+		BaggingEnsenbleClassifier model = new BaggingEnsenbleClassifier(
+				IrisReader.DIMENSION, true).setNumModels(7).setThreads(3)
+				.setSeed(11).initialize();
+		OnlineEvaluation eval = new OnlineEvaluation();
+
+		model.train(insts);
+		for (BinaryClassificationInstance x : insts) {
+			double pred = model.predict(x).getValue();
+			eval.add(x.getLabel().getValue(), pred);
+		}
+		assertTrue(eval.computeAUC() > 0.5);
+		assertTrue(eval.computeAccuracy() > 0.5);
+	}
+
+	@Test
+	public void testSubPredictions() {
+		BinaryClassificationInstances insts = IrisReader.readIris();
+		BaggingEnsenbleClassifier model = new BaggingEnsenbleClassifier(
+				IrisReader.DIMENSION, true).setNumModels(5).setThreads(2)
+				.initialize();
+		model.train(insts);
+
+		double[] predictions = new double[5];
+		for (BinaryClassificationInstance x : insts) {
+			List<Double> expected = model.subPredictions(x);
+			assertTrue(predictions == model.subPredictions(x, predictions));
+			double sum = 0;
+			for (int i = 0; i < predictions.length; i++) {
+				assertEquals(expected.get(i), predictions[i], 0);
+				sum += predictions[i];
+			}
+			assertEquals(model.combine(expected), model.regress(x), 1e-12);
+			assertEquals(sum / predictions.length, model.regress(x), 1e-12);
+		}
+	}
+
 }
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.classifier.kernelmethods;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.mercerkernels.Kernel;
+import com.dsi.parallax.ml.mercerkernels.RBFKernel;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The Class TestSupportVectorStore.
+ */
+public class TestSupportVectorStore {
+
+	private static List<BinaryClassificationInstance> getInstances(int size) {
+		Random random = new Random(12);
+		List<BinaryClassificationInstance> insts = Lists.newArrayList();
+		for (int i = 0; i < size; i++) {
+			double[] values = new double[5];
+			for (int d = 0; d < values.length; d++)
+				values[d] = random.nextGaussian();
+			insts.add(new BinaryClassificationInstance(random.nextInt(2),
+					values));
+		}
+		return insts;
+	}
+
+	private static double innerProduct(Map<Instance<?>, Double> alphas,
+			Instance<?> inst, Kernel kernel) {
+		double val = 0;
+		for (Instance<?> x : alphas.keySet())
+			val += alphas.get(x) * kernel.InnerProduct(x, inst);
+		return val;
+	}
+
+	/**
+	 * the store agrees with multipliers kept in a map and decayed one at a
+	 * time, with and without the kernel cache, through many rescalings.
+	 */
+	@Test
+	public void testMatchesEagerScaling() {
+		Kernel kernel = new RBFKernel(0.5);
+		List<BinaryClassificationInstance> insts = getInstances(60);
+		for (int cacheSize : new int[] { 0, 8, 1 << 12 }) {
+			SupportVectorStore store = new SupportVectorStore(0, cacheSize);
+			Map<Instance<?>, Double> alphas = Maps.newHashMap();
+			Random random = new Random(13);
+			for (int step = 0; step < 3000; step++) {
+				Instance<?> inst = insts.get(random.nextInt(insts.size()));
+				double expected = innerProduct(alphas, inst, kernel);
+				assertEquals(expected, store.innerProduct(inst, kernel),
+						1e-9 * (1 + Math.abs(expected)));
+
+				double delta = random.nextGaussian();
+				store.add(inst, delta);
+				alphas.put(inst, (alphas.containsKey(inst) ? alphas.get(inst)
+						: 0) + delta);
+				store.scale(0.99);
+				for (Instance<?> x : alphas.keySet())
+					alphas.put(x, alphas.get(x) * 0.99);
+			}
+			assertEquals(alphas.size(), store.size());
+			for (Instance<?> x : alphas.keySet())
+				assertEquals(alphas.get(x), store.getAlpha(x), 1e-9);
+		}
+	}
+
+	@Test
+	public void testBudgetDropsSmallest() {
+		List<BinaryClassificationInstance> insts = getInstances(5);
+		SupportVectorStore store = new SupportVectorStore(3, 16);
+		store.add(insts.get(0), 5);
+		store.add(insts.get(1), -0.5);
+		store.add(insts.get(2), 2);
+		store.add(insts.get(3), -3);
+		assertEquals(3, store.size());
+		assertEquals(0, store.getAlpha(insts.get(1)), 0);
+		store.scale(0.5);
+		store.add(insts.get(4), 1.2);
+		assertEquals(3, store.size());
+		assertEquals(0, store.getAlpha(insts.get(2)), 0);
+		assertEquals(2.5, store.getAlpha(insts.get(0)), 1e-12);
+		assertEquals(-1.5, store.getAlpha(insts.get(3)), 1e-12);
+		assertEquals(1.2, store.getAlpha(insts.get(4)), 1e-12);
+
+		store.clear();
+		assertEquals(0, store.size());
+		assertEquals(0, store.innerProduct(insts.get(0), new RBFKernel(1)), 0);
+	}
+
+	@Test
+	public void testKernelCache() {
+		SupportVectorStore.KernelCache cache = new SupportVectorStore.KernelCache(
+				64);
+		for (long key = 0; key < 16; key++)
+			cache.put(key, key / 2.);
+		for (long key = 0; key < 16; key++) {
+			int slot = cache.find(key);
+			if (slot >= 0)
+				assertEquals(key / 2., cache.values[slot], 0);
+		}
+		// far more keys than slots never grows the cache
+		for (long key = 0; key < 100000; key++)
+			if (cache.find(key) < 0)
+				cache.put(key, key);
+		assertEquals(64, cache.keys.length);
+		int slot = cache.find(99999);
+		assertEquals(99999, cache.values[slot], 0);
+	}
+}
@@ -79,6 +79,30 @@ public class TestSequentialKNN {
 		}
 	}
 
+	/**
+	 * Test the flat kd tree types.
+	 */
+	@Test
+	public void testFlatTree() {
+		BinaryClassificationInstances insts = getInstances();
+		for (KDType type : new KDType[] { KDType.FLATEUCLIDIAN,
+				KDType.FLATMANHATTAN }) {
+			int folds = 3;
+			for (int fold = 0; fold < folds; fold++) {
+				SequentialKNN model = new SequentialKNN(dim, true)
+						.setKDTreeType(type).initialize();
+				OnlineEvaluation eval = new OnlineEvaluation();
+
+				model.train(insts.getTraining(fold, folds));
+				for (BinaryClassificationInstance x : insts.getTesting(fold,
+						folds))
+					eval.add(x.getLabel().getValue(), model.predict(x)
+							.getValue());
+				assertTrue(eval.computeAUC() > 0.5);
+			}
+		}
+	}
+
 	/**
 	 * Test options.
 	 */
@@ -88,11 +112,12 @@ public class TestSequentialKNN {
 		builder.setK(33).setKDTreeType(KDType.MANHATTAN)
 				.setLabelMizingType(KNNMixingType.MODE)
 				.setRegulizerType(SmootherType.UPDATEABLEPLATT)
-				.setSizeLimit(100);
+				.setSizeLimit(100).setRebuildFraction(0.5);
 
 		SequentialKNN model = builder.build();
 		assertEquals(33, model.getK());
 		assertEquals(100, model.getSizeLimit());
+		assertEquals(0.5, model.getRebuildFraction(), 0);
 		assertEquals(KDType.MANHATTAN, model.getKdType());
 		assertEquals(KNNMixingType.MODE, model.getMixingType());
 		assertEquals(false, model.usesBiasTerm());
@@ -148,4 +173,22 @@ public class TestSequentialKNN {
 			assertTrue(eval.computeAUC() > 0.5);
 		}
 	}
+
+	private BinaryClassificationInstances getInstances() {
+		Map<String, String> labelMap = Maps.newHashMap();
+		labelMap.put("Iris-setosa", 1 + "");
+		labelMap.put("Iris-versicolor", 0 + "");
+		labelMap.put("Iris-virginica", 0 + "");
+
+		Pipeline<File, BinaryClassificationInstance> pipeline = Pipeline
+				.newPipeline(new FileSource(file))
+				.addPipe(new FileToLinesPipe())
+				.addPipe(new NumericCSVtoLabeledVectorPipe(-1, 4, labelMap))
+				.addPipe(
+						new BinaryInstancesFromVectorPipe(
+								new BinaryTargetNumericParser()));
+		BinaryClassificationInstancesSink sink = new BinaryClassificationInstancesSink();
+		sink.setSource(pipeline);
+		return sink.next();
+	}
 }
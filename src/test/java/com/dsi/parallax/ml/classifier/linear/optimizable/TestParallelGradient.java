@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.classifier.linear.optimizable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.evaluation.OnlineEvaluation;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.optimization.Gradient;
+import com.dsi.parallax.optimization.stochastic.SGDBuilder;
+import com.dsi.parallax.optimization.stochastic.StochasticBFGSBuilder;
+import com.dsi.parallax.optimization.stochastic.StochasticGradientOptimizationBuilder;
+import com.dsi.parallax.optimization.stochastic.StochasticLBFGSBuilder;
+import com.dsi.parallax.optimization.stochastic.iResilientPropagationMinusBuilder;
+import com.dsi.parallax.optimization.stochastic.anneal.AnnealingScheduleConfigurableBuilder;
+
+/**
+ * checks that splitting the gradient over a mini-batch across threads gives
+ * the same losses and gradients as a single thread.
+ */
+public class TestParallelGradient {
+
+	private static final int DIMENSION = 30;
+
+	private static BinaryClassificationInstances getInstances(int size,
+			Random random) {
+		BinaryClassificationInstances insts = new BinaryClassificationInstances(
+				DIMENSION);
+		for (int i = 0; i < size; i++) {
+			BinaryClassificationInstance inst = new BinaryClassificationInstance(
+					DIMENSION);
+			double sum = 0;
+			for (int k = 0; k < 6; k++) {
+				int d = random.nextInt(DIMENSION);
+				double value = random.nextGaussian();
+				inst.addFeature(d, value);
+				sum += d < 5 ? value : 0;
+			}
+			inst.setLabel(new BinaryClassificationTarget(sum
+					+ 0.3 * random.nextGaussian() > 0 ? 1 : 0));
+			insts.addInstance(inst);
+		}
+		return insts;
+	}
+
+	private static void assertSameGradient(
+			AbstractGradientUpdateableClassifier<?> model,
+			BinaryClassificationInstances batch) {
+		String name = model.getClass().getSimpleName();
+		LinearVector params = model.getVector();
+		model.instances = batch;
+
+		model.setThreads(1);
+		Gradient serial = model.computeGradient(params);
+		double serialLoss = model.computeLoss(params);
+		// twice, so reused buffers are checked to start empty
+		for (int rep = 0; rep < 2; rep++) {
+			model.setThreads(4);
+			Gradient parallel = model.computeGradient(params);
+			assertEquals(name, serial.getLoss(), parallel.getLoss(), 1e-9);
+			assertEquals(name, serialLoss, model.computeLoss(params), 1e-9);
+			assertEquals(name, serialLoss, serial.getLoss(), 1e-9);
+			for (int i = 0; i < model.getNumParameters(); i++)
+				assertEquals(name, serial.getValue(i), parallel.getValue(i),
+						1e-9);
+		}
+		assertTrue(name, serial.L2Norm() > 0);
+	}
+
+	/**
+	 * the loss and gradient of every model on a large mini-batch.
+	 */
+	@Test
+	public void testMatchesSerial() {
+		Random random = new Random(8675309);
+		BinaryClassificationInstances training = getInstances(500, random);
+		BinaryClassificationInstances batch = getInstances(5000, random);
+
+		AbstractGradientUpdateableClassifier<?>[] models = new AbstractGradientUpdateableClassifier<?>[] {
+				new GradientUpdateableL2(DIMENSION, true),
+				new GradientUpdateableLogisticRegression(DIMENSION, true),
+				new GradientUpdateableModifiedHuber(DIMENSION, true),
+				new GradientUpdateableQuadraticSVM(DIMENSION, true) };
+		for (AbstractGradientUpdateableClassifier<?> model : models) {
+			model.train(training);
+			assertSameGradient(model, batch);
+		}
+	}
+
+	/**
+	 * an empty mini-batch has no loss and no gradient.
+	 */
+	@Test
+	public void testEmptyBatch() {
+		GradientUpdateableLogisticRegression model = new GradientUpdateableLogisticRegression(
+				DIMENSION, true).setThreads(4);
+		model.instances = new BinaryClassificationInstances(DIMENSION);
+		assertEquals(0, model.computeLoss(model.getVector()), 0);
+		assertEquals(0, model.computeGradient(model.getVector()).L2Norm(), 0);
+	}
+
+	/**
+	 * training on several threads with each of the stochastic optimizers.
+	 */
+	@Test
+	public void testOptimizers() {
+		Random random = new Random(1234);
+		BinaryClassificationInstances training = getInstances(6000, random);
+		BinaryClassificationInstances testing = getInstances(2000, random);
+
+		StochasticGradientOptimizationBuilder<?>[] builders = new StochasticGradientOptimizationBuilder<?>[] {
+				new SGDBuilder(DIMENSION, true)
+						.setAnnealingScheduleConfigurableBuilder(AnnealingScheduleConfigurableBuilder
+								.configureForConstantRate(0.1)),
+				new iResilientPropagationMinusBuilder(DIMENSION, true),
+				new StochasticBFGSBuilder(DIMENSION, true),
+				new StochasticLBFGSBuilder(DIMENSION, true) };
+		for (StochasticGradientOptimizationBuilder<?> builder : builders) {
+			GradientUpdateableLogisticRegression model = new GradientUpdateableLogisticRegression(
+					builder, DIMENSION, true).setMiniBatchSize(1000)
+					.setThreads(3);
+			model.train(training);
+			OnlineEvaluation eval = new OnlineEvaluation();
+			eval.add(testing, model);
+			assertTrue(builder.getClass().getSimpleName(),
+					eval.computeAUC() > 0.7);
+		}
+	}
+}
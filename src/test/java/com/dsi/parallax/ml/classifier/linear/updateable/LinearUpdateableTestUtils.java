@@ -7,8 +7,10 @@ import com.dsi.parallax.ml.classifier.linear.optimizable.AbstractGradientUpdatea
 import com.dsi.parallax.ml.classifier.linear.optimizable.GradientUpdateableClassifierConfigurableBuilder;
 import com.dsi.parallax.ml.classifier.linear.updateable.AbstractLinearUpdateableClassifier;
 import com.dsi.parallax.ml.classifier.linear.updateable.LinearUpdateableClassifierBuilder;
+import com.dsi.parallax.ml.evaluation.OnlineEvaluation;
 import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
 import com.dsi.parallax.ml.utils.IrisReader;
+import com.dsi.parallax.ml.utils.ScienceReader;
 import com.dsi.parallax.optimization.regularization.TruncationConfigurableBuilder;
 import com.dsi.parallax.optimization.regularization.TruncationType;
 
@@ -130,6 +132,33 @@ public class LinearUpdateableTestUtils {
 		}
 	}
 
+	/**
+	 * models trained lock-free on several threads classify text about as well
+	 * as models trained serially.
+	 */
+	public static <C extends AbstractLinearUpdateableClassifier<C>, B extends LinearUpdateableClassifierBuilder<C, B>> void testThreads(
+			B builder) {
+		BinaryClassificationInstances insts = ScienceReader.readScience();
+		builder.setDimension(ScienceReader.DIMENSION);
+
+		double serialAUC = crossValidatedAUC(builder.setThreads(1), insts);
+		double parallelAUC = crossValidatedAUC(builder.setThreads(4), insts);
+		assertEquals(4, builder.build().getThreads());
+		assertTrue(serialAUC > 0.5);
+		assertTrue(parallelAUC > serialAUC - 0.05);
+	}
+
+	private static <C extends AbstractLinearUpdateableClassifier<C>, B extends LinearUpdateableClassifierBuilder<C, B>> double crossValidatedAUC(
+			B builder, BinaryClassificationInstances insts) {
+		OnlineEvaluation eval = new OnlineEvaluation();
+		for (int fold = 0; fold < 5; fold++) {
+			C model = builder.build();
+			model.train(insts.getTraining(fold, 5));
+			eval.add(insts.getTesting(fold, 5), model);
+		}
+		return eval.computeAUC();
+	}
+
 	public static <C extends AbstractGradientUpdateableClassifier<C>, B extends GradientUpdateableClassifierConfigurableBuilder<C, B>> void testTruncationOptimizable(
 			B builder) {
 		BinaryClassificationInstances insts = IrisReader.readIris();
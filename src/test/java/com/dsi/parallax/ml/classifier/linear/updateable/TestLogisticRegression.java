@@ -110,4 +110,9 @@ public class TestLogisticRegression {
 		LinearUpdateableTestUtils
 				.testTruncation(new LogisticRegressionBuilder());
 	}
+
+	@Test
+	public void testThreads() {
+		LinearUpdateableTestUtils.testThreads(new LogisticRegressionBuilder());
+	}
 }
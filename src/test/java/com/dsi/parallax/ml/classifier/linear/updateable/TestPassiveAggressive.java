@@ -123,4 +123,14 @@ public class TestPassiveAggressive {
 		LinearUpdateableTestUtils
 				.testTruncation(new PassiveAggressiveBuilder());
 	}
+
+	@Test
+	public void testThreads() {
+		LinearUpdateableTestUtils.testThreads(new PassiveAggressiveBuilder());
+
+		Configuration<PassiveAggressiveBuilder> conf = new PassiveAggressiveBuilder(
+				dim, false).setThreads(3).getConfiguration();
+		assertEquals(3, new PassiveAggressiveBuilder(conf).build()
+				.getThreads());
+	}
 }
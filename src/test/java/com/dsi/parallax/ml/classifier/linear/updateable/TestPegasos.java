@@ -124,4 +124,22 @@ public class TestPegasos {
 	public void testTruncation() {
 		LinearUpdateableTestUtils.testTruncation(new PegasosBuilder());
 	}
+
+	/**
+	 * pegasos can't be trained lock-free, so extra threads change nothing.
+	 */
+	@Test
+	public void testThreadsTrainSerially() {
+		VWtoBinaryInstancesPipeline pipe = new VWtoBinaryInstancesPipeline(
+				"data/science.small.vw", dim);
+		BinaryClassificationInstances insts = pipe.next();
+		Pegasos serial = new PegasosBuilder(dim, true).setPasses(2).build();
+		serial.train(insts);
+		Pegasos threaded = new PegasosBuilder(dim, true).setPasses(2)
+				.setThreads(4).build();
+		threaded.train(insts);
+		assertEquals(4, threaded.getThreads());
+		for (int i = 0; i < serial.getVector().size(); i++)
+			assertEquals(serial.getParam(i), threaded.getParam(i), 0);
+	}
 }
@@ -135,4 +135,20 @@ public class TestPerceptronWithMargin {
 		LinearUpdateableTestUtils
 				.testTruncation(new PerceptronWithMarginBuilder());
 	}
+
+	@Test
+	public void testThreadsTrainSerially() {
+		VWtoBinaryInstancesPipeline pipe = new VWtoBinaryInstancesPipeline(
+				"data/science.small.vw", dim);
+		BinaryClassificationInstances insts = pipe.next();
+		PerceptronWithMargin serial = new PerceptronWithMarginBuilder(dim, true)
+				.setPasses(2).build();
+		serial.train(insts);
+		PerceptronWithMargin threaded = new PerceptronWithMarginBuilder(dim,
+				true).setPasses(2).setThreads(4).build();
+		threaded.train(insts);
+		assertEquals(4, threaded.getThreads());
+		for (int i = 0; i < serial.getVector().size(); i++)
+			assertEquals(serial.getParam(i), threaded.getParam(i), 0);
+	}
 }
@@ -52,6 +52,36 @@ public class TestKernelSGD {
 		}
 	}
 
+	/**
+	 * Test budget.
+	 */
+	@Test
+	public void testBudget() {
+		VWtoBinaryInstancesPipeline pipe = new VWtoBinaryInstancesPipeline(
+				"data/science.small.vw", dim);
+		BinaryClassificationInstances insts = pipe.next();
+
+		int folds = 3;
+		for (int fold = 0; fold < folds; fold++) {
+			KernelSGD model = new KernelSGD(dim, true).setBudget(50)
+					.setCacheSize(1 << 10).initialize();
+			OnlineEvaluation eval = new OnlineEvaluation();
+
+			model.train(insts.getTraining(fold, folds));
+			assertTrue(model.getSupportVectorCount() <= 50);
+			for (BinaryClassificationInstance x : insts.getTesting(fold, folds))
+				eval.add(x.getLabel().getValue(), model.predict(x).getValue());
+			assertTrue(eval.computeAccuracy() > 0.5);
+		}
+
+		KernelSGDBuilder builder = new KernelSGDBuilder(dim, false)
+				.setBudget(50).setCacheSize(1 << 10);
+		KernelSGD model = new KernelSGDBuilder(builder.getConfiguration())
+				.build();
+		assertEquals(50, model.getBudget());
+		assertEquals(1 << 10, model.getCacheSize());
+	}
+
 	/**
 	 * Test options.
 	 */
@@ -84,6 +84,29 @@ public class TestID3TreeClassifier {
 		}
 	}
 
+	/**
+	 * Test with histogram binned split search.
+	 */
+	@Test
+	public void testHistogramBins() {
+		int folds = 3;
+		for (int fold = 0; fold < folds; fold++) {
+
+			ID3TreeClassifier model = new ID3TreeClassifier(bins, true);
+			model.setHistogramBins(8).initialize();
+			OnlineEvaluation eval = new OnlineEvaluation();
+
+			model.train(insts.getTraining(fold, folds));
+			for (BinaryClassificationInstance x : insts
+					.getTraining(fold, folds)) {
+				double pred = model.predict(x).getValue();
+				double label = x.getLabel().getValue();
+				eval.add(label, pred);
+			}
+			assertTrue(eval.computeAccuracy() > 0.5);
+		}
+	}
+
 	/**
 	 * Gets the instances.
 	 * 
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.util.HashFunctionType;
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * The Class TestHashDictionary.
+ */
+public class TestHashDictionary {
+
+	private static final int BINS = 1 << 16;
+
+	private static List<List<String>> getDocuments(int size) {
+		Random random = new Random(3);
+		List<List<String>> docs = Lists.newArrayList();
+		for (int i = 0; i < size; i++) {
+			List<String> doc = Lists.newArrayList();
+			for (int w = 0; w < 50; w++)
+				doc.add("w" + random.nextInt(2000));
+			docs.add(doc);
+		}
+		return docs;
+	}
+
+	private static void assertVectorsEqual(LinearVector x, LinearVector y) {
+		for (int i : x)
+			assertEquals(x.getValue(i), y.getValue(i), 0);
+		for (int i : y)
+			assertEquals(x.getValue(i), y.getValue(i), 0);
+	}
+
+	@Test
+	public void testLegacyIndicesUnchanged() {
+		HashDictionary dict = new HashDictionary(BINS);
+		LinearVector vector = dict.vectorFromText(Lists.newArrayList("foo",
+				"bar", "foo"));
+		assertEquals(2, vector.getValue(Math.abs("foo".hashCode()) % BINS), 0);
+		assertEquals(1, vector.getValue(Math.abs("bar".hashCode()) % BINS), 0);
+
+		Map<String, Collection<String>> text = ImmutableMap.<String, Collection<String>> of(
+				"a", Lists.newArrayList("foo"));
+		LinearVector namespaced = new HashDictionary(BINS, 2)
+				.vectorFromNamespacedText(text, true);
+		assertEquals(1, namespaced.getValue(Math.abs("a___foo___1".hashCode())
+				% BINS), 0);
+	}
+
+	@Test
+	public void testSeededHashing() {
+		for (HashFunctionType type : new HashFunctionType[] {
+				HashFunctionType.MURMUR3, HashFunctionType.XXHASH }) {
+			HashDictionary dict = new HashDictionary(BINS, type);
+			LinearVector vector = dict.vectorFromText(Lists.newArrayList(
+					"foo", "bar", "foo"));
+			assertEquals(2, vector.getValue(dict.dimensionFromString("foo")),
+					0);
+			assertEquals(1, vector.getValue(dict.dimensionFromString("bar")),
+					0);
+
+			// namespaces and hash numbers each move the token
+			Map<String, Collection<String>> a = ImmutableMap.<String, Collection<String>> of(
+					"a", Lists.newArrayList("foo"));
+			Map<String, Collection<String>> b = ImmutableMap.<String, Collection<String>> of(
+					"b", Lists.newArrayList("foo"));
+			int ia = dict.vectorFromNamespacedText(a, true).iterator().next();
+			int ib = dict.vectorFromNamespacedText(b, true).iterator().next();
+			assertNotEquals(ia, ib);
+			assertEquals(dict.dimensionFromString("foo"), dict
+					.vectorFromNamespacedText(a, false).iterator().next()
+					.intValue());
+
+			LinearVector multiple = new HashDictionary(BINS, true, type, 3)
+					.vectorFromText(Lists.newArrayList("foo"));
+			int ct = 0;
+			for (int i : multiple) {
+				assertEquals(1, multiple.getValue(i), 0);
+				ct++;
+			}
+			assertEquals(3, ct);
+
+			// signed counts still sum to the number of occurrences in magnitude
+			HashDictionary biased = new HashDictionary(BINS, false, true, type);
+			LinearVector signed = biased.vectorFromText(Lists.newArrayList(
+					"foo", "foo"));
+			assertEquals(2,
+					Math.abs(signed.getValue(dict.dimensionFromString("foo"))),
+					0);
+		}
+	}
+
+	@Test
+	public void testBufferReuse() {
+		List<List<String>> docs = getDocuments(20);
+		for (HashFunctionType type : HashFunctionType.values()) {
+			HashDictionary dict = new HashDictionary(BINS, false, true, type, 2);
+			FeatureBuffer buffer = new FeatureBuffer(1);
+			for (List<String> doc : docs)
+				assertVectorsEqual(dict.vectorFromText(doc),
+						dict.vectorFromText(doc, buffer));
+		}
+	}
+
+	@Test
+	public void testThreads() throws Exception {
+		final List<List<String>> docs = getDocuments(200);
+		for (HashFunctionType type : HashFunctionType.values()) {
+			final HashDictionary dict = new HashDictionary(BINS, false, true,
+					type, 2);
+			List<LinearVector> serial = Lists.newArrayList();
+			for (List<String> doc : docs)
+				serial.add(dict.vectorFromText(doc));
+
+			ExecutorService pool = Executors.newFixedThreadPool(4);
+			try {
+				List<Future<List<LinearVector>>> futures = Lists
+						.newArrayList();
+				for (int t = 0; t < 4; t++)
+					futures.add(pool.submit(new Callable<List<LinearVector>>() {
+						@Override
+						public List<LinearVector> call() {
+							FeatureBuffer buffer = new FeatureBuffer();
+							List<LinearVector> out = Lists.newArrayList();
+							for (List<String> doc : docs)
+								out.add(dict.vectorFromText(doc, buffer));
+							return out;
+						}
+					}));
+				for (Future<List<LinearVector>> future : futures) {
+					List<LinearVector> parallel = future.get();
+					assertTrue(parallel.size() == serial.size());
+					for (int i = 0; i < serial.size(); i++)
+						assertVectorsEqual(serial.get(i), parallel.get(i));
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+}
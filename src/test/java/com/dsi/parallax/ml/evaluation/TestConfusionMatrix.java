@@ -82,4 +82,36 @@ public class TestConfusionMatrix {
 		}
 		return sum;
 	}
+	/**
+	 * partials filled separately and merged match one matrix filled serially.
+	 */
+	@Test
+	public void testMerge() {
+		ConfusionMatrix whole = new ConfusionMatrix(3);
+		ConfusionMatrix[] parts = new ConfusionMatrix[] {
+				new ConfusionMatrix(3), new ConfusionMatrix(3),
+				new ConfusionMatrix(3) };
+		for (int i = 0; i < 30; i++) {
+			double[] guess = new double[] { 0.2, 0.3, 0.5 };
+			whole.addInfo(i % 3, (i * 7) % 3);
+			whole.addInfo(i % 3, guess, 2);
+			parts[i % 3].addInfo(i % 3, (i * 7) % 3);
+			parts[i % 3].addInfo(i % 3, guess, 2);
+		}
+		ConfusionMatrix merged = new ConfusionMatrix(parts[0]).merge(parts[1])
+				.merge(parts[2]);
+		assertEquals(whole.computeAccuracy(), merged.computeAccuracy(), 1e-12);
+		double[][] expected = whole.getMatrix();
+		double[][] matrix = merged.getMatrix();
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++)
+				assertEquals(expected[i][j], matrix[i][j], 1e-12);
+		// the copy left the first part alone
+		assertEquals(10 * 3, parts[0].rowSums()[0], 1e-12);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeMismatched() {
+		new ConfusionMatrix(2).merge(new ConfusionMatrix(3));
+	}
 }
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.evaluation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestHistogramROC {
+
+	private static double prediction(Random random, double label) {
+		return 1 / (1 + Math.exp(-(2 * label - 1 + 1.5 * random.nextGaussian())));
+	}
+
+	@Test
+	public void testWithinBound() {
+		Random random = new Random(31);
+		ReceiverOperatingCharacteristic exact = new ReceiverOperatingCharacteristic();
+		HistogramROC coarse = new HistogramROC(20);
+		HistogramROC fine = new HistogramROC();
+		for (int i = 0; i < 20000; i++) {
+			double label = random.nextDouble() < 0.2 ? 1 : 0;
+			double prediction = prediction(random, label);
+			exact.add(label, prediction);
+			coarse.add(label, prediction);
+			fine.add(label, prediction);
+		}
+		double auc = exact.binaryAUC();
+		assertTrue(coarse.aucErrorBound() > fine.aucErrorBound());
+		assertEquals(auc, coarse.binaryAUC(), coarse.aucErrorBound());
+		assertEquals(auc, fine.binaryAUC(), fine.aucErrorBound());
+		assertTrue(fine.aucErrorBound() < 1e-3);
+
+		assertEquals(exact.brierScore(), coarse.brierScore(), 1e-9);
+		// 25 brier bins nest in 10000 histogram bins, but not in 20
+		assertEquals(exact.averagedBrierScore(25), fine.averagedBrierScore(25),
+				1e-9);
+		assertEquals(exact.averagedBrierScore(10), coarse.averagedBrierScore(10),
+				1e-9);
+	}
+
+	@Test
+	public void testExactOnBinnedScores() {
+		// predictions at bin edges, so nothing is lost
+		Random random = new Random(5);
+		ReceiverOperatingCharacteristic exact = new ReceiverOperatingCharacteristic();
+		HistogramROC histogram = new HistogramROC(10);
+		for (int i = 0; i < 1000; i++) {
+			double label = random.nextDouble() < 0.5 ? 1 : 0;
+			double prediction = Math.ceil(10 * prediction(random, label)) / 10;
+			exact.add(label, prediction);
+			histogram.add(label, prediction);
+		}
+		assertEquals(exact.binaryAUC(), histogram.binaryAUC(), 1e-12);
+		double[][] exactCurve = exact.ROC();
+		double[][] curve = histogram.ROC();
+		assertEquals(exactCurve.length, curve.length);
+		for (int i = 0; i < curve.length; i++) {
+			assertEquals(exactCurve[i][0], curve[i][0], 1e-12);
+			assertEquals(exactCurve[i][1], curve[i][1], 1e-12);
+		}
+	}
+
+	@Test
+	public void testMerge() {
+		Random random = new Random(99);
+		HistogramROC whole = new HistogramROC(100);
+		HistogramROC first = new HistogramROC(100);
+		HistogramROC second = new HistogramROC(100);
+		for (int i = 0; i < 2000; i++) {
+			double label = random.nextDouble() < 0.3 ? 1 : 0;
+			// some predictions outside [0, 1]
+			double prediction = 1.2 * prediction(random, label) - 0.1;
+			whole.add(label, prediction);
+			(i % 2 == 0 ? first : second).add(label, prediction);
+		}
+		first.merge(second);
+		assertEquals(whole.size(), first.size());
+		assertEquals(whole.binaryAUC(), first.binaryAUC(), 1e-12);
+		assertEquals(whole.aucErrorBound(), first.aucErrorBound(), 1e-12);
+		assertEquals(whole.brierScore(), first.brierScore(), 1e-12);
+		assertEquals(whole.averagedBrierScore(25),
+				first.averagedBrierScore(25), 1e-12);
+	}
+
+	@Test
+	public void testEmpty() {
+		HistogramROC histogram = new HistogramROC();
+		assertTrue(Double.isNaN(histogram.binaryAUC()));
+		histogram.add(1, 0.5);
+		assertTrue(Double.isNaN(histogram.binaryAUC()));
+		assertTrue(Double.isNaN(histogram.aucErrorBound()));
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.evaluation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * checks the incrementally maintained metrics against recomputing them from
+ * scratch over the same windows.
+ */
+public class TestOnlineEvaluation {
+
+	private static void assertMatches(OnlineEvaluation eval,
+			LinkedList<double[]> positives, LinkedList<double[]> negatives,
+			double numpos, double numneg) {
+		ReceiverOperatingCharacteristic roc = new ReceiverOperatingCharacteristic();
+		double posAgreement = 0, negAgreement = 0;
+		for (double[] ex : positives) {
+			roc.add(ex[0], ex[1]);
+			posAgreement += (1 - ex[0]) * (1 - ex[1]) + ex[0] * ex[1];
+		}
+		for (double[] ex : negatives) {
+			roc.add(ex[0], ex[1]);
+			negAgreement += (1 - ex[0]) * (1 - ex[1]) + ex[0] * ex[1];
+		}
+		if (!positives.isEmpty() && !negatives.isEmpty())
+			assertEquals(roc.binaryAUC(), eval.computeAUC(), 1e-9);
+		else
+			assertTrue(Double.isNaN(eval.computeAUC()));
+		assertEquals(roc.averagedBrierScore(25), eval.computeBrierScore(), 1e-9);
+
+		double tot = numpos + numneg;
+		double accuracy = (numpos / tot)
+				* (positives.isEmpty() ? 0 : posAgreement / positives.size())
+				+ (numneg / tot)
+				* (negatives.isEmpty() ? 0 : negAgreement / negatives.size());
+		assertEquals(accuracy, eval.computeAccuracy(), 1e-9);
+	}
+
+	private static void checkStream(int cacheSize, int length, long seed) {
+		Random random = new Random(seed);
+		OnlineEvaluation eval = new OnlineEvaluation(cacheSize);
+		LinkedList<double[]> positives = new LinkedList<double[]>();
+		LinkedList<double[]> negatives = new LinkedList<double[]>();
+		double numpos = 0, numneg = 0;
+		for (int i = 0; i < length; i++) {
+			double label = random.nextDouble() < 0.3 ? 1 : 0;
+			// coarse scores, so plenty of ties
+			double prediction = Math.round(20 * Math.min(1, Math.max(0,
+					0.4 * label + 0.3 + 0.25 * random.nextGaussian()))) / 20.;
+			eval.add(label, prediction);
+			LinkedList<double[]> window = label > 0.5 ? positives : negatives;
+			if (label > 0.5)
+				numpos++;
+			else
+				numneg++;
+			window.add(new double[] { label, prediction });
+			if (window.size() > cacheSize)
+				window.removeFirst();
+			assertMatches(eval, positives, negatives, numpos, numneg);
+		}
+	}
+
+	@Test
+	public void testSlidingWindow() {
+		checkStream(40, 2000, 42);
+	}
+
+	@Test
+	public void testSmallWindow() {
+		checkStream(3, 200, 7);
+	}
+
+	@Test
+	public void testUnbounded() {
+		checkStream(Integer.MAX_VALUE, 1000, 1234);
+	}
+
+	@Test
+	public void testSingleClass() {
+		OnlineEvaluation eval = new OnlineEvaluation(5);
+		for (int i = 0; i < 10; i++)
+			eval.add(1, 0.1 * i);
+		assertTrue(Double.isNaN(eval.computeAUC()));
+		eval.add(0, 0.65);
+		// window holds positives .5 through .9, three above the negative
+		assertEquals(0.6, eval.computeAUC(), 1e-12);
+	}
+}
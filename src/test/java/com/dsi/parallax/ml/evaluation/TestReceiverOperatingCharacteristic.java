@@ -1,6 +1,9 @@
 package com.dsi.parallax.ml.evaluation;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -54,4 +57,69 @@ public class TestReceiverOperatingCharacteristic {
 		}
 	}
 
+	@Test
+	public void testLargeParallel() {
+		// large enough to sort on several threads, with ties and soft labels
+		Random random = new Random(11);
+		int size = 3 * com.dsi.parallax.ml.util.PrimitiveSort.PARALLEL_THRESHOLD;
+		int scores = 200;
+		double[] positives = new double[scores], negatives = new double[scores];
+		double[] labelSums = new double[25], counts = new double[25];
+		ReceiverOperatingCharacteristic roc = new ReceiverOperatingCharacteristic()
+				.setThreads(3);
+		for (int i = 0; i < size; i++) {
+			double label = random.nextDouble() < 0.4 ? 0.9 : 0;
+			int score = Math.min(scores - 1, Math.max(0,
+					(int) (scores * (0.5 + 0.3 * label + 0.2 * random.nextGaussian()))));
+			double prediction = (score + 0.5) / scores;
+			roc.add(label, prediction);
+			if (label > 0.5)
+				positives[score]++;
+			else
+				negatives[score]++;
+			int bin = (int) Math.ceil(prediction * 25) - 1;
+			counts[bin]++;
+			labelSums[bin] += label;
+		}
+
+		double pairs = 0, below = 0, numpos = 0;
+		for (int s = 0; s < scores; s++) {
+			pairs += positives[s] * (below + negatives[s] / 2);
+			below += negatives[s];
+			numpos += positives[s];
+		}
+		assertEquals(pairs / (numpos * below), roc.binaryAUC(), 1e-12);
+
+		double brier = 0;
+		for (int b = 0; b < 25; b++) {
+			double mid = (b + 0.5) / 25;
+			if (counts[b] > 0)
+				brier += Math.pow(mid - labelSums[b] / counts[b], 2);
+		}
+		assertEquals(brier / 25, roc.averagedBrierScore(25), 1e-12);
+
+		// adding after sorting
+		roc.add(0, 0.999);
+		assertTrue(roc.binaryAUC() < pairs / (numpos * below));
+	}
+
+	@Test
+	public void testBrierScores() {
+		ReceiverOperatingCharacteristic roc = new ReceiverOperatingCharacteristic();
+		for (int i = 0; i < 16; i++) {
+			roc.add(labels[i], predictions[i]);
+		}
+		double squaredError = 0;
+		for (int i = 0; i < 16; i++)
+			squaredError += Math.pow(labels[i] - predictions[i], 2);
+		assertEquals(squaredError / 16, roc.brierScore(), 1e-12);
+		// 4 bins: (.16, .22, .23) (.48, .47, .27, .36, .36, .36, .41) (.66,
+		// .72, .64) (.81, .90, .83)
+		double expected = (Math.pow(0.125 - 0, 2) + Math.pow(0.375 - 1. / 7, 2)
+				+ Math.pow(0.625 - 1, 2) + Math.pow(0.875 - 1, 2)) / 4;
+		assertEquals(expected, roc.averagedBrierScore(4), 1e-12);
+		// the curve is unaffected by scoring
+		assertEquals(0.96825396825396826, roc.binaryAUC(), 0.000000001);
+	}
+
 }
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.instance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.mercerkernels.RBFKernel;
+import com.dsi.parallax.ml.testutils.TestUtils;
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.ml.vector.LinearVectorFactory;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * The Class TestFeatureView.
+ */
+public class TestFeatureView {
+
+	// inner product over the union of indices, the way it used to be computed
+	private static double expectedInnerProduct(Instance<?> x, Instance<?> y) {
+		double tot = 0;
+		for (int i : union(x, y))
+			tot += x.getFeatureValue(i) * y.getFeatureValue(i);
+		return tot;
+	}
+
+	private static double expectedLNdist(Instance<?> x, Instance<?> y, double n) {
+		double tot = 0;
+		for (int i : union(x, y))
+			tot += Math.pow(
+					Math.abs(x.getFeatureValue(i) - y.getFeatureValue(i)), n);
+		return Math.pow(tot, 1. / n);
+	}
+
+	private static Set<Integer> union(Instance<?> x, Instance<?> y) {
+		Set<Integer> indices = Sets.newHashSet();
+		for (int i : x)
+			indices.add(i);
+		for (int i : y)
+			indices.add(i);
+		return indices;
+	}
+
+	private static List<BinaryClassificationInstance> getMixedInstances() {
+		Random random = new Random(5);
+		List<BinaryClassificationInstance> insts = Lists.newArrayList();
+		for (int i = 0; i < 10; i++) {
+			double[] values = new double[8 + random.nextInt(4)];
+			for (int dim = 0; dim < values.length; dim++)
+				values[dim] = random.nextInt(3) == 0 ? 0 : random
+						.nextGaussian();
+			insts.add(new BinaryClassificationInstance(LinearVectorFactory
+					.getDenseVector(values)));
+			BinaryClassificationInstance sparse = new BinaryClassificationInstance(
+					16);
+			for (int dim = 0; dim < values.length + 4; dim++)
+				if (random.nextBoolean())
+					sparse.addFeature(dim, random.nextGaussian());
+			insts.add(sparse);
+		}
+		return insts;
+	}
+
+	private static void assertMatches(List<? extends Instance<?>> insts) {
+		RBFKernel kernel = new RBFKernel(0.3);
+		for (Instance<?> x : insts) {
+			for (Instance<?> y : insts) {
+				double ip = expectedInnerProduct(x, y);
+				assertEquals(ip, Instance.innerProduct(x, y),
+						1e-9 * (1 + Math.abs(ip)));
+				for (double n : new double[] { 1, 2, 3, 0.5 }) {
+					double dist = expectedLNdist(x, y, n);
+					assertEquals(dist, Instance.computeLNdist(x, y, n),
+							1e-9 * (1 + dist));
+				}
+				double l2 = expectedLNdist(x, y, 2);
+				assertEquals(l2 * l2, Instance.squaredDistance(x, y),
+						1e-9 * (1 + l2 * l2));
+				assertEquals(Math.exp(-0.3 * l2 * l2),
+						kernel.InnerProduct(x, y), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testMatchesHashSetMerge() {
+		BinaryClassificationInstances text = TestUtils.getTextInstances();
+		assertMatches(text.getInstances().subList(0, 40));
+		assertMatches(getMixedInstances());
+	}
+
+	@Test
+	public void testIndicesAreSorted() {
+		BinaryClassificationInstance inst = new BinaryClassificationInstance(
+				1000);
+		for (int dim : new int[] { 900, 3, 517, 64, 2, 999, 128 })
+			inst.addFeature(dim, dim + 0.5);
+		FeatureView view = inst.getFeatureView();
+		assertFalse(view.isDense());
+		assertEquals(7, view.size());
+		for (int k = 1; k < view.size(); k++)
+			assertTrue(view.index(k - 1) < view.index(k));
+		for (int k = 0; k < view.size(); k++)
+			assertEquals(view.index(k) + 0.5, view.value(k), 0);
+		assertEquals(517.5, view.getValue(517), 0);
+		assertEquals(0, view.getValue(518), 0);
+	}
+
+	@Test
+	public void testDotWithWeights() {
+		Random random = new Random(7);
+		double[] dense = new double[12];
+		LinearVector sparse = LinearVectorFactory.getVector(12);
+		for (int dim = 0; dim < dense.length; dim++) {
+			dense[dim] = random.nextGaussian();
+			if (dim % 3 == 0)
+				sparse.resetValue(dim, random.nextGaussian());
+		}
+		LinearVector[] weights = { LinearVectorFactory.getDenseVector(dense),
+				sparse, LinearVectorFactory.getDenseVector(new double[] { 1, 2 }) };
+		for (BinaryClassificationInstance x : getMixedInstances()) {
+			for (LinearVector w : weights) {
+				double expected = 0;
+				for (int i : x)
+					expected += x.getFeatureValue(i)
+							* (i < w.size() ? w.getValue(i) : 0);
+				assertEquals(expected, x.dot(w), 1e-9);
+				x.getFeatureView();
+				assertEquals(expected, x.dot(w), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testDotDoesNotCacheView() {
+		LinearVector values = LinearVectorFactory.getDenseVector(new double[] {
+				1, 2, 3 });
+		BinaryClassificationInstance x = new BinaryClassificationInstance(
+				values);
+		LinearVector w = LinearVectorFactory.getDenseVector(new double[] { 1,
+				1, 1 });
+		assertEquals(6, x.dot(w), 0);
+		// a view cached by the first call wouldn't see this
+		values.resetValue(0, 4);
+		assertEquals(9, x.dot(w), 0);
+	}
+
+	@Test
+	public void testModificationRebuildsView() {
+		BinaryClassificationInstance x = new BinaryClassificationInstance(10);
+		x.addFeature(1, 2);
+		BinaryClassificationInstance y = new BinaryClassificationInstance(10);
+		y.addFeature(1, 3);
+		y.addFeature(4, 1);
+
+		FeatureView view = x.getFeatureView();
+		assertSame(view, x.getFeatureView());
+		assertEquals(6, Instance.innerProduct(x, y), 0);
+
+		x.addFeature(4, 5);
+		assertEquals(11, Instance.innerProduct(x, y), 0);
+		x.resetValue(1, -1);
+		assertEquals(2, Instance.innerProduct(x, y), 0);
+		x.timesEquals(2);
+		assertEquals(4, Instance.innerProduct(x, y), 0);
+		x.delete(4);
+		assertEquals(-6, Instance.innerProduct(x, y), 0);
+		assertEquals(Math.sqrt(25 + 1), Instance.computeLNdist(x, y, 2), 1e-12);
+	}
+}
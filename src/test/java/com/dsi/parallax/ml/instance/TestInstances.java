@@ -8,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -83,6 +84,62 @@ public class TestInstances {
 		assertEquals(testing, insts.size());
 	}
 	
+	@Test
+	public void testFoldViewsMatchCopies() {
+		for (int folds : new int[] { 1, 3, 10, insts.size() }) {
+			for (int i = 0; i < folds; i++) {
+				BinaryClassificationInstances training = insts.getTraining(i,
+						folds);
+				BinaryClassificationInstances trainingView = insts
+						.getTrainingView(i, folds);
+				assertEquals(training.getInstances(),
+						trainingView.getInstances());
+				assertEquals(training.getNumPos(), trainingView.getNumPos());
+				assertEquals(training.getNumNeg(), trainingView.getNumNeg());
+
+				BinaryClassificationInstances testing = insts.getTesting(i,
+						folds);
+				BinaryClassificationInstances testingView = insts
+						.getTestingView(i, folds);
+				assertEquals(testing.getInstances(), testingView.getInstances());
+				assertEquals(testing.getNumPos(), testingView.getNumPos());
+				assertEquals(testing.getNumNeg(), testingView.getNumNeg());
+			}
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFoldViewsAreReadOnly() {
+		BinaryClassificationInstances view = insts.getTrainingView(0, 10);
+		view.addInstance(insts.getInstance(0));
+	}
+
+	@Test
+	public void testBootstrapView() {
+		BinaryClassificationInstances view = insts
+				.getBootstrapView(new Random(3));
+		BinaryClassificationInstances again = insts
+				.getBootstrapView(new Random(3));
+		assertEquals(insts.size(), view.size());
+		int positives = 0;
+		for (int i = 0; i < view.size(); i++) {
+			BinaryClassificationInstance inst = view.getInstance(i);
+			assertTrue(inst == again.getInstance(i));
+			assertTrue(insts.getInstances().contains(inst));
+			if (inst.getLabel().getValue() > 0.5)
+				positives++;
+		}
+		assertEquals(positives, view.getNumPos());
+		assertEquals(view.size() - positives, view.getNumNeg());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testBootstrapViewsAreReadOnly() {
+		BinaryClassificationInstances view = insts
+				.getBootstrapView(new Random(3));
+		view.addInstance(insts.getInstance(0));
+	}
+
 	/**
 	 * Gets the instances.
 	 * 
@@ -16,6 +16,7 @@ import com.dsi.parallax.ml.objective.AUCObjective;
 import com.dsi.parallax.ml.objective.AccuracyObjective;
 import com.dsi.parallax.ml.objective.FoldEvaluator;
 import com.dsi.parallax.ml.objective.MaxScorer;
+import com.dsi.parallax.ml.objective.MedianScorer;
 import com.dsi.parallax.ml.objective.MinScorer;
 import com.dsi.parallax.ml.target.BinaryClassificationTarget;
 import com.dsi.parallax.ml.testutils.TestUtils;
@@ -24,6 +25,81 @@ public class TestFoldEvaluator {
 
 	int folds = 10;
 
+	@Test
+	public void testSharedAndPrivateExecutorsAgree() {
+		BinaryClassificationInstances instances = TestUtils.getTextInstances();
+		LogisticRegressionBuilder builder = new LogisticRegressionBuilder(
+				instances.getDimensions(), true);
+
+		double serial = new FoldEvaluator(folds, 1).evaluate(instances,
+				new MedianScorer<BinaryClassificationTarget>(new AUCObjective()),
+				builder);
+		double shared = new FoldEvaluator(folds).evaluate(instances,
+				new MedianScorer<BinaryClassificationTarget>(new AUCObjective()),
+				builder);
+		double threaded = new FoldEvaluator(folds, 4).evaluate(instances,
+				new MedianScorer<BinaryClassificationTarget>(new AUCObjective()),
+				builder);
+		assertEquals(serial, shared, 0.0001);
+		assertEquals(serial, threaded, 0.0001);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFoldErrorsReachTheCaller() {
+		BinaryClassificationInstances instances = TestUtils.getTextInstances();
+		FoldEvaluator feval = new FoldEvaluator(folds);
+		feval.evaluate(instances, new AUCObjective(),
+				new FailingBuilder(instances.getDimensions()));
+	}
+
+	/**
+	 * a builder whose models can't be built, so every fold fails.
+	 */
+	private static class FailingBuilder extends LogisticRegressionBuilder {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = -2742153361047862397L;
+
+		FailingBuilder(int dimension) {
+			super(dimension, true);
+		}
+
+		@Override
+		public LogisticRegression build() {
+			throw new IllegalStateException("failing on purpose");
+		}
+	}
+
+	/**
+	 * pooling merges each fold's partial, so it should match accumulating
+	 * every fold's held out predictions into one.
+	 */
+	@Test
+	public void testPooled() {
+		BinaryClassificationInstances instances = TestUtils.getTextInstances();
+		LogisticRegressionBuilder builder = new LogisticRegressionBuilder(
+				instances.getDimensions(), true);
+
+		ReceiverOperatingCharacteristic ROC = new ReceiverOperatingCharacteristic();
+		ConfusionMatrix conf = new ConfusionMatrix(2);
+		for (int fold = 0; fold < folds; fold++) {
+			LogisticRegression model = builder.build();
+			model.train(instances.getTrainingView(fold, folds));
+			for (BinaryClassificationInstance inst : instances.getTestingView(
+					fold, folds)) {
+				BinaryClassificationTarget pred = model.predict(inst);
+				ROC.add(inst.getLabel(), pred);
+				conf.addInfo(inst.getLabel(), pred);
+			}
+		}
+		FoldEvaluator feval = new FoldEvaluator(folds, 4);
+		assertEquals(ROC.binaryAUC(),
+				feval.evaluatePooled(instances, new AUCObjective(), builder),
+				1e-9);
+		assertEquals(conf.computeAccuracy(), feval.evaluatePooled(instances,
+				new AccuracyObjective(), builder), 1e-9);
+	}
+
     @Ignore
 	@Test
 	public void testFolds() throws InterruptedException {
@@ -3,9 +3,12 @@
  ******************************************************************************/
 package com.dsi.parallax.ml.projection;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -40,4 +43,85 @@ public class TestPrincipalComponentsAnalysis {
             
     }
 
+    /**
+     * the approximate types capture as much variance as the exact components
+     * and reconstruct samples as well.
+     */
+    @Test
+    public void testApproximateTypesMatchExact() {
+        List<LinearVector> X = lowRank(600, 40, 1);
+        PrincipalComponentsAnalysis exact = new PrincipalComponentsAnalysis(40, 3, X);
+        for (PCAType type : new PCAType[] { PCAType.RANDOMIZED, PCAType.FREQUENT_DIRECTIONS }) {
+            PrincipalComponentsAnalysis pca = new PrincipalComponentsAnalysis(40, 3).setType(type);
+            pca.build(X);
+            assertTrue(pca.isBuilt());
+            assertEquals(1, capturedVariance(pca, X) / capturedVariance(exact, X), 1e-3);
+            for (LinearVector x : X)
+                assertEquals(exact.errorMembership(x.getW()), pca.errorMembership(x.getW()), 1e-2);
+        }
+    }
+
+    /**
+     * small sketches of partitions, shrunk many times, merge into a sketch as
+     * good as one of the whole.
+     */
+    @Test
+    public void testMergedSketches() {
+        List<LinearVector> X = lowRank(900, 30, 2);
+        PrincipalComponentsAnalysis exact = new PrincipalComponentsAnalysis(30, 3, X);
+        PrincipalComponentsAnalysis pca = new PrincipalComponentsAnalysis(30, 3).setSketchSize(8);
+        FrequentDirections merged = pca.newSketch();
+        for (int p = 0; p < 3; p++) {
+            FrequentDirections sketch = pca.newSketch();
+            for (LinearVector x : X.subList(300 * p, 300 * (p + 1)))
+                sketch.add(x);
+            merged.merge(sketch);
+        }
+        assertEquals(X.size(), merged.getCount());
+        assertTrue(merged.getSketch().numRows <= 8);
+        pca.build(merged);
+        assertEquals(1, capturedVariance(pca, X) / capturedVariance(exact, X), 1e-2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeWithItself() {
+        FrequentDirections sketch = new PrincipalComponentsAnalysis(30, 3).newSketch();
+        sketch.add(lowRank(1, 30, 3).get(0));
+        sketch.merge(sketch);
+    }
+
+    /**
+     * sparse samples near a rank 3 subspace, away from the origin
+     */
+    private List<LinearVector> lowRank(int size, int dimension, long seed) {
+        Random random = new Random(seed);
+        double[][] basis = new double[3][dimension];
+        for (double[] direction : basis)
+            for (int j = 0; j < dimension; j++)
+                direction[j] = random.nextDouble() < .5 ? 0 : random.nextGaussian();
+        double[] scales = new double[] { 10, 5, 2 };
+        List<LinearVector> X = Lists.newArrayList();
+        for (int i = 0; i < size; i++) {
+            LinearVector x = LinearVectorFactory.getVector(dimension);
+            for (int c = 0; c < 3; c++) {
+                double weight = scales[c] * random.nextGaussian();
+                for (int j = 0; j < dimension; j++)
+                    if (basis[c][j] != 0)
+                        x.updateValue(j, weight * basis[c][j]);
+            }
+            x.updateValue(0, 20);
+            x.updateValue(1 + random.nextInt(dimension - 1), random.nextGaussian() * .1);
+            X.add(x);
+        }
+        return X;
+    }
+
+    private double capturedVariance(PrincipalComponentsAnalysis pca, Collection<LinearVector> X) {
+        double total = 0;
+        for (LinearVector x : X)
+            for (double value : pca.sampleToEigenSpace(x.getW()))
+                total += value * value;
+        return total;
+    }
+
 }
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.trees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.instance.Instances;
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.testutils.TestUtils;
+import com.dsi.parallax.ml.util.pair.GenericPair;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * The Class TestHistogramAttributeValueCache.
+ */
+public class TestHistogramAttributeValueCache {
+
+	static List<BinaryLabelCountSplitCriterion> criteria = Lists
+			.<BinaryLabelCountSplitCriterion> newArrayList(
+					new BinaryTargetInfoGainSplitCriterion(),
+					new BinaryTargetGiniSplitCriterion(),
+					new BinaryTargetHellingerSplitCriterion());
+
+	/**
+	 * dense data with negative values, zeros and many ties.
+	 */
+	private static BinaryClassificationInstances getTiedInstances() {
+		Random random = new Random(17);
+		int dimensions = 6;
+		BinaryClassificationInstances insts = new BinaryClassificationInstances(
+				dimensions);
+		for (int i = 0; i < 300; i++) {
+			double[] values = new double[dimensions];
+			for (int dim = 0; dim < dimensions; dim++)
+				values[dim] = random.nextInt(7) - 3;
+			double label = values[0] + values[1] + random.nextGaussian() > 0 ? 1
+					: 0;
+			insts.addInstance(new BinaryClassificationInstance(label, values));
+		}
+		return insts;
+	}
+
+	/**
+	 * the best split over every threshold between distinct values.
+	 */
+	private static double exhaustive(BinaryLabelCountSplitCriterion criterion,
+			Instances<? extends Instance<BinaryClassificationTarget>> insts,
+			int dim) {
+		Set<Double> values = Sets.newTreeSet();
+		for (Instance<BinaryClassificationTarget> inst : insts)
+			values.add(inst.getFeatureValue(dim));
+		double best = Double.NEGATIVE_INFINITY;
+		for (double split : values) {
+			double[][] counts = new double[2][2];
+			for (Instance<BinaryClassificationTarget> inst : insts)
+				counts[inst.getFeatureValue(dim) > split ? 1 : 0][inst
+						.getLabel().getValue() > 0.5 ? 1 : 0]++;
+			if (counts[1][0] + counts[1][1] > 0)
+				best = Math.max(best, criterion.computeObjective(counts));
+		}
+		return best;
+	}
+
+	@Test
+	public void testExactWithFewValues() {
+		for (BinaryClassificationInstances insts : Lists.newArrayList(
+				getTiedInstances(), TestUtils.getTextInstances())) {
+			Set<Integer> dims = Sets.newTreeSet();
+			for (BinaryClassificationInstance inst : insts)
+				for (int dim : inst)
+					dims.add(dim);
+			// every distinct value gets its own bin
+			HistogramAttributeValueCache binned = new HistogramAttributeValueCache();
+			for (BinaryLabelCountSplitCriterion criterion : criteria) {
+				for (int dim : dims) {
+					Benefit benefit = binned.buildSplit(criterion, insts, dim);
+					assertEquals(dim, benefit.getIndex());
+					assertEquals(exhaustive(criterion, insts, dim),
+							benefit.getUtility(), 1e-12);
+				}
+			}
+			// a feature that's zero everywhere can't be split
+			int unused = 0;
+			while (dims.contains(unused))
+				unused++;
+			if (unused < insts.getDimensions())
+				assertEquals(Double.NEGATIVE_INFINITY,
+						binned.buildSplit(criteria.get(0), insts, unused)
+								.getUtility(), 0);
+		}
+	}
+
+	@Test
+	public void testCoarseBins() {
+		for (BinaryClassificationInstances insts : Lists.newArrayList(
+				getTiedInstances(), TestUtils.getIrisInstances())) {
+			HistogramAttributeValueCache binned = new HistogramAttributeValueCache(
+					3);
+			for (BinaryLabelCountSplitCriterion criterion : criteria) {
+				for (int dim = 0; dim < insts.getDimensions(); dim++) {
+					Benefit coarse = binned.buildSplit(criterion, insts, dim);
+					assertTrue(coarse.getUtility() > Double.NEGATIVE_INFINITY);
+					assertTrue(coarse.getUtility() <= exhaustive(criterion,
+							insts, dim) + 1e-12);
+					// the split really does what the bins claim
+					GenericPair<BinaryClassificationInstances, BinaryClassificationInstances> leftAndRight = insts
+							.splitOnValue(dim, coarse.getSplit());
+					double[][] counts = new double[2][2];
+					for (BinaryClassificationInstance inst : leftAndRight.first)
+						counts[0][inst.getLabel().getValue() > 0.5 ? 1 : 0]++;
+					for (BinaryClassificationInstance inst : leftAndRight.second)
+						counts[1][inst.getLabel().getValue() > 0.5 ? 1 : 0]++;
+					assertEquals(criterion.computeObjective(counts),
+							coarse.getUtility(), 1e-12);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSubtractedChildMatchesCountedChild() {
+		BinaryClassificationInstances insts = getTiedInstances();
+		BinaryLabelCountSplitCriterion criterion = new BinaryTargetInfoGainSplitCriterion();
+		for (double split : new double[] { -2.5, 0.5, 1.5 }) {
+			GenericPair<BinaryClassificationInstances, BinaryClassificationInstances> leftAndRight = insts
+					.splitOnValue(1, split);
+			HistogramAttributeValueCache binned = new HistogramAttributeValueCache(
+					16);
+			binned.buildSplit(criterion, insts, 0);
+			binned.partition(insts, leftAndRight.first, leftAndRight.second,
+					1, split);
+
+			// with exact bins, the children search the same partitions as a
+			// fresh cache built on each child
+			for (BinaryClassificationInstances child : Lists.newArrayList(
+					leftAndRight.first, leftAndRight.second)) {
+				HistogramAttributeValueCache fresh = new HistogramAttributeValueCache(
+						16);
+				for (int dim = 0; dim < insts.getDimensions(); dim++)
+					assertEquals(fresh.buildSplit(criterion, child, dim)
+							.getUtility(), binned
+							.buildSplit(criterion, child, dim).getUtility(), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testTreesBuild() {
+		for (BinaryClassificationInstances insts : Lists.newArrayList(
+				getTiedInstances(), TestUtils.getIrisInstances(),
+				TestUtils.getTextInstances())) {
+			final List<Integer> leafSizes = Lists.newArrayList();
+			new TreeBuilder<BinaryClassificationTarget>(insts)
+					.addTerminator(new EmptyTerminator<BinaryClassificationTarget>())
+					.addTerminator(
+							new SingleLabelTerminator<BinaryClassificationTarget>())
+					.addTerminator(
+							new MaximumDepthTerminator<BinaryClassificationTarget>(6))
+					.setSplitCriterion(new BinaryTargetInfoGainSplitCriterion())
+					.setAttributeValueCache(new HistogramAttributeValueCache(8))
+					.setSplitter(new CumulativeCountSplitter())
+					.setLeafCreator(new LeafCreator<BinaryClassificationTarget>() {
+						@Override
+						public Tree<BinaryClassificationTarget> changeTreeToLeaf(
+								Tree<BinaryClassificationTarget> node,
+								Instances<? extends Instance<BinaryClassificationTarget>> instances) {
+							leafSizes.add(instances.size());
+							node.setToLeaf();
+							return node;
+						}
+					}).buildTree(insts);
+			assertTrue(leafSizes.size() > 1);
+			int total = 0;
+			for (int size : leafSizes)
+				total += size;
+			assertEquals(insts.size(), total);
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.trees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.instance.Instances;
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.testutils.TestUtils;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * The Class TestParallelTreeBuilder.
+ */
+public class TestParallelTreeBuilder {
+
+	private static BinaryClassificationInstances getInstances() {
+		Random random = new Random(23);
+		int dimensions = 20;
+		BinaryClassificationInstances insts = new BinaryClassificationInstances(
+				dimensions);
+		for (int i = 0; i < 2000; i++) {
+			double[] values = new double[dimensions];
+			for (int dim = 0; dim < dimensions; dim++)
+				values[dim] = random.nextInt(5) == 0 ? 0 : random
+						.nextGaussian();
+			double label = values[0] - values[1] * values[2]
+					+ random.nextGaussian() / 2 > 0 ? 1 : 0;
+			insts.addInstance(new BinaryClassificationInstance(label, values));
+		}
+		return insts;
+	}
+
+	/**
+	 * the leaf each instance ends up in, described by the leaf's size and
+	 * number of positives.
+	 */
+	private static List<String> describe(BinaryClassificationInstances insts,
+			AttributeValueCache cache, ProjectionFactory projections,
+			int threads) {
+		final Map<Tree<BinaryClassificationTarget>, String> leaves = Maps
+				.newHashMap();
+		TreeBuilder<BinaryClassificationTarget> builder = new TreeBuilder<BinaryClassificationTarget>(
+				insts)
+				.addTerminator(new EmptyTerminator<BinaryClassificationTarget>())
+				.addTerminator(
+						new SingleLabelTerminator<BinaryClassificationTarget>())
+				.addTerminator(
+						new MaximumDepthTerminator<BinaryClassificationTarget>(8))
+				.setSplitCriterion(new BinaryTargetInfoGainSplitCriterion())
+				.setAttributeValueCache(cache)
+				.setSplitter(new CumulativeCountSplitter())
+				.setLeafCreator(new LeafCreator<BinaryClassificationTarget>() {
+					@Override
+					public Tree<BinaryClassificationTarget> changeTreeToLeaf(
+							Tree<BinaryClassificationTarget> node,
+							Instances<? extends Instance<BinaryClassificationTarget>> instances) {
+						int positives = 0;
+						for (Instance<BinaryClassificationTarget> inst : instances)
+							if (inst.getLabel().getValue() > 0.5)
+								positives++;
+						synchronized (leaves) {
+							leaves.put(node, positives + "/" + instances.size());
+						}
+						node.setToLeaf();
+						return node;
+					}
+				}).setThreads(threads).setParallelThreshold(50);
+		if (null != projections)
+			builder.setProjectionFactory(projections).setProjectionRatio(0.8);
+		Root<BinaryClassificationTarget> root = builder.buildTree(insts);
+		assertTrue(leaves.size() > 1);
+
+		List<String> out = Lists.newArrayList();
+		for (BinaryClassificationInstance inst : insts)
+			out.add(leaves.get(root.decendTree(inst)));
+		return out;
+	}
+
+	@Test
+	public void testThreadsBuildTheSameTree() {
+		BinaryClassificationInstances insts = getInstances();
+		List<String> expected = describe(insts,
+				new PresortedAttributeValueCache(), null, 1);
+		for (int threads : new int[] { 2, 4, 7 })
+			assertEquals(expected,
+					describe(insts, new PresortedAttributeValueCache(), null,
+							threads));
+
+		expected = describe(insts, new RecomputingAttributeValueCache(), null,
+				1);
+		assertEquals(expected,
+				describe(insts, new RecomputingAttributeValueCache(), null, 4));
+
+		expected = describe(insts, new HistogramAttributeValueCache(32), null,
+				1);
+		assertEquals(expected,
+				describe(insts, new HistogramAttributeValueCache(32), null, 4));
+	}
+
+	@Test
+	public void testProjectionsAreSeededByNode() {
+		BinaryClassificationInstances insts = getInstances();
+		List<String> expected = describe(insts,
+				new PresortedAttributeValueCache(),
+				new RandomProjectionFactory(5), 1);
+		assertEquals(
+				expected,
+				describe(insts, new PresortedAttributeValueCache(),
+						new RandomProjectionFactory(5), 4));
+	}
+
+	/**
+	 * every node of a deep tree gets its own position, so its own projection
+	 */
+	@Test
+	public void testChildNodesAreDistinct() {
+		Set<Long> seen = Sets.newHashSet();
+		List<Long> level = Lists.newArrayList(1L);
+		seen.add(1L);
+		for (int depth = 1; depth <= 16; depth++) {
+			List<Long> next = Lists.newArrayList();
+			for (long node : level)
+				for (int child = 1; child <= 2; child++)
+					next.add(TreeBuilder.childNode(node, child));
+			for (long node : next)
+				assertTrue(seen.add(node));
+			level = next;
+		}
+	}
+
+	@Test
+	public void testSparseInstances() {
+		BinaryClassificationInstances text = TestUtils.getTextInstances();
+		assertEquals(
+				describe(text, new PresortedAttributeValueCache(), null, 1),
+				describe(text, new PresortedAttributeValueCache(), null, 3));
+	}
+}
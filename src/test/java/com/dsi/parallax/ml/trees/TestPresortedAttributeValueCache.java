@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.trees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
+import com.dsi.parallax.ml.instance.BinaryClassificationInstances;
+import com.dsi.parallax.ml.instance.Instance;
+import com.dsi.parallax.ml.instance.Instances;
+import com.dsi.parallax.ml.target.BinaryClassificationTarget;
+import com.dsi.parallax.ml.testutils.TestUtils;
+import com.dsi.parallax.ml.util.pair.GenericPair;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * The Class TestPresortedAttributeValueCache.
+ */
+public class TestPresortedAttributeValueCache {
+
+	static List<BinaryLabelCountSplitCriterion> criteria = Lists
+			.<BinaryLabelCountSplitCriterion> newArrayList(
+					new BinaryTargetInfoGainSplitCriterion(),
+					new BinaryTargetGiniSplitCriterion(),
+					new BinaryTargetHellingerSplitCriterion());
+
+	/**
+	 * dense data with negative values, zeros and many ties.
+	 */
+	private static BinaryClassificationInstances getTiedInstances() {
+		Random random = new Random(17);
+		int dimensions = 6;
+		BinaryClassificationInstances insts = new BinaryClassificationInstances(
+				dimensions);
+		for (int i = 0; i < 300; i++) {
+			double[] values = new double[dimensions];
+			for (int dim = 0; dim < dimensions; dim++)
+				values[dim] = random.nextInt(7) - 3;
+			double label = values[0] + values[1] + random.nextGaussian() > 0 ? 1
+					: 0;
+			insts.addInstance(new BinaryClassificationInstance(label, values));
+		}
+		return insts;
+	}
+
+	private static void assertSameSplits(
+			Instances<? extends Instance<BinaryClassificationTarget>> insts,
+			Iterable<Integer> dims) {
+		OrderedSplitter<BinaryClassificationTarget> ordered = new OrderedSplitter<BinaryClassificationTarget>();
+		CumulativeCountSplitter cumulative = new CumulativeCountSplitter();
+		RecomputingAttributeValueCache recomputing = new RecomputingAttributeValueCache();
+		PresortedAttributeValueCache presorted = new PresortedAttributeValueCache();
+		for (BinaryLabelCountSplitCriterion criterion : criteria) {
+			for (int dim : dims) {
+				AttributeValueSet<BinaryClassificationTarget> set = recomputing
+						.getAttributeValueSet(insts, dim);
+				Benefit expected = ordered.buildSplit(criterion, set, dim);
+				assertSameBenefit(expected,
+						cumulative.buildSplit(criterion, set, dim));
+				assertSameBenefit(expected,
+						presorted.buildSplit(criterion, insts, dim));
+			}
+		}
+	}
+
+	private static void assertSameBenefit(Benefit expected, Benefit actual) {
+		assertEquals(expected.getIndex(), actual.getIndex());
+		assertEquals(expected.getUtility(), actual.getUtility(), 0);
+		assertEquals(expected.getSplit(), actual.getSplit(), 0);
+	}
+
+	private static List<Integer> range(int dimensions) {
+		List<Integer> dims = Lists.newArrayList();
+		for (int dim = 0; dim < dimensions; dim++)
+			dims.add(dim);
+		return dims;
+	}
+
+	@Test
+	public void testSplitsMatchOrderedSplitter() {
+		BinaryClassificationInstances tied = getTiedInstances();
+		assertSameSplits(tied, range(tied.getDimensions()));
+
+		BinaryClassificationInstances iris = TestUtils.getIrisInstances();
+		assertSameSplits(iris, range(iris.getDimensions()));
+	}
+
+	@Test
+	public void testSparseSplitsMatchOrderedSplitter() {
+		BinaryClassificationInstances text = TestUtils.getTextInstances();
+		Set<Integer> dims = Sets.newTreeSet();
+		for (BinaryClassificationInstance inst : text)
+			for (int dim : inst)
+				dims.add(dim);
+		assertTrue(dims.size() > 0);
+		// a few features that are zero everywhere
+		int used = dims.size();
+		for (int dim = 0; dims.size() < used + 5; dim++)
+			dims.add(dim);
+		assertSameSplits(text, dims);
+	}
+
+	@Test
+	public void testPartitionMatchesResorting() {
+		BinaryClassificationInstances insts = getTiedInstances();
+		PresortedAttributeValueCache presorted = new PresortedAttributeValueCache();
+		BinaryLabelCountSplitCriterion criterion = new BinaryTargetInfoGainSplitCriterion();
+
+		Benefit best = presorted.buildSplit(criterion, insts, 0);
+		GenericPair<BinaryClassificationInstances, BinaryClassificationInstances> leftAndRight = insts
+				.splitOnValue(best.getIndex(), best.getSplit());
+		presorted.partition(insts, leftAndRight.first, leftAndRight.second,
+				best.getIndex(), best.getSplit());
+		presorted.release(insts);
+
+		PresortedAttributeValueCache fresh = new PresortedAttributeValueCache();
+		for (int dim = 0; dim < insts.getDimensions(); dim++) {
+			assertSameBenefit(
+					fresh.buildSplit(criterion, leftAndRight.first, dim),
+					presorted.buildSplit(criterion, leftAndRight.first, dim));
+			assertSameBenefit(
+					fresh.buildSplit(criterion, leftAndRight.second, dim),
+					presorted.buildSplit(criterion, leftAndRight.second, dim));
+		}
+	}
+
+	@Test
+	public void testTreesMatch() {
+		for (BinaryClassificationInstances insts : Lists.newArrayList(
+				getTiedInstances(), TestUtils.getIrisInstances())) {
+			for (BinaryLabelCountSplitCriterion criterion : criteria) {
+				RecordingLeafCreator expected = new RecordingLeafCreator();
+				buildTree(insts, criterion, new RecomputingAttributeValueCache(),
+						new OrderedSplitter<BinaryClassificationTarget>(),
+						expected);
+				RecordingLeafCreator actual = new RecordingLeafCreator();
+				buildTree(insts, criterion, new PresortedAttributeValueCache(),
+						new CumulativeCountSplitter(), actual);
+				assertTrue(expected.leaves.size() > 1);
+				assertEquals(expected.leaves, actual.leaves);
+			}
+		}
+	}
+
+	private static void buildTree(BinaryClassificationInstances insts,
+			BinaryLabelCountSplitCriterion criterion,
+			AttributeValueCache cache,
+			Splitter<BinaryClassificationTarget> splitter,
+			LeafCreator<BinaryClassificationTarget> leafCreator) {
+		new TreeBuilder<BinaryClassificationTarget>(insts)
+				.addTerminator(new EmptyTerminator<BinaryClassificationTarget>())
+				.addTerminator(
+						new SingleLabelTerminator<BinaryClassificationTarget>())
+				.addTerminator(
+						new MaximumDepthTerminator<BinaryClassificationTarget>(6))
+				.setSplitCriterion(criterion).setAttributeValueCache(cache)
+				.setSplitter(splitter).setLeafCreator(leafCreator)
+				.buildTree(insts);
+	}
+
+	/**
+	 * remembers the instances at each leaf, in the order leaves are made.
+	 */
+	private static class RecordingLeafCreator implements
+			LeafCreator<BinaryClassificationTarget> {
+		List<List<? extends Instance<BinaryClassificationTarget>>> leaves = Lists
+				.newArrayList();
+
+		@Override
+		public Tree<BinaryClassificationTarget> changeTreeToLeaf(
+				Tree<BinaryClassificationTarget> node,
+				Instances<? extends Instance<BinaryClassificationTarget>> instances) {
+			leaves.add(Lists.newArrayList(instances));
+			node.setToLeaf();
+			return node;
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestContingencyTable {
+
+	@Test
+	public void testAddAndMerge() {
+		ContingencyTable whole = new ContingencyTable(2, 3);
+		ContingencyTable first = new ContingencyTable(2, 3);
+		ContingencyTable second = new ContingencyTable(2, 3);
+		for (int i = 0; i < 40; i++) {
+			int row = i % 2, col = (i / 2) % 3;
+			double weight = 1 + (i % 4);
+			whole.addValue(row, col, weight);
+			(i < 25 ? first : second).addValue(row, col, weight);
+		}
+		ContingencyTable merged = new ContingencyTable(first).merge(second);
+		assertEquals(whole.getTotal(), merged.getTotal(), 0);
+		for (int row = 0; row < 2; row++) {
+			assertEquals(whole.probOfRow(row), merged.probOfRow(row), 1e-12);
+			for (int col = 0; col < 3; col++)
+				assertEquals(whole.getValue(row, col),
+						merged.getValue(row, col), 0);
+		}
+		assertEquals(whole.chiVal(false), merged.chiVal(false), 1e-9);
+		assertEquals(whole.entropyConditionedOnRows(),
+				merged.entropyConditionedOnRows(), 1e-12);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeMismatched() {
+		new ContingencyTable(2, 2).merge(new ContingencyTable(2, 3));
+	}
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math.stat.descriptive.SummaryStatistics;
+import org.junit.Test;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.ml.vector.LinearVectorFactory;
+import com.google.common.collect.Lists;
+
+public class TestFeatureStatistics {
+
+	int dimension = 20;
+
+	@Test
+	public void testMatchesSummaryStatistics() {
+		List<LinearVector> vectors = sparseVectors(500, 3);
+		FeatureStatistics stats = FeatureStatistics.fit(vectors);
+		assertEquals(vectors.size(), stats.getCount());
+		assertEquals(dimension, stats.getDimension());
+		for (int x_i = 0; x_i < dimension; x_i++) {
+			SummaryStatistics expected = new SummaryStatistics();
+			for (LinearVector vect : vectors)
+				expected.addValue(vect.getValue(x_i));
+			assertEquals(expected.getMean(), stats.getMean(x_i), 1e-10);
+			assertEquals(expected.getStandardDeviation(),
+					stats.getStandardDeviation(x_i), 1e-10);
+		}
+	}
+
+	@Test
+	public void testMergeMatchesOnePass() {
+		List<LinearVector> vectors = sparseVectors(301, 7);
+		FeatureStatistics whole = FeatureStatistics.fit(vectors);
+		FeatureStatistics merged = FeatureStatistics.fit(vectors.subList(0,
+				100));
+		merged.merge(FeatureStatistics.fit(vectors.subList(100, 101)));
+		merged.merge(new FeatureStatistics());
+		merged.merge(FeatureStatistics.fit(vectors.subList(101, 301)));
+		assertEquals(whole.getCount(), merged.getCount());
+		assertArrayEquals(whole.getMeans(), merged.getMeans(), 1e-10);
+		assertArrayEquals(whole.getStandardDeviations(),
+				merged.getStandardDeviations(), 1e-10);
+
+		FeatureStatistics threaded = FeatureStatistics.fit(vectors, 4);
+		assertArrayEquals(whole.getMeans(), threaded.getMeans(), 1e-10);
+		assertArrayEquals(whole.getStandardDeviations(),
+				threaded.getStandardDeviations(), 1e-10);
+	}
+
+	@Test
+	public void testDegenerate() {
+		FeatureStatistics stats = new FeatureStatistics();
+		LinearVector vect = LinearVectorFactory.getVector(3);
+		vect.resetValue(1, 4);
+		stats.add(vect);
+		assertEquals(4, stats.getMean(1), 0);
+		assertEquals(0, stats.getMean(0), 0);
+		assertEquals(0, stats.getStandardDeviation(1), 0);
+	}
+
+	/**
+	 * vectors with a few non-zero features, some shared by every vector
+	 */
+	private List<LinearVector> sparseVectors(int size, long seed) {
+		Random random = new Random(seed);
+		List<LinearVector> vectors = Lists.newArrayList();
+		for (int i = 0; i < size; i++) {
+			LinearVector vect = LinearVectorFactory.getVector(dimension);
+			vect.resetValue(0, 1000 + random.nextGaussian());
+			for (int j = 0; j < 4; j++)
+				vect.resetValue(1 + random.nextInt(dimension - 2),
+						random.nextGaussian() * 5 + 3);
+			vectors.add(vect);
+		}
+		return vectors;
+	}
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.util.FlatKDTree.Metric;
+import com.dsi.parallax.ml.util.KDTree.Entry;
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.ml.vector.LinearVectorFactory;
+import com.google.common.collect.Lists;
+
+/**
+ * The Class TestFlatKDTree.
+ */
+public class TestFlatKDTree {
+
+	private static final int DIM = 4;
+
+	private static List<LinearVector> getPoints(Random random, int size,
+			boolean withNaN) {
+		List<LinearVector> points = Lists.newArrayList();
+		for (int i = 0; i < size; i++) {
+			double[] values = new double[DIM];
+			for (int d = 0; d < DIM; d++) {
+				int r = random.nextInt(10);
+				values[d] = r == 0 ? random.nextInt(2)
+						: withNaN && r == 1 ? Double.NaN : random
+								.nextGaussian();
+			}
+			points.add(LinearVectorFactory.getVector(values));
+		}
+		return points;
+	}
+
+	private static double distance(LinearVector x, LinearVector y,
+			Metric metric) {
+		double d = 0;
+		for (int i = 0; i < DIM; i++) {
+			double diff = x.getValue(i) - y.getValue(i);
+			if (!Double.isNaN(diff))
+				d += metric == Metric.MANHATTAN ? Math.abs(diff) : diff * diff;
+		}
+		return d;
+	}
+
+	private static void assertNeighbors(List<LinearVector> live,
+			List<LinearVector> all, LinearVector query, int k, Metric metric,
+			List<Entry<Integer>> neighbors) {
+		double[] dists = new double[live.size()];
+		for (int i = 0; i < dists.length; i++)
+			dists[i] = distance(live.get(i), query, metric);
+		Arrays.sort(dists);
+		double[] expected = Arrays.copyOf(dists, Math.min(k, dists.length));
+
+		assertEquals(expected.length, neighbors.size());
+		double[] found = new double[neighbors.size()];
+		for (int i = 0; i < found.length; i++) {
+			Entry<Integer> entry = neighbors.get(i);
+			found[i] = entry.distance;
+			assertTrue(all.get(entry.value) == entry.position);
+			assertTrue(live.contains(entry.position));
+			assertEquals(distance(entry.position, query, metric),
+					entry.distance, 1e-12);
+		}
+		Arrays.sort(found);
+		for (int i = 0; i < found.length; i++)
+			assertEquals(expected[i], found[i], 1e-12);
+	}
+
+	@Test
+	public void testMatchesBruteForce() {
+		Random random = new Random(3);
+		for (Metric metric : Metric.values()) {
+			for (boolean withNaN : new boolean[] { false, true }) {
+				List<LinearVector> points = getPoints(random, 3000, withNaN);
+				FlatKDTree<Integer> tree = new FlatKDTree<Integer>(DIM, null,
+						metric);
+				for (int i = 0; i < points.size(); i++) {
+					tree.addPoint(points.get(i), i);
+					// queries part way through see indexed and pending points
+					if (i % 997 == 0) {
+						LinearVector query = getPoints(random, 1, withNaN).get(0);
+						assertNeighbors(points.subList(0, i + 1), points,
+								query, 5, metric,
+								tree.nearestNeighbor(query, 5, false));
+					}
+				}
+				assertEquals(points.size(), tree.size());
+				for (LinearVector query : getPoints(random, 50, withNaN)) {
+					for (int k : new int[] { 1, 10, 40 }) {
+						assertNeighbors(points, points, query, k, metric,
+								tree.nearestNeighbor(query, k, false));
+						List<Entry<Integer>> sorted = tree.nearestNeighbor(
+								query, k, true);
+						assertNeighbors(points, points, query, k, metric,
+								sorted);
+						for (int i = 1; i < sorted.size(); i++)
+							assertTrue(sorted.get(i - 1).distance >= sorted
+									.get(i).distance);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSizeLimit() {
+		Random random = new Random(4);
+		List<LinearVector> points = getPoints(random, 2000, false);
+		for (double rebuildFraction : new double[] { 0.05, 0.25, 4 }) {
+			FlatKDTree<Integer> tree = new FlatKDTree<Integer>(DIM, 300,
+					Metric.SQREUCLID);
+			tree.setRebuildFraction(rebuildFraction);
+			for (int i = 0; i < points.size(); i++) {
+				tree.addPoint(points.get(i), i);
+				if (i % 101 == 0) {
+					List<LinearVector> live = points.subList(
+							Math.max(0, i - 299), i + 1);
+					assertEquals(live.size(), tree.size());
+					LinearVector query = getPoints(random, 1, false).get(0);
+					assertNeighbors(live, points, query, 7, Metric.SQREUCLID,
+							tree.nearestNeighbor(query, 7, false));
+				}
+			}
+			tree.rebuild();
+			LinearVector query = getPoints(random, 1, false).get(0);
+			assertNeighbors(points.subList(1700, 2000), points, query, 300,
+					Metric.SQREUCLID, tree.nearestNeighbor(query, 400, false));
+		}
+	}
+
+	@Test
+	public void testDuplicatesAndBatch() {
+		List<LinearVector> points = Lists.newArrayList();
+		for (int i = 0; i < 500; i++)
+			points.add(LinearVectorFactory.getVector(new double[] { i % 3, 1,
+					1, 0 }));
+		FlatKDTree<Integer> tree = new FlatKDTree<Integer>(DIM, null,
+				Metric.SQREUCLID);
+		for (int i = 0; i < points.size(); i++)
+			tree.addPoint(points.get(i), i);
+		tree.rebuild();
+		List<LinearVector> queries = getPoints(new Random(5), 20, false);
+		List<List<Entry<Integer>>> batch = tree.nearestNeighbors(queries, 9,
+				false, 3);
+		for (int i = 0; i < queries.size(); i++)
+			assertNeighbors(points, points, queries.get(i), 9,
+					Metric.SQREUCLID, batch.get(i));
+	}
+}
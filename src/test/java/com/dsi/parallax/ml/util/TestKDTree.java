@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.util.KDTree.Entry;
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.ml.vector.LinearVectorFactory;
+import com.google.common.collect.Lists;
+
+/**
+ * The Class TestKDTree.
+ */
+public class TestKDTree {
+
+	private static final int DIM = 3;
+
+	private static List<LinearVector> getPoints(Random random, int size) {
+		List<LinearVector> points = Lists.newArrayList();
+		for (int i = 0; i < size; i++) {
+			double[] values = new double[DIM];
+			for (int d = 0; d < DIM; d++)
+				values[d] = random.nextInt(4) == 0 ? random.nextInt(3)
+						: random.nextGaussian();
+			points.add(LinearVectorFactory.getVector(values));
+		}
+		return points;
+	}
+
+	private static double sqrDist(LinearVector x, LinearVector y) {
+		double d = 0;
+		for (int i = 0; i < DIM; i++)
+			d += (x.getValue(i) - y.getValue(i)) * (x.getValue(i) - y.getValue(i));
+		return d;
+	}
+
+	// distances to the k nearest points, smallest first
+	private static double[] bruteForce(List<LinearVector> points,
+			LinearVector query, int k) {
+		double[] dists = new double[points.size()];
+		for (int i = 0; i < dists.length; i++)
+			dists[i] = sqrDist(points.get(i), query);
+		Arrays.sort(dists);
+		return Arrays.copyOf(dists, Math.min(k, dists.length));
+	}
+
+	private static void assertNeighbors(double[] expected,
+			List<Entry<Integer>> neighbors, List<LinearVector> points,
+			LinearVector query) {
+		assertEquals(expected.length, neighbors.size());
+		double[] found = new double[neighbors.size()];
+		for (int i = 0; i < found.length; i++) {
+			Entry<Integer> entry = neighbors.get(i);
+			found[i] = entry.distance;
+			// each entry's position and value agree with its distance
+			assertTrue(points.get(entry.value) == entry.position);
+			assertEquals(entry.distance, sqrDist(entry.position, query), 1e-12);
+		}
+		Arrays.sort(found);
+		for (int i = 0; i < found.length; i++)
+			assertEquals(expected[i], found[i], 1e-12);
+	}
+
+	private static KDTree<Integer> buildTree(List<LinearVector> points) {
+		KDTree<Integer> tree = new KDTree.SqrEuclid<Integer>(DIM, null);
+		for (int i = 0; i < points.size(); i++)
+			tree.addPoint(points.get(i), i);
+		return tree;
+	}
+
+	@Test
+	public void testMatchesBruteForce() {
+		Random random = new Random(7);
+		List<LinearVector> points = getPoints(random, 2000);
+		KDTree<Integer> tree = buildTree(points);
+		assertEquals(points.size(), tree.size());
+		for (LinearVector query : getPoints(random, 100)) {
+			for (int k : new int[] { 1, 5, 30 }) {
+				double[] expected = bruteForce(points, query, k);
+				assertNeighbors(expected, tree.nearestNeighbor(query, k, false),
+						points, query);
+				List<Entry<Integer>> sorted = tree.nearestNeighbor(query, k,
+						true);
+				assertNeighbors(expected, sorted, points, query);
+				// sequential sorting returns the farthest first
+				for (int i = 1; i < sorted.size(); i++)
+					assertTrue(sorted.get(i - 1).distance >= sorted.get(i).distance);
+			}
+		}
+	}
+
+	@Test
+	public void testBatchMatchesSerial() {
+		Random random = new Random(8);
+		List<LinearVector> points = getPoints(random, 1000);
+		KDTree<Integer> tree = buildTree(points);
+		List<LinearVector> queries = getPoints(random, 101);
+		List<List<Entry<Integer>>> batch = tree.nearestNeighbors(queries, 7,
+				false, 4);
+		assertEquals(queries.size(), batch.size());
+		for (int i = 0; i < queries.size(); i++)
+			assertNeighbors(bruteForce(points, queries.get(i), 7),
+					batch.get(i), points, queries.get(i));
+		assertEquals(queries.size(), tree.nearestNeighbors(queries, 7).size());
+	}
+
+	@Test
+	public void testConcurrentQueriesWithWriter() throws Exception {
+		Random random = new Random(9);
+		final List<LinearVector> points = getPoints(random, 3000);
+		final KDTree<Integer> tree = buildTree(points.subList(0, 1000));
+		final List<LinearVector> queries = getPoints(random, 50);
+		final AtomicBoolean writing = new AtomicBoolean(true);
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			Future<?> writer = pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 1000; i < points.size(); i++)
+						tree.addPoint(points.get(i), i);
+					writing.set(false);
+				}
+			});
+			List<Future<Boolean>> readers = Lists.newArrayList();
+			for (int t = 0; t < 3; t++)
+				readers.add(pool.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						boolean sawWrites = false;
+						do {
+							sawWrites |= writing.get();
+							for (LinearVector query : queries) {
+								List<Entry<Integer>> neighbors = tree
+										.nearestNeighbor(query, 5, false);
+								assertEquals(5, neighbors.size());
+								for (Entry<Integer> entry : neighbors)
+									assertTrue(points.get(entry.value) == entry.position);
+							}
+						} while (writing.get());
+						return sawWrites;
+					}
+				}));
+			writer.get();
+			for (Future<Boolean> reader : readers)
+				reader.get();
+		} finally {
+			pool.shutdown();
+		}
+
+		assertFalse(writing.get());
+		assertEquals(points.size(), tree.size());
+		for (LinearVector query : queries)
+			assertNeighbors(bruteForce(points, query, 5),
+					tree.nearestNeighbor(query, 5, false), points, query);
+	}
+}
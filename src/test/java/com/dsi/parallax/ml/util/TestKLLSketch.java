@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestKLLSketch {
+
+	@Test
+	public void testExactWhileSmall() {
+		KLLSketch sketch = new KLLSketch(200, 1);
+		for (int i = 100; i > 0; i--)
+			sketch.update(i);
+		assertEquals(100, sketch.getRetained());
+		assertEquals(1, sketch.quantile(0), 0);
+		assertEquals(25, sketch.quantile(.25), 0);
+		assertEquals(50, sketch.quantile(.5), 0);
+		assertEquals(100, sketch.quantile(1), 0);
+		assertEquals(.3, sketch.rank(30), 0);
+	}
+
+	@Test
+	public void testEmpty() {
+		KLLSketch sketch = new KLLSketch();
+		sketch.update(Double.NaN);
+		assertEquals(0, sketch.getCount());
+		assertTrue(Double.isNaN(sketch.quantile(.5)));
+		assertTrue(Double.isNaN(sketch.rank(0)));
+	}
+
+	@Test
+	public void testBoundedAndAccurate() {
+		int n = 1000000;
+		double[] values = new double[n];
+		Random random = new Random(11);
+		KLLSketch sketch = new KLLSketch(200, 3);
+		for (int i = 0; i < n; i++) {
+			values[i] = random.nextGaussian();
+			sketch.update(values[i]);
+		}
+		assertEquals(n, sketch.getCount());
+		assertTrue(sketch.getRetained() < 1000);
+		checkRanks(values, sketch, 0.02);
+		Arrays.sort(values);
+		assertEquals(values[0], sketch.getMin(), 0);
+		assertEquals(values[n - 1], sketch.getMax(), 0);
+	}
+
+	@Test
+	public void testMerge() {
+		int n = 400000, partitions = 4;
+		double[] values = new double[n];
+		Random random = new Random(5);
+		KLLSketch[] sketches = new KLLSketch[partitions];
+		for (int p = 0; p < partitions; p++)
+			sketches[p] = new KLLSketch(200, p);
+		for (int i = 0; i < n; i++) {
+			// partitions see different parts of the distribution
+			values[i] = random.nextDouble() + i % partitions;
+			sketches[i % partitions].update(values[i]);
+		}
+		KLLSketch merged = new KLLSketch(200, 7);
+		for (KLLSketch sketch : sketches)
+			merged.merge(sketch);
+		assertEquals(n, merged.getCount());
+		assertTrue(merged.getRetained() < 1000);
+		checkRanks(values, merged, 0.02);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeWithItself() {
+		KLLSketch sketch = new KLLSketch(200, 3);
+		sketch.update(1);
+		sketch.merge(sketch);
+	}
+
+	/**
+	 * the true rank of each sketched quantile is near the fraction asked for
+	 */
+	private void checkRanks(double[] values, KLLSketch sketch, double error) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		double[] fractions = new double[] { .01, .1, .25, .5, .75, .9, .99 };
+		double[] quantiles = sketch.quantiles(fractions);
+		for (int q = 0; q < fractions.length; q++) {
+			int below = Arrays.binarySearch(sorted, quantiles[q]);
+			assertTrue(below >= 0);
+			assertEquals(fractions[q], (below + 1.) / sorted.length, error);
+			assertEquals(fractions[q], sketch.rank(quantiles[q]), error);
+		}
+	}
+}
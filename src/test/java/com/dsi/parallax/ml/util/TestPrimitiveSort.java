@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestPrimitiveSort {
+
+	@Test
+	public void testParallelMatchesArraysSort() {
+		Random random = new Random(17);
+		for (int threads : new int[] { 1, 2, 3, 7 }) {
+			double[] keys = new double[5 * PrimitiveSort.PARALLEL_THRESHOLD + 3];
+			for (int i = 0; i < keys.length; i++)
+				keys[i] = random.nextInt(1000) / 10.;
+			keys[5] = Double.NaN;
+			keys[6] = -0.;
+			double[] expected = keys.clone();
+			Arrays.sort(expected, 2, keys.length - 1);
+			PrimitiveSort.sort(keys, 2, keys.length - 1, threads);
+			assertArrayEquals(expected, keys, 0);
+		}
+	}
+
+	@Test
+	public void testValuesFollowKeys() {
+		Random random = new Random(4);
+		for (int length : new int[] { 0, 1, 50, 3 * PrimitiveSort.PARALLEL_THRESHOLD }) {
+			double[] keys = new double[length];
+			double[] values = new double[length];
+			for (int i = 0; i < length; i++) {
+				keys[i] = random.nextGaussian();
+				values[i] = 3 * keys[i] + 1;
+			}
+			double[] expected = keys.clone();
+			Arrays.sort(expected);
+			PrimitiveSort.sort(keys, values, 0, length, 4);
+			assertArrayEquals(expected, keys, 0);
+			for (int i = 0; i < length; i++)
+				assertEquals(3 * keys[i] + 1, values[i], 0);
+		}
+	}
+}
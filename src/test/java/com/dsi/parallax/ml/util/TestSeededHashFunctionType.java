@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.ml.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * The Class TestSeededHashFunctionType.
+ */
+public class TestSeededHashFunctionType {
+
+	private static final int P1 = 0x9E3779B1;
+	private static final int P2 = 0x85EBCA77;
+	private static final int P3 = 0xC2B2AE3D;
+	private static final int P4 = 0x27D4EB2F;
+	private static final int P5 = 0x165667B1;
+
+	private static byte[] utf16le(String s) {
+		byte[] bytes = new byte[2 * s.length()];
+		for (int i = 0; i < s.length(); i++) {
+			bytes[2 * i] = (byte) s.charAt(i);
+			bytes[2 * i + 1] = (byte) (s.charAt(i) >>> 8);
+		}
+		return bytes;
+	}
+
+	private static byte[] ascii(String s) {
+		byte[] bytes = new byte[s.length()];
+		for (int i = 0; i < s.length(); i++)
+			bytes[i] = (byte) s.charAt(i);
+		return bytes;
+	}
+
+	private static int getInt(byte[] b, int i) {
+		return (b[i] & 0xff) | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff) << 16
+				| (b[i + 3] & 0xff) << 24;
+	}
+
+	private static int round(int acc, int lane) {
+		return Integer.rotateLeft(acc + lane * P2, 13) * P1;
+	}
+
+	// straightforward byte at a time XXH32, per the reference implementation
+	private static int xxh32(byte[] b, int seed) {
+		int i = 0, h;
+		if (b.length >= 16) {
+			int v1 = seed + P1 + P2, v2 = seed + P2, v3 = seed, v4 = seed - P1;
+			for (; i <= b.length - 16; i += 16) {
+				v1 = round(v1, getInt(b, i));
+				v2 = round(v2, getInt(b, i + 4));
+				v3 = round(v3, getInt(b, i + 8));
+				v4 = round(v4, getInt(b, i + 12));
+			}
+			h = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7)
+					+ Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18);
+		} else {
+			h = seed + P5;
+		}
+		h += b.length;
+		for (; i + 4 <= b.length; i += 4)
+			h = Integer.rotateLeft(h + getInt(b, i) * P3, 17) * P4;
+		for (; i < b.length; i++)
+			h = Integer.rotateLeft(h + (b[i] & 0xff) * P5, 11) * P1;
+		h ^= h >>> 15;
+		h *= P2;
+		h ^= h >>> 13;
+		h *= P3;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private static String randomString(Random random, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++)
+			sb.append(random.nextInt(4) == 0 ? (char) random.nextInt(0xd800)
+					: (char) ('a' + random.nextInt(26)));
+		return sb.toString();
+	}
+
+	@Test
+	public void testXXHashReference() {
+		// published test vectors
+		assertEquals(0x02CC5D05, xxh32(new byte[0], 0));
+		assertEquals(0x32D153FF, xxh32(ascii("abc"), 0));
+	}
+
+	@Test
+	public void testMatchesByteImplementations() {
+		Random random = new Random(11);
+		for (int length = 0; length < 40; length++) {
+			for (int rep = 0; rep < 5; rep++) {
+				String s = randomString(random, length);
+				int seed = rep == 0 ? 0 : random.nextInt();
+				byte[] bytes = utf16le(s);
+				assertEquals(s, Hashing.murmur3_32(seed).hashBytes(bytes)
+						.asInt(), SeededHashFunctionType.MURMUR3.hash(s, seed));
+				assertEquals(s, xxh32(bytes, seed),
+						SeededHashFunctionType.XXHASH.hash(s, seed));
+			}
+		}
+	}
+
+	@Test
+	public void testRanges() {
+		String s = "the quick brown fox";
+		for (SeededHashFunctionType type : SeededHashFunctionType.values()) {
+			assertEquals(type.hash("quick", 7),
+					type.hash(new StringBuilder(s), 4, 9, 7));
+			assertNotEquals(type.hash("quick", 7), type.hash("quick", 8));
+		}
+	}
+
+	@Test
+	public void testHashFunctionTypes() {
+		for (HashFunctionType type : HashFunctionType.values()) {
+			for (String s : new String[] { "", "a", "foo", "namespace___bar" }) {
+				int bin = type.hash(s, 1000);
+				assertTrue(bin >= 0 && bin < 1000);
+				assertEquals(bin, type.hash(s, 1000));
+			}
+		}
+		assertNull(HashFunctionType.JAVA.getSeededHash());
+		assertEquals(SeededHashFunctionType.bin(
+				SeededHashFunctionType.MURMUR3.hash("foo", 0), 1000),
+				HashFunctionType.MURMUR3.hash("foo", 1000));
+	}
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.ml.vector.LinearVectorFactory;
+
+public class TestLBFGS {
+
+	/**
+	 * sum_i c_i (x_i - i)^2, with c_i spanning several orders of magnitude
+	 */
+	static class Quadratic implements Optimizable {
+		private final double[] curvature;
+		private LinearVector parameters;
+
+		Quadratic(int dimension) {
+			curvature = new double[dimension];
+			for (int i = 0; i < dimension; i++)
+				curvature[i] = Math.pow(10, 3. * i / (dimension - 1));
+			parameters = LinearVectorFactory.getDenseVector(dimension);
+		}
+
+		@Override
+		public int getNumParameters() {
+			return curvature.length;
+		}
+
+		@Override
+		public LinearVector getVector() {
+			return parameters;
+		}
+
+		@Override
+		public double getParameter(int index) {
+			return parameters.getValue(index);
+		}
+
+		@Override
+		public void setParameter(int index, double value) {
+			parameters.resetValue(index, value);
+		}
+
+		@Override
+		public void setParameters(LinearVector params) {
+			parameters = params;
+		}
+
+		@Override
+		public Gradient computeGradient() {
+			return computeGradient(parameters);
+		}
+
+		@Override
+		public Gradient computeGradient(LinearVector params) {
+			LinearVector grad = LinearVectorFactory
+					.getDenseVector(curvature.length);
+			for (int i = 0; i < curvature.length; i++)
+				grad.resetValue(i, 2 * curvature[i]
+						* (params.getValue(i) - i));
+			return new Gradient(grad, computeLoss(params));
+		}
+
+		@Override
+		public double computeLoss() {
+			return computeLoss(parameters);
+		}
+
+		@Override
+		public double computeLoss(LinearVector params) {
+			double loss = 0;
+			for (int i = 0; i < curvature.length; i++)
+				loss += curvature[i] * Math.pow(params.getValue(i) - i, 2);
+			return loss;
+		}
+	}
+
+	/**
+	 * (1-x)^2 + 100(y-x^2)^2, minimized at (1, 1)
+	 */
+	static class Rosenbrock extends Quadratic {
+		Rosenbrock() {
+			super(2);
+			getVector().resetValue(0, -1.2);
+			getVector().resetValue(1, 1);
+		}
+
+		@Override
+		public Gradient computeGradient(LinearVector params) {
+			double x = params.getValue(0), y = params.getValue(1);
+			LinearVector grad = LinearVectorFactory.getDenseVector(2);
+			grad.resetValue(0, -2 * (1 - x) - 400 * x * (y - x * x));
+			grad.resetValue(1, 200 * (y - x * x));
+			return new Gradient(grad, computeLoss(params));
+		}
+
+		@Override
+		public double computeLoss(LinearVector params) {
+			double x = params.getValue(0), y = params.getValue(1);
+			return Math.pow(1 - x, 2) + 100 * Math.pow(y - x * x, 2);
+		}
+	}
+
+	@Test
+	public void testQuadratic() {
+		Quadratic function = new Quadratic(20);
+		LBFGS lbfgs = new LBFGS(function, 5);
+		lbfgs.setTolerance(1e-10);
+		assertTrue(lbfgs.optimize());
+		assertTrue(lbfgs.isConverged());
+		for (int i = 0; i < 20; i++)
+			assertEquals(i, function.getParameter(i), 1e-4);
+		assertTrue(lbfgs.getIterations() < 1000);
+	}
+
+	@Test
+	public void testRosenbrock() {
+		Rosenbrock function = new Rosenbrock();
+		LBFGS lbfgs = new LBFGS(function);
+		lbfgs.setTolerance(1e-14);
+		double loss = function.computeLoss();
+		for (int i = 0; i < 500 && !lbfgs.isConverged(); i++) {
+			lbfgs.optimize(1);
+			double newLoss = function.computeLoss();
+			assertTrue(newLoss <= loss);
+			loss = newLoss;
+		}
+		assertEquals(1, function.getParameter(0), 1e-3);
+		assertEquals(1, function.getParameter(1), 1e-3);
+	}
+
+	@Test
+	public void testHistoryRecoversInverseHessian() {
+		// with a full set of conjugate steps on a quadratic, the two loop
+		// recursion applies the exact inverse hessian, whatever the initial
+		// scaling
+		int dimension = 4;
+		double[] curvature = new double[] { 1, 3, 10, 50 };
+		LBFGSHistory history = new LBFGSHistory(dimension, dimension);
+		for (int i = 0; i < dimension; i++) {
+			double[] s = new double[dimension];
+			double[] y = new double[dimension];
+			s[i] = 1;
+			y[i] = curvature[i];
+			assertTrue(history.add(s, y));
+		}
+		assertEquals(dimension, history.size());
+		assertEquals(1. / 50, history.newestScale(), 1e-12);
+
+		double[] direction = new double[] { 1, 1, 1, 1 };
+		history.applyInverseHessian(direction, 7);
+		for (int i = 0; i < dimension; i++)
+			assertEquals(1 / curvature[i], direction[i], 1e-12);
+	}
+
+	@Test
+	public void testHistoryRing() {
+		LBFGSHistory history = new LBFGSHistory(2, 3);
+		for (int k = 1; k <= 5; k++)
+			assertTrue(history.add(new double[] { k, 0 },
+					new double[] { 2 * k, 0 }));
+		assertEquals(3, history.size());
+		assertEquals(0.5, history.averageScale(), 1e-12);
+
+		// no curvature along this step; dropped
+		assertFalse(history.add(new double[] { 1, 0 },
+				new double[] { -1, 0 }));
+		assertEquals(3, history.size());
+
+		history.clear();
+		assertEquals(0, history.size());
+		double[] direction = new double[] { 2, 3 };
+		history.applyInverseHessian(direction, 0.5);
+		assertEquals(1, direction[0], 0);
+		assertEquals(1.5, direction[1], 0);
+	}
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.pipeline.file.FileToLinesPipe;
+import com.dsi.parallax.pipeline.text.StringSequenceToNGramsPipe;
+import com.dsi.parallax.pipeline.text.StringSequenceToNumericDictionaryPipe;
+import com.dsi.parallax.pipeline.text.StringToTokenSequencePipe;
+import com.dsi.parallax.pipeline.text.TextSanitizerPipe;
+import com.google.common.collect.Lists;
+
+public class TestBatchPipeline {
+
+	File file = new File("README");
+	int bins = 10000;
+
+	private Pipeline<File, LinearVector> buildPipeline() {
+		return Pipeline.newPipeline(new FileSource(file))
+				.addPipe(new FileToLinesPipe())
+				.addPipe(new TextSanitizerPipe())
+				.addPipe(new StringToTokenSequencePipe())
+				.addPipe(new StringSequenceToNGramsPipe(new int[] { 1, 2, 3 }))
+				.addPipe(new StringSequenceToNumericDictionaryPipe(bins))
+				.addPipe(new LinearVectorLengthFilterPipe(2));
+	}
+
+	@Test
+	public void testBatchedMatchesSerial() {
+		List<Context<LinearVector>> serial = Lists.newArrayList(buildPipeline()
+				.process());
+		assertTrue(serial.size() > 0);
+		for (int batchSize : new int[] { 1, 7, 1000 }) {
+			List<Context<LinearVector>> batched = Lists
+					.newArrayList(buildPipeline().processBatched(batchSize));
+			assertEquals(serial.size(), batched.size());
+			for (int i = 0; i < serial.size(); i++) {
+				LinearVector x = serial.get(i).getData();
+				LinearVector y = batched.get(i).getData();
+				assertEquals(x.getFeatureIndicies(), y.getFeatureIndicies());
+				for (int j : x)
+					assertEquals(x.getValue(j), y.getValue(j), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testNonBatchPipesRunSerially() {
+		Pipeline<File, Integer> pipeline = buildPipeline().addPipe(
+				new CountingPipe<LinearVector>());
+		int expected = Lists.newArrayList(buildPipeline().process()).size();
+		List<Context<Integer>> counted = Lists.newArrayList(pipeline
+				.processBatched(16));
+		assertEquals(1, counted.size());
+		assertEquals(expected, (int) counted.get(0).getData());
+	}
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.ml.vector.util.ValueScaling;
+import com.dsi.parallax.pipeline.file.FileToLinesPipe;
+import com.dsi.parallax.pipeline.text.StringSequenceToNGramsPipe;
+import com.dsi.parallax.pipeline.text.StringSequenceToNumericDictionaryPipe;
+import com.dsi.parallax.pipeline.text.StringToTokenSequencePipe;
+import com.dsi.parallax.pipeline.text.StringToVWPipe;
+import com.dsi.parallax.pipeline.text.TextSanitizerPipe;
+import com.dsi.parallax.pipeline.text.VWtoLabeledStringPipe;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class TestParallelPipeline {
+
+	File file = new File("data/science.small.vw");
+	int bins = 10000;
+
+	private Pipeline<File, LinearVector> buildPipeline() {
+		return Pipeline.newPipeline(new FileSource(file))
+				.addPipe(new FileToLinesPipe())
+				.addPipe(new StringToVWPipe())
+				.addPipe(new VWtoLabeledStringPipe())
+				.addPipe(new TextSanitizerPipe())
+				.addPipe(new StringToTokenSequencePipe())
+				.addPipe(new StringSequenceToNGramsPipe(new int[] { 1, 2 }))
+				.addPipe(new StringSequenceToNumericDictionaryPipe(bins));
+	}
+
+	private static <T> List<Context<T>> drain(Iterator<Context<T>> it) {
+		return Lists.newArrayList(it);
+	}
+
+	private static void assertSameVector(LinearVector x, LinearVector y) {
+		assertEquals(x.getFeatureIndicies(), y.getFeatureIndicies());
+		for (int i : x)
+			assertEquals(x.getValue(i), y.getValue(i), 0);
+	}
+
+	@Test
+	public void testOrderedMatchesSerial() {
+		List<Context<LinearVector>> serial = drain(buildPipeline().process());
+		List<Context<LinearVector>> parallel = drain(buildPipeline()
+				.processParallel(4, 16, true));
+
+		assertTrue(serial.size() > 0);
+		assertEquals(serial.size(), parallel.size());
+		for (int i = 0; i < serial.size(); i++) {
+			assertEquals(serial.get(i).getId(), parallel.get(i).getId());
+			assertEquals(serial.get(i).getLabel(), parallel.get(i).getLabel());
+			assertSameVector(serial.get(i).getData(), parallel.get(i).getData());
+		}
+	}
+
+	@Test
+	public void testUnorderedKeepsEveryRecord() {
+		List<Context<LinearVector>> serial = drain(buildPipeline().process());
+		List<Context<LinearVector>> parallel = drain(buildPipeline()
+				.processParallel(3, 2, false));
+
+		assertEquals(serial.size(), parallel.size());
+		Set<String> serialIds = Sets.newHashSet();
+		for (Context<LinearVector> context : serial)
+			serialIds.add(context.getId());
+		Set<String> parallelIds = Sets.newHashSet();
+		for (Context<LinearVector> context : parallel)
+			parallelIds.add(context.getId());
+		assertEquals(serialIds, parallelIds);
+	}
+
+	@Test
+	public void testSerialStagesBetweenParallelStages() {
+		Pipeline<File, LinearVector> pipeline = buildPipeline().addPipe(
+				new LinearVectorLengthFilterPipe(2));
+		int serial = drain(pipeline.process()).size();
+
+		pipeline = buildPipeline().addPipe(new LinearVectorLengthFilterPipe(2))
+				.addPipe(new ValueScalingPipe(ValueScaling.ABS));
+		int parallel = drain(pipeline.processParallel(2)).size();
+		assertEquals(serial, parallel);
+	}
+
+	@Test
+	public void testCloseStopsAbandonedStages() throws InterruptedException {
+		Pipeline<File, LinearVector> pipeline = buildPipeline().addPipe(
+				new LinearVectorLengthFilterPipe(2)).addPipe(
+				new ValueScalingPipe(ValueScaling.ABS));
+		Iterator<Context<LinearVector>> it = pipeline.processParallel(2, 2,
+				true);
+		assertTrue(it.hasNext());
+		it.next();
+		assertTrue(pipelineThreads() > 0);
+
+		pipeline.close();
+		assertFalse(it.hasNext());
+		// the blocked readers and workers are interrupted and exit
+		for (int wait = 0; wait < 100 && pipelineThreads() > 0; wait++)
+			Thread.sleep(50);
+		assertEquals(0, pipelineThreads());
+	}
+
+	private static int pipelineThreads() {
+		int count = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet())
+			if (thread.isAlive()
+					&& thread.getName().startsWith("parallax-pipeline-"))
+				count++;
+		return count;
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testErrorsReachTheConsumer() {
+		Pipeline<File, String> pipeline = Pipeline
+				.newPipeline(new FileSource(file))
+				.addPipe(new FileToLinesPipe()).addPipe(new FailingPipe());
+		Iterator<Context<String>> it = pipeline.processParallel(2);
+		while (it.hasNext())
+			it.next();
+	}
+
+	private static class FailingPipe extends AbstractPipe<String, String>
+			implements StatelessPipe<String, String> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public java.lang.reflect.Type getType() {
+			return FailingPipe.class;
+		}
+
+		@Override
+		protected Context<String> operate(Context<String> context) {
+			throw new IllegalStateException("failing on purpose");
+		}
+	}
+}
@@ -3,10 +3,13 @@
  ******************************************************************************/
 package com.dsi.parallax.pipeline.discretization;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
@@ -18,6 +21,7 @@ import com.dsi.parallax.pipeline.Pipeline;
 import com.dsi.parallax.pipeline.csv.NumericCSVtoLabeledVectorPipe;
 import com.dsi.parallax.pipeline.discretization.QuantileDiscretizationPipe;
 import com.dsi.parallax.pipeline.file.FileToLinesPipe;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -145,4 +149,83 @@ public class TestQuantileDiscretizationPipe {
 			assertEquals(vect.L0Norm(), 2 + 4, 0.000001);
 		}
 	}
+
+	/**
+	 * Test sketched bounds, which hold every value while the data is smaller
+	 * than a sketch, so they match the exact percentiles up to interpolation.
+	 */
+	@Test
+	public void testSketch() {
+		QuantileDiscretizationPipe exact = new QuantileDiscretizationPipe(5,
+				false);
+		QuantileDiscretizationPipe sketched = new QuantileDiscretizationPipe(5,
+				false).setSketchSize(200);
+		Iterator<Context<LinearVector>> pout = sketched
+				.processIterator(irisVectors().iterator());
+		exact.processIterator(irisVectors().iterator());
+
+		while (pout.hasNext()) {
+			LinearVector vect = pout.next().getData();
+			assertEquals(vect.size(), 4 + 5 * 4);
+			assertEquals(vect.L0Norm(), 4, 0.000001);
+		}
+		for (int x_i = 0; x_i < 4; x_i++) {
+			double[] expected = exact.indexToBounds.get(x_i).getBounds();
+			double[] actual = sketched.indexToBounds.get(x_i).getBounds();
+			assertEquals(exact.indexToBounds.get(x_i).getStartingPoint(),
+					sketched.indexToBounds.get(x_i).getStartingPoint());
+			for (int i = 0; i < expected.length; i++)
+				assertEquals(expected[i], actual[i], 0.2);
+		}
+	}
+
+	/**
+	 * Test training on merged sketches of partitions, then transforming
+	 * without buffering.
+	 */
+	@Test
+	public void testMergedPartitions() {
+		QuantileDiscretizationPipe whole = new QuantileDiscretizationPipe(5,
+				false).setSketchSize(200);
+		whole.train(irisVectors().iterator());
+
+		QuantileDiscretizationPipe partitioned = new QuantileDiscretizationPipe(
+				5, false).setSketchSize(200);
+		List<Context<LinearVector>> vectors = irisVectors();
+		FeatureQuantileSketches first = partitioned.newSketches();
+		FeatureQuantileSketches second = partitioned.newSketches();
+		for (int i = 0; i < vectors.size(); i++)
+			(i % 2 == 0 ? first : second).add(vectors.get(i).getData());
+		partitioned.train(first.merge(second));
+		assertTrue(partitioned.isTrained());
+
+		// the data fits in the sketches, so partitioning changes nothing
+		for (int x_i = 0; x_i < 4; x_i++)
+			assertArrayEquals(whole.indexToBounds.get(x_i).getBounds(),
+					partitioned.indexToBounds.get(x_i).getBounds(), 0);
+
+		Iterator<Context<LinearVector>> pout = partitioned
+				.processIterator(irisVectors().iterator());
+		int ct = 0;
+		while (pout.hasNext()) {
+			LinearVector vect = pout.next().getData();
+			assertEquals(vect.size(), 4 + 5 * 4);
+			assertEquals(vect.L0Norm(), 4, 0.000001);
+			ct++;
+		}
+		assertEquals(vectors.size(), ct);
+	}
+
+	private List<Context<LinearVector>> irisVectors() {
+		Map<String, String> labelMap = Maps.newHashMap();
+		labelMap.put("Iris-setosa", 1 + "");
+		labelMap.put("Iris-versicolor", 0 + "");
+		labelMap.put("Iris-virginica", 0 + "");
+
+		Pipeline<File, LinearVector> pipeline = Pipeline
+				.newPipeline(new FileSource(file))
+				.addPipe(new FileToLinesPipe())
+				.addPipe(new NumericCSVtoLabeledVectorPipe(-1, 4, labelMap));
+		return Lists.newArrayList(pipeline.process());
+	}
 }
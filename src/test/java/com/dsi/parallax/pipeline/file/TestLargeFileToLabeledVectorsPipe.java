@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.pipeline.Context;
+import com.dsi.parallax.pipeline.FileSource;
+import com.dsi.parallax.pipeline.Pipe;
+import com.dsi.parallax.pipeline.Pipeline;
+import com.dsi.parallax.pipeline.text.NumericVWToLabeledVectorPipe;
+import com.dsi.parallax.pipeline.text.SVMLightToLabeledVectorPipe;
+import com.dsi.parallax.pipeline.text.SparseExampleFormat;
+import com.google.common.collect.Lists;
+
+public class TestLargeFileToLabeledVectorsPipe {
+
+	int dimensions = 5000;
+
+	private static File write(List<String> lines, String lineBreak)
+			throws IOException {
+		File file = File.createTempFile("examples", ".txt");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			for (String line : lines)
+				out.write((line + lineBreak).getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	@Test
+	public void testMatchesStringPipes() throws IOException {
+		Random random = new Random(13);
+		List<String> vw = Lists.newArrayList();
+		List<String> svmLight = Lists.newArrayList();
+		for (int i = 0; i < 300; i++) {
+			String label = Integer.toString(random.nextInt(3) - 1);
+			StringBuilder features = new StringBuilder();
+			for (int f = random.nextInt(40); f >= 0; f--)
+				features.append(' ').append(random.nextInt(dimensions))
+						.append(':').append(random.nextFloat());
+			vw.add(label + " |" + features);
+			svmLight.add(label + features);
+		}
+		for (String lineBreak : new String[] { "\n", "\r\n" }) {
+			File file = write(vw, lineBreak);
+			assertSame(
+					lines(file, new NumericVWToLabeledVectorPipe(dimensions)),
+					vectors(file, SparseExampleFormat.VW));
+			file = write(svmLight, lineBreak);
+			assertSame(
+					lines(file, new SVMLightToLabeledVectorPipe(dimensions)),
+					vectors(file, SparseExampleFormat.SVMLIGHT));
+		}
+	}
+
+	@Test
+	public void testTagsAndBlankLines() throws IOException {
+		File file = write(Lists.newArrayList("1 'first| 3:1", "", "  ",
+				"-1 | 4:2"), "\n");
+		Iterator<Context<LinearVector>> it = vectors(file,
+				SparseExampleFormat.VW);
+		Context<LinearVector> first = it.next();
+		assertEquals("first", first.getId());
+		assertEquals("1", first.getLabel());
+		assertEquals(1, first.getData().getValue(3), 0);
+		Context<LinearVector> second = it.next();
+		assertNull(second.getId());
+		assertEquals("-1", second.getLabel());
+		assertEquals(2, second.getData().getValue(4), 0);
+		assertFalse(it.hasNext());
+	}
+
+	private Iterator<Context<LinearVector>> lines(File file,
+			Pipe<String, LinearVector> parser) {
+		return Pipeline.newPipeline(new FileSource(file))
+				.addPipe(new FileToLinesPipe()).addPipe(parser).process();
+	}
+
+	private Iterator<Context<LinearVector>> vectors(File file,
+			SparseExampleFormat format) {
+		return Pipeline.newPipeline(new FileSource(file))
+				.addPipe(new LargeFileToLabeledVectorsPipe(format, dimensions))
+				.process();
+	}
+
+	private void assertSame(Iterator<Context<LinearVector>> expected,
+			Iterator<Context<LinearVector>> actual) {
+		int count = 0;
+		while (expected.hasNext()) {
+			Context<LinearVector> want = expected.next();
+			Context<LinearVector> got = actual.next();
+			assertEquals(want.getLabel(), got.getLabel());
+			assertEquals(want.getData().getFeatureIndicies(), got.getData()
+					.getFeatureIndicies());
+			for (int x_i : want.getData())
+				assertEquals(want.getData().getValue(x_i), got.getData()
+						.getValue(x_i), 0);
+			count++;
+		}
+		assertFalse(actual.hasNext());
+		assertEquals(300, count);
+	}
+}
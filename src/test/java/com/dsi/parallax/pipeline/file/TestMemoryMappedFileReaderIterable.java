@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class TestMemoryMappedFileReaderIterable {
+
+	File[] files = { new File("README"), new File("data/science.small.vw") };
+
+	private static File write(String contents) throws IOException {
+		File file = File.createTempFile("mmap", ".txt");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(contents.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static BufferedReaderIterable utf8Reader(File file)
+			throws IOException {
+		return new BufferedReaderIterable(new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), "UTF-8")));
+	}
+
+	@Test
+	public void testMatchesBufferedReader() throws IOException {
+		for (File file : files) {
+			List<String> expected = Lists.newArrayList(utf8Reader(file));
+			List<String> mapped = Lists
+					.newArrayList(new MemoryMappedFileReaderIterable(file));
+			assertTrue(expected.size() > 0);
+			assertEquals(expected, mapped);
+		}
+	}
+
+	@Test
+	public void testLineBreaks() throws IOException {
+		File file = write("first\n\nthird\r\n\u00e9t\u00e9 \u4e2d\u6587\r\n\nlast");
+		List<String> lines = Lists
+				.newArrayList(new MemoryMappedFileReaderIterable(file));
+		assertEquals(Lists.newArrayList("first", "", "third",
+				"\u00e9t\u00e9 \u4e2d\u6587", "", "last"), lines);
+
+		assertFalse(new MemoryMappedFileReaderIterable(write("")).iterator()
+				.hasNext());
+		assertEquals(Lists.newArrayList(""),
+				Lists.newArrayList(new MemoryMappedFileReaderIterable(write("\n"))));
+	}
+
+	@Test
+	public void testSmallWindows() throws IOException {
+		for (File file : files) {
+			List<String> expected = Lists
+					.newArrayList(new MemoryMappedFileReaderIterable(file));
+			int longest = 0;
+			for (String line : expected)
+				longest = Math.max(longest, line.getBytes("UTF-8").length);
+			// every line spanning two windows forces a remap
+			List<String> windowed = Lists
+					.newArrayList(new MemoryMappedFileReaderIterable(file, 0,
+							file.length(), longest + 2));
+			assertEquals(expected, windowed);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testLineLongerThanWindow() throws IOException {
+		File file = write("short\nthis line is too long\n");
+		Lists.newArrayList(new MemoryMappedFileReaderIterable(file, 0, file
+				.length(), 8));
+	}
+
+	@Test
+	public void testSplit() throws IOException {
+		for (File file : files) {
+			List<String> expected = Lists
+					.newArrayList(new MemoryMappedFileReaderIterable(file));
+			for (int parts : new int[] { 1, 2, 3, 7, 64 }) {
+				List<MemoryMappedFileReaderIterable> regions = MemoryMappedFileReaderIterable
+						.split(file, parts);
+				assertTrue(regions.size() <= parts);
+				List<String> joined = Lists.newArrayList();
+				long offset = 0;
+				for (MemoryMappedFileReaderIterable region : regions) {
+					assertEquals(offset, region.getStart());
+					offset = region.getEnd();
+					joined.addAll(Lists.newArrayList(region));
+				}
+				assertEquals(file.length(), offset);
+				assertEquals(expected, joined);
+			}
+		}
+	}
+
+	@Test
+	public void testSplitManyPartsFewLines() throws IOException {
+		File file = write("a\nb\n");
+		List<MemoryMappedFileReaderIterable> regions = MemoryMappedFileReaderIterable
+				.split(file, 10);
+		assertEquals(2, regions.size());
+		assertEquals(Lists.newArrayList("a"), Lists.newArrayList(regions.get(0)));
+		assertEquals(Lists.newArrayList("b"), Lists.newArrayList(regions.get(1)));
+	}
+}
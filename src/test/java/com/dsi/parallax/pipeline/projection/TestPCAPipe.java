@@ -3,19 +3,24 @@
  ******************************************************************************/
 package com.dsi.parallax.pipeline.projection;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.Map;
 
 import org.junit.Test;
 
 import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
+import com.dsi.parallax.ml.projection.PCAType;
 import com.dsi.parallax.ml.projection.PrincipalComponentsAnalysis;
+import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.pipeline.Context;
 import com.dsi.parallax.pipeline.FileSource;
 import com.dsi.parallax.pipeline.Pipeline;
+import com.dsi.parallax.pipeline.csv.NumericCSVtoLabeledVectorPipe;
 import com.dsi.parallax.pipeline.file.FileToLinesPipe;
 import com.dsi.parallax.pipeline.instance.BinaryInstancesFromVectorPipe;
 import com.dsi.parallax.pipeline.projection.PCAPipe;
@@ -23,6 +28,7 @@ import com.dsi.parallax.pipeline.text.StringSequenceToNGramsPipe;
 import com.dsi.parallax.pipeline.text.StringSequenceToNumericDictionaryPipe;
 import com.dsi.parallax.pipeline.text.StringToTokenSequencePipe;
 import com.dsi.parallax.pipeline.text.TextSanitizerPipe;
+import com.google.common.collect.Maps;
 
 /**
  * The Class TestPCAPipe.
@@ -35,6 +41,9 @@ public class TestPCAPipe {
 	/** The bins. */
 	int bins = 100;
 
+	/** the numeric features of each line */
+	int features = 57;
+
 	/**
 	 * Test projection works.
 	 * 
@@ -70,4 +79,55 @@ public class TestPCAPipe {
 		}
 	}
 
+	/**
+	 * components found streaming, without buffering, capture about as much
+	 * variance of the numeric features as those of the buffered exact pca.
+	 */
+	@Test
+	public void testStreamingTrain() {
+		int components = 5;
+		PrincipalComponentsAnalysis exact = new PrincipalComponentsAnalysis(
+				features, components);
+		Iterator<Context<LinearVector>> it = vectors().addPipe(
+				new PCAPipe(exact)).process();
+		while (it.hasNext())
+			it.next();
+
+		PrincipalComponentsAnalysis pca = new PrincipalComponentsAnalysis(
+				features, components).setType(PCAType.FREQUENT_DIRECTIONS);
+		PCAPipe pipe = new PCAPipe(pca);
+		pipe.train(vectors().process());
+		assertTrue(pca.isBuilt());
+
+		double streamed = 0, buffered = 0;
+		it = vectors().process();
+		while (it.hasNext()) {
+			double[] x = it.next().getData().getW();
+			streamed += squaredNorm(pca.sampleToEigenSpace(x));
+			buffered += squaredNorm(exact.sampleToEigenSpace(x));
+		}
+		assertEquals(1, streamed / buffered, 1e-2);
+
+		it = vectors().addPipe(pipe).process();
+		while (it.hasNext())
+			assertTrue(it.next().getData().L0Norm() <= components);
+	}
+
+	private Pipeline<File, LinearVector> vectors() {
+		Map<String, String> labelMap = Maps.newHashMap();
+		labelMap.put("1", "1");
+		labelMap.put("0", "0");
+		return Pipeline.newPipeline(new FileSource(file))
+				.addPipe(new FileToLinesPipe())
+				.addPipe(new NumericCSVtoLabeledVectorPipe(",", features,
+						labelMap));
+	}
+
+	private double squaredNorm(double[] values) {
+		double total = 0;
+		for (double value : values)
+			total += value * value;
+		return total;
+	}
+
 }
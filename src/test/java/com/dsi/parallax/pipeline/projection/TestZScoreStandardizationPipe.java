@@ -1,16 +1,22 @@
 package com.dsi.parallax.pipeline.projection;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.math.stat.descriptive.SummaryStatistics;
+
 import org.junit.Test;
 
 import com.dsi.parallax.ml.instance.BinaryClassificationInstance;
 import com.dsi.parallax.ml.target.BinaryTargetNumericParser;
+import com.dsi.parallax.ml.util.FeatureStatistics;
+import com.dsi.parallax.ml.vector.LinearVector;
 import com.dsi.parallax.pipeline.Context;
 import com.dsi.parallax.pipeline.FileSource;
 import com.dsi.parallax.pipeline.Pipeline;
@@ -23,6 +29,7 @@ import com.dsi.parallax.pipeline.text.StringSequenceToNGramsPipe;
 import com.dsi.parallax.pipeline.text.StringSequenceToNumericDictionaryPipe;
 import com.dsi.parallax.pipeline.text.StringToTokenSequencePipe;
 import com.dsi.parallax.pipeline.text.TextSanitizerPipe;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 public class TestZScoreStandardizationPipe {
@@ -84,4 +91,56 @@ public class TestZScoreStandardizationPipe {
 		
 	}
 
+	@Test
+	public void testStandardizes() {
+		ZScoreStandardizationPipe zsc = new ZScoreStandardizationPipe()
+				.setThreads(3);
+		List<Context<LinearVector>> out = Lists.newArrayList(zsc
+				.processIterator(irisVectors().iterator()));
+		assertEquals(150, out.size());
+		for (int x_i = 0; x_i < 4; x_i++) {
+			SummaryStatistics stats = new SummaryStatistics();
+			for (Context<LinearVector> context : out)
+				stats.addValue(context.getData().getValue(x_i));
+			assertEquals(0, stats.getMean(), 1e-10);
+			assertEquals(1, stats.getStandardDeviation(), 1e-10);
+		}
+	}
+
+	@Test
+	public void testTrainOnMergedPartitions() {
+		List<Context<LinearVector>> vectors = irisVectors();
+		FeatureStatistics first = new FeatureStatistics();
+		FeatureStatistics second = new FeatureStatistics();
+		for (int i = 0; i < vectors.size(); i++)
+			(i < 60 ? first : second).add(vectors.get(i).getData());
+
+		ZScoreStandardizationPipe partitioned = new ZScoreStandardizationPipe();
+		partitioned.train(first.merge(second));
+		ZScoreStandardizationPipe streamed = new ZScoreStandardizationPipe();
+		streamed.train(irisVectors().iterator());
+		assertTrue(partitioned.isTrained() && streamed.isTrained());
+
+		Iterator<Context<LinearVector>> a = partitioned
+				.processIterator(irisVectors().iterator());
+		Iterator<Context<LinearVector>> b = streamed
+				.processIterator(irisVectors().iterator());
+		while (a.hasNext()) {
+			LinearVector x = a.next().getData(), y = b.next().getData();
+			for (int x_i = 0; x_i < 4; x_i++)
+				assertEquals(y.getValue(x_i), x.getValue(x_i), 1e-10);
+		}
+	}
+
+	private List<Context<LinearVector>> irisVectors() {
+		Map<String, String> labelMap = Maps.newHashMap();
+		labelMap.put("Iris-setosa", 1 + "");
+		labelMap.put("Iris-versicolor", 0 + "");
+		labelMap.put("Iris-virginica", 0 + "");
+		Pipeline<File, LinearVector> pipeline = Pipeline
+				.newPipeline(new FileSource(new File("data/iris.data")))
+				.addPipe(new FileToLinesPipe())
+				.addPipe(new NumericCSVtoLabeledVectorPipe(-1, 4, labelMap));
+		return Lists.newArrayList(pipeline.process());
+	}
 }
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.pipeline.Context;
+import com.google.common.collect.Lists;
+
+public class TestSparseExampleParser {
+
+	int dimensions = 1000;
+
+	@Test
+	public void testVWHeader() {
+		SparseExampleParser parser = new SparseExampleParser(
+				SparseExampleFormat.VW);
+		assertTrue(parser.parse("1 2.5 'first|f 1:0.5 3"));
+		assertEquals("1", parser.getLabel());
+		assertEquals(1, parser.getLabelValue(), 0);
+		assertEquals(2.5, parser.getWeight(), 0);
+		assertEquals("first", parser.getTag());
+		assertEquals(2, parser.size());
+		assertEquals(1, parser.getIndex(0));
+		assertEquals(0.5, parser.getValue(0), 0);
+		assertEquals(3, parser.getIndex(1));
+		assertEquals(1, parser.getValue(1), 0);
+
+		// an unquoted tag touches the bar
+		assertTrue(parser.parse("-1 second|a 2:1"));
+		assertEquals("-1", parser.getLabel());
+		assertEquals(1, parser.getWeight(), 0);
+		assertEquals("second", parser.getTag());
+
+		assertTrue(parser.parse("0.5 | 7:-2e-3"));
+		assertEquals("0.5", parser.getLabel());
+		assertNull(parser.getTag());
+		assertEquals(-2e-3, parser.getValue(0), 0);
+
+		assertTrue(parser.parse("| 5:1"));
+		assertNull(parser.getLabel());
+		assertTrue(Double.isNaN(parser.getLabelValue()));
+		assertEquals(1, parser.size());
+	}
+
+	@Test
+	public void testVWNamespaces() {
+		SparseExampleParser parser = new SparseExampleParser(
+				SparseExampleFormat.VW);
+		assertTrue(parser.parse("1 |a 2:1 4 |b:2 4:1.5\t6:-1 | 9:3"));
+		assertEquals(3, parser.getNamespaceCount());
+		assertEquals("a", parser.getNamespace(0));
+		assertEquals("b", parser.getNamespace(1));
+		assertEquals("", parser.getNamespace(2));
+		assertEquals(0, parser.getNamespaceStart(0));
+		assertEquals(2, parser.getNamespaceStart(1));
+		assertEquals(4, parser.getNamespaceStart(2));
+		assertEquals(5, parser.size());
+		// values are scaled by their namespace's scale
+		double[] values = { 1, 1, 3, -2, 3 };
+		int[] indices = { 2, 4, 4, 6, 9 };
+		for (int k = 0; k < parser.size(); k++) {
+			assertEquals(indices[k], parser.getIndex(k));
+			assertEquals(values[k], parser.getValue(k), 0);
+		}
+		// the last value of a repeated index wins, as with the string pipes
+		assertEquals(3, parser.toVector(10).getValue(4), 0);
+	}
+
+	@Test
+	public void testSVMLight() {
+		SparseExampleParser parser = new SparseExampleParser(
+				SparseExampleFormat.SVMLIGHT);
+		assertTrue(parser.parse("+1 qid:3 1:0.43 3:0.12 9284:0.2 # some info "));
+		assertEquals("+1", parser.getLabel());
+		assertEquals(3, parser.getQueryId());
+		assertEquals("some info", parser.getTag());
+		assertEquals(1, parser.getWeight(), 0);
+		assertEquals(3, parser.size());
+		assertEquals(9284, parser.getIndex(2));
+		assertEquals(0.2, parser.getValue(2), 0);
+
+		assertTrue(parser.parse("-1 2:1"));
+		assertEquals(-1, parser.getQueryId());
+		assertNull(parser.getTag());
+	}
+
+	@Test
+	public void testBlankAndMalformed() {
+		SparseExampleParser vw = new SparseExampleParser(
+				SparseExampleFormat.VW);
+		SparseExampleParser svmLight = new SparseExampleParser(
+				SparseExampleFormat.SVMLIGHT);
+		assertFalse(vw.parse(""));
+		assertFalse(vw.parse(" \t "));
+		assertFalse(svmLight.parse(""));
+		assertFalse(svmLight.parse("# just a comment"));
+		for (String line : new String[] { "1 | a:1", "1 | 1:x", "1 | :1",
+				"1 | 99999999999:1", "1 | 1:1e", "1 | -1:1" }) {
+			try {
+				vw.parse(line);
+				fail("parsed " + line);
+			} catch (NumberFormatException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testFloatsMatchParseDouble() {
+		List<String> floats = Lists.newArrayList("0", "-0", "0.0", "1", "-1",
+				"+2", "0.1", ".5", "5.", "1e22", "1e23", "1E-22", "1e-23",
+				"123456789012345678", "9007199254740993", "0.30000000000000004",
+				"4.9e-324", "1.7976931348623157e308", "1e-400", "2e400",
+				"NaN", "Infinity", "-Infinity", "00012.5000", "3.47e-02");
+		Random random = new Random(3);
+		for (int i = 0; i < 2000; i++) {
+			double value = random.nextGaussian()
+					* Math.pow(10, random.nextInt(30) - 15);
+			floats.add(Double.toString(value));
+			floats.add(String.format("%." + random.nextInt(12) + "f", value));
+			floats.add(String.format("%." + random.nextInt(12) + "e", value));
+		}
+		SparseExampleParser parser = new SparseExampleParser(
+				SparseExampleFormat.SVMLIGHT);
+		for (String value : floats) {
+			assertTrue(parser.parse("0 1:" + value));
+			assertEquals(value,
+					Double.doubleToLongBits(Double.parseDouble(value)),
+					Double.doubleToLongBits(parser.getValue(0)));
+		}
+	}
+
+	@Test
+	public void testMatchesStringPipes() {
+		Random random = new Random(7);
+		NumericVWToLabeledVectorPipe vwPipe = new NumericVWToLabeledVectorPipe(
+				dimensions);
+		SVMLightToLabeledVectorPipe svmLightPipe = new SVMLightToLabeledVectorPipe(
+				dimensions);
+		SparseExampleParser vw = new SparseExampleParser(
+				SparseExampleFormat.VW);
+		SparseExampleParser svmLight = new SparseExampleParser(
+				SparseExampleFormat.SVMLIGHT);
+		for (int i = 0; i < 500; i++) {
+			String label = random.nextBoolean() ? "1" : "-1";
+			StringBuilder features = new StringBuilder();
+			for (int f = random.nextInt(30); f >= 0; f--)
+				features.append(' ').append(random.nextInt(dimensions))
+						.append(':').append(random.nextGaussian() * 100);
+
+			String vwLine = label + " |" + features;
+			assertTrue(vw.parse(vwLine));
+			assertMatches(vwPipe.operate(new Context<String>(vwLine)), vw);
+
+			String svmLightLine = label + features + " # line " + i;
+			assertTrue(svmLight.parse(svmLightLine.getBytes(), 0,
+					svmLightLine.length()));
+			assertMatches(
+					svmLightPipe.operate(new Context<String>(svmLightLine)),
+					svmLight);
+		}
+	}
+
+	private void assertMatches(Context<LinearVector> expected,
+			SparseExampleParser parser) {
+		assertEquals(expected.getLabel(), parser.getLabel());
+		LinearVector parsed = parser.toVector(dimensions);
+		assertEquals(expected.getData().getFeatureIndicies(),
+				parsed.getFeatureIndicies());
+		for (int x_i : parsed)
+			assertEquals(expected.getData().getValue(x_i),
+					parsed.getValue(x_i), 0);
+	}
+}
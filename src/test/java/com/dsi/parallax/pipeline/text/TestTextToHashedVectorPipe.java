@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2012 Josh Attenberg. Not for re-use or redistribution.
+ ******************************************************************************/
+package com.dsi.parallax.pipeline.text;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.dsi.parallax.ml.dictionary.HashDictionary;
+import com.dsi.parallax.ml.util.HashFunctionType;
+import com.dsi.parallax.ml.vector.LinearVector;
+import com.dsi.parallax.pipeline.Context;
+import com.google.common.collect.Lists;
+
+public class TestTextToHashedVectorPipe {
+
+	String[] texts = new String[] {
+			"The quick brown fox jumps over the lazy dog",
+			"is it 42 or forty-two? e-mail me@example.com, re: the_plan!",
+			"antidisestablishmentarianism and pneumonoultramicroscopic words are dropped",
+			"café naïve über STOP The the THE a an",
+			"x y z", "", "   ..,,  ", "one",
+			"tabs\tnew\nlines\rand \"quotes\" (parens) {braces} [brackets] a/b=c&d%e" };
+
+	@Test
+	public void testJava() {
+		for (boolean sanitize : new boolean[] { true, false }) {
+			compare(new HashDictionary(1000), sanitize, null, false, 1);
+			compare(new HashDictionary(1000), sanitize, null, false, 1, 2, 3);
+			compare(new HashDictionary(1000), sanitize, null, true, 1, 2, 3);
+		}
+	}
+
+	@Test
+	public void testSeeded() {
+		for (boolean sanitize : new boolean[] { true, false }) {
+			compare(new HashDictionary(1000, false, HashFunctionType.MURMUR3),
+					sanitize, null, false, 1, 2);
+			compare(new HashDictionary(1000, false, HashFunctionType.MURMUR3),
+					sanitize, null, true, 2, 4);
+		}
+	}
+
+	@Test
+	public void testOtherHashes() {
+		compare(new HashDictionary(1000, false, HashFunctionType.MD5), true,
+				null, false, 1, 2);
+		compare(new HashDictionary(1000, false, HashFunctionType.JENKINS),
+				true, null, true, 3);
+	}
+
+	@Test
+	public void testMultipleHashesAndBias() {
+		compare(new HashDictionary(100, false, true, HashFunctionType.JAVA, 3),
+				true, null, false, 1, 2);
+		compare(new HashDictionary(100, false, true,
+				HashFunctionType.MURMUR3, 3), true, null, false, 1, 2);
+		compare(new HashDictionary(100, true, HashFunctionType.JAVA, 2), false,
+				null, false, 1, 2);
+	}
+
+	@Test
+	public void testStopWords() {
+		compare(new HashDictionary(1000), true, Boolean.FALSE, false, 1, 2);
+		compare(new HashDictionary(1000), false, Boolean.TRUE, false, 1, 2);
+		compare(new HashDictionary(1000, false, HashFunctionType.MURMUR3),
+				true, Boolean.FALSE, true, 2);
+	}
+
+	@Test
+	public void testGramsLongerThanText() {
+		compare(new HashDictionary(1000), true, null, false, 5);
+		compare(new HashDictionary(1000), true, null, true, 5);
+	}
+
+	/**
+	 * the fused pipe must give the same vector as the pipes it replaces
+	 */
+	private void compare(HashDictionary dict, boolean sanitize,
+			Boolean stopCaseSensitive, boolean skip, int... grams) {
+		TextToHashedVectorPipe fused = new TextToHashedVectorPipe(dict)
+				.setSanitize(sanitize);
+		if (skip)
+			fused.setSkipGrams(grams);
+		else
+			fused.setNGrams(grams);
+		if (stopCaseSensitive != null)
+			fused.setStopWords(
+					Lists.newArrayList("the", "THE", "a", "an", "is", "or",
+							"stop"), stopCaseSensitive);
+
+		for (String text : texts) {
+			Context<String> context = new Context<String>(text);
+			if (sanitize)
+				context = new TextSanitizerPipe().operate(context);
+			Context<List<String>> tokens = new StringToTokenSequencePipe()
+					.operate(context);
+			if (stopCaseSensitive != null)
+				tokens = new StringSequenceStopWordsFilterPipe(
+						Lists.newArrayList("the", "THE", "a", "an", "is",
+								"or", "stop"), stopCaseSensitive)
+						.operate(tokens);
+			tokens = skip ? new StringSequenceToSkipGramsPipe(grams)
+					.operate(tokens) : new StringSequenceToNGramsPipe(grams)
+					.operate(tokens);
+			LinearVector expected = new StringSequenceToNumericDictionaryPipe(
+					dict).operate(tokens).getData();
+			LinearVector actual = fused.operate(new Context<String>(text))
+					.getData();
+
+			assertEquals(text, expected.size(), actual.size());
+			assertEquals(text, expected.getFeatureIndicies(),
+					actual.getFeatureIndicies());
+			for (int index : expected.getFeatureIndicies())
+				assertEquals(text, expected.getValue(index),
+						actual.getValue(index), 0);
+		}
+	}
+
+	@Test
+	public void testDefaultStopWords() {
+		TextToHashedVectorPipe fused = new TextToHashedVectorPipe(1000)
+				.setStopWords();
+		String text = texts[0];
+		Context<List<String>> tokens = new StringSequenceStopWordsFilterPipe()
+				.operate(new StringToTokenSequencePipe()
+						.operate(new TextSanitizerPipe()
+								.operate(new Context<String>(text))));
+		LinearVector expected = new StringSequenceToNumericDictionaryPipe(1000)
+				.operate(tokens).getData();
+		assertEquals(expected.getFeatureIndicies(),
+				fused.operate(new Context<String>(text)).getData()
+						.getFeatureIndicies());
+	}
+}